@@ -0,0 +1,24 @@
+package com.example.backend.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ForkJoinPool;
+
+@Configuration
+@Slf4j
+public class PlanningConfig {
+
+    /**
+     * Shared pool for the parallel depot-cover search of collection planning.
+     * {@code planning.parallelism=0} uses one worker per available core.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ForkJoinPool planningPool(@Value("${planning.parallelism:0}") int parallelism) {
+        int workers = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        log.info("Collection planning pool: {} worker(s)", workers);
+        return new ForkJoinPool(workers);
+    }
+}
@@ -5,6 +5,7 @@ import com.example.backend.dto.CommissionPaiementDTO;
 import com.example.backend.dto.LivreurCommissionSummaryDTO;
 import com.example.backend.dto.BilanDTO;
 import com.example.backend.dto.PageResponse;
+import com.example.backend.dto.RecalculationJobDTO;
 import com.example.backend.service.CommissionService;
 import com.example.backend.service.SecurityService;
 import lombok.RequiredArgsConstructor;
@@ -15,6 +16,7 @@ import org.springframework.web.bind.annotation.*;
 
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/commissions")
@@ -175,11 +177,21 @@ public class CommissionController {
     //  Recalculate distances
     // ═══════════════════════════════════════════════════════
 
+    /**
+     * Start recalculating every paiement's distances in the background (or return the run in
+     * progress); poll the status endpoint for progress.
+     */
     @PutMapping("/paiements/recalculate-all")
     @PreAuthorize("hasRole('GERANT')")
-    public ResponseEntity<java.util.Map<String, Object>> recalculateAllDistances() {
-        int updated = commissionService.recalculateAllDistances();
-        return ResponseEntity.ok(java.util.Map.of("recalculated", updated));
+    public ResponseEntity<RecalculationJobDTO> recalculateAllDistances() {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(commissionService.recalculateAllDistances());
+    }
+
+    @GetMapping("/paiements/recalculate-all/status")
+    @PreAuthorize("hasRole('GERANT')")
+    public ResponseEntity<RecalculationJobDTO> getRecalculationStatus() {
+        RecalculationJobDTO status = commissionService.getRecalculationStatus();
+        return status == null ? ResponseEntity.noContent().build() : ResponseEntity.ok(status);
     }
 
     // ═══════════════════════════════════════════════════════
@@ -223,4 +235,15 @@ public class CommissionController {
         }
         return ResponseEntity.ok(commissionService.getAnneesDisponibles(societeId));
     }
+
+    /** Recompute the société's bilan rollups from its paiements (after a livreur changed société, or manual SQL). */
+    @PostMapping("/bilan/rollups/rebuild")
+    @PreAuthorize("hasRole('GERANT')")
+    public ResponseEntity<Map<String, Integer>> rebuildRollups() {
+        Long societeId = securityService.getCurrentUserSocieteId();
+        if (societeId == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(Map.of("rows", commissionService.rebuildRollups(societeId)));
+    }
 }
@@ -1,11 +1,13 @@
 package com.example.backend.controller;
 
+import com.example.backend.dto.CollectionPlanOptions;
 import com.example.backend.dto.MapDataDTO;
 import com.example.backend.dto.OrderDTO;
 import com.example.backend.dto.ProductStockInfoDTO;
 import com.example.backend.dto.CollectedItemDTO;
 import com.example.backend.service.MapDataService;
 import com.example.backend.service.OrderService;
+import com.example.backend.service.RouteGeometryService;
 import com.example.backend.service.SecurityService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
@@ -25,6 +27,7 @@ public class MapDataController {
     private final MapDataService mapDataService;
     private final OrderService orderService;
     private final SecurityService securityService;
+    private final RouteGeometryService routeGeometryService;
 
     /**
      * Get map data for the current user's société:
@@ -73,7 +76,9 @@ public class MapDataController {
     /**
      * Generate an OPTIMAL collection plan for one or more orders.
      * Pipeline: aggregate demand → min-depot set cover → shortest route (haversine NN).
-     * Body: { "orderIds": [1,2,3], "livreurLat": 34.74, "livreurLon": 10.76 }
+     * Body: { "orderIds": [1,2,3], "livreurLat": 34.74, "livreurLon": 10.76, "maxParallelism": 4, "maxMillis": 300 }
+     * maxParallelism is optional and caps the search workers for this request (1 = sequential).
+     * maxMillis is optional: the best plan found within the budget is returned, with "optimal" and "optimalityGap".
      */
     @PostMapping("/orders/optimal-collection-plan")
     @PreAuthorize("hasAnyRole('GERANT', 'LIVREUR')")
@@ -90,7 +95,28 @@ public class MapDataController {
         List<Long> orderIds = rawIds.stream().map(Number::longValue).toList();
         Double livreurLat = request.get("livreurLat") != null ? ((Number) request.get("livreurLat")).doubleValue() : null;
         Double livreurLon = request.get("livreurLon") != null ? ((Number) request.get("livreurLon")).doubleValue() : null;
-        return ResponseEntity.ok(mapDataService.generateOptimalCollectionPlan(orderIds, societeId, livreurLat, livreurLon));
+        CollectionPlanOptions options = CollectionPlanOptions.builder()
+                .maxParallelism(request.get("maxParallelism") != null ? ((Number) request.get("maxParallelism")).intValue() : null)
+                .maxMillis(request.get("maxMillis") != null ? ((Number) request.get("maxMillis")).longValue() : null)
+                .build();
+        return ResponseEntity.ok(mapDataService.generateOptimalCollectionPlan(orderIds, societeId, livreurLat, livreurLon, options));
+    }
+
+    /**
+     * Road geometry of an order's route (collection depots, then delivery) as encoded polylines,
+     * one per zoom level; with ?zoom=N only the level for that map zoom.
+     * 404 when the order has fewer than two located stops.
+     */
+    @GetMapping("/orders/{orderId}/route-geometry")
+    @PreAuthorize("hasAnyRole('GERANT', 'LIVREUR')")
+    public ResponseEntity<RouteGeometryService.OrderRoute> getRouteGeometry(@PathVariable Long orderId,
+                                                                          @RequestParam(required = false) Integer zoom) {
+        Long societeId = securityService.getCurrentUserSocieteId();
+        if (societeId == null) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        RouteGeometryService.OrderRoute route = routeGeometryService.getOrderRoute(orderId, societeId, zoom);
+        return route == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(route);
     }
 
     /**
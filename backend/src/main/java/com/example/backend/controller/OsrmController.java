@@ -0,0 +1,34 @@
+package com.example.backend.controller;
+
+import com.example.backend.service.OsrmService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/osrm")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+public class OsrmController {
+
+    private final OsrmService osrmService;
+
+    /**
+     * OSRM metrics:
+     * - health: circuit breaker state (CLOSED / OPEN / HALF_OPEN), in-flight and queued requests,
+     *   and per OSRM instance: breaker, in-flight, requests, failures, mean / recent / max latency
+     * - caches: per endpoint (table, route, trip) hits, misses, evictions, expirations, size, weight
+     */
+    @GetMapping("/stats")
+    @PreAuthorize("hasRole('GERANT')")
+    public ResponseEntity<Map<String, Object>> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("health", osrmService.getHealth());
+        stats.put("caches", osrmService.getCacheStats());
+        return ResponseEntity.ok(stats);
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.backend.dto;
+
+import lombok.*;
+
+/**
+ * Per-request tuning of the optimal collection plan solver; null fields use the server defaults.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CollectionPlanOptions {
+    /** Upper bound on the workers used by the depot-cover search (1 = sequential). */
+    private Integer maxParallelism;
+    /**
+     * Time budget of the plan request in milliseconds, shared by depot screening, OSRM legs and
+     * the depot-cover search; the best plan found is returned.
+     */
+    private Long maxMillis;
+    /** If true, plans generated for orders without one are returned but not saved on the orders. */
+    private Boolean preview;
+}
@@ -0,0 +1,25 @@
+package com.example.backend.dto;
+
+import lombok.*;
+import java.time.LocalDateTime;
+
+/**
+ * Progress of the commission distance recalculation: RUNNING, COMPLETED or FAILED.
+ * {@code recalculated} counts the paiements updated so far.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RecalculationJobDTO {
+    private Long jobId;
+    private String status;
+    private Long total;
+    private Long processed;
+    private Long recalculated;
+    private Long lastPaiementId;
+    private String error;
+    private LocalDateTime startedAt;
+    private LocalDateTime updatedAt;
+    private LocalDateTime finishedAt;
+}
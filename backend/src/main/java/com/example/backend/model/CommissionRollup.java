@@ -0,0 +1,50 @@
+package com.example.backend.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Commission paiements of one livreur for one month, per société: the bilan reads these rows
+ * instead of aggregating {@code commission_paiements}. Kept up to date in the same transaction
+ * as every paiement insert, recalculation and delete; rebuilt from the paiements on demand.
+ * The month is the paiement's creation month, the société the livreur's at that time.
+ */
+@Entity
+@Table(name = "commission_rollups",
+        uniqueConstraints = @UniqueConstraint(name = "uk_commission_rollup",
+                columnNames = {"societe_id", "annee", "mois", "livreur_id"}))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CommissionRollup {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "societe_id", nullable = false)
+    private Long societeId;
+
+    @Column(name = "annee", nullable = false)
+    private Integer annee;
+
+    @Column(name = "mois", nullable = false)
+    private Integer mois;
+
+    @Column(name = "livreur_id", nullable = false)
+    private Long livreurId;
+
+    @Column(name = "nombre", nullable = false)
+    @Builder.Default
+    private Long nombre = 0L;
+
+    @Column(name = "montant_total", precision = 14, scale = 3, nullable = false)
+    @Builder.Default
+    private BigDecimal montantTotal = BigDecimal.ZERO;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,68 @@
+package com.example.backend.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import java.time.LocalDateTime;
+
+/**
+ * Run of the commission distance recalculation. Paiements are processed in id order;
+ * {@code lastPaiementId} is committed with each chunk, so a run resumes after it.
+ */
+@Entity
+@Table(name = "recalculation_jobs")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RecalculationJob {
+
+    public static final String RUNNING = "RUNNING";
+    public static final String COMPLETED = "COMPLETED";
+    public static final String FAILED = "FAILED";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "status", nullable = false, length = 20)
+    private String status;
+
+    @Column(name = "last_paiement_id", nullable = false)
+    @Builder.Default
+    private Long lastPaiementId = 0L;
+
+    @Column(name = "total", nullable = false)
+    @Builder.Default
+    private Long total = 0L;
+
+    @Column(name = "processed", nullable = false)
+    @Builder.Default
+    private Long processed = 0L;
+
+    @Column(name = "recalculated", nullable = false)
+    @Builder.Default
+    private Long recalculated = 0L;
+
+    @Column(name = "error", length = 1000)
+    private String error;
+
+    @Column(name = "started_at")
+    private LocalDateTime startedAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        startedAt = LocalDateTime.now();
+        updatedAt = LocalDateTime.now();
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+}
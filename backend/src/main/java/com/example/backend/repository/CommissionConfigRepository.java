@@ -19,6 +19,9 @@ public interface CommissionConfigRepository extends JpaRepository<CommissionConf
 
     List<CommissionConfig> findByActifTrue();
 
+    @Query("SELECT cc FROM CommissionConfig cc JOIN FETCH cc.livreur WHERE cc.actif = true")
+    List<CommissionConfig> findActiveWithLivreur();
+
     @Query("SELECT cc FROM CommissionConfig cc WHERE cc.livreur.societe.id = :societeId AND cc.actif = true")
     List<CommissionConfig> findActiveBySocieteId(@Param("societeId") Long societeId);
 }
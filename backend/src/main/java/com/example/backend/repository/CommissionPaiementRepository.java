@@ -1,8 +1,11 @@
 package com.example.backend.repository;
 
 import com.example.backend.model.CommissionPaiement;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -18,8 +21,20 @@ public interface CommissionPaiementRepository extends JpaRepository<CommissionPa
 
     Optional<CommissionPaiement> findByOrderId(Long orderId);
 
+    // Row lock until the end of the transaction: its montant_total is the one the rollup holds
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT cp FROM CommissionPaiement cp WHERE cp.id = :id")
+    Optional<CommissionPaiement> findByIdForUpdate(@Param("id") Long id);
+
     List<CommissionPaiement> findByLivreurPayeFalse();
 
+    // Keyset page for batch jobs: next paiements after an id, with everything the distance calculation and the rollup read
+    @Query("SELECT cp FROM CommissionPaiement cp LEFT JOIN FETCH cp.order o LEFT JOIN FETCH o.livreur LEFT JOIN FETCH o.depot "
+            + "LEFT JOIN FETCH cp.commissionConfig LEFT JOIN FETCH cp.livreur WHERE cp.id > :afterId ORDER BY cp.id")
+    List<CommissionPaiement> findChunkAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    long countByIdGreaterThan(Long id);
+
     List<CommissionPaiement> findByAdminValideFalse();
 
     List<CommissionPaiement> findByLivreurPayeTrueAndAdminValideFalse();
@@ -45,41 +60,23 @@ public interface CommissionPaiementRepository extends JpaRepository<CommissionPa
     @Query("SELECT COUNT(cp) FROM CommissionPaiement cp WHERE cp.livreur.id = :livreurId")
     Long countByLivreurId(@Param("livreurId") Long livreurId);
 
-    // ═══ Bilan aggregation queries ═══
-
-    // Totaux globaux (all-time) pour une société
-    @Query("SELECT COUNT(cp), COALESCE(SUM(cp.montantTotal), 0) FROM CommissionPaiement cp WHERE cp.livreur.societe.id = :societeId")
-    List<Object[]> getTotauxAllTime(@Param("societeId") Long societeId);
-
-    // Totaux pour une année
-    @Query("SELECT COUNT(cp), COALESCE(SUM(cp.montantTotal), 0) FROM CommissionPaiement cp WHERE cp.livreur.societe.id = :societeId AND YEAR(cp.createdAt) = :annee")
-    List<Object[]> getTotauxPourAnnee(@Param("societeId") Long societeId, @Param("annee") int annee);
-
-    // Totaux pour un mois précis
-    @Query("SELECT COUNT(cp), COALESCE(SUM(cp.montantTotal), 0) FROM CommissionPaiement cp WHERE cp.livreur.societe.id = :societeId AND YEAR(cp.createdAt) = :annee AND MONTH(cp.createdAt) = :mois")
-    List<Object[]> getTotauxPourMois(@Param("societeId") Long societeId, @Param("annee") int annee, @Param("mois") int mois);
-
-    // Bilan par mois (all-time) → année, mois, count, sum
-    @Query("SELECT YEAR(cp.createdAt), MONTH(cp.createdAt), COUNT(cp), COALESCE(SUM(cp.montantTotal), 0) FROM CommissionPaiement cp WHERE cp.livreur.societe.id = :societeId GROUP BY YEAR(cp.createdAt), MONTH(cp.createdAt) ORDER BY YEAR(cp.createdAt) DESC, MONTH(cp.createdAt) DESC")
-    List<Object[]> findBilanParMoisAllTime(@Param("societeId") Long societeId);
-
-    // Bilan par mois pour une année
-    @Query("SELECT YEAR(cp.createdAt), MONTH(cp.createdAt), COUNT(cp), COALESCE(SUM(cp.montantTotal), 0) FROM CommissionPaiement cp WHERE cp.livreur.societe.id = :societeId AND YEAR(cp.createdAt) = :annee GROUP BY YEAR(cp.createdAt), MONTH(cp.createdAt) ORDER BY MONTH(cp.createdAt) DESC")
-    List<Object[]> findBilanParMois(@Param("societeId") Long societeId, @Param("annee") int annee);
-
-    // Bilan par livreur (all-time) → livreurId, nom, prenom, count, sum
-    @Query("SELECT cp.livreur.id, cp.livreur.nom, cp.livreur.prenom, COUNT(cp), COALESCE(SUM(cp.montantTotal), 0) FROM CommissionPaiement cp WHERE cp.livreur.societe.id = :societeId GROUP BY cp.livreur.id, cp.livreur.nom, cp.livreur.prenom ORDER BY SUM(cp.montantTotal) ASC")
-    List<Object[]> findBilanParLivreurAllTime(@Param("societeId") Long societeId);
-
-    // Bilan par livreur pour une année
-    @Query("SELECT cp.livreur.id, cp.livreur.nom, cp.livreur.prenom, COUNT(cp), COALESCE(SUM(cp.montantTotal), 0) FROM CommissionPaiement cp WHERE cp.livreur.societe.id = :societeId AND YEAR(cp.createdAt) = :annee GROUP BY cp.livreur.id, cp.livreur.nom, cp.livreur.prenom ORDER BY SUM(cp.montantTotal) ASC")
-    List<Object[]> findBilanParLivreurPourAnnee(@Param("societeId") Long societeId, @Param("annee") int annee);
-
-    // Bilan par livreur pour un mois précis
-    @Query("SELECT cp.livreur.id, cp.livreur.nom, cp.livreur.prenom, COUNT(cp), COALESCE(SUM(cp.montantTotal), 0) FROM CommissionPaiement cp WHERE cp.livreur.societe.id = :societeId AND YEAR(cp.createdAt) = :annee AND MONTH(cp.createdAt) = :mois GROUP BY cp.livreur.id, cp.livreur.nom, cp.livreur.prenom ORDER BY SUM(cp.montantTotal) ASC")
-    List<Object[]> findBilanParLivreurPourMois(@Param("societeId") Long societeId, @Param("annee") int annee, @Param("mois") int mois);
-
-    // Années disponibles pour une société
-    @Query("SELECT DISTINCT YEAR(cp.createdAt) FROM CommissionPaiement cp WHERE cp.livreur.societe.id = :societeId ORDER BY YEAR(cp.createdAt) DESC")
-    List<Integer> findAnneesDisponibles(@Param("societeId") Long societeId);
+    // ═══ Livreur summary aggregation queries ═══
+
+    // Par livreur → livreurId, total, payé (payé et validé), non payé, count validés, count en attente
+    @Query("SELECT cp.livreur.id, COALESCE(SUM(cp.montantTotal), 0), "
+            + "COALESCE(SUM(CASE WHEN cp.livreurPaye = true AND cp.adminValide = true THEN cp.montantTotal ELSE 0 END), 0), "
+            + "COALESCE(SUM(CASE WHEN cp.livreurPaye = false OR cp.adminValide = false THEN cp.montantTotal ELSE 0 END), 0), "
+            + "SUM(CASE WHEN cp.livreurPaye = true AND cp.adminValide = true THEN 1 ELSE 0 END), "
+            + "SUM(CASE WHEN cp.livreurPaye = false OR cp.adminValide = false THEN 1 ELSE 0 END) "
+            + "FROM CommissionPaiement cp GROUP BY cp.livreur.id")
+    List<Object[]> getTotauxParLivreur();
+
+    // Même ligne pour un seul livreur (vide s'il n'a aucun paiement)
+    @Query("SELECT cp.livreur.id, COALESCE(SUM(cp.montantTotal), 0), "
+            + "COALESCE(SUM(CASE WHEN cp.livreurPaye = true AND cp.adminValide = true THEN cp.montantTotal ELSE 0 END), 0), "
+            + "COALESCE(SUM(CASE WHEN cp.livreurPaye = false OR cp.adminValide = false THEN cp.montantTotal ELSE 0 END), 0), "
+            + "SUM(CASE WHEN cp.livreurPaye = true AND cp.adminValide = true THEN 1 ELSE 0 END), "
+            + "SUM(CASE WHEN cp.livreurPaye = false OR cp.adminValide = false THEN 1 ELSE 0 END) "
+            + "FROM CommissionPaiement cp WHERE cp.livreur.id = :livreurId GROUP BY cp.livreur.id")
+    List<Object[]> getTotauxByLivreurId(@Param("livreurId") Long livreurId);
 }
@@ -0,0 +1,79 @@
+package com.example.backend.repository;
+
+import com.example.backend.model.CommissionRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Repository
+public interface CommissionRollupRepository extends JpaRepository<CommissionRollup, Long> {
+
+    // ═══ Maintenance ═══
+
+    // Add a delta to one (société, mois, livreur) row, creating it if needed; atomic under concurrent writers
+    @Modifying
+    @Query(value = "INSERT INTO commission_rollups (societe_id, annee, mois, livreur_id, nombre, montant_total, updated_at) "
+            + "VALUES (:societeId, :annee, :mois, :livreurId, :nombre, :montant, NOW()) "
+            + "ON DUPLICATE KEY UPDATE nombre = nombre + VALUES(nombre), "
+            + "montant_total = montant_total + VALUES(montant_total), updated_at = NOW()", nativeQuery = true)
+    int addToRollup(@Param("societeId") Long societeId, @Param("annee") int annee, @Param("mois") int mois,
+                    @Param("livreurId") Long livreurId, @Param("nombre") long nombre, @Param("montant") BigDecimal montant);
+
+    // Rebuild: drop the rows of one société (all if null) ...
+    @Modifying
+    @Query(value = "DELETE FROM commission_rollups WHERE (:societeId IS NULL OR societe_id = :societeId)", nativeQuery = true)
+    int deleteForRebuild(@Param("societeId") Long societeId);
+
+    // ... then aggregate its paiements again, under the livreurs' current société
+    @Modifying
+    @Query(value = "INSERT INTO commission_rollups (societe_id, annee, mois, livreur_id, nombre, montant_total, updated_at) "
+            + "SELECT u.societe_id, YEAR(cp.created_at), MONTH(cp.created_at), cp.livreur_id, COUNT(*), SUM(cp.montant_total), NOW() "
+            + "FROM commission_paiements cp JOIN utilisateurs u ON u.id = cp.livreur_id "
+            + "WHERE cp.created_at IS NOT NULL AND u.societe_id IS NOT NULL AND (:societeId IS NULL OR u.societe_id = :societeId) "
+            + "GROUP BY u.societe_id, YEAR(cp.created_at), MONTH(cp.created_at), cp.livreur_id", nativeQuery = true)
+    int insertForRebuild(@Param("societeId") Long societeId);
+
+    // ═══ Bilan queries ═══
+    // Rows emptied by deletes keep nombre = 0 and are filtered out by HAVING
+
+    // Totaux globaux (all-time) pour une société → count, sum
+    @Query("SELECT COALESCE(SUM(r.nombre), 0), COALESCE(SUM(r.montantTotal), 0) FROM CommissionRollup r WHERE r.societeId = :societeId")
+    List<Object[]> getTotauxAllTime(@Param("societeId") Long societeId);
+
+    // Totaux pour une année
+    @Query("SELECT COALESCE(SUM(r.nombre), 0), COALESCE(SUM(r.montantTotal), 0) FROM CommissionRollup r WHERE r.societeId = :societeId AND r.annee = :annee")
+    List<Object[]> getTotauxPourAnnee(@Param("societeId") Long societeId, @Param("annee") int annee);
+
+    // Totaux pour un mois précis
+    @Query("SELECT COALESCE(SUM(r.nombre), 0), COALESCE(SUM(r.montantTotal), 0) FROM CommissionRollup r WHERE r.societeId = :societeId AND r.annee = :annee AND r.mois = :mois")
+    List<Object[]> getTotauxPourMois(@Param("societeId") Long societeId, @Param("annee") int annee, @Param("mois") int mois);
+
+    // Bilan par mois (all-time) → année, mois, count, sum
+    @Query("SELECT r.annee, r.mois, SUM(r.nombre), SUM(r.montantTotal) FROM CommissionRollup r WHERE r.societeId = :societeId GROUP BY r.annee, r.mois HAVING SUM(r.nombre) > 0 ORDER BY r.annee DESC, r.mois DESC")
+    List<Object[]> findBilanParMoisAllTime(@Param("societeId") Long societeId);
+
+    // Bilan par mois pour une année
+    @Query("SELECT r.annee, r.mois, SUM(r.nombre), SUM(r.montantTotal) FROM CommissionRollup r WHERE r.societeId = :societeId AND r.annee = :annee GROUP BY r.annee, r.mois HAVING SUM(r.nombre) > 0 ORDER BY r.mois DESC")
+    List<Object[]> findBilanParMois(@Param("societeId") Long societeId, @Param("annee") int annee);
+
+    // Bilan par livreur (all-time) → livreurId, nom, prenom, count, sum
+    @Query("SELECT r.livreurId, u.nom, u.prenom, SUM(r.nombre), SUM(r.montantTotal) FROM CommissionRollup r JOIN Utilisateur u ON u.id = r.livreurId WHERE r.societeId = :societeId GROUP BY r.livreurId, u.nom, u.prenom HAVING SUM(r.nombre) > 0 ORDER BY SUM(r.montantTotal) ASC")
+    List<Object[]> findBilanParLivreurAllTime(@Param("societeId") Long societeId);
+
+    // Bilan par livreur pour une année
+    @Query("SELECT r.livreurId, u.nom, u.prenom, SUM(r.nombre), SUM(r.montantTotal) FROM CommissionRollup r JOIN Utilisateur u ON u.id = r.livreurId WHERE r.societeId = :societeId AND r.annee = :annee GROUP BY r.livreurId, u.nom, u.prenom HAVING SUM(r.nombre) > 0 ORDER BY SUM(r.montantTotal) ASC")
+    List<Object[]> findBilanParLivreurPourAnnee(@Param("societeId") Long societeId, @Param("annee") int annee);
+
+    // Bilan par livreur pour un mois précis
+    @Query("SELECT r.livreurId, u.nom, u.prenom, SUM(r.nombre), SUM(r.montantTotal) FROM CommissionRollup r JOIN Utilisateur u ON u.id = r.livreurId WHERE r.societeId = :societeId AND r.annee = :annee AND r.mois = :mois GROUP BY r.livreurId, u.nom, u.prenom HAVING SUM(r.nombre) > 0 ORDER BY SUM(r.montantTotal) ASC")
+    List<Object[]> findBilanParLivreurPourMois(@Param("societeId") Long societeId, @Param("annee") int annee, @Param("mois") int mois);
+
+    // Années disponibles pour une société
+    @Query("SELECT r.annee FROM CommissionRollup r WHERE r.societeId = :societeId GROUP BY r.annee HAVING SUM(r.nombre) > 0 ORDER BY r.annee DESC")
+    List<Integer> findAnneesDisponibles(@Param("societeId") Long societeId);
+}
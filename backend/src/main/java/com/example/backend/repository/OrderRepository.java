@@ -36,6 +36,19 @@ public interface OrderRepository extends JpaRepository<Order, Long>, JpaSpecific
     
     @Query("SELECT DISTINCT o FROM Order o LEFT JOIN FETCH o.items i LEFT JOIN FETCH i.produit LEFT JOIN FETCH o.user WHERE o.livreur.id = :livreurId AND o.status IN :statuses")
     List<Order> findByLivreurIdAndStatusIn(@Param("livreurId") Long livreurId, @Param("statuses") List<String> statuses);
+
+    // Active order count per livreur in one grouped query → livreurId, count (livreurs without orders are absent)
+    @Query("SELECT o.livreur.id, COUNT(o) FROM Order o WHERE o.livreur.id IN :livreurIds AND o.status IN :statuses GROUP BY o.livreur.id")
+    List<Object[]> countByLivreurIdsAndStatusIn(@Param("livreurIds") List<Long> livreurIds, @Param("statuses") List<String> statuses);
+
+    // All and delivered order counts per livreur → livreurId, total, delivered (livreurs without orders are absent)
+    @Query("SELECT o.livreur.id, COUNT(o), SUM(CASE WHEN o.status IN :deliveredStatuses THEN 1 ELSE 0 END) "
+            + "FROM Order o WHERE o.livreur IS NOT NULL GROUP BY o.livreur.id")
+    List<Object[]> countByLivreurGrouped(@Param("deliveredStatuses") List<String> deliveredStatuses);
+
+    @Query("SELECT o.livreur.id, COUNT(o), SUM(CASE WHEN o.status IN :deliveredStatuses THEN 1 ELSE 0 END) "
+            + "FROM Order o WHERE o.livreur.id = :livreurId GROUP BY o.livreur.id")
+    List<Object[]> countByLivreurId(@Param("livreurId") Long livreurId, @Param("deliveredStatuses") List<String> deliveredStatuses);
     
     @Query("SELECT DISTINCT o FROM Order o LEFT JOIN FETCH o.items i LEFT JOIN FETCH i.produit LEFT JOIN FETCH o.user WHERE o.dateCommande BETWEEN :start AND :end")
     List<Order> findByDateCommandeBetween(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
@@ -0,0 +1,15 @@
+package com.example.backend.repository;
+
+import com.example.backend.model.RecalculationJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface RecalculationJobRepository extends JpaRepository<RecalculationJob, Long> {
+
+    Optional<RecalculationJob> findFirstByOrderByIdDesc();
+
+    Optional<RecalculationJob> findFirstByStatusOrderByIdDesc(String status);
+}
@@ -5,6 +5,7 @@ import com.example.backend.dto.CommissionPaiementDTO;
 import com.example.backend.dto.LivreurCommissionSummaryDTO;
 import com.example.backend.dto.BilanDTO;
 import com.example.backend.dto.PageResponse;
+import com.example.backend.dto.RecalculationJobDTO;
 
 import java.math.BigDecimal;
 import java.util.List;
@@ -33,15 +34,22 @@ public interface CommissionService {
     CommissionPaiementDTO markAdminValide(Long paiementId);
     CommissionPaiementDTO unmarkLivreurPaye(Long paiementId);
     CommissionPaiementDTO unmarkAdminValide(Long paiementId);
+    /** Not exposed over HTTP: the only way to remove a paiement while keeping the bilan rollups in step. */
+    void deletePaiement(Long paiementId);
 
     // ── Summaries ──────────────────────────────────────────
     LivreurCommissionSummaryDTO getLivreurSummary(Long livreurId);
     List<LivreurCommissionSummaryDTO> getAllLivreurSummaries();
 
     // ── Recalculate ────────────────────────────────────────
-    int recalculateAllDistances();
+    RecalculationJobDTO recalculateAllDistances();
+    RecalculationJobDTO getRecalculationStatus();
 
     // ── Bilan ──────────────────────────────────────────────
     BilanDTO getBilan(Long societeId, Integer annee, Integer mois);
     List<Integer> getAnneesDisponibles(Long societeId);
+
+    /** Recompute the bilan rollups of a société (all of them if null) from its paiements; returns the rows written.
+     *  Refused while a distance recalculation runs. */
+    int rebuildRollups(Long societeId);
 }
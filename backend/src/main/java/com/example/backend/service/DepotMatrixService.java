@@ -0,0 +1,31 @@
+package com.example.backend.service;
+
+import com.example.backend.model.Depot;
+
+/**
+ * Precomputed depot ↔ depot road legs per société, persisted across restarts.
+ * Lookups never call OSRM; the matrix is updated in the background when depots change.
+ */
+public interface DepotMatrixService {
+
+    /**
+     * Road leg between two depots: duration in seconds, distance in meters.
+     */
+    record Leg(double durationSeconds, double distanceMeters) {}
+
+    /**
+     * Leg between the depots located at these points (matched to about one metre),
+     * or null if either point is not a known depot of the société or the pair is unreachable.
+     */
+    Leg leg(Long societeId, double fromLatitude, double fromLongitude, double toLatitude, double toLongitude);
+
+    /**
+     * Add, move or drop (if inactive) a depot once the current transaction has committed.
+     */
+    void depotSaved(Depot depot);
+
+    /**
+     * Drop a deleted depot once the current transaction has committed.
+     */
+    void depotRemoved(Long societeId, Long depotId);
+}
@@ -0,0 +1,39 @@
+package com.example.backend.service;
+
+import com.example.backend.model.Utilisateur;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * In-memory spatial index of live livreur positions, per société.
+ * Loaded lazily from the database and kept current by position updates.
+ */
+public interface LivreurPositionIndex {
+
+    /**
+     * Snapshot of an active livreur with a known position.
+     */
+    record LivreurPosition(Long id, String nom, String prenom, String telephone,
+                           double latitude, double longitude, LocalDateTime dernierePositionAt) {}
+
+    /**
+     * All indexed livreurs of a société.
+     */
+    List<LivreurPosition> findAll(Long societeId);
+
+    /**
+     * The {@code k} livreurs nearest to a point (haversine), closest first.
+     */
+    List<LivreurPosition> findNearest(Long societeId, double latitude, double longitude, int k);
+
+    /**
+     * Re-index a user after a change (position, activation, role): inserted, moved or removed.
+     */
+    void refresh(Utilisateur utilisateur);
+
+    /**
+     * Drop a user from the index.
+     */
+    void remove(Long utilisateurId);
+}
@@ -1,5 +1,6 @@
 package com.example.backend.service;
 
+import com.example.backend.dto.CollectionPlanOptions;
 import com.example.backend.dto.MapDataDTO;
 import com.example.backend.dto.ProductStockInfoDTO;
 
@@ -10,6 +11,11 @@ public interface MapDataService {
     MapDataDTO getMapData(Long societeId);
     List<ProductStockInfoDTO> getProductsWithStockBySociete(Long societeId);
     Map<String, Object> generateCollectionPlan(Long orderId, Long societeId);
-    Map<String, Object> generateOptimalCollectionPlan(List<Long> orderIds, Long societeId, Double livreurLat, Double livreurLon);
+    Map<String, Object> generateOptimalCollectionPlan(List<Long> orderIds, Long societeId, Double livreurLat, Double livreurLon,
+                                                      CollectionPlanOptions options);
+
+    default Map<String, Object> generateOptimalCollectionPlan(List<Long> orderIds, Long societeId, Double livreurLat, Double livreurLon) {
+        return generateOptimalCollectionPlan(orderIds, societeId, livreurLat, livreurLon, null);
+    }
     List<Map<String, Object>> recommendLivreursForOrder(Long orderId, Long societeId);
 }
@@ -1,9 +1,18 @@
 package com.example.backend.service;
 
+import com.example.backend.service.routing.BoundedCache;
+import com.example.backend.service.routing.CircuitBreaker;
+import com.example.backend.service.routing.EndpointPool;
+import com.example.backend.service.routing.RoadDistanceEstimator;
+
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Service for calling OSRM APIs (table, trip, route) to get real road distances/durations.
+ * The {@code *Async} variants do not block the caller; their futures complete with null
+ * (never exceptionally) when OSRM is unavailable, like the blocking methods.
  */
 public interface OsrmService {
 
@@ -22,6 +31,18 @@ public interface OsrmService {
      */
     record RouteResult(double totalDurationSeconds, double totalDistanceMeters) {}
 
+    /**
+     * Road geometry of a /route call: full-resolution [latitude, longitude] points + totals.
+     */
+    record RouteGeometry(List<double[]> points, double totalDurationSeconds, double totalDistanceMeters) {}
+
+    /**
+     * Circuit breaker state (across instances), requests in flight / queued, requests refused by
+     * the full queue, and per-instance breaker, load and latency.
+     */
+    record RoutingHealth(CircuitBreaker.Stats circuit, int inFlight, int queued, long bulkheadRejected,
+                         List<EndpointPool.EndpointStats> endpoints) {}
+
     /**
      * Get a duration + distance matrix between all given coordinates.
      * @param coordinates list of [latitude, longitude] pairs
@@ -38,6 +59,11 @@ public interface OsrmService {
      */
     TableResult getTable(List<double[]> coordinates, List<Integer> sourceIndices, List<Integer> destIndices);
 
+    /**
+     * Non-blocking {@link #getTable(List, List, List)}.
+     */
+    CompletableFuture<TableResult> getTableAsync(List<double[]> coordinates, List<Integer> sourceIndices, List<Integer> destIndices);
+
     /**
      * Solve a round-trip TSP for the given coordinates.
      * @param coordinates list of [latitude, longitude] pairs
@@ -46,6 +72,11 @@ public interface OsrmService {
      */
     TripResult getTrip(List<double[]> coordinates, boolean roundtrip);
 
+    /**
+     * Non-blocking {@link #getTrip(List, boolean)}.
+     */
+    CompletableFuture<TripResult> getTripAsync(List<double[]> coordinates, boolean roundtrip);
+
     /**
      * Get the route (duration + distance) for a fixed sequence of coordinates.
      * @param coordinates ordered list of [latitude, longitude] pairs
@@ -53,8 +84,42 @@ public interface OsrmService {
      */
     RouteResult getRoute(List<double[]> coordinates);
 
+    /**
+     * Non-blocking {@link #getRoute(List)}.
+     */
+    CompletableFuture<RouteResult> getRouteAsync(List<double[]> coordinates);
+
+    /**
+     * Road geometry through a fixed sequence of coordinates, for drawing the route.
+     * @return RouteGeometry, or null if OSRM is unavailable or the engine has no geometry
+     */
+    CompletableFuture<RouteGeometry> getRouteGeometryAsync(List<double[]> coordinates);
+
+    /**
+     * Duration + distance of a single origin → destination leg. Legs requested within a short
+     * window are answered together by one /table request instead of one /route call each.
+     * @return RouteResult, or null if OSRM is unavailable or the pair is unreachable
+     */
+    CompletableFuture<RouteResult> getLegAsync(double[] from, double[] to);
+
     /**
      * Check if OSRM is reachable.
      */
     boolean isAvailable();
+
+    /**
+     * Degraded-routing indicators: while the circuit is not CLOSED, callers get haversine estimates.
+     */
+    RoutingHealth getHealth();
+
+    /**
+     * Hit/miss/eviction counters and occupancy of the response caches, keyed by endpoint.
+     */
+    Map<String, BoundedCache.Stats> getCacheStats();
+
+    /**
+     * Detour / speed model calibrated from the legs answered so far: cheap bounds used to rule
+     * candidates out before asking for exact legs.
+     */
+    RoadDistanceEstimator getEstimator();
 }
@@ -0,0 +1,32 @@
+package com.example.backend.service;
+
+import java.util.List;
+
+/**
+ * Drawable road geometry of an order's route (collection depots, then the delivery point),
+ * simplified per map zoom level and encoded as polylines, so clients do not call OSRM.
+ */
+public interface RouteGeometryService {
+
+    /**
+     * One level of detail: for map zooms from {@code minZoom} up to the next level's.
+     * {@code polyline} uses the Google / Leaflet encoding with {@link OrderRoute#precision()} digits.
+     */
+    record Level(int minZoom, double toleranceMeters, int points, String polyline) {}
+
+    /**
+     * Route through the stops in visiting order. {@code approximatif} is true when no road
+     * geometry was available: the levels then hold straight segments between stops and the
+     * totals are estimates.
+     */
+    record OrderRoute(Long orderId, List<double[]> stops, double durationSeconds, double distanceMeters,
+                      boolean approximatif, int precision, List<Level> levels) {}
+
+    /**
+     * Geometry of the order's collection plan followed by its delivery point; for an order
+     * without a plan, the one the planner proposes is used but not stored.
+     * @param zoom if not null, only the level used at this map zoom is returned
+     * @return the route, or null if the order has fewer than two located stops
+     */
+    OrderRoute getOrderRoute(Long orderId, Long societeId, Integer zoom);
+}
@@ -7,31 +7,51 @@ import com.example.backend.dto.BilanDTO;
 import com.example.backend.dto.BilanPeriodeDTO;
 import com.example.backend.dto.BilanLivreurDTO;
 import com.example.backend.dto.PageResponse;
+import com.example.backend.dto.RecalculationJobDTO;
 import com.example.backend.exception.BadRequestException;
 import com.example.backend.exception.ResourceNotFoundException;
 import com.example.backend.mapper.CommissionMapper;
 import com.example.backend.model.*;
 import com.example.backend.repository.*;
 import com.example.backend.service.CommissionService;
+import com.example.backend.service.DepotMatrixService;
 import com.example.backend.service.OsrmService;
+import com.example.backend.service.routing.RoadDistanceEstimator;
+import jakarta.annotation.PreDestroy;
 import jakarta.persistence.criteria.Join;
 import jakarta.persistence.criteria.JoinType;
 import jakarta.persistence.criteria.Predicate;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.sql.Timestamp;
+import java.sql.Types;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -46,6 +66,31 @@ public class CommissionServiceImpl implements CommissionService {
     private final SocieteRepository societeRepository;
     private final CommissionMapper mapper;
     private final OsrmService osrmService;
+    private final DepotMatrixService depotMatrixService;
+    private final RecalculationJobRepository jobRepository;
+    private final CommissionRollupRepository rollupRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${commission.recalculate.chunk-size:500}")
+    private int recalculateChunkSize;
+
+    /** Wait per OSRM leg; past it the leg is estimated. 0 = no bound. */
+    @Value("${commission.osrm-timeout-millis:5000}")
+    private long osrmTimeoutMillis;
+
+    /** Order statuses counted as delivered in the livreur summaries. */
+    private static final List<String> DELIVERED_STATUSES = List.of("delivered", "done");
+
+    private final Object recalculationLock = new Object();
+    private boolean recalculationRunning;
+    /** A rollup rebuild reads every paiement: it and a recalculation never run together. */
+    private boolean rebuildingRollups;
+    private final ExecutorService recalculationExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "commission-recalculation");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     // ═══════════════════════════════════════════════════════
     //  Commission Config
@@ -218,18 +263,20 @@ public class CommissionServiceImpl implements CommissionService {
 
         // Calculate delivery distance (always) - depot → client delivery address
         // If Flutter provided OSRM distance, use it; otherwise calculate via backend OSRM
-        BigDecimal distanceLivraison;
+        CompletableFuture<BigDecimal> livraisonFuture;
         if (distanceKm != null && distanceKm.compareTo(BigDecimal.ZERO) > 0) {
-            distanceLivraison = distanceKm;
+            livraisonFuture = CompletableFuture.completedFuture(distanceKm);
         } else {
-            distanceLivraison = calculateDeliveryDistance(order);
+            livraisonFuture = calculateDeliveryDistance(order);
         }
 
-        // Calculate collection distance (optional) - depot(s) for collection
-        BigDecimal distanceCollection = BigDecimal.ZERO;
-        if (inclureCollection) {
-            distanceCollection = calculateCollectionDistance(order);
-        }
+        // Calculate collection distance (optional) - depot(s) for collection, in parallel with delivery
+        CompletableFuture<BigDecimal> collectionFuture = inclureCollection
+                ? calculateCollectionDistance(order)
+                : CompletableFuture.completedFuture(BigDecimal.ZERO);
+
+        BigDecimal distanceLivraison = livraisonFuture.join();
+        BigDecimal distanceCollection = collectionFuture.join();
 
         BigDecimal totalDistance = distanceLivraison.add(distanceCollection);
 
@@ -255,6 +302,7 @@ public class CommissionServiceImpl implements CommissionService {
                 .build();
 
         paiement = paiementRepository.save(paiement);
+        addToRollup(rollupKey(paiement), 1, montantTotal);
         return mapper.toPaiementDTO(paiement);
     }
 
@@ -414,6 +462,15 @@ public class CommissionServiceImpl implements CommissionService {
         return mapper.toPaiementDTO(paiement);
     }
 
+    @Override
+    @Transactional
+    public void deletePaiement(Long paiementId) {
+        CommissionPaiement paiement = paiementRepository.findByIdForUpdate(paiementId)
+                .orElseThrow(() -> new ResourceNotFoundException("Commission paiement non trouvé avec l'id: " + paiementId));
+        addToRollup(rollupKey(paiement), -1, paiement.getMontantTotal().negate());
+        paiementRepository.delete(paiement);
+    }
+
     // ═══════════════════════════════════════════════════════
     //  Summaries
     // ═══════════════════════════════════════════════════════
@@ -423,97 +480,295 @@ public class CommissionServiceImpl implements CommissionService {
         Utilisateur livreur = utilisateurRepository.findById(livreurId)
                 .orElseThrow(() -> new ResourceNotFoundException("Livreur non trouvé avec l'id: " + livreurId));
 
-        String nom = ((livreur.getPrenom() != null ? livreur.getPrenom() : "") + " "
-                + (livreur.getNom() != null ? livreur.getNom() : "")).trim();
+        List<Object[]> commandes = orderRepository.countByLivreurId(livreurId, DELIVERED_STATUSES);
+        List<Object[]> totaux = paiementRepository.getTotauxByLivreurId(livreurId);
+        LivreurCommissionSummaryDTO summary = toSummary(livreur,
+                commandes.isEmpty() ? null : commandes.get(0),
+                totaux.isEmpty() ? null : totaux.get(0),
+                getActiveConfigByLivreurId(livreurId));
 
-        // Count orders
-        List<Order> livreurOrders = orderRepository.findByLivreurId(livreurId);
-        long totalCommandes = livreurOrders.size();
-        long commandesLivrees = livreurOrders.stream()
-                .filter(o -> "delivered".equals(o.getStatus()) || "done".equals(o.getStatus()))
-                .count();
+        // Paiements list
+        summary.setPaiements(getPaiementsByLivreurId(livreurId));
+        return summary;
+    }
 
-        // Commission stats
-        BigDecimal totalCommission = paiementRepository.sumTotalByLivreurId(livreurId);
-        BigDecimal totalPaye = paiementRepository.sumPayeByLivreurId(livreurId);
-        BigDecimal totalNonPaye = paiementRepository.sumNonPayeByLivreurId(livreurId);
-        Long paiementsValides = paiementRepository.countValidesByLivreurId(livreurId);
-        Long paiementsEnAttente = paiementRepository.countEnAttenteByLivreurId(livreurId);
+    /**
+     * Summaries of every livreur in four queries (livreurs, grouped order counts, grouped
+     * commission totals, active configs) whatever their number. Paiements are not included:
+     * the detail view pages them with searchPaiementsByLivreur.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<LivreurCommissionSummaryDTO> getAllLivreurSummaries() {
+        List<Utilisateur> livreurs = utilisateurRepository.findByRole(Role.LIVREUR);
 
-        // Active config
-        CommissionConfigDTO configActuelle = getActiveConfigByLivreurId(livreurId);
+        Map<Long, Object[]> commandesParLivreur = new HashMap<>();
+        for (Object[] row : orderRepository.countByLivreurGrouped(DELIVERED_STATUSES)) {
+            commandesParLivreur.put((Long) row[0], row);
+        }
+        Map<Long, Object[]> totauxParLivreur = new HashMap<>();
+        for (Object[] row : paiementRepository.getTotauxParLivreur()) {
+            totauxParLivreur.put((Long) row[0], row);
+        }
+        Map<Long, CommissionConfigDTO> configParLivreur = new HashMap<>();
+        for (CommissionConfig config : configRepository.findActiveWithLivreur()) {
+            configParLivreur.put(config.getLivreur().getId(), mapper.toConfigDTO(config));
+        }
 
-        // Paiements list
-        List<CommissionPaiementDTO> paiements = getPaiementsByLivreurId(livreurId);
+        List<LivreurCommissionSummaryDTO> summaries = new ArrayList<>(livreurs.size());
+        for (Utilisateur livreur : livreurs) {
+            summaries.add(toSummary(livreur, commandesParLivreur.get(livreur.getId()),
+                    totauxParLivreur.get(livreur.getId()), configParLivreur.get(livreur.getId())));
+        }
+        return summaries;
+    }
+
+    /**
+     * Summary from grouped rows: commandes = [livreurId, total, livrées],
+     * totaux = [livreurId, total, payé, non payé, validés, en attente]; null rows count as zero.
+     */
+    private LivreurCommissionSummaryDTO toSummary(Utilisateur livreur, Object[] commandes, Object[] totaux,
+                                                  CommissionConfigDTO configActuelle) {
+        String nom = ((livreur.getPrenom() != null ? livreur.getPrenom() : "") + " "
+                + (livreur.getNom() != null ? livreur.getNom() : "")).trim();
 
         return LivreurCommissionSummaryDTO.builder()
-                .livreurId(livreurId)
+                .livreurId(livreur.getId())
                 .livreurNom(nom)
-                .totalCommandes(totalCommandes)
-                .commandesLivrees(commandesLivrees)
-                .totalCommission(totalCommission)
-                .totalPaye(totalPaye)
-                .totalNonPaye(totalNonPaye)
-                .paiementsValides(paiementsValides)
-                .paiementsEnAttente(paiementsEnAttente)
+                .totalCommandes(commandes != null ? ((Number) commandes[1]).longValue() : 0)
+                .commandesLivrees(commandes != null && commandes[2] != null ? ((Number) commandes[2]).longValue() : 0)
+                .totalCommission(totaux != null ? decimal(totaux[1]) : BigDecimal.ZERO)
+                .totalPaye(totaux != null ? decimal(totaux[2]) : BigDecimal.ZERO)
+                .totalNonPaye(totaux != null ? decimal(totaux[3]) : BigDecimal.ZERO)
+                .paiementsValides(totaux != null ? ((Number) totaux[4]).longValue() : 0)
+                .paiementsEnAttente(totaux != null ? ((Number) totaux[5]).longValue() : 0)
                 .configActuelle(configActuelle)
-                .paiements(paiements)
+                .paiements(List.of())
                 .build();
     }
 
-    @Override
-    public List<LivreurCommissionSummaryDTO> getAllLivreurSummaries() {
-        List<Utilisateur> livreurs = utilisateurRepository.findByRole(Role.LIVREUR);
-        List<LivreurCommissionSummaryDTO> summaries = new ArrayList<>();
-        for (Utilisateur livreur : livreurs) {
-            summaries.add(getLivreurSummary(livreur.getId()));
-        }
-        return summaries;
+    /** SUM(CASE ... ELSE 0) may come back as an integer type when no row matches. */
+    private static BigDecimal decimal(Object value) {
+        return value instanceof BigDecimal d ? d : new BigDecimal(value.toString());
     }
 
     // ═══════════════════════════════════════════════════════
     //  Recalculate
     // ═══════════════════════════════════════════════════════
 
+    /**
+     * Start the recalculation in the background, or return the run already in progress.
+     * A run left RUNNING by a crash, or stopped by an error, continues from its checkpoint.
+     */
     @Override
-    @Transactional
-    public int recalculateAllDistances() {
-        List<CommissionPaiement> allPaiements = paiementRepository.findAll();
-        int updated = 0;
-        for (CommissionPaiement paiement : allPaiements) {
-            Order order = paiement.getOrder();
-            if (order == null) continue;
-
-            // Recalculate delivery distance
-            BigDecimal distanceLivraison = calculateDeliveryDistance(order);
-
-            // Recalculate collection distance (if config says so)
-            BigDecimal distanceCollection = BigDecimal.ZERO;
-            CommissionConfig config = paiement.getCommissionConfig();
-            if (config != null && Boolean.TRUE.equals(config.getInclureDistanceCollection())) {
-                distanceCollection = calculateCollectionDistance(order);
+    public RecalculationJobDTO recalculateAllDistances() {
+        synchronized (recalculationLock) {
+            if (recalculationRunning) {
+                return getRecalculationStatus();
+            }
+            if (rebuildingRollups) {
+                throw new BadRequestException("Reconstruction du bilan en cours, relancez le recalcul une fois terminée");
+            }
+            RecalculationJob job = jobRepository.findFirstByOrderByIdDesc()
+                    .filter(j -> !RecalculationJob.COMPLETED.equals(j.getStatus()))
+                    .orElseGet(() -> RecalculationJob.builder().build());
+            job.setStatus(RecalculationJob.RUNNING);
+            job.setError(null);
+            job.setTotal(job.getProcessed() + paiementRepository.countByIdGreaterThan(job.getLastPaiementId()));
+            job = jobRepository.save(job);
+            startRecalculation(job.getId());
+            return toJobDTO(job);
+        }
+    }
+
+    @Override
+    public RecalculationJobDTO getRecalculationStatus() {
+        return jobRepository.findFirstByOrderByIdDesc().map(this::toJobDTO).orElse(null);
+    }
+
+    /** Pick up a run interrupted by a restart, once {@link #initRollups()} has filled the rollups. */
+    @EventListener(ApplicationReadyEvent.class)
+    @org.springframework.core.annotation.Order(2)
+    public void resumeRecalculation() {
+        jobRepository.findFirstByStatusOrderByIdDesc(RecalculationJob.RUNNING).ifPresent(job -> {
+            log.info("Resuming commission recalculation {} after paiement {}", job.getId(), job.getLastPaiementId());
+            synchronized (recalculationLock) {
+                if (!recalculationRunning && !rebuildingRollups) startRecalculation(job.getId());
+            }
+        });
+    }
+
+    @PreDestroy
+    void stopRecalculation() {
+        recalculationExecutor.shutdownNow();
+    }
+
+    /** Caller holds {@link #recalculationLock}. */
+    private void startRecalculation(Long jobId) {
+        recalculationRunning = true;
+        recalculationExecutor.execute(() -> {
+            try {
+                runRecalculation(jobId);
+            } catch (Throwable e) {
+                // Errors too: a job left RUNNING would only be picked up again by a restart
+                log.error("Commission recalculation {} failed", jobId, e);
+                markFailed(jobId, e);
+            } finally {
+                synchronized (recalculationLock) {
+                    recalculationRunning = false;
+                }
             }
+        });
+    }
+
+    private void markFailed(Long jobId, Throwable cause) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> jobRepository.findById(jobId).ifPresent(job -> {
+                job.setStatus(RecalculationJob.FAILED);
+                job.setError(cause.getMessage() != null ? cause.getMessage() : cause.getClass().getName());
+                jobRepository.save(job);
+            }));
+        } catch (RuntimeException e) {
+            log.error("Commission recalculation {} could not be marked failed; it resumes at next start", jobId, e);
+        }
+    }
+
+    /**
+     * Keyset-paged chunks of {@code commission.recalculate.chunk-size} paiements. The legs of the
+     * next chunk are requested before the current one is written, so routing overlaps the
+     * database work; each chunk is written with one JDBC batch and committed with the checkpoint.
+     */
+    private void runRecalculation(Long jobId) {
+        RecalculationJob start = jobRepository.findById(jobId).orElseThrow();
+        RecalculationChunk current = prepareChunk(start.getLastPaiementId());
+        while (current.read() > 0) {
+            RecalculationChunk next = prepareChunk(current.lastPaiementId());
+            writeChunk(jobId, current);
+            current = next;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            RecalculationJob job = jobRepository.findById(jobId).orElseThrow();
+            job.setStatus(RecalculationJob.COMPLETED);
+            job.setFinishedAt(LocalDateTime.now());
+            jobRepository.save(job);
+        });
+        log.info("Commission recalculation {} completed", jobId);
+    }
+
+    /** Paiement being recalculated: its amounts, its bilan rollup and the pending distance futures. */
+    private record RecalculationRow(long paiementId, BigDecimal montantFixe, BigDecimal prixParKm, BigDecimal bonus,
+                                    RollupKey rollup,
+                                    CompletableFuture<BigDecimal> livraison, CompletableFuture<BigDecimal> collection) {}
+
+    /** One keyset page: rows to update, paiements read (including skipped ones) and the last id. */
+    private record RecalculationChunk(List<RecalculationRow> rows, int read, long lastPaiementId) {}
+
+    /** Load the paiements after {@code afterId} and request all their legs at once. */
+    private RecalculationChunk prepareChunk(long afterId) {
+        return transactionTemplate.execute(status -> {
+            List<CommissionPaiement> paiements = paiementRepository.findChunkAfter(afterId,
+                    PageRequest.of(0, recalculateChunkSize));
+            List<RecalculationRow> rows = new ArrayList<>(paiements.size());
+            long lastId = afterId;
+            for (CommissionPaiement paiement : paiements) {
+                lastId = paiement.getId();
+                Order order = paiement.getOrder();
+                if (order == null) continue;
+
+                // Recalculate delivery distance, and collection distance (if config says so) in parallel
+                CompletableFuture<BigDecimal> collectionFuture = CompletableFuture.completedFuture(BigDecimal.ZERO);
+                CommissionConfig config = paiement.getCommissionConfig();
+                if (config != null && Boolean.TRUE.equals(config.getInclureDistanceCollection())) {
+                    collectionFuture = calculateCollectionDistance(order);
+                }
+                rows.add(new RecalculationRow(paiement.getId(), paiement.getMontantFixe(), paiement.getPrixParKm(),
+                        paiement.getBonus(), rollupKey(paiement),
+                        calculateDeliveryDistance(order), collectionFuture));
+            }
+            return new RecalculationChunk(rows, paiements.size(), lastId);
+        });
+    }
 
+    private void writeChunk(Long jobId, RecalculationChunk chunk) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        Map<Long, Object[]> updates = new HashMap<>();
+        for (RecalculationRow row : chunk.rows()) {
+            BigDecimal distanceLivraison = row.livraison().join();
+            BigDecimal distanceCollection = row.collection().join();
             BigDecimal totalDistance = distanceLivraison.add(distanceCollection);
 
             // Recalculate total amount
-            BigDecimal montantFixe = paiement.getMontantFixe() != null ? paiement.getMontantFixe() : BigDecimal.ZERO;
-            BigDecimal prixParKm = paiement.getPrixParKm() != null ? paiement.getPrixParKm() : BigDecimal.ZERO;
-            BigDecimal bonus = paiement.getBonus() != null ? paiement.getBonus() : BigDecimal.ZERO;
+            BigDecimal montantFixe = row.montantFixe() != null ? row.montantFixe() : BigDecimal.ZERO;
+            BigDecimal prixParKm = row.prixParKm() != null ? row.prixParKm() : BigDecimal.ZERO;
+            BigDecimal bonus = row.bonus() != null ? row.bonus() : BigDecimal.ZERO;
 
             BigDecimal montantTotal = montantFixe
                     .add(totalDistance.multiply(prixParKm))
                     .add(bonus)
                     .setScale(3, RoundingMode.HALF_UP);
 
-            paiement.setDistanceLivraisonKm(distanceLivraison);
-            paiement.setDistanceCollectionKm(distanceCollection);
-            paiement.setDistanceKm(totalDistance);
-            paiement.setMontantTotal(montantTotal);
-            paiementRepository.save(paiement);
-            updated++;
+            updates.put(row.paiementId(),
+                    new Object[]{distanceLivraison, distanceCollection, totalDistance, montantTotal, now, row.paiementId()});
         }
-        return updated;
+
+        transactionTemplate.executeWithoutResult(status -> {
+            // Rollup deltas from the amounts as they are now, under lock: a paiement deleted or
+            // changed since the chunk was read is skipped or counted from its current amount
+            Map<Long, BigDecimal> anciens = lockMontants(updates.keySet());
+            List<Object[]> batch = new ArrayList<>(anciens.size());
+            Map<RollupKey, BigDecimal> rollupDeltas = new HashMap<>();
+            for (RecalculationRow row : chunk.rows()) {
+                BigDecimal ancien = anciens.get(row.paiementId());
+                if (ancien == null) continue;
+                Object[] update = updates.get(row.paiementId());
+                batch.add(update);
+                if (row.rollup() != null) {
+                    rollupDeltas.merge(row.rollup(), ((BigDecimal) update[3]).subtract(ancien), BigDecimal::add);
+                }
+            }
+            if (!batch.isEmpty()) {
+                jdbcTemplate.batchUpdate("UPDATE commission_paiements SET distance_livraison_km = ?, distance_collection_km = ?, "
+                        + "distance_km = ?, montant_total = ?, updated_at = ? WHERE id = ?", batch);
+            }
+            rollupDeltas.forEach((key, delta) -> {
+                if (delta.signum() != 0) addToRollup(key, 0, delta);
+            });
+            RecalculationJob job = jobRepository.findById(jobId).orElseThrow();
+            job.setLastPaiementId(chunk.lastPaiementId());
+            job.setProcessed(job.getProcessed() + chunk.read());
+            job.setRecalculated(job.getRecalculated() + batch.size());
+            jobRepository.save(job);
+        });
+    }
+
+    /** Current montant_total of these paiements, locked until the caller's transaction ends; deleted ones are absent. */
+    private Map<Long, BigDecimal> lockMontants(Collection<Long> paiementIds) {
+        if (paiementIds.isEmpty()) return Map.of();
+        Object[] ids = paiementIds.toArray();
+        int[] types = new int[ids.length];
+        Arrays.fill(types, Types.BIGINT);
+        String placeholders = String.join(", ", Collections.nCopies(ids.length, "?"));
+        List<Map.Entry<Long, BigDecimal>> rows = jdbcTemplate.query(
+                "SELECT id, montant_total FROM commission_paiements WHERE id IN (" + placeholders + ") FOR UPDATE",
+                ids, types, (rs, rowNum) -> Map.entry(rs.getLong("id"), rs.getBigDecimal("montant_total")));
+        Map<Long, BigDecimal> montants = new HashMap<>();
+        for (Map.Entry<Long, BigDecimal> row : rows) montants.put(row.getKey(), row.getValue());
+        return montants;
+    }
+
+    private RecalculationJobDTO toJobDTO(RecalculationJob job) {
+        return RecalculationJobDTO.builder()
+                .jobId(job.getId())
+                .status(job.getStatus())
+                .total(job.getTotal())
+                .processed(job.getProcessed())
+                .recalculated(job.getRecalculated())
+                .lastPaiementId(job.getLastPaiementId())
+                .error(job.getError())
+                .startedAt(job.getStartedAt())
+                .updatedAt(job.getUpdatedAt())
+                .finishedAt(job.getFinishedAt())
+                .build();
     }
 
     // ═══════════════════════════════════════════════════════
@@ -524,9 +779,9 @@ public class CommissionServiceImpl implements CommissionService {
      * Calculate delivery distance: last collection depot (or main depot) → client delivery address.
      * Always calculated.
      */
-    private BigDecimal calculateDeliveryDistance(Order order) {
+    private CompletableFuture<BigDecimal> calculateDeliveryDistance(Order order) {
         if (order.getLatitudeLivraison() == null || order.getLongitudeLivraison() == null) {
-            return BigDecimal.ZERO;
+            return CompletableFuture.completedFuture(BigDecimal.ZERO);
         }
 
         // Try to get the starting point (last depot in collection plan, or main depot)
@@ -561,7 +816,7 @@ public class CommissionServiceImpl implements CommissionService {
         }
 
         if (startLat == null || startLng == null) {
-            return BigDecimal.ZERO;
+            return CompletableFuture.completedFuture(BigDecimal.ZERO);
         }
 
         return osrmDistance(startLat, startLng,
@@ -571,15 +826,16 @@ public class CommissionServiceImpl implements CommissionService {
     /**
      * Calculate collection distance: livreur goes to collection depot(s) to pick up products.
      * If collectionPlan JSON is present, parse depot coords and sum distances between stops.
+     * All legs are requested at once and summed when they have all arrived.
      */
-    private BigDecimal calculateCollectionDistance(Order order) {
+    private CompletableFuture<BigDecimal> calculateCollectionDistance(Order order) {
         if (order.getCollectionPlan() != null && !order.getCollectionPlan().isBlank()) {
             try {
                 com.fasterxml.jackson.databind.ObjectMapper objectMapper = new com.fasterxml.jackson.databind.ObjectMapper();
                 com.fasterxml.jackson.databind.JsonNode planNode = objectMapper.readTree(order.getCollectionPlan());
 
                 if (planNode.isArray() && planNode.size() > 0) {
-                    BigDecimal totalCollDistance = BigDecimal.ZERO;
+                    List<CompletableFuture<BigDecimal>> legs = new ArrayList<>();
                     Double prevLat = null;
                     Double prevLng = null;
 
@@ -601,7 +857,7 @@ public class CommissionServiceImpl implements CommissionService {
                                 ? stop.get("depotLongitude").asDouble() : null;
 
                         if (stopLat != null && stopLng != null && prevLat != null && prevLng != null) {
-                            totalCollDistance = totalCollDistance.add(osrmDistance(prevLat, prevLng, stopLat, stopLng));
+                            legs.add(roadDistance(order.getSocieteId(), prevLat, prevLng, stopLat, stopLng));
                         }
 
                         if (stopLat != null && stopLng != null) {
@@ -609,34 +865,55 @@ public class CommissionServiceImpl implements CommissionService {
                             prevLng = stopLng;
                         }
                     }
-                    return totalCollDistance;
+                    return CompletableFuture.allOf(legs.toArray(new CompletableFuture[0]))
+                            .thenApply(done -> legs.stream()
+                                    .map(CompletableFuture::join)
+                                    .reduce(BigDecimal.ZERO, BigDecimal::add));
                 }
             } catch (Exception ignored) {
             }
         }
-        return BigDecimal.ZERO;
+        return CompletableFuture.completedFuture(BigDecimal.ZERO);
+    }
+
+    /**
+     * Road distance of a leg: read from the depot matrix when both ends are depots, else via OSRM.
+     */
+    private CompletableFuture<BigDecimal> roadDistance(Long societeId, double lat1, double lon1, double lat2, double lon2) {
+        DepotMatrixService.Leg leg = depotMatrixService.leg(societeId, lat1, lon1, lat2, lon2);
+        if (leg != null && leg.distanceMeters() > 0) {
+            return CompletableFuture.completedFuture(
+                    BigDecimal.valueOf(leg.distanceMeters() / 1000.0).setScale(3, RoundingMode.HALF_UP));
+        }
+        return osrmDistance(lat1, lon1, lat2, lon2);
     }
 
     /**
-     * Get road distance via OSRM. Falls back to haversine if OSRM is unavailable.
+     * Get road distance via OSRM. Falls back to the calibrated road estimate, or to haversine
+     * while the estimator has no samples, if OSRM is unavailable.
      * Returns distance in km, rounded to 3 decimal places.
+     * Legs requested together (one order, or a whole recalculation) share one /table request.
+     * A leg OSRM has not answered within {@code osrmTimeoutMillis} is estimated; the timeout
+     * applies to a copy, so a request shared with other callers is left running.
      */
-    private BigDecimal osrmDistance(double lat1, double lon1, double lat2, double lon2) {
-        try {
-            List<double[]> coords = List.of(
-                    new double[]{lat1, lon1},
-                    new double[]{lat2, lon2}
-            );
-            OsrmService.RouteResult result = osrmService.getRoute(coords);
-            if (result != null && result.totalDistanceMeters() > 0) {
+    private CompletableFuture<BigDecimal> osrmDistance(double lat1, double lon1, double lat2, double lon2) {
+        CompletableFuture<OsrmService.RouteResult> leg = osrmService.getLegAsync(new double[]{lat1, lon1}, new double[]{lat2, lon2});
+        if (osrmTimeoutMillis > 0) leg = leg.copy().orTimeout(osrmTimeoutMillis, TimeUnit.MILLISECONDS);
+        return leg.handle((result, error) -> {
+            if (error != null) {
+                log.warn("OSRM distance call failed, falling back to haversine: {}", error.getMessage());
+            } else if (result != null && result.totalDistanceMeters() > 0) {
                 double km = result.totalDistanceMeters() / 1000.0;
                 return BigDecimal.valueOf(km).setScale(3, RoundingMode.HALF_UP);
             }
-        } catch (Exception e) {
-            log.warn("OSRM distance call failed, falling back to haversine: {}", e.getMessage());
-        }
-        // Fallback to haversine
-        return haversine(lat1, lon1, lat2, lon2);
+            // Fallback: straight line scaled by the detour factors learned from past OSRM legs
+            RoadDistanceEstimator estimator = osrmService.getEstimator();
+            if (estimator != null && estimator.calibrated()) {
+                double km = estimator.estimate(lat1, lon1, lat2, lon2).meters() / 1000.0;
+                return BigDecimal.valueOf(km).setScale(3, RoundingMode.HALF_UP);
+            }
+            return haversine(lat1, lon1, lat2, lon2);
+        });
     }
 
     /**
@@ -671,6 +948,10 @@ public class CommissionServiceImpl implements CommissionService {
             "Juillet", "Août", "Septembre", "Octobre", "Novembre", "Décembre"
     };
 
+    /**
+     * Read from {@code commission_rollups} (one row per société, month and livreur), so the cost
+     * follows the number of months and livreurs, not the paiement history.
+     */
     @Override
     @Transactional(readOnly = true)
     public BilanDTO getBilan(Long societeId, Integer annee, Integer mois) {
@@ -687,18 +968,18 @@ public class CommissionServiceImpl implements CommissionService {
         Object[] totaux;
         String periodeLabel;
         if (hasAnnee && validMois) {
-            totaux = paiementRepository.getTotauxPourMois(societeId, annee, mois).get(0);
+            totaux = rollupRepository.getTotauxPourMois(societeId, annee, mois).get(0);
             periodeLabel = MOIS_LABELS[mois] + " " + annee;
         } else if (hasAnnee) {
-            totaux = paiementRepository.getTotauxPourAnnee(societeId, annee).get(0);
+            totaux = rollupRepository.getTotauxPourAnnee(societeId, annee).get(0);
             periodeLabel = "Année " + annee;
         } else {
-            totaux = paiementRepository.getTotauxAllTime(societeId).get(0);
+            totaux = rollupRepository.getTotauxAllTime(societeId).get(0);
             periodeLabel = "Toutes périodes";
         }
 
         long totalCommandes = ((Number) totaux[0]).longValue();
-        BigDecimal totalCommissions = (BigDecimal) totaux[1];
+        BigDecimal totalCommissions = decimal(totaux[1]);
         BigDecimal totalRevenu = frais.multiply(BigDecimal.valueOf(totalCommandes));
         BigDecimal resultatNet = totalRevenu.subtract(totalCommissions);
 
@@ -725,14 +1006,69 @@ public class CommissionServiceImpl implements CommissionService {
     @Override
     @Transactional(readOnly = true)
     public List<Integer> getAnneesDisponibles(Long societeId) {
-        return paiementRepository.findAnneesDisponibles(societeId);
+        return rollupRepository.findAnneesDisponibles(societeId);
+    }
+
+    /**
+     * Refused while a recalculation runs: its deltas, computed from the amounts before the
+     * rebuild, would be added on top of rows already aggregated from the new amounts.
+     */
+    @Override
+    public int rebuildRollups(Long societeId) {
+        synchronized (recalculationLock) {
+            if (recalculationRunning) {
+                throw new BadRequestException("Recalcul des distances en cours, reconstruisez le bilan une fois terminé");
+            }
+            rebuildingRollups = true;
+        }
+        try {
+            Integer rows = transactionTemplate.execute(status -> {
+                rollupRepository.deleteForRebuild(societeId);
+                return rollupRepository.insertForRebuild(societeId);
+            });
+            log.info("Commission rollups rebuilt for {}: {} rows", societeId != null ? "société " + societeId : "all sociétés", rows);
+            return rows != null ? rows : 0;
+        } finally {
+            synchronized (recalculationLock) {
+                rebuildingRollups = false;
+            }
+        }
+    }
+
+    /** First start with the rollup table: fill it from the existing paiements. */
+    @EventListener(ApplicationReadyEvent.class)
+    @org.springframework.core.annotation.Order(1)
+    public void initRollups() {
+        if (rollupRepository.count() == 0 && paiementRepository.count() > 0) {
+            rebuildRollups(null);
+        }
+    }
+
+    /** Rollup row of a paiement: its livreur's société, its creation month and its livreur. */
+    private record RollupKey(Long societeId, int annee, int mois, Long livreurId) {}
+
+    /** Null when the livreur has no société: such paiements appear in no bilan. */
+    private static RollupKey rollupKey(CommissionPaiement paiement) {
+        Utilisateur livreur = paiement.getLivreur();
+        if (livreur == null || livreur.getSociete() == null || paiement.getCreatedAt() == null) {
+            return null;
+        }
+        return new RollupKey(livreur.getSociete().getId(), paiement.getCreatedAt().getYear(),
+                paiement.getCreatedAt().getMonthValue(), livreur.getId());
+    }
+
+    /** Caller's transaction: the rollup commits or rolls back with the paiement change. */
+    private void addToRollup(RollupKey key, long nombre, BigDecimal montant) {
+        if (key != null) {
+            rollupRepository.addToRollup(key.societeId(), key.annee(), key.mois(), key.livreurId(), nombre, montant);
+        }
     }
 
     private List<BilanPeriodeDTO> buildBilanParMois(Long societeId, Integer annee,
                                                      boolean hasAnnee, BigDecimal frais) {
         List<Object[]> rows = hasAnnee
-                ? paiementRepository.findBilanParMois(societeId, annee)
-                : paiementRepository.findBilanParMoisAllTime(societeId);
+                ? rollupRepository.findBilanParMois(societeId, annee)
+                : rollupRepository.findBilanParMoisAllTime(societeId);
 
         List<BilanPeriodeDTO> result = new ArrayList<>();
         for (Object[] r : rows) {
@@ -761,11 +1097,11 @@ public class CommissionServiceImpl implements CommissionService {
                                                         boolean validMois, BigDecimal frais) {
         List<Object[]> rows;
         if (hasAnnee && validMois) {
-            rows = paiementRepository.findBilanParLivreurPourMois(societeId, annee, mois);
+            rows = rollupRepository.findBilanParLivreurPourMois(societeId, annee, mois);
         } else if (hasAnnee) {
-            rows = paiementRepository.findBilanParLivreurPourAnnee(societeId, annee);
+            rows = rollupRepository.findBilanParLivreurPourAnnee(societeId, annee);
         } else {
-            rows = paiementRepository.findBilanParLivreurAllTime(societeId);
+            rows = rollupRepository.findBilanParLivreurAllTime(societeId);
         }
 
         List<BilanLivreurDTO> result = new ArrayList<>();
@@ -0,0 +1,279 @@
+package com.example.backend.service.impl;
+
+import com.example.backend.model.Depot;
+import com.example.backend.repository.DepotRepository;
+import com.example.backend.service.DepotMatrixService;
+import com.example.backend.service.OsrmService;
+import com.example.backend.service.routing.DepotMatrixFile;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * {@link DepotMatrixFile} per société under {@code depot-matrix.dir}.
+ * <p>
+ * A société's file is mapped on first use and served at once; it is then reconciled with the
+ * active depots in the database, and again every {@code depot-matrix.reconcile-millis} to pick
+ * up changes made by other instances. Depot changes on this instance are applied after commit.
+ * Rebuilds run one at a time on a background thread and only ask OSRM for the rows and columns
+ * of added or moved depots; the other cells are copied from the previous file. Each rebuild is
+ * written as a new version of the file; once requests use it, older versions are deleted.
+ */
+@Slf4j
+@Service
+public class DepotMatrixServiceImpl implements DepotMatrixService {
+
+    /** Depot as placed in the matrix. */
+    private record DepotPoint(long id, double latitude, double longitude) {}
+
+    private final DepotRepository depotRepository;
+    private final OsrmService osrmService;
+    private final Path directory;
+
+    private final Map<Long, DepotMatrixFile> matrices = new ConcurrentHashMap<>();
+    private final ExecutorService rebuilder = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "depot-matrix");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public DepotMatrixServiceImpl(DepotRepository depotRepository, OsrmService osrmService,
+                                  @Value("${depot-matrix.dir:data/depot-matrix}") String directory) {
+        this.depotRepository = depotRepository;
+        this.osrmService = osrmService;
+        this.directory = Path.of(directory);
+    }
+
+    @Override
+    public Leg leg(Long societeId, double fromLatitude, double fromLongitude, double toLatitude, double toLongitude) {
+        if (societeId == null) return null;
+        DepotMatrixFile matrix = matrix(societeId);
+        int from = matrix.indexAt(fromLatitude, fromLongitude);
+        int to = matrix.indexAt(toLatitude, toLongitude);
+        if (from < 0 || to < 0) return null;
+        double duration = matrix.duration(from, to);
+        if (duration == Double.MAX_VALUE) return null;
+        return new Leg(duration, matrix.distance(from, to));
+    }
+
+    @Override
+    public void depotSaved(Depot depot) {
+        Long societeId = societeOf(depot);
+        if (societeId == null || depot.getId() == null) return;
+        DepotPoint point = Boolean.FALSE.equals(depot.getActif()) || depot.getLatitude() == null || depot.getLongitude() == null
+                ? null
+                : new DepotPoint(depot.getId(), depot.getLatitude(), depot.getLongitude());
+        long depotId = depot.getId();
+        afterCommit(() -> rebuilder.execute(() -> replace(societeId, depotId, point)));
+    }
+
+    @Override
+    public void depotRemoved(Long societeId, Long depotId) {
+        if (societeId == null || depotId == null) return;
+        afterCommit(() -> rebuilder.execute(() -> replace(societeId, depotId, null)));
+    }
+
+    /** Re-read the depots of every loaded société; cells already known are kept. */
+    @Scheduled(fixedDelayString = "${depot-matrix.reconcile-millis:600000}",
+            initialDelayString = "${depot-matrix.reconcile-millis:600000}")
+    public void reconcileAll() {
+        for (Long societeId : matrices.keySet()) {
+            rebuilder.execute(() -> reconcile(societeId));
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        rebuilder.shutdownNow();
+    }
+
+    // ---- Loading ----
+
+    private DepotMatrixFile matrix(Long societeId) {
+        DepotMatrixFile current = matrices.get(societeId);
+        if (current != null) return current;
+        DepotMatrixFile[] opened = new DepotMatrixFile[1];
+        current = matrices.computeIfAbsent(societeId, id -> opened[0] = open(id));
+        if (opened[0] != null) rebuilder.execute(() -> reconcile(societeId));
+        return current;
+    }
+
+    /** Map the newest readable version of a société's file. */
+    private DepotMatrixFile open(Long societeId) {
+        List<Path> versions;
+        try {
+            versions = DepotMatrixFile.versions(directory, name(societeId));
+        } catch (IOException e) {
+            log.warn("Cannot list depot matrices of societe {}: {}", societeId, e.getMessage());
+            return DepotMatrixFile.empty();
+        }
+        for (int v = versions.size() - 1; v >= 0; v--) {
+            Path file = versions.get(v);
+            try {
+                DepotMatrixFile matrix = DepotMatrixFile.open(file);
+                log.info("Depot matrix of societe {} mapped from {}: {} depot(s)", societeId, file.getFileName(), matrix.size());
+                return matrix;
+            } catch (IOException | IllegalArgumentException e) {
+                log.warn("Ignoring unreadable depot matrix {}: {}", file, e.getMessage());
+            }
+        }
+        return DepotMatrixFile.empty();
+    }
+
+    private static String name(Long societeId) {
+        return "societe-" + societeId;
+    }
+
+    /**
+     * Delete the versions older than the one in use. Requests still reading an older mapping keep
+     * it valid; where the platform refuses to delete a mapped file, the next rebuild tries again.
+     */
+    private void deleteOlderVersions(Long societeId, Path current) {
+        try {
+            for (Path file : DepotMatrixFile.versions(directory, name(societeId))) {
+                if (file.equals(current)) break;
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    log.debug("Depot matrix {} still in use, kept for now: {}", file, e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Cannot list depot matrices of societe {}: {}", societeId, e.getMessage());
+        }
+    }
+
+    // ---- Rebuilds (depot-matrix thread) ----
+
+    private void reconcile(Long societeId) {
+        List<DepotPoint> depots = new ArrayList<>();
+        for (Depot depot : depotRepository.findBySocieteIdAndActifTrue(societeId)) {
+            if (depot.getLatitude() != null && depot.getLongitude() != null) {
+                depots.add(new DepotPoint(depot.getId(), depot.getLatitude(), depot.getLongitude()));
+            }
+        }
+        rebuild(societeId, depots);
+    }
+
+    /** Put {@code point} in place of depot {@code depotId}, or drop the depot if null. */
+    private void replace(Long societeId, long depotId, DepotPoint point) {
+        DepotMatrixFile current = matrix(societeId);
+        List<DepotPoint> depots = new ArrayList<>();
+        for (int i = 0; i < current.size(); i++) {
+            if (current.depotId(i) != depotId) {
+                depots.add(new DepotPoint(current.depotId(i), current.latitude(i), current.longitude(i)));
+            }
+        }
+        if (point != null) depots.add(point);
+        rebuild(societeId, depots);
+    }
+
+    private void rebuild(Long societeId, List<DepotPoint> depots) {
+        DepotMatrixFile current = matrix(societeId);
+        int n = depots.size();
+
+        // Position of each depot in the current file if it has not moved, else -1
+        int[] known = new int[n];
+        List<double[]> coordinates = new ArrayList<>(n);
+        List<Integer> all = new ArrayList<>(n);
+        List<Integer> changed = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            DepotPoint depot = depots.get(i);
+            int index = current.indexOf(depot.id());
+            known[i] = index >= 0 && current.latitude(index) == depot.latitude()
+                    && current.longitude(index) == depot.longitude() ? index : -1;
+            if (known[i] < 0) changed.add(i);
+            coordinates.add(new double[]{depot.latitude(), depot.longitude()});
+            all.add(i);
+        }
+        if (changed.isEmpty() && n == current.size()) {
+            if (current.file() != null) deleteOlderVersions(societeId, current.file());
+            return;
+        }
+
+        double[] durations = new double[n * n];
+        double[] distances = new double[n * n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                if (known[i] >= 0 && known[j] >= 0) {
+                    durations[i * n + j] = current.duration(known[i], known[j]);
+                    distances[i * n + j] = current.distance(known[i], known[j]);
+                }
+            }
+        }
+
+        if (!changed.isEmpty() && n > 1) {
+            // A first build needs the full matrix: one request instead of rows + columns
+            OsrmService.TableResult rows = osrmService.getTable(coordinates, changed, all);
+            OsrmService.TableResult cols = changed.size() == n ? rows : osrmService.getTable(coordinates, all, changed);
+            if (rows == null || cols == null) {
+                log.warn("OSRM unavailable, depot matrix of societe {} not updated ({} depot(s) pending)",
+                        societeId, changed.size());
+                return;
+            }
+            for (int r = 0; r < changed.size(); r++) {
+                int i = changed.get(r);
+                for (int j = 0; j < n; j++) {
+                    durations[i * n + j] = rows.durations()[r][j];
+                    distances[i * n + j] = rows.distances()[r][j];
+                    durations[j * n + i] = cols.durations()[j][r];
+                    distances[j * n + i] = cols.distances()[j][r];
+                }
+            }
+        }
+
+        long[] ids = new long[n];
+        double[] latitudes = new double[n];
+        double[] longitudes = new double[n];
+        for (int i = 0; i < n; i++) {
+            ids[i] = depots.get(i).id();
+            latitudes[i] = depots.get(i).latitude();
+            longitudes[i] = depots.get(i).longitude();
+        }
+        try {
+            DepotMatrixFile rebuilt = DepotMatrixFile.writeVersion(directory, name(societeId),
+                    ids, latitudes, longitudes, durations, distances);
+            matrices.put(societeId, rebuilt);
+            log.info("Depot matrix of societe {} rebuilt as {}: {} depot(s), {} fetched from OSRM",
+                    societeId, rebuilt.file().getFileName(), n, changed.size());
+            deleteOlderVersions(societeId, rebuilt.file());
+        } catch (IOException e) {
+            log.warn("Could not write depot matrix of societe {}: {}", societeId, e.getMessage());
+        }
+    }
+
+    // ---- Helpers ----
+
+    private static Long societeOf(Depot depot) {
+        return depot.getMagasin() != null && depot.getMagasin().getSociete() != null
+                ? depot.getMagasin().getSociete().getId()
+                : null;
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
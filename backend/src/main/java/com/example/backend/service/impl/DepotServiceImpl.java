@@ -7,6 +7,7 @@ import com.example.backend.model.Depot;
 import com.example.backend.model.Magasin;
 import com.example.backend.repository.DepotRepository;
 import com.example.backend.repository.MagasinRepository;
+import com.example.backend.service.DepotMatrixService;
 import com.example.backend.service.DepotService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
@@ -23,6 +24,7 @@ public class DepotServiceImpl implements DepotService {
     private final DepotRepository depotRepository;
     private final MagasinRepository magasinRepository;
     private final DepotMapper depotMapper;
+    private final DepotMatrixService depotMatrixService;
     
     @Override
     @Transactional(readOnly = true)
@@ -91,6 +93,7 @@ public class DepotServiceImpl implements DepotService {
         }
         
         depot = depotRepository.save(depot);
+        depotMatrixService.depotSaved(depot);
         return depotMapper.toDTO(depot);
     }
     
@@ -108,14 +111,17 @@ public class DepotServiceImpl implements DepotService {
         }
         
         depot = depotRepository.save(depot);
+        depotMatrixService.depotSaved(depot);
         return depotMapper.toDTO(depot);
     }
     
     @Override
     public void delete(Long id) {
-        if (!depotRepository.existsById(id)) {
-            throw new ResourceNotFoundException("Dépôt", "id", id);
-        }
+        Depot depot = depotRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Dépôt", "id", id));
+        Long societeId = depot.getMagasin() != null && depot.getMagasin().getSociete() != null
+                ? depot.getMagasin().getSociete().getId() : null;
         depotRepository.deleteById(id);
+        depotMatrixService.depotRemoved(societeId, id);
     }
 }
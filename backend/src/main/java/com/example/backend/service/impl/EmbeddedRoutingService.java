@@ -0,0 +1,280 @@
+package com.example.backend.service.impl;
+
+import com.example.backend.service.OsrmService;
+import com.example.backend.service.routing.BoundedCache;
+import com.example.backend.service.routing.CircuitBreaker;
+import com.example.backend.service.routing.ManyToManyRouter;
+import com.example.backend.service.routing.RoadDistanceEstimator;
+import com.example.backend.service.routing.RoadGraph;
+import com.example.backend.service.routing.RoadGraphImporter;
+import com.example.backend.service.routing.TourImprover;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * In-JVM routing engine, selected with {@code osrm.engine=embedded}: answers the same
+ * {@link OsrmService} calls from a contraction-hierarchy {@link RoadGraph} instead of HTTP.
+ * <p>
+ * The graph file ({@code osrm.embedded.graph-file}) is memory-mapped at startup; if it does not
+ * exist it is built once from {@code nodes.csv} / {@code edges.csv} in
+ * {@code osrm.embedded.import-dir} (see {@link RoadGraphImporter}). Coordinates snap to the
+ * nearest graph node within {@code osrm.embedded.snap-max-meters}; farther points are treated
+ * as unreachable. Queries are CPU-bound and fast, so the async methods complete immediately.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "osrm.engine", havingValue = "embedded")
+public class EmbeddedRoutingService implements OsrmService {
+
+    /** Narrowest side of a 0.01° grid cell below 63° of latitude (longitude shrinks with cos lat) */
+    private static final double METERS_PER_CELL = 500;
+
+    /** Cells of each table recorded by the road distance estimator */
+    private static final int CALIBRATION_SAMPLES_PER_TABLE = 64;
+
+    private final RoadGraph graph;
+    private final double snapMaxMeters;
+    private final int snapRings;
+    private final RoadDistanceEstimator estimator;
+
+    /** Routers hold per-node scratch arrays: one per concurrent query, reused */
+    private final Queue<ManyToManyRouter> idleRouters = new ConcurrentLinkedQueue<>();
+
+    public EmbeddedRoutingService(@Value("${osrm.embedded.graph-file:data/road-graph.rgr}") String graphFile,
+                                  @Value("${osrm.embedded.import-dir:}") String importDir,
+                                  @Value("${osrm.embedded.snap-max-meters:2000}") double snapMaxMeters,
+                                  @Value("${osrm.estimator.cell-degrees:0.1}") double estimatorCellDegrees,
+                                  @Value("${osrm.estimator.min-samples:20}") int estimatorMinSamples) throws IOException {
+        this.graph = loadGraph(Path.of(graphFile), importDir);
+        this.snapMaxMeters = snapMaxMeters;
+        this.snapRings = (int) Math.ceil(snapMaxMeters / METERS_PER_CELL) + 1;
+        this.estimator = new RoadDistanceEstimator(estimatorCellDegrees, estimatorMinSamples);
+    }
+
+    private static RoadGraph loadGraph(Path graphFile, String importDir) throws IOException {
+        if (!Files.exists(graphFile)) {
+            if (importDir == null || importDir.isBlank()) {
+                throw new IllegalStateException("No road graph at " + graphFile.toAbsolutePath()
+                        + "; set osrm.embedded.import-dir to build it from CSV");
+            }
+            long start = System.currentTimeMillis();
+            Path dir = Path.of(importDir);
+            RoadGraphImporter.importCsv(dir.resolve("nodes.csv"), dir.resolve("edges.csv")).write(graphFile);
+            log.info("Road graph built from {} in {} ms", dir, System.currentTimeMillis() - start);
+        }
+        RoadGraph graph = RoadGraph.open(graphFile);
+        log.info("Road graph mapped from {}: {} nodes", graphFile, graph.nodeCount());
+        return graph;
+    }
+
+    // ========================================================================
+    //  /table equivalent
+    // ========================================================================
+
+    @Override
+    public TableResult getTable(List<double[]> coordinates) {
+        return getTable(coordinates, null, null);
+    }
+
+    @Override
+    public TableResult getTable(List<double[]> coordinates, List<Integer> sourceIndices, List<Integer> destIndices) {
+        if (coordinates == null || coordinates.size() < 2) return null;
+        int[] nodes = snap(coordinates);
+        int[] sources = select(nodes, sourceIndices);
+        int[] dests = select(nodes, destIndices);
+
+        ManyToManyRouter.Matrix matrix = table(sources, dests);
+        double[][] durations = new double[sources.length][dests.length];
+        double[][] distances = new double[sources.length][dests.length];
+        for (int i = 0; i < sources.length; i++) {
+            for (int j = 0; j < dests.length; j++) {
+                durations[i][j] = matrix.duration(i, j);
+                distances[i][j] = matrix.distance(i, j);
+            }
+        }
+        calibrate(coordinates, sourceIndices, destIndices, durations, distances);
+        return new TableResult(durations, distances);
+    }
+
+    @Override
+    public CompletableFuture<TableResult> getTableAsync(List<double[]> coordinates, List<Integer> sourceIndices, List<Integer> destIndices) {
+        return CompletableFuture.completedFuture(getTable(coordinates, sourceIndices, destIndices));
+    }
+
+    // ========================================================================
+    //  /trip equivalent — local TSP on the road matrix
+    // ========================================================================
+
+    @Override
+    public TripResult getTrip(List<double[]> coordinates, boolean roundtrip) {
+        if (coordinates == null || coordinates.size() < 2) return null;
+        int[] nodes = snap(coordinates);
+        ManyToManyRouter.Matrix matrix = table(nodes, nodes);
+        int n = nodes.length;
+        double[][] cost = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                if (i != j && matrix.duration(i, j) == Double.MAX_VALUE) return null;
+                cost[i][j] = matrix.duration(i, j);
+            }
+        }
+
+        int[] tour = new TourImprover(cost, roundtrip).solve();
+        // Same shape as OSRM: waypointOrder.get(input index) = position in the trip
+        Integer[] positions = new Integer[n];
+        double duration = 0;
+        double distance = 0;
+        for (int p = 0; p < n; p++) {
+            positions[tour[p]] = p;
+            if (p > 0) {
+                duration += matrix.duration(tour[p - 1], tour[p]);
+                distance += matrix.distance(tour[p - 1], tour[p]);
+            }
+        }
+        if (roundtrip) {
+            duration += matrix.duration(tour[n - 1], tour[0]);
+            distance += matrix.distance(tour[n - 1], tour[0]);
+        }
+        return new TripResult(List.of(positions), duration, distance);
+    }
+
+    @Override
+    public CompletableFuture<TripResult> getTripAsync(List<double[]> coordinates, boolean roundtrip) {
+        return CompletableFuture.completedFuture(getTrip(coordinates, roundtrip));
+    }
+
+    // ========================================================================
+    //  /route equivalent
+    // ========================================================================
+
+    @Override
+    public RouteResult getRoute(List<double[]> coordinates) {
+        if (coordinates == null || coordinates.size() < 2) return null;
+        int[] nodes = snap(coordinates);
+        int legs = nodes.length - 1;
+        int[] from = new int[legs];
+        int[] to = new int[legs];
+        for (int k = 0; k < legs; k++) {
+            from[k] = nodes[k];
+            to[k] = nodes[k + 1];
+        }
+        ManyToManyRouter.Matrix matrix = table(from, to);
+        double duration = 0;
+        double distance = 0;
+        for (int k = 0; k < legs; k++) {
+            if (matrix.duration(k, k) == Double.MAX_VALUE) return null;
+            duration += matrix.duration(k, k);
+            distance += matrix.distance(k, k);
+        }
+        return new RouteResult(duration, distance);
+    }
+
+    @Override
+    public CompletableFuture<RouteResult> getRouteAsync(List<double[]> coordinates) {
+        return CompletableFuture.completedFuture(getRoute(coordinates));
+    }
+
+    /** The graph file stores no edge shapes: callers draw straight segments instead. */
+    @Override
+    public CompletableFuture<RouteGeometry> getRouteGeometryAsync(List<double[]> coordinates) {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<RouteResult> getLegAsync(double[] from, double[] to) {
+        if (from == null || to == null) return CompletableFuture.completedFuture(null);
+        return CompletableFuture.completedFuture(getRoute(List.of(from, to)));
+    }
+
+    // ========================================================================
+    //  Health / stats
+    // ========================================================================
+
+    @Override
+    public boolean isAvailable() {
+        return graph.nodeCount() > 0;
+    }
+
+    @Override
+    public RoutingHealth getHealth() {
+        return new RoutingHealth(new CircuitBreaker.Stats(CircuitBreaker.State.CLOSED, 0, 0, 0), 0, 0, 0, List.of());
+    }
+
+    @Override
+    public Map<String, BoundedCache.Stats> getCacheStats() {
+        return Map.of();
+    }
+
+    @Override
+    public RoadDistanceEstimator getEstimator() {
+        return estimator;
+    }
+
+    // ========================================================================
+    //  Helpers
+    // ========================================================================
+
+    private ManyToManyRouter.Matrix table(int[] sources, int[] targets) {
+        ManyToManyRouter router = idleRouters.poll();
+        if (router == null) router = new ManyToManyRouter(graph);
+        try {
+            return router.table(sources, targets);
+        } finally {
+            idleRouters.offer(router);
+        }
+    }
+
+    /** Graph node of each coordinate, or -1 when none lies within snap-max-meters. */
+    private int[] snap(List<double[]> coordinates) {
+        int[] nodes = new int[coordinates.size()];
+        for (int i = 0; i < nodes.length; i++) {
+            double[] c = coordinates.get(i);
+            int node = graph.nearestNode(c[0], c[1], snapRings);
+            nodes[i] = node >= 0 && haversineMeters(c[0], c[1], graph.latitude(node), graph.longitude(node)) <= snapMaxMeters
+                    ? node : -1;
+        }
+        return nodes;
+    }
+
+    /** Feed about {@link #CALIBRATION_SAMPLES_PER_TABLE} evenly spread cells to the estimator. */
+    private void calibrate(List<double[]> coordinates, List<Integer> sourceIndices, List<Integer> destIndices,
+                           double[][] durations, double[][] distances) {
+        if (durations.length == 0) return;
+        int cols = durations[0].length;
+        int cells = durations.length * cols;
+        int stride = Math.max(1, cells / CALIBRATION_SAMPLES_PER_TABLE);
+        for (int cell = 0; cell < cells; cell += stride) {
+            int i = cell / cols;
+            int j = cell % cols;
+            double[] from = coordinates.get(sourceIndices == null || sourceIndices.isEmpty() ? i : sourceIndices.get(i));
+            double[] to = coordinates.get(destIndices == null || destIndices.isEmpty() ? j : destIndices.get(j));
+            estimator.observe(from[0], from[1], to[0], to[1], durations[i][j], distances[i][j]);
+        }
+    }
+
+    private static int[] select(int[] nodes, List<Integer> indices) {
+        if (indices == null || indices.isEmpty()) return nodes;
+        int[] selected = new int[indices.size()];
+        for (int k = 0; k < selected.length; k++) selected[k] = nodes[indices.get(k)];
+        return selected;
+    }
+
+    private static double haversineMeters(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 6_371_000 * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+}
@@ -0,0 +1,217 @@
+package com.example.backend.service.impl;
+
+import com.example.backend.model.Role;
+import com.example.backend.model.Utilisateur;
+import com.example.backend.repository.UtilisateurRepository;
+import com.example.backend.service.LivreurPositionIndex;
+import com.example.backend.service.routing.GeoGrid;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Per-société {@link GeoGrid} of livreur positions.
+ * <p>
+ * A société is loaded from the database on first use and reloaded after
+ * {@code livreur-index.reload-seconds}, so updates made by other backend instances are picked up.
+ * Position updates on this instance go through {@link #refresh(Utilisateur)} and are applied after
+ * commit; those arriving while a société is being reloaded are replayed onto the reloaded data.
+ */
+@Slf4j
+@Service
+public class LivreurPositionIndexImpl implements LivreurPositionIndex {
+
+    private final UtilisateurRepository utilisateurRepository;
+    private final double cellDegrees;
+    private final long reloadMillis;
+
+    private final Map<Long, SocieteIndex> societes = new ConcurrentHashMap<>();
+
+    public LivreurPositionIndexImpl(UtilisateurRepository utilisateurRepository,
+                                    @Value("${livreur-index.cell-degrees:0.05}") double cellDegrees,
+                                    @Value("${livreur-index.reload-seconds:300}") long reloadSeconds) {
+        this.utilisateurRepository = utilisateurRepository;
+        this.cellDegrees = cellDegrees;
+        this.reloadMillis = reloadSeconds * 1000;
+    }
+
+    @Override
+    public List<LivreurPosition> findAll(Long societeId) {
+        SocieteIndex index = load(societeId);
+        index.lock.readLock().lock();
+        try {
+            return new ArrayList<>(index.positions.livreurs.values());
+        } finally {
+            index.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<LivreurPosition> findNearest(Long societeId, double latitude, double longitude, int k) {
+        SocieteIndex index = load(societeId);
+        index.lock.readLock().lock();
+        try {
+            long[] ids = index.positions.grid.nearest(latitude, longitude, k);
+            List<LivreurPosition> result = new ArrayList<>(ids.length);
+            for (long id : ids) result.add(index.positions.livreurs.get(id));
+            return result;
+        } finally {
+            index.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void refresh(Utilisateur utilisateur) {
+        Long id = utilisateur.getId();
+        Long societeId = utilisateur.getSociete() != null ? utilisateur.getSociete().getId() : null;
+        boolean indexable = societeId != null
+                && utilisateur.getRole() == Role.LIVREUR
+                && Boolean.TRUE.equals(utilisateur.getActif())
+                && utilisateur.getLatitude() != null && utilisateur.getLongitude() != null;
+        LivreurPosition position = indexable ? snapshot(utilisateur) : null;
+        afterCommit(() -> apply(id, societeId, position));
+    }
+
+    @Override
+    public void remove(Long utilisateurId) {
+        afterCommit(() -> apply(utilisateurId, null, null));
+    }
+
+    /** Put the livreur in its société's index and drop it from the others (from all if position is null). */
+    private void apply(Long id, Long societeId, LivreurPosition position) {
+        for (Map.Entry<Long, SocieteIndex> entry : societes.entrySet()) {
+            SocieteIndex index = entry.getValue();
+            LivreurPosition value = position != null && entry.getKey().equals(societeId) ? position : null;
+            index.lock.writeLock().lock();
+            try {
+                index.positions.set(id, value);
+                if (index.pending != null) index.pending.add(new Update(id, value));
+            } finally {
+                index.lock.writeLock().unlock();
+            }
+        }
+        // A société not loaded yet picks the user up from the database on first use
+    }
+
+    // ---- Loading ----
+
+    private SocieteIndex load(Long societeId) {
+        SocieteIndex index = societes.computeIfAbsent(societeId, key -> new SocieteIndex(cellDegrees));
+        if (System.currentTimeMillis() - index.loadedAt < reloadMillis) return index;
+
+        index.loading.lock();
+        try {
+            long now = System.currentTimeMillis();
+            if (now - index.loadedAt < reloadMillis) return index;
+            reload(societeId, index, now);
+        } finally {
+            index.loading.unlock();
+        }
+        return index;
+    }
+
+    /**
+     * Read the société from the database outside the index lock, then swap it in. Updates applied
+     * meanwhile are recorded and replayed onto the new data, so none is lost to the swap.
+     */
+    private void reload(Long societeId, SocieteIndex index, long now) {
+        index.lock.writeLock().lock();
+        try {
+            index.pending = new ArrayList<>();
+        } finally {
+            index.lock.writeLock().unlock();
+        }
+
+        Positions fresh = new Positions(cellDegrees);
+        try {
+            for (Utilisateur livreur : utilisateurRepository.findLivreursWithPositionBySocieteId(societeId)) {
+                fresh.set(livreur.getId(), snapshot(livreur));
+            }
+        } catch (RuntimeException e) {
+            index.lock.writeLock().lock();
+            try {
+                index.pending = null;
+            } finally {
+                index.lock.writeLock().unlock();
+            }
+            throw e;
+        }
+
+        index.lock.writeLock().lock();
+        try {
+            for (Update update : index.pending) fresh.set(update.id(), update.position());
+            index.pending = null;
+            index.positions = fresh;
+            index.loadedAt = now;
+        } finally {
+            index.lock.writeLock().unlock();
+        }
+        log.debug("Livreur index loaded for societe {}: {} livreur(s)", societeId, fresh.livreurs.size());
+    }
+
+    private static LivreurPosition snapshot(Utilisateur u) {
+        return new LivreurPosition(u.getId(), u.getNom(), u.getPrenom(), u.getTelephone(),
+                u.getLatitude(), u.getLongitude(), u.getDernierePositionAt());
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /** A livreur moved (position) or left the société (null), recorded while a reload runs. */
+    private record Update(Long id, LivreurPosition position) {}
+
+    /** Grid + snapshots of one société. */
+    private static final class Positions {
+        private final GeoGrid grid;
+        private final Map<Long, LivreurPosition> livreurs = new HashMap<>();
+
+        Positions(double cellDegrees) {
+            this.grid = new GeoGrid(cellDegrees);
+        }
+
+        void set(Long id, LivreurPosition position) {
+            if (position != null) {
+                livreurs.put(id, position);
+                grid.put(id, position.latitude(), position.longitude());
+            } else if (livreurs.remove(id) != null) {
+                grid.remove(id);
+            }
+        }
+    }
+
+    /**
+     * Current positions of one société, guarded by a read/write lock; {@code loading} lets a
+     * single thread reload it, and {@code pending} records the updates made during that reload.
+     */
+    private static final class SocieteIndex {
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private final ReentrantLock loading = new ReentrantLock();
+        private Positions positions;
+        private List<Update> pending;
+        private volatile long loadedAt; // 0 until the first load
+
+        SocieteIndex(double cellDegrees) {
+            this.positions = new Positions(cellDegrees);
+        }
+    }
+}
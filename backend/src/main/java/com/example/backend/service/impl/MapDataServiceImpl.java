@@ -1,12 +1,21 @@
 package com.example.backend.service.impl;
 
+import com.example.backend.dto.CollectionPlanOptions;
 import com.example.backend.dto.MapDataDTO;
 import com.example.backend.dto.ProductStockInfoDTO;
 import com.example.backend.exception.ResourceNotFoundException;
 import com.example.backend.model.*;
 import com.example.backend.repository.*;
+import com.example.backend.service.DepotMatrixService;
+import com.example.backend.service.LivreurPositionIndex;
+import com.example.backend.service.LivreurPositionIndex.LivreurPosition;
 import com.example.backend.service.MapDataService;
 import com.example.backend.service.OsrmService;
+import com.example.backend.service.routing.DemandStockMatrix;
+import com.example.backend.service.routing.DepotCoverSolver;
+import com.example.backend.service.routing.MatrixRouteCost;
+import com.example.backend.service.routing.RoadDistanceEstimator;
+import com.example.backend.service.routing.TourImprover;
 import tools.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
@@ -18,6 +27,9 @@ import org.springframework.transaction.annotation.Transactional;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @Service
@@ -27,6 +39,9 @@ public class MapDataServiceImpl implements MapDataService {
 
     private static final Logger log = LoggerFactory.getLogger(MapDataServiceImpl.class);
 
+    /** Order statuses counted as a livreur's current workload. */
+    private static final List<String> ACTIVE_ORDER_STATUSES = List.of("en_cours", "processing", "shipped", "assigned");
+
     private final SocieteRepository societeRepository;
     private final MagasinRepository magasinRepository;
     private final DepotRepository depotRepository;
@@ -35,10 +50,26 @@ public class MapDataServiceImpl implements MapDataService {
     private final OrderRepository orderRepository;
     private final ObjectMapper objectMapper;
     private final OsrmService osrmService;
+    private final ForkJoinPool planningPool;
+    private final LivreurPositionIndex livreurPositionIndex;
+    private final DepotMatrixService depotMatrixService;
 
     @Value("${osrm.workload-penalty-minutes:5}")
     private double workloadPenaltyMinutes;
 
+    @Value("${livreur-index.recommend-top-k:20}")
+    private int recommendTopK;
+
+    /** Wait for OSRM legs when ranking livreurs; past it the legs are estimated. 0 = no bound. */
+    @Value("${livreur-index.recommend-max-millis:3000}")
+    private long recommendMaxMillis;
+
+    @Value("${planning.screen-min-depots:8}")
+    private int screenMinDepots;
+
+    @Value("${planning.screen-max-millis:200}")
+    private long screenMaxMillis;
+
     @Override
     public MapDataDTO getMapData(Long societeId) {
         // Get société
@@ -82,17 +113,17 @@ public class MapDataServiceImpl implements MapDataService {
                         .build())
                 .collect(Collectors.toList());
 
-        // Get livreurs with positions
-        List<Utilisateur> livreurs = utilisateurRepository.findLivreursWithPositionBySocieteId(societeId);
+        // Get livreurs with positions (in-memory index, no DB round-trip)
+        List<LivreurPosition> livreurs = livreurPositionIndex.findAll(societeId);
         List<MapDataDTO.LivreurMarker> livreurMarkers = livreurs.stream()
                 .map(l -> MapDataDTO.LivreurMarker.builder()
-                        .id(l.getId())
-                        .nom(l.getNom())
-                        .prenom(l.getPrenom())
-                        .latitude(l.getLatitude())
-                        .longitude(l.getLongitude())
-                        .dernierePositionAt(l.getDernierePositionAt() != null 
-                                ? l.getDernierePositionAt().toString() : null)
+                        .id(l.id())
+                        .nom(l.nom())
+                        .prenom(l.prenom())
+                        .latitude(l.latitude())
+                        .longitude(l.longitude())
+                        .dernierePositionAt(l.dernierePositionAt() != null 
+                                ? l.dernierePositionAt().toString() : null)
                         .build())
                 .collect(Collectors.toList());
 
@@ -211,7 +242,11 @@ public class MapDataServiceImpl implements MapDataService {
     @Override
     @Transactional
     public Map<String, Object> generateOptimalCollectionPlan(List<Long> orderIds, Long societeId,
-                                                              Double livreurLat, Double livreurLon) {
+                                                              Double livreurLat, Double livreurLon,
+                                                              CollectionPlanOptions options) {
+        // One deadline for the whole request: screening, OSRM legs and the cover search share it
+        long deadline = planDeadline(options);
+
         // 1. Load all orders
         List<Order> orders = orderRepository.findByIdsWithItems(orderIds);
         if (orders.isEmpty()) {
@@ -258,11 +293,14 @@ public class MapDataServiceImpl implements MapDataService {
 
         // ── Auto-generate plan for orders without manual plans ──
         List<Map<String, Object>> autoSteps = new ArrayList<>();
+        AutoPlan autoPlan = null;
         if (!autoOrders.isEmpty()) {
-            autoSteps = generateAutoSteps(autoOrders, societeId, livreurLat, livreurLon);
+            autoPlan = generateAutoSteps(autoOrders, societeId, livreurLat, livreurLon, options, deadline);
+            autoSteps = autoPlan.steps();
 
             // Save auto-generated plan per order so future calls skip re-computation
-            for (Order autoOrder : autoOrders) {
+            boolean preview = options != null && Boolean.TRUE.equals(options.getPreview());
+            for (Order autoOrder : preview ? List.<Order>of() : autoOrders) {
                 try {
                     // Filter steps relevant to this order
                     List<Map<String, Object>> orderSteps = new ArrayList<>();
@@ -304,8 +342,8 @@ public class MapDataServiceImpl implements MapDataService {
         allSteps.addAll(autoSteps);
         allSteps = mergeStepsByDepot(allSteps);
 
-        // Order steps by nearest-neighbor from livreur position
-        allSteps = orderStepsByNearest(allSteps, livreurLat, livreurLon);
+        // Order steps by the local TSP engine from livreur position
+        allSteps = orderStepsByNearest(allSteps, livreurLat, livreurLon, deadline);
 
         // Re-index steps
         for (int i = 0; i < allSteps.size(); i++) {
@@ -318,104 +356,77 @@ public class MapDataServiceImpl implements MapDataService {
         result.put("mergedSteps", allSteps);
         result.put("manualCount", manualOrders.size());
         result.put("autoCount", autoOrders.size());
+        // Anytime solver: whether the depot set is proven optimal, and the estimated gap otherwise
+        result.put("optimal", autoPlan == null || autoPlan.optimal());
+        result.put("optimalityGap", autoPlan == null ? 0.0 : autoPlan.gap());
         return result;
     }
 
+    /** Auto-generated steps plus the solver's optimality status. */
+    private record AutoPlan(List<Map<String, Object>> steps, boolean optimal, double gap) {}
+
     /**
      * Core auto-generation algorithm: min-depot set cover + shortest route.
      * Extracted so it can be called only for orders needing auto-generation.
      */
-    private List<Map<String, Object>> generateAutoSteps(List<Order> orders, Long societeId,
-                                                         Double livreurLat, Double livreurLon) {
-        // 2. Aggregate demand: for each (orderId, productId) → quantity needed
-        List<DemandEntry> demands = new ArrayList<>();
+    private AutoPlan generateAutoSteps(List<Order> orders, Long societeId,
+                                                         Double livreurLat, Double livreurLon,
+                                                         CollectionPlanOptions options, long deadline) {
+        // 2. Aggregate demand: one line per (order, product), totals per product
+        int expectedLines = 0;
+        for (Order order : orders) expectedLines += order.getItems().size();
+        DemandStockMatrix.Builder builder = new DemandStockMatrix.Builder(expectedLines);
         for (Order order : orders) {
             for (OrderItem item : order.getItems()) {
                 if (item.getProduit() == null) continue;
-                demands.add(new DemandEntry(
-                    order.getId(), item.getProduit().getId(),
-                    item.getProduit().getName(), item.getActualQuantity()
-                ));
+                builder.addDemand(order.getId(), item.getProduit().getId(),
+                        item.getProduit().getName(), item.getActualQuantity());
             }
         }
-        if (demands.isEmpty()) {
-            return new ArrayList<>();
-        }
-
-        // Aggregate by productId across orders: total needed per product
-        Map<Long, Integer> totalDemandByProduct = new LinkedHashMap<>();
-        for (DemandEntry d : demands) {
-            totalDemandByProduct.merge(d.productId, d.quantity, Integer::sum);
+        long[] demandedProducts = builder.productIds();
+        if (demandedProducts.length == 0) {
+            return new AutoPlan(new ArrayList<>(), true, 0);
         }
 
         // 3. Load stock for ALL needed products in a single batch query (avoids N+1)
-        Map<Long, List<Stock>> stockByProduct = new LinkedHashMap<>();
-        Set<Long> candidateDepotIds = new LinkedHashSet<>();
-        Map<Long, Depot> depotMap = new LinkedHashMap<>();
-
-        List<Long> productIds = new ArrayList<>(totalDemandByProduct.keySet());
+        List<Long> productIds = new ArrayList<>(demandedProducts.length);
+        for (long id : demandedProducts) productIds.add(id);
         List<Stock> allStocks = stockRepository.findByProduitIdsAndSocieteId(productIds, societeId);
-        // Remove stocks with null depot or zero quantity
-        allStocks.removeIf(s -> s.getDepot() == null || s.getActualQuantity().intValue() <= 0);
 
-        // Group stocks by product
+        // 4. Dense stock matrix [depot][product]; stocks with null depot or zero quantity are skipped
+        Map<Long, Depot> depotMap = new HashMap<>();
         for (Stock s : allStocks) {
-            Long pid = s.getProduit().getId();
-            stockByProduct.computeIfAbsent(pid, k -> new ArrayList<>()).add(s);
-            candidateDepotIds.add(s.getDepot().getId());
-            depotMap.put(s.getDepot().getId(), s.getDepot());
-        }
-
-        List<Long> candidateList = new ArrayList<>(candidateDepotIds);
-        int numCandidates = candidateList.size();
-
-        // 4. For each candidate depot, build a stock map: depotId → {productId → available_qty}
-        Map<Long, Map<Long, Integer>> depotStock = new LinkedHashMap<>();
-        for (Long depotId : candidateList) {
-            depotStock.put(depotId, new HashMap<>());
-        }
-        for (Map.Entry<Long, List<Stock>> entry : stockByProduct.entrySet()) {
-            Long productId = entry.getKey();
-            for (Stock s : entry.getValue()) {
-                depotStock.get(s.getDepot().getId()).put(productId, s.getActualQuantity().intValue());
-            }
-        }
-
-        // 5. Enumerate depot combinations by cardinality k = 1..min(numCandidates, MAX_K)
-        //    For each combo, check if it covers ALL product demands (quantity-aware).
-        //    Among covering combos of minimum k, pick the one with shortest haversine route.
-        int maxK = Math.min(numCandidates, 6); // limit search space
-        List<Long> bestCombo = null;
-        double bestDistance = Double.MAX_VALUE;
-
-        for (int k = 1; k <= maxK; k++) {
-            List<List<Long>> combos = generateCombinations(candidateList, k);
-
-            for (List<Long> combo : combos) {
-                if (coversDemand(combo, depotStock, totalDemandByProduct)) {
-                    double dist = estimateRouteDistance(combo, depotMap, livreurLat, livreurLon);
-                    if (dist < bestDistance) {
-                        bestDistance = dist;
-                        bestCombo = combo;
-                    }
-                }
-            }
-
-            // Lexicographic: once we find any solution at cardinality k, stop
-            if (bestCombo != null) break;
-        }
-
-        // 6. Fallback: if no exact cover found (e.g. too many depots), use greedy
-        if (bestCombo == null) {
-            bestCombo = greedyCover(candidateList, depotStock, totalDemandByProduct, depotMap, livreurLat, livreurLon);
-        }
-
-        // 7. Allocate products to chosen depots
-        List<Map<String, Object>> mergedSteps = allocateAndBuildSteps(
-            bestCombo, depotStock, depotMap, demands
-        );
-
-        return mergedSteps;
+            if (s.getDepot() == null || s.getProduit() == null) continue;
+            int qty = s.getActualQuantity().intValue();
+            if (qty <= 0) continue;
+            builder.addStock(s.getDepot().getId(), s.getProduit().getId(), qty);
+            depotMap.putIfAbsent(s.getDepot().getId(), s.getDepot());
+        }
+        DemandStockMatrix matrix = builder.build();
+
+        // Root branches are searched in parallel on the planning pool, capped per request
+        int parallelism = planningPool != null ? planningPool.getParallelism() : 1;
+        if (options != null && options.getMaxParallelism() != null) {
+            parallelism = Math.max(1, Math.min(parallelism, options.getMaxParallelism()));
+        }
+        // 5. Exact min-depot set cover (quantity-aware), ties broken by shortest route.
+        //    One livreur + candidates matrix up front; every combo is costed in memory (Held-Karp).
+        //    Depots ruled out by the estimated legs are not sent to OSRM.
+        DepotCoverSolver.RouteCost routeCost = null;
+        if (livreurLat != null && livreurLon != null) {
+            boolean[] screened = screenDepots(matrix, depotMap, livreurLat, livreurLon, deadline);
+            routeCost = buildRouteCost(societeId, matrix, depotMap, livreurLat, livreurLon, screened, deadline);
+        }
+        // With maxMillis the solver is anytime: best cover found in the time left, plus a gap estimate
+        DepotCoverSolver.Result cover = new DepotCoverSolver(matrix.demand(), matrix.stock(), routeCost)
+                .parallel(planningPool, parallelism)
+                .timeLimit(remainingMillis(deadline))
+                .solve();
+        log.debug("Depot cover: {} depot(s) among {} candidates, optimal={}, gap={}, nodes={}, workers={}",
+                cover.depots().length, matrix.depotCount(), cover.optimal(), cover.gap(), cover.nodes(), parallelism);
+
+        // 6. Allocate products to chosen depots
+        return new AutoPlan(allocateAndBuildSteps(cover.depots(), matrix, depotMap), cover.optimal(), cover.gap());
     }
 
     /**
@@ -451,242 +462,208 @@ public class MapDataServiceImpl implements MapDataService {
         return new ArrayList<>(byDepot.values());
     }
 
-    // ---- Helper classes & methods ----
-
-    private record DemandEntry(Long orderId, Long productId, String productName, int quantity) {}
+    // ---- Helper methods ----
 
     /**
-     * Check if a set of depots can cover ALL product demands (quantity-aware).
+     * Candidate screening on estimated legs: solve the cover once on the estimator's expected
+     * durations and keep only the depots the livreur can reach, at the optimistic bound, within
+     * the pessimistic route cost of that cover. A route through any other depot costs more than
+     * a minimum cover already found, so those depots never need an OSRM leg.
+     * Returns null (keep everything) when the estimator is not calibrated, the candidate set is
+     * small, or the screening cover is not proven optimal. The screening solve gets at most
+     * {@code planning.screen-max-millis}, and half the time left when the request has a budget.
      */
-    private boolean coversDemand(List<Long> depotIds, Map<Long, Map<Long, Integer>> depotStock,
-                                  Map<Long, Integer> totalDemandByProduct) {
-        for (Map.Entry<Long, Integer> entry : totalDemandByProduct.entrySet()) {
-            Long productId = entry.getKey();
-            int needed = entry.getValue();
-            int available = 0;
-            for (Long depotId : depotIds) {
-                available += depotStock.getOrDefault(depotId, Map.of()).getOrDefault(productId, 0);
+    private boolean[] screenDepots(DemandStockMatrix matrix, Map<Long, Depot> depotMap,
+                                   double livreurLat, double livreurLon, long deadline) {
+        RoadDistanceEstimator estimator = osrmService.getEstimator();
+        if (estimator == null || !estimator.calibrated() || matrix.depotCount() < screenMinDepots) return null;
+
+        int n = matrix.depotCount() + 1;
+        double[][] points = routePoints(matrix, depotMap, livreurLat, livreurLon);
+        double[][] expected = new double[n][n];
+        double[][] upper = new double[n][n];
+        double[] lowerFromLivreur = new double[n];
+        for (int i = 0; i < n; i++) {
+            if (points[i] == null) continue;
+            for (int j = 0; j < n; j++) {
+                if (i == j || points[j] == null) continue;
+                RoadDistanceEstimator.Estimate e = estimator.estimate(points[i][0], points[i][1], points[j][0], points[j][1]);
+                expected[i][j] = e.seconds();
+                upper[i][j] = e.upperSeconds();
+                if (i == 0) lowerFromLivreur[j] = e.lowerSeconds();
             }
-            if (available < needed) return false;
         }
-        return true;
+        long screenMillis = screenMaxMillis > 0 ? screenMaxMillis : 0;
+        if (deadline != 0) {
+            long half = Math.max(1, remainingMillis(deadline) / 2);
+            screenMillis = screenMillis > 0 ? Math.min(screenMillis, half) : half;
+        }
+        DepotCoverSolver.Result screening = new DepotCoverSolver(matrix.demand(), matrix.stock(), new MatrixRouteCost(expected))
+                .timeLimit(screenMillis)
+                .solve();
+        if (!screening.optimal() || screening.depots().length == 0) return null;
+
+        double bound = new MatrixRouteCost(upper).cost(screening.depots());
+        boolean[] keep = new boolean[matrix.depotCount()];
+        int kept = 0;
+        for (int d = 0; d < keep.length; d++) {
+            keep[d] = points[d + 1] == null || lowerFromLivreur[d + 1] <= bound;
+            if (keep[d]) kept++;
+        }
+        log.debug("Depot screening: {} of {} candidates kept for OSRM (bound {} s)", kept, keep.length, Math.round(bound));
+        return keep;
+    }
+
+    /** Index 0 = livreur, index d + 1 = depot d; null for depots without coordinates. */
+    private double[][] routePoints(DemandStockMatrix matrix, Map<Long, Depot> depotMap, double livreurLat, double livreurLon) {
+        double[][] points = new double[matrix.depotCount() + 1][];
+        points[0] = new double[]{livreurLat, livreurLon};
+        for (int d = 0; d < matrix.depotCount(); d++) {
+            Depot depot = depotMap.get(matrix.depotId(d));
+            if (depot != null && depot.getLatitude() != null && depot.getLongitude() != null) {
+                points[d + 1] = new double[]{depot.getLatitude(), depot.getLongitude()};
+            }
+        }
+        return points;
     }
 
     /**
-     * Estimate total route distance for livreur → depot1 → depot2 → ... using nearest-neighbor.
-     * Uses OSRM /table API for real road durations; falls back to haversine if OSRM is unavailable.
-     * Returns a cost value (OSRM: seconds of travel time, haversine: km).
+     * Route cost over a matrix where index 0 = livreur, index d + 1 = candidate depot d.
+     * Depot ↔ depot legs come from the precomputed depot matrix, so only the livreur's row and
+     * column go to OSRM; if a depot leg is unknown, a single /table call covers the whole
+     * candidate set (durations in seconds), falling back to estimated legs.
+     * Depots screened out ({@code keep[d]} false) get pessimistic estimates and no OSRM leg;
+     * depots without coordinates cost nothing to visit. OSRM answers still missing at the
+     * request deadline are replaced by estimated legs.
+     * The cost is reported metric (monotone, so the solver may prune) only when every leg is an
+     * OSRM duration: no screened-out, unlocated or estimated depot.
      */
-    private double estimateRouteDistance(List<Long> depotIds, Map<Long, Depot> depotMap,
-                                         Double livreurLat, Double livreurLon) {
-        if (depotIds.isEmpty()) return 0;
-        if (livreurLat == null || livreurLon == null) {
-            return depotIds.size(); // prefer fewer depots when no position
+    private MatrixRouteCost buildRouteCost(Long societeId, DemandStockMatrix matrix, Map<Long, Depot> depotMap,
+                                        double livreurLat, double livreurLon, boolean[] keep, long deadline) {
+        int n = matrix.depotCount() + 1;
+        double[][] points = routePoints(matrix, depotMap, livreurLat, livreurLon);
+        List<double[]> coords = new ArrayList<>(n);
+        int[] coordIndex = new int[n];
+        coords.add(points[0]);
+        for (int d = 0; d < matrix.depotCount(); d++) {
+            coordIndex[d + 1] = -1;
+            if (points[d + 1] != null && (keep == null || keep[d])) {
+                coordIndex[d + 1] = coords.size();
+                coords.add(points[d + 1]);
+            }
         }
 
-        // Build coordinate list: index 0 = livreur, 1..N = depots
-        List<double[]> coords = new ArrayList<>();
-        coords.add(new double[]{livreurLat, livreurLon});
-        List<Integer> validDepotIndices = new ArrayList<>();
-        for (Long id : depotIds) {
-            Depot d = depotMap.get(id);
-            if (d != null && d.getLatitude() != null && d.getLongitude() != null) {
-                coords.add(new double[]{d.getLatitude(), d.getLongitude()});
-                validDepotIndices.add(coords.size() - 1);
-            }
+        boolean allRouted = coords.size() == n;
+        double[][] cost = new double[n][n];
+        if (keep != null) fillScreenedOut(points, keep, cost);
+        if (coords.size() > 1 && fillFromDepotMatrix(societeId, points, coordIndex, coords, cost, deadline)) {
+            return new MatrixRouteCost(cost, allRouted);
         }
-        if (validDepotIndices.isEmpty()) return Double.MAX_VALUE;
 
-        // --- Try OSRM /table first ---
-        OsrmService.TableResult table = osrmService.getTable(coords);
-        if (table != null && table.durations() != null) {
-            // nearest-neighbor on the OSRM duration matrix
-            double totalCost = 0;
-            int cur = 0; // start at livreur (index 0)
-            boolean[] visited = new boolean[coords.size()];
-            visited[0] = true;
-
-            for (int i = 0; i < validDepotIndices.size(); i++) {
-                double minD = Double.MAX_VALUE;
-                int nearest = validDepotIndices.get(0);
-                for (int idx : validDepotIndices) {
-                    if (visited[idx]) continue;
-                    double d = table.durations()[cur][idx];
-                    if (d < minD) { minD = d; nearest = idx; }
-                }
-                visited[nearest] = true;
-                totalCost += minD;
-                cur = nearest;
-            }
-            return totalCost; // seconds
-        }
-
-        // --- Haversine fallback ---
-        log.debug("OSRM /table unavailable, falling back to haversine for estimateRouteDistance");
-        double totalDist = 0;
-        double curLat = livreurLat, curLon = livreurLon;
-        List<double[]> points = coords.subList(1, coords.size()); // skip livreur
-        boolean[] visited = new boolean[points.size()];
-
-        for (int i = 0; i < points.size(); i++) {
-            double minD = Double.MAX_VALUE;
-            int nearest = 0;
-            for (int j = 0; j < points.size(); j++) {
-                if (visited[j]) continue;
-                double d = haversine(curLat, curLon, points.get(j)[0], points.get(j)[1]);
-                if (d < minD) { minD = d; nearest = j; }
+        OsrmService.TableResult table = coords.size() > 1
+                ? awaitUntil(osrmService.getTableAsync(coords, null, null), deadline) : null;
+        boolean routed = table != null && table.durations() != null;
+        if (!routed) {
+            log.debug("OSRM /table unavailable, falling back to estimated legs for the route matrix");
+        }
+        for (int i = 0; i < n; i++) {
+            if (coordIndex[i] < 0) continue;
+            for (int j = 0; j < n; j++) {
+                if (i == j || coordIndex[j] < 0) continue;
+                cost[i][j] = routed
+                        ? table.durations()[coordIndex[i]][coordIndex[j]]
+                        : fallbackCost(points[i], points[j]);
             }
-            visited[nearest] = true;
-            totalDist += minD;
-            curLat = points.get(nearest)[0];
-            curLon = points.get(nearest)[1];
         }
-        return totalDist;
+        return new MatrixRouteCost(cost, allRouted && routed);
     }
 
-    /**
-     * Generate all C(n,k) combinations.
-     */
-    private List<List<Long>> generateCombinations(List<Long> items, int k) {
-        List<List<Long>> result = new ArrayList<>();
-        combinationsHelper(items, k, 0, new ArrayList<>(), result);
-        return result;
-    }
-
-    private void combinationsHelper(List<Long> items, int k, int start, List<Long> current, List<List<Long>> result) {
-        if (current.size() == k) {
-            result.add(new ArrayList<>(current));
-            return;
-        }
-        for (int i = start; i < items.size(); i++) {
-            current.add(items.get(i));
-            combinationsHelper(items, k, i + 1, current, result);
-            current.remove(current.size() - 1);
+    /** Pessimistic estimated legs to and from every screened-out depot. */
+    private void fillScreenedOut(double[][] points, boolean[] keep, double[][] cost) {
+        RoadDistanceEstimator estimator = osrmService.getEstimator();
+        for (int d = 0; d < keep.length; d++) {
+            int i = d + 1;
+            if (keep[d] || points[i] == null) continue;
+            for (int j = 0; j < points.length; j++) {
+                if (i == j || points[j] == null) continue;
+                cost[i][j] = estimator.estimate(points[i][0], points[i][1], points[j][0], points[j][1]).upperSeconds();
+                cost[j][i] = estimator.estimate(points[j][0], points[j][1], points[i][0], points[i][1]).upperSeconds();
+            }
         }
     }
 
     /**
-     * Greedy fallback: when numCandidates > MAX_K, greedily add depot that covers most remaining demand.
+     * Fill the route matrix from the depot matrix plus one OSRM row and column for the livreur.
+     * Returns false, leaving the depot cells written, if a depot leg or the livreur legs are missing.
+     * Only depots with a coordinate index are filled.
      */
-    private List<Long> greedyCover(List<Long> candidates, Map<Long, Map<Long, Integer>> depotStock,
-                                    Map<Long, Integer> totalDemandByProduct, Map<Long, Depot> depotMap,
-                                    Double livreurLat, Double livreurLon) {
-        Map<Long, Integer> remaining = new LinkedHashMap<>(totalDemandByProduct);
-        List<Long> chosen = new ArrayList<>();
-
-        while (!remaining.isEmpty()) {
-            Long bestDepot = null;
-            int bestScore = 0;
-            double bestDist = Double.MAX_VALUE;
-
-            for (Long depotId : candidates) {
-                if (chosen.contains(depotId)) continue;
-                Map<Long, Integer> stock = depotStock.getOrDefault(depotId, Map.of());
-                int score = 0;
-                for (Map.Entry<Long, Integer> req : remaining.entrySet()) {
-                    int avail = stock.getOrDefault(req.getKey(), 0);
-                    score += Math.min(avail, req.getValue());
-                }
-                if (score > 0) {
-                    Depot d = depotMap.get(depotId);
-                    double dist = (d != null && d.getLatitude() != null && livreurLat != null)
-                            ? haversine(livreurLat, livreurLon, d.getLatitude(), d.getLongitude()) : 0;
-                    // Pick depot with highest coverage, break ties by distance
-                    if (score > bestScore || (score == bestScore && dist < bestDist)) {
-                        bestDepot = depotId;
-                        bestScore = score;
-                        bestDist = dist;
-                    }
-                }
+    private boolean fillFromDepotMatrix(Long societeId, double[][] points, int[] coordIndex,
+                                        List<double[]> coords, double[][] cost, long deadline) {
+        int n = points.length;
+        for (int i = 1; i < n; i++) {
+            if (coordIndex[i] < 0) continue;
+            for (int j = 1; j < n; j++) {
+                if (i == j || coordIndex[j] < 0) continue;
+                DepotMatrixService.Leg leg = depotMatrixService.leg(societeId,
+                        points[i][0], points[i][1], points[j][0], points[j][1]);
+                if (leg == null) return false;
+                cost[i][j] = leg.durationSeconds();
             }
+        }
 
-            if (bestDepot == null) break;
-            chosen.add(bestDepot);
-
-            // Subtract what this depot provides
-            Map<Long, Integer> stock = depotStock.getOrDefault(bestDepot, Map.of());
-            Iterator<Map.Entry<Long, Integer>> it = remaining.entrySet().iterator();
-            while (it.hasNext()) {
-                Map.Entry<Long, Integer> req = it.next();
-                int avail = stock.getOrDefault(req.getKey(), 0);
-                int nowNeeded = req.getValue() - avail;
-                if (nowNeeded <= 0) {
-                    it.remove();
-                } else {
-                    req.setValue(nowNeeded);
-                }
-            }
+        List<Integer> all = new ArrayList<>(coords.size());
+        for (int k = 0; k < coords.size(); k++) all.add(k);
+        CompletableFuture<OsrmService.TableResult> fromLivreur = osrmService.getTableAsync(coords, List.of(0), all);
+        CompletableFuture<OsrmService.TableResult> toLivreur = osrmService.getTableAsync(coords, all, List.of(0));
+        OsrmService.TableResult out = awaitUntil(fromLivreur, deadline);
+        OsrmService.TableResult in = awaitUntil(toLivreur, deadline);
+        if (out == null || in == null) return false;
+        for (int j = 1; j < n; j++) {
+            if (coordIndex[j] < 0) continue;
+            cost[0][j] = out.durations()[0][coordIndex[j]];
+            cost[j][0] = in.durations()[coordIndex[j]][0];
         }
-        return chosen;
+        return true;
     }
 
     /**
      * Allocate per-order items to the chosen depots and build steps.
      */
-    private List<Map<String, Object>> allocateAndBuildSteps(List<Long> chosenDepots,
-                                                             Map<Long, Map<Long, Integer>> depotStock,
-                                                             Map<Long, Depot> depotMap,
-                                                             List<DemandEntry> demands) {
-        // Track remaining stock so we don't over-allocate
-        Map<String, Integer> remaining = new HashMap<>();
-        for (Long depotId : chosenDepots) {
-            Map<Long, Integer> stock = depotStock.getOrDefault(depotId, Map.of());
-            for (Map.Entry<Long, Integer> e : stock.entrySet()) {
-                remaining.put(depotId + ":" + e.getKey(), e.getValue());
-            }
-        }
-
-        // For each demand, allocate to chosen depots (prefer depot with most stock to minimize splits)
-        Map<Long, List<Map<String, Object>>> depotItems = new LinkedHashMap<>();
-        Map<Long, Set<Long>> depotOrderIds = new LinkedHashMap<>();
-
-        for (DemandEntry demand : demands) {
-            int needed = demand.quantity;
-            // Sort chosen depots by available stock for this product (descending)
-            List<Long> sorted = new ArrayList<>(chosenDepots);
-            sorted.sort((a, b) -> {
-                int stockA = remaining.getOrDefault(a + ":" + demand.productId, 0);
-                int stockB = remaining.getOrDefault(b + ":" + demand.productId, 0);
-                return Integer.compare(stockB, stockA);
-            });
+    private List<Map<String, Object>> allocateAndBuildSteps(int[] chosenDepots, DemandStockMatrix matrix,
+                                                             Map<Long, Depot> depotMap) {
+        int k = chosenDepots.length;
+        int[] taken = matrix.allocate(chosenDepots);
 
-            for (Long depotId : sorted) {
-                if (needed <= 0) break;
-                String key = depotId + ":" + demand.productId;
-                int avail = remaining.getOrDefault(key, 0);
-                if (avail <= 0) continue;
-
-                int take = Math.min(needed, avail);
-                remaining.put(key, avail - take);
-                needed -= take;
+        // Build steps in chosen-depot order, items in demand order
+        List<Map<String, Object>> steps = new ArrayList<>();
+        for (int c = 0; c < k; c++) {
+            long depotId = matrix.depotId(chosenDepots[c]);
+            Depot depot = depotMap.get(depotId);
+            if (depot == null) continue;
 
-                depotItems.computeIfAbsent(depotId, k -> new ArrayList<>());
+            List<Map<String, Object>> items = new ArrayList<>();
+            Set<Long> orderIds = new LinkedHashSet<>();
+            for (int line = 0; line < matrix.lineCount(); line++) {
+                int take = taken[line * k + c];
+                if (take <= 0) continue;
+                int product = matrix.lineProduct(line);
                 Map<String, Object> itemInfo = new HashMap<>();
-                itemInfo.put("produitId", demand.productId);
-                itemInfo.put("produitNom", demand.productName);
+                itemInfo.put("produitId", matrix.productId(product));
+                itemInfo.put("produitNom", matrix.productName(product));
                 itemInfo.put("quantite", take);
-                itemInfo.put("orderId", demand.orderId);
-                depotItems.get(depotId).add(itemInfo);
-
-                depotOrderIds.computeIfAbsent(depotId, k -> new LinkedHashSet<>());
-                depotOrderIds.get(depotId).add(demand.orderId);
+                itemInfo.put("orderId", matrix.lineOrderId(line));
+                items.add(itemInfo);
+                orderIds.add(matrix.lineOrderId(line));
             }
-        }
-
-        // Build steps
-        List<Map<String, Object>> steps = new ArrayList<>();
-        for (Long depotId : chosenDepots) {
-            if (!depotItems.containsKey(depotId)) continue;
-            Depot depot = depotMap.get(depotId);
-            if (depot == null) continue;
+            if (items.isEmpty()) continue;
 
             Map<String, Object> step = new HashMap<>();
             step.put("depotId", depotId);
             step.put("depotNom", depot.getNom() != null ? depot.getNom() : depot.getLibelleDepot());
             step.put("depotLatitude", depot.getLatitude());
             step.put("depotLongitude", depot.getLongitude());
-            step.put("items", depotItems.get(depotId));
-            step.put("orderIds", new ArrayList<>(depotOrderIds.getOrDefault(depotId, new LinkedHashSet<>())));
+            step.put("items", items);
+            step.put("orderIds", new ArrayList<>(orderIds));
             steps.add(step);
         }
         return steps;
@@ -694,68 +671,93 @@ public class MapDataServiceImpl implements MapDataService {
 
     /**
      * Order steps by optimal route from livreur position.
-     * Uses OSRM /trip (TSP) API; falls back to haversine nearest-neighbor.
+     * Sequenced locally by {@link TourImprover} (open tour from the livreur) on one OSRM /table
+     * duration matrix; estimated legs when OSRM is unavailable or the request deadline has passed.
+     * Steps without coordinates are kept at the end in their original order.
      */
     private List<Map<String, Object>> orderStepsByNearest(List<Map<String, Object>> steps,
-                                                           Double livreurLat, Double livreurLon) {
+                                                           Double livreurLat, Double livreurLon, long deadline) {
         if (steps.size() <= 1 || livreurLat == null || livreurLon == null) return steps;
 
-        // Build coordinate list: index 0 = livreur, 1..N = depots
+        // Build coordinate list: index 0 = livreur, 1..N = located steps
         List<double[]> coords = new ArrayList<>();
         coords.add(new double[]{livreurLat, livreurLon});
+        List<Map<String, Object>> located = new ArrayList<>();
+        List<Map<String, Object>> unlocated = new ArrayList<>();
         for (Map<String, Object> step : steps) {
             Double lat = (Double) step.get("depotLatitude");
             Double lon = (Double) step.get("depotLongitude");
-            coords.add(new double[]{
-                lat != null ? lat : 0,
-                lon != null ? lon : 0
-            });
-        }
-
-        // --- Try OSRM /trip (TSP) first ---
-        OsrmService.TripResult trip = osrmService.getTrip(coords, false);
-        if (trip != null && trip.waypointOrder() != null) {
-            // trip returns ordered indices into coords (includes index 0 = livreur)
-            List<Map<String, Object>> ordered = new ArrayList<>();
-            for (int idx : trip.waypointOrder()) {
-                if (idx == 0) continue; // skip livreur waypoint
-                int stepIdx = idx - 1;  // map back to steps index
-                if (stepIdx >= 0 && stepIdx < steps.size()) {
-                    ordered.add(steps.get(stepIdx));
-                }
-            }
-            // If OSRM returned all steps, use that order
-            if (ordered.size() == steps.size()) {
-                return ordered;
+            if (lat == null || lon == null) {
+                unlocated.add(step);
+                continue;
             }
+            coords.add(new double[]{lat, lon});
+            located.add(step);
         }
+        if (located.size() <= 1) return steps;
 
-        // --- Haversine nearest-neighbor fallback ---
-        log.debug("OSRM /trip unavailable, falling back to haversine for orderStepsByNearest");
-        List<Map<String, Object>> ordered = new ArrayList<>();
-        boolean[] used = new boolean[steps.size()];
-        double curLat = livreurLat, curLon = livreurLon;
-
-        for (int i = 0; i < steps.size(); i++) {
-            double minD = Double.MAX_VALUE;
-            int nearest = 0;
-            for (int j = 0; j < steps.size(); j++) {
-                if (used[j]) continue;
-                Double lat = (Double) steps.get(j).get("depotLatitude");
-                Double lon = (Double) steps.get(j).get("depotLongitude");
-                if (lat == null || lon == null) continue;
-                double d = haversine(curLat, curLon, lat, lon);
-                if (d < minD) { minD = d; nearest = j; }
+        // --- OSRM /table durations (cached) within what is left of the budget, estimator fallback ---
+        OsrmService.TableResult table = awaitUntil(osrmService.getTableAsync(coords, null, null), deadline);
+        double[][] matrix;
+        if (table != null && table.durations() != null) {
+            matrix = table.durations();
+        } else {
+            log.debug("OSRM /table unavailable, falling back to estimated legs for orderStepsByNearest");
+            matrix = new double[coords.size()][coords.size()];
+            for (int i = 0; i < coords.size(); i++) {
+                for (int j = 0; j < coords.size(); j++) {
+                    if (i != j) matrix[i][j] = fallbackCost(coords.get(i), coords.get(j));
+                }
             }
-            used[nearest] = true;
-            ordered.add(steps.get(nearest));
-            Double lat = (Double) steps.get(nearest).get("depotLatitude");
-            Double lon = (Double) steps.get(nearest).get("depotLongitude");
-            if (lat != null && lon != null) { curLat = lat; curLon = lon; }
         }
+
+        int[] tour = new TourImprover(matrix, false).solve();
+        List<Map<String, Object>> ordered = new ArrayList<>(steps.size());
+        for (int idx : tour) {
+            if (idx > 0) ordered.add(located.get(idx - 1)); // skip livreur waypoint
+        }
+        ordered.addAll(unlocated);
         return ordered;
     }
 
+    /** System.nanoTime() at which a plan request's maxMillis runs out; 0 without a budget. */
+    private static long planDeadline(CollectionPlanOptions options) {
+        Long maxMillis = options != null ? options.getMaxMillis() : null;
+        return maxMillis != null && maxMillis > 0 ? System.nanoTime() + maxMillis * 1_000_000L : 0;
+    }
+
+    /**
+     * Milliseconds left before the deadline, as a solver time limit: 0 (unbounded) without a
+     * deadline, at least 1 after it so the solver returns its heuristic cover at once.
+     */
+    private static long remainingMillis(long deadline) {
+        if (deadline == 0) return 0;
+        return Math.max(1, (deadline - System.nanoTime()) / 1_000_000L);
+    }
+
+    /**
+     * Wait for an OSRM answer until the deadline; null (estimated legs) once it has passed.
+     * Waits on a copy: the future may be shared with other requests through single-flight.
+     */
+    private static <T> T awaitUntil(CompletableFuture<T> future, long deadline) {
+        if (future == null) return null;
+        if (deadline == 0) return future.join();
+        long left = deadline - System.nanoTime();
+        if (left <= 0) return future.getNow(null);
+        return future.copy().completeOnTimeout(null, left, TimeUnit.NANOSECONDS).join();
+    }
+
+    /**
+     * Leg cost when OSRM has no answer: estimated seconds once the road estimator is calibrated
+     * (the unit of screened-out legs, which only exist then), haversine km before.
+     */
+    private double fallbackCost(double[] from, double[] to) {
+        RoadDistanceEstimator estimator = osrmService.getEstimator();
+        return estimator != null && estimator.calibrated()
+                ? estimator.estimate(from[0], from[1], to[0], to[1]).seconds()
+                : haversine(from[0], from[1], to[0], to[1]);
+    }
+
     /**
      * Haversine distance in km.
      */
@@ -822,72 +824,130 @@ public class MapDataServiceImpl implements MapDataService {
         Double deliveryLat = order.getLatitudeLivraison();
         Double deliveryLon = order.getLongitudeLivraison();
 
-        // 4. Get all active livreurs with known position
-        List<Utilisateur> livreurs = utilisateurRepository.findLivreursWithPositionBySocieteId(societeId);
+        List<double[]> stops = new ArrayList<>(collectionPoints);
+        if (deliveryLat != null && deliveryLon != null) {
+            stops.add(new double[]{deliveryLat, deliveryLon});
+        }
+
+        // 4. Candidate livreurs from the spatial index: the K nearest (haversine) to the first stop
+        List<LivreurPosition> livreurs = stops.isEmpty()
+                ? livreurPositionIndex.findAll(societeId)
+                : livreurPositionIndex.findNearest(societeId, stops.get(0)[0], stops.get(0)[1], recommendTopK);
+
+        // 5. Score each livreur: OSRM travel time (livreur → depots → delivery) in one round-trip.
+        //    The depots → delivery tail is the same for everyone: one /route call, sent first.
+        //    The livreur → first stop legs come from one /table call (livreurs as sources),
+        //    restricted to the livreurs the estimated legs cannot rule out.
+        //    Falls back to estimated (or haversine) distances if OSRM is unavailable or too slow
+        long deadline = recommendMaxMillis > 0 ? System.nanoTime() + recommendMaxMillis * 1_000_000L : 0;
+        CompletableFuture<OsrmService.RouteResult> tailFuture = stops.size() >= 2
+                ? osrmService.getRouteAsync(stops)
+                : CompletableFuture.completedFuture(null);
+
+        // Workload: active order count for every livreur in one grouped query
+        Map<Long, Long> activeOrders = new HashMap<>();
+        if (!livreurs.isEmpty()) {
+            List<Long> livreurIds = livreurs.stream().map(LivreurPosition::id).toList();
+            for (Object[] row : orderRepository.countByLivreurIdsAndStatusIn(livreurIds, ACTIVE_ORDER_STATUSES)) {
+                activeOrders.put(((Number) row[0]).longValue(), ((Number) row[1]).longValue());
+            }
+        }
+
+        RoadDistanceEstimator estimator = osrmService.getEstimator();
+        boolean estimated = estimator != null && estimator.calibrated();
+        int[] legRow = new int[livreurs.size()]; // row in the /table result, -1 when screened out
+        Arrays.fill(legRow, -1);
+        CompletableFuture<OsrmService.TableResult> legsFuture = CompletableFuture.completedFuture(null);
+        if (!stops.isEmpty() && !livreurs.isEmpty()) {
+            boolean[] keep = estimated ? screenLivreurs(estimator, livreurs, stops.get(0), activeOrders) : null;
+            List<double[]> tableCoords = new ArrayList<>(livreurs.size() + 1);
+            List<Integer> sources = new ArrayList<>(livreurs.size());
+            for (int li = 0; li < livreurs.size(); li++) {
+                if (keep != null && !keep[li]) continue;
+                legRow[li] = tableCoords.size();
+                sources.add(tableCoords.size());
+                tableCoords.add(new double[]{livreurs.get(li).latitude(), livreurs.get(li).longitude()});
+            }
+            tableCoords.add(stops.get(0));
+            legsFuture = osrmService.getTableAsync(tableCoords, sources, List.of(sources.size()));
+        }
 
-        // 5. Score each livreur: OSRM route travel time (livreur → depots → delivery)
-        //    Falls back to haversine distance if OSRM is unavailable
-        List<Map<String, Object>> ranked = new ArrayList<>();
-        for (Utilisateur livreur : livreurs) {
-            double livreurLat = livreur.getLatitude();
-            double livreurLon = livreur.getLongitude();
-
-            // Build ordered coordinate sequence: livreur → depot1 → ... → depotN → delivery
-            List<double[]> routeCoords = new ArrayList<>();
-            routeCoords.add(new double[]{livreurLat, livreurLon});
-            routeCoords.addAll(collectionPoints);
-            if (deliveryLat != null && deliveryLon != null) {
-                routeCoords.add(new double[]{deliveryLat, deliveryLon});
+        double tailHaversineKm = 0;
+        for (int i = 1; i < stops.size(); i++) {
+            tailHaversineKm += haversine(stops.get(i - 1)[0], stops.get(i - 1)[1], stops.get(i)[0], stops.get(i)[1]);
+        }
+
+        double tailSeconds = 0;
+        double tailMeters = 0;
+        boolean tailRouted = true;
+        OsrmService.TableResult legs = awaitUntil(legsFuture, deadline);
+        if (stops.size() >= 2) {
+            OsrmService.RouteResult tail = awaitUntil(tailFuture, deadline);
+            if (tail != null) {
+                tailSeconds = tail.totalDurationSeconds();
+                tailMeters = tail.totalDistanceMeters();
+            } else {
+                legs = null; // no shared tail: score everyone with estimates
+                tailRouted = false;
             }
+        }
+
+        List<Map<String, Object>> ranked = new ArrayList<>();
+        for (int li = 0; li < livreurs.size(); li++) {
+            LivreurPosition livreur = livreurs.get(li);
+            double livreurLat = livreur.latitude();
+            double livreurLon = livreur.longitude();
 
             double totalTimeMinutes = -1;
             double totalDistanceKm = -1;
 
-            // --- Try OSRM /route first ---
-            if (routeCoords.size() >= 2) {
-                OsrmService.RouteResult route = osrmService.getRoute(routeCoords);
-                if (route != null) {
-                    totalTimeMinutes = route.totalDurationSeconds() / 60.0;
-                    totalDistanceKm = route.totalDistanceMeters() / 1000.0;
-                }
+            // --- OSRM: first leg from the table + shared tail ---
+            int row = legRow[li];
+            boolean approximate = false;
+            if (stops.isEmpty()) {
+                totalTimeMinutes = 0;
+                totalDistanceKm = 0;
+            } else if (row >= 0 && legs != null && legs.durations() != null && legs.durations()[row][0] < Double.MAX_VALUE) {
+                double legMeters = legs.distances() != null && legs.distances()[row][0] < Double.MAX_VALUE
+                        ? legs.distances()[row][0] : 0;
+                totalTimeMinutes = (legs.durations()[row][0] + tailSeconds) / 60.0;
+                totalDistanceKm = (legMeters + tailMeters) / 1000.0;
+            } else if (estimated) {
+                // --- Estimated legs: screened out, or OSRM unavailable ---
+                RoadDistanceEstimator.Estimate leg = estimator.estimate(livreurLat, livreurLon, stops.get(0)[0], stops.get(0)[1]);
+                double[] tail = tailRouted ? new double[]{tailSeconds, tailMeters} : estimatePath(estimator, stops);
+                totalTimeMinutes = (leg.seconds() + tail[0]) / 60.0;
+                totalDistanceKm = (leg.meters() + tail[1]) / 1000.0;
+                approximate = true;
             }
 
             // --- Haversine fallback ---
             if (totalTimeMinutes < 0) {
-                double totalHaversineKm = 0;
-                double curLat = livreurLat, curLon = livreurLon;
-                for (double[] pt : collectionPoints) {
-                    totalHaversineKm += haversine(curLat, curLon, pt[0], pt[1]);
-                    curLat = pt[0];
-                    curLon = pt[1];
-                }
-                if (deliveryLat != null && deliveryLon != null) {
-                    totalHaversineKm += haversine(curLat, curLon, deliveryLat, deliveryLon);
-                }
+                approximate = true;
+                double totalHaversineKm = haversine(livreurLat, livreurLon, stops.get(0)[0], stops.get(0)[1])
+                        + tailHaversineKm;
                 totalDistanceKm = totalHaversineKm;
                 // Rough estimate: 30 km/h average in Tunisia urban areas
                 totalTimeMinutes = (totalHaversineKm / 30.0) * 60.0;
             }
 
-            // Count current active orders for this livreur (workload)
-            long activeOrderCount = orderRepository.findByLivreurIdAndStatusIn(
-                    livreur.getId(), List.of("en_cours", "processing", "shipped", "assigned")
-            ).size();
+            long activeOrderCount = activeOrders.getOrDefault(livreur.id(), 0L);
 
             // Score: travel time in minutes + workload penalty
             double score = totalTimeMinutes + (activeOrderCount * workloadPenaltyMinutes);
 
             Map<String, Object> entry = new LinkedHashMap<>();
-            entry.put("livreurId", livreur.getId());
-            entry.put("livreurNom", (livreur.getNom() + " " + livreur.getPrenom()).trim());
-            entry.put("livreurLatitude", livreur.getLatitude());
-            entry.put("livreurLongitude", livreur.getLongitude());
-            entry.put("dernierePositionAt", livreur.getDernierePositionAt() != null ? livreur.getDernierePositionAt().toString() : null);
+            entry.put("livreurId", livreur.id());
+            entry.put("livreurNom", (livreur.nom() + " " + livreur.prenom()).trim());
+            entry.put("livreurLatitude", livreur.latitude());
+            entry.put("livreurLongitude", livreur.longitude());
+            entry.put("dernierePositionAt", livreur.dernierePositionAt() != null ? livreur.dernierePositionAt().toString() : null);
             entry.put("distanceTotaleKm", Math.round(totalDistanceKm * 100.0) / 100.0);
             entry.put("tempsEstimeMinutes", Math.round(totalTimeMinutes * 10.0) / 10.0);
             entry.put("commandesActives", activeOrderCount);
             entry.put("score", Math.round(score * 10.0) / 10.0);
-            entry.put("telephone", livreur.getTelephone());
+            entry.put("approximatif", approximate);
+            entry.put("telephone", livreur.telephone());
 
             ranked.add(entry);
         }
@@ -903,4 +963,38 @@ public class MapDataServiceImpl implements MapDataService {
 
         return ranked;
     }
+
+    /**
+     * Livreurs worth an OSRM leg to the first stop: those whose optimistic score (lower-bound
+     * leg + workload) does not exceed the best pessimistic score. The others cannot be the
+     * recommended livreur; they are ranked on estimated legs. The shared tail is left out.
+     */
+    private boolean[] screenLivreurs(RoadDistanceEstimator estimator, List<LivreurPosition> livreurs,
+                                     double[] firstStop, Map<Long, Long> activeOrders) {
+        int n = livreurs.size();
+        double[] lower = new double[n];
+        double bestUpper = Double.MAX_VALUE;
+        for (int li = 0; li < n; li++) {
+            LivreurPosition livreur = livreurs.get(li);
+            RoadDistanceEstimator.Estimate leg = estimator.estimate(livreur.latitude(), livreur.longitude(), firstStop[0], firstStop[1]);
+            double workload = activeOrders.getOrDefault(livreur.id(), 0L) * workloadPenaltyMinutes;
+            lower[li] = leg.lowerSeconds() / 60.0 + workload;
+            bestUpper = Math.min(bestUpper, leg.upperSeconds() / 60.0 + workload);
+        }
+        boolean[] keep = new boolean[n];
+        for (int li = 0; li < n; li++) keep[li] = lower[li] <= bestUpper;
+        return keep;
+    }
+
+    /** Estimated [seconds, meters] along consecutive stops. */
+    private static double[] estimatePath(RoadDistanceEstimator estimator, List<double[]> stops) {
+        double seconds = 0;
+        double meters = 0;
+        for (int i = 1; i < stops.size(); i++) {
+            RoadDistanceEstimator.Estimate leg = estimator.estimate(stops.get(i - 1)[0], stops.get(i - 1)[1], stops.get(i)[0], stops.get(i)[1]);
+            seconds += leg.seconds();
+            meters += leg.meters();
+        }
+        return new double[]{seconds, meters};
+    }
 }
@@ -1,11 +1,21 @@
 package com.example.backend.service.impl;
 
 import com.example.backend.service.OsrmService;
+import com.example.backend.service.routing.BoundedCache;
+import com.example.backend.service.routing.CircuitBreaker;
+import com.example.backend.service.routing.EndpointPool;
+import com.example.backend.service.routing.PairDistanceStore;
+import com.example.backend.service.routing.Polyline;
+import com.example.backend.service.routing.RoadDistanceEstimator;
+import com.example.backend.service.routing.TableResponseParser;
+import com.example.backend.service.routing.TableResponseParser.FlatTable;
 import tools.jackson.databind.JsonNode;
 import tools.jackson.databind.ObjectMapper;
 import tools.jackson.databind.json.JsonMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.net.URI;
@@ -14,34 +24,113 @@ import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
  * OSRM integration service.
  * Calls OSRM HTTP API (/table, /trip, /route) and caches results.
+ * Requests are non-blocking ({@link HttpClient#sendAsync}); at most
+ * {@code osrm.max-concurrent-requests} are in flight, the others wait in a queue without
+ * holding a thread. The blocking methods simply join the async ones.
+ * <p>
+ * Resilience: a circuit breaker answers null at once while OSRM is down (callers fall back to
+ * haversine) and probes it with {@link #isAvailable()} after the open period; the request queue
+ * is bounded (bulkhead), overflow is answered null as well.
+ * <p>
+ * {@code osrm.url} may list several instances (comma-separated): each has its own breaker and
+ * in-flight permits, cacheable requests stick to one instance by consistent hashing and the
+ * others go to the least-loaded one (see {@link EndpointPool}).
+ * <p>
+ * Default engine ({@code osrm.engine=http}); {@link EmbeddedRoutingService} replaces it offline.
  */
 @Slf4j
 @Service
+@ConditionalOnProperty(name = "osrm.engine", havingValue = "http", matchIfMissing = true)
 public class OsrmServiceImpl implements OsrmService {
 
-    private final String osrmBaseUrl;
+    /** Cells of each fetched /table tile recorded by the road distance estimator */
+    private static final int CALIBRATION_SAMPLES_PER_TILE = 64;
+
+    private final EndpointPool endpoints;
     private final HttpClient httpClient;
-    private final ObjectMapper jsonMapper = JsonMapper.builder().build();
+    private final Duration requestTimeout;
 
-    /** Simple in-memory cache for table results — key = sorted coordinates hash */
-    private final ConcurrentHashMap<String, CacheEntry<TableResult>> tableCache = new ConcurrentHashMap<>();
-    private static final long CACHE_TTL_MS = 5 * 60 * 1000; // 5 minutes
+    /** In-flight request permits (per instance × instances); queued requests start when a permit is released */
+    private final int maxConcurrentRequests;
+    private final Semaphore permits;
+    private final Queue<Runnable> waiting = new ConcurrentLinkedQueue<>();
+    private final int maxQueuedRequests;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong bulkheadRejected = new AtomicLong();
 
-    private record CacheEntry<T>(T value, long timestamp) {
-        boolean isExpired() { return System.currentTimeMillis() - timestamp > CACHE_TTL_MS; }
-    }
+    /** Coordinates per /table request (osrm-routed --max-table-size); larger matrices are tiled */
+    private final int maxTableLocations;
+
+    /** Single-pair legs collected for up to batchWindowMillis, then sent as one /table request */
+    private final long batchWindowMillis;
+    private final int batchMaxPairs;
+    private final Object legBatchLock = new Object();
+    private List<PendingLeg> pendingLegs = new ArrayList<>();
+
+    private record PendingLeg(double[] from, double[] to, CompletableFuture<RouteResult> result) {}
+
+    /** Single-flight: identical requests already sent share the pending response */
+    private final ConcurrentHashMap<String, CompletableFuture<?>> inFlight = new ConcurrentHashMap<>();
+    private final ObjectMapper jsonMapper = JsonMapper.builder().build();
 
-    public OsrmServiceImpl(@Value("${osrm.url:http://localhost:5000}") String osrmBaseUrl) {
-        this.osrmBaseUrl = osrmBaseUrl;
+    /** /table results are kept per directed point pair, so any sub-matrix can be reassembled */
+    private final PairDistanceStore pairStore;
+    /** Bounded LRU caches with TTL — route weight = 1, trip weight = waypoints */
+    private final BoundedCache<String, RouteResult> routeCache;
+    private final BoundedCache<String, TripResult> tripCache;
+
+    /** Detour / speed factors learned from /table answers (a sample of each tile) */
+    private final RoadDistanceEstimator estimator;
+
+    public OsrmServiceImpl(@Value("${osrm.url:http://localhost:5000}") String osrmUrls,
+                           @Value("${osrm.cache.table-max-pairs:500000}") int tableMaxPairs,
+                           @Value("${osrm.cache.route-max-entries:10000}") long routeMaxEntries,
+                           @Value("${osrm.cache.ttl-seconds:300}") long ttlSeconds,
+                           @Value("${osrm.connect-timeout-millis:5000}") long connectTimeoutMillis,
+                           @Value("${osrm.request-timeout-millis:10000}") long requestTimeoutMillis,
+                           @Value("${osrm.max-concurrent-requests:16}") int maxConcurrentRequests,
+                           @Value("${osrm.max-queued-requests:256}") int maxQueuedRequests,
+                           @Value("${osrm.circuit.failure-threshold:5}") int circuitFailureThreshold,
+                           @Value("${osrm.circuit.open-millis:30000}") long circuitOpenMillis,
+                           @Value("${osrm.table.max-locations:100}") int maxTableLocations,
+                           @Value("${osrm.batch.window-millis:5}") long batchWindowMillis,
+                           @Value("${osrm.batch.max-pairs:100}") int batchMaxPairs,
+                           @Value("${osrm.estimator.cell-degrees:0.1}") double estimatorCellDegrees,
+                           @Value("${osrm.estimator.min-samples:20}") int estimatorMinSamples) {
+        List<String> urls = Arrays.stream(osrmUrls.split(","))
+                .map(String::trim)
+                .filter(url -> !url.isEmpty())
+                .map(url -> url.endsWith("/") ? url.substring(0, url.length() - 1) : url)
+                .toList();
+        this.endpoints = new EndpointPool(urls, circuitFailureThreshold, circuitOpenMillis);
         this.httpClient = HttpClient.newBuilder()
-                .connectTimeout(Duration.ofSeconds(5))
+                .connectTimeout(Duration.ofMillis(connectTimeoutMillis))
                 .build();
+        this.requestTimeout = Duration.ofMillis(requestTimeoutMillis);
+        this.maxConcurrentRequests = Math.max(1, maxConcurrentRequests) * endpoints.size();
+        this.permits = new Semaphore(this.maxConcurrentRequests);
+        this.maxQueuedRequests = maxQueuedRequests;
+        this.maxTableLocations = Math.max(2, maxTableLocations);
+        this.batchWindowMillis = batchWindowMillis;
+        this.batchMaxPairs = Math.max(1, batchMaxPairs);
+        long ttlMillis = ttlSeconds * 1000;
+        this.pairStore = new PairDistanceStore(tableMaxPairs, ttlMillis);
+        this.routeCache = new BoundedCache<>(routeMaxEntries, ttlMillis, r -> 1);
+        this.tripCache = new BoundedCache<>(routeMaxEntries, ttlMillis, t -> t.waypointOrder().size());
+        this.estimator = new RoadDistanceEstimator(estimatorCellDegrees, estimatorMinSamples);
     }
 
     // ========================================================================
@@ -55,54 +144,168 @@ public class OsrmServiceImpl implements OsrmService {
 
     @Override
     public TableResult getTable(List<double[]> coordinates, List<Integer> sourceIndices, List<Integer> destIndices) {
-        if (coordinates == null || coordinates.size() < 2) return null;
+        return getTableAsync(coordinates, sourceIndices, destIndices).join();
+    }
 
-        String cacheKey = tableCacheKey(coordinates, sourceIndices, destIndices);
-        CacheEntry<TableResult> cached = tableCache.get(cacheKey);
-        if (cached != null && !cached.isExpired()) {
-            return cached.value();
+    @Override
+    public CompletableFuture<TableResult> getTableAsync(List<double[]> coordinates, List<Integer> sourceIndices, List<Integer> destIndices) {
+        if (coordinates == null || coordinates.size() < 2) return CompletableFuture.completedFuture(null);
+
+        List<Integer> sources = sourceIndices != null && !sourceIndices.isEmpty() ? sourceIndices : allIndices(coordinates.size());
+        List<Integer> dests = destIndices != null && !destIndices.isEmpty() ? destIndices : allIndices(coordinates.size());
+        long[] sourceKeys = pointKeys(coordinates, sources);
+        long[] destKeys = pointKeys(coordinates, dests);
+
+        double[][] durations = new double[sources.size()][dests.size()];
+        double[][] distances = new double[sources.size()][dests.size()];
+        if (pairStore.lookup(sourceKeys, destKeys, durations, distances) == 0) {
+            return CompletableFuture.completedFuture(new TableResult(durations, distances));
         }
 
-        try {
-            // Build coordinate string: lon,lat;lon,lat;...
-            String coords = coordinates.stream()
-                    .map(c -> c[1] + "," + c[0]) // OSRM takes lon,lat
-                    .collect(Collectors.joining(";"));
-
-            StringBuilder url = new StringBuilder(osrmBaseUrl)
-                    .append("/table/v1/driving/")
-                    .append(coords)
-                    .append("?annotations=duration,distance");
-
-            if (sourceIndices != null && !sourceIndices.isEmpty()) {
-                url.append("&sources=").append(sourceIndices.stream()
-                        .map(String::valueOf).collect(Collectors.joining(";")));
+        // Ask OSRM only for the rows and columns that still have an unknown pair
+        List<Integer> missingRows = new ArrayList<>();
+        Set<Integer> missingColSet = new TreeSet<>();
+        for (int i = 0; i < sources.size(); i++) {
+            boolean rowMissing = false;
+            for (int j = 0; j < dests.size(); j++) {
+                if (Double.isNaN(durations[i][j])) {
+                    rowMissing = true;
+                    missingColSet.add(j);
+                }
             }
-            if (destIndices != null && !destIndices.isEmpty()) {
-                url.append("&destinations=").append(destIndices.stream()
-                        .map(String::valueOf).collect(Collectors.joining(";")));
+            if (rowMissing) missingRows.add(i);
+        }
+        List<Integer> missingCols = new ArrayList<>(missingColSet);
+
+        // One request when the missing block fits: sources and destinations share coordinates,
+        // so a square table of up to osrm.table.max-locations points is a single call
+        Set<Integer> blockCoordinates = new HashSet<>();
+        for (int i : missingRows) blockCoordinates.add(sources.get(i));
+        for (int j : missingCols) blockCoordinates.add(dests.get(j));
+        if (blockCoordinates.size() <= maxTableLocations) {
+            return fetchTile(coordinates, sources, dests, sourceKeys, destKeys, missingRows, missingCols, durations, distances)
+                    .thenApply(fetched -> fetched ? new TableResult(durations, distances) : null);
+        }
+
+        // Otherwise split into tiles of at most osrm.table.max-locations coordinates; tiles whose
+        // pairs are all known are skipped, the others are fetched in parallel into disjoint cells
+        int tileSide = Math.max(1, maxTableLocations / 2);
+        List<CompletableFuture<Boolean>> tiles = new ArrayList<>();
+        for (int r0 = 0; r0 < missingRows.size(); r0 += tileSide) {
+            List<Integer> rowBlock = missingRows.subList(r0, Math.min(r0 + tileSide, missingRows.size()));
+            for (int c0 = 0; c0 < missingCols.size(); c0 += tileSide) {
+                List<Integer> colBlock = missingCols.subList(c0, Math.min(c0 + tileSide, missingCols.size()));
+                List<Integer> tileRows = new ArrayList<>();
+                Set<Integer> tileCols = new TreeSet<>();
+                for (int i : rowBlock) {
+                    boolean rowMissing = false;
+                    for (int j : colBlock) {
+                        if (Double.isNaN(durations[i][j])) {
+                            rowMissing = true;
+                            tileCols.add(j);
+                        }
+                    }
+                    if (rowMissing) tileRows.add(i);
+                }
+                if (!tileRows.isEmpty()) {
+                    tiles.add(fetchTile(coordinates, sources, dests, sourceKeys, destKeys,
+                            tileRows, new ArrayList<>(tileCols), durations, distances));
+                }
             }
+        }
+        if (tiles.size() > 1) {
+            log.debug("OSRM /table {}x{} split into {} tiles", sources.size(), dests.size(), tiles.size());
+        }
 
-            String body = httpGet(url.toString());
-            if (body == null) return null;
+        return CompletableFuture.allOf(tiles.toArray(new CompletableFuture[0]))
+                .thenApply(done -> tiles.stream().allMatch(CompletableFuture::join)
+                        ? new TableResult(durations, distances)
+                        : null);
+    }
 
-            JsonNode root = jsonMapper.readTree(body);
-            if (!"Ok".equals(root.path("code").asText())) {
-                log.warn("OSRM /table returned code: {}", root.path("code").asText());
-                return null;
+    /**
+     * Fetch one tile (rows × cols of the requested matrix), record it in the pair store and
+     * copy it into the result matrices. Completes with false if OSRM gave no answer.
+     */
+    private CompletableFuture<Boolean> fetchTile(List<double[]> coordinates, List<Integer> sources, List<Integer> dests,
+                                                 long[] sourceKeys, long[] destKeys, List<Integer> rows, List<Integer> cols,
+                                                 double[][] durations, double[][] distances) {
+        List<double[]> fetchCoords = new ArrayList<>();
+        Map<Integer, Integer> fetchPosition = new HashMap<>(); // coordinate index → position in fetchCoords
+        List<Integer> fetchSources = new ArrayList<>();
+        List<Integer> fetchDests = new ArrayList<>();
+        for (int i : rows) {
+            fetchSources.add(fetchPosition.computeIfAbsent(sources.get(i), c -> addCoordinate(fetchCoords, coordinates.get(c))));
+        }
+        for (int j : cols) {
+            fetchDests.add(fetchPosition.computeIfAbsent(dests.get(j), c -> addCoordinate(fetchCoords, coordinates.get(c))));
+        }
+
+        long[] fetchedSourceKeys = new long[rows.size()];
+        for (int r = 0; r < rows.size(); r++) fetchedSourceKeys[r] = sourceKeys[rows.get(r)];
+        long[] fetchedDestKeys = new long[cols.size()];
+        for (int c = 0; c < cols.size(); c++) fetchedDestKeys[c] = destKeys[cols.get(c)];
+
+        return fetchTable(fetchCoords, fetchSources, fetchDests).thenApply(fetched -> {
+            if (fetched == null) return false;
+            pairStore.store(fetchedSourceKeys, fetchedDestKeys, fetched.durations(), fetched.distances());
+            calibrate(fetchCoords, fetchSources, fetchDests, fetched);
+            for (int r = 0; r < rows.size(); r++) {
+                int i = rows.get(r);
+                for (int c = 0; c < cols.size(); c++) {
+                    durations[i][cols.get(c)] = fetched.duration(r, c);
+                    distances[i][cols.get(c)] = fetched.distance(r, c);
+                }
             }
+            return true;
+        });
+    }
+
+    /** Feed about {@link #CALIBRATION_SAMPLES_PER_TILE} evenly spread cells of a tile to the estimator. */
+    private void calibrate(List<double[]> coordinates, List<Integer> sources, List<Integer> dests, FlatTable table) {
+        int cells = sources.size() * dests.size();
+        int stride = Math.max(1, cells / CALIBRATION_SAMPLES_PER_TILE);
+        for (int cell = 0; cell < cells; cell += stride) {
+            int r = cell / dests.size();
+            int c = cell % dests.size();
+            double[] from = coordinates.get(sources.get(r));
+            double[] to = coordinates.get(dests.get(c));
+            estimator.observe(from[0], from[1], to[0], to[1], table.duration(r, c), table.distance(r, c));
+        }
+    }
 
-            double[][] durations = parseMatrix(root.path("durations"));
-            double[][] distances = parseMatrix(root.path("distances"));
+    /** One OSRM /table HTTP call for sources × destinations, parsed straight into flat arrays. */
+    private CompletableFuture<FlatTable> fetchTable(List<double[]> coordinates, List<Integer> sourceIndices, List<Integer> destIndices) {
+        // Build coordinate string: lon,lat;lon,lat;...
+        String coords = coordinates.stream()
+                .map(c -> c[1] + "," + c[0]) // OSRM takes lon,lat
+                .collect(Collectors.joining(";"));
 
-            TableResult result = new TableResult(durations, distances);
-            tableCache.put(cacheKey, new CacheEntry<>(result, System.currentTimeMillis()));
-            return result;
+        StringBuilder url = new StringBuilder("/table/v1/driving/")
+                .append(coords)
+                .append("?annotations=duration,distance");
 
-        } catch (Exception e) {
-            log.warn("OSRM /table call failed: {}", e.getMessage());
-            return null;
-        }
+        url.append("&sources=").append(sourceIndices.stream()
+                .map(String::valueOf).collect(Collectors.joining(";")));
+        url.append("&destinations=").append(destIndices.stream()
+                .map(String::valueOf).collect(Collectors.joining(";")));
+
+        String path = url.toString();
+        return singleFlight(path, () -> httpGetAsync(path, path, HttpResponse.BodyHandlers.ofByteArray()).thenApply(body -> {
+            if (body == null) return null;
+            try {
+                FlatTable table = TableResponseParser.parse(body, sourceIndices.size(), destIndices.size());
+                if (!"Ok".equals(table.code())) {
+                    log.warn("OSRM /table returned code: {}", table.code());
+                    return null;
+                }
+                return table;
+
+            } catch (Exception e) {
+                log.warn("OSRM /table call failed: {}", e.getMessage());
+                return null;
+            }
+        }));
     }
 
     // ========================================================================
@@ -111,45 +314,58 @@ public class OsrmServiceImpl implements OsrmService {
 
     @Override
     public TripResult getTrip(List<double[]> coordinates, boolean roundtrip) {
-        if (coordinates == null || coordinates.size() < 2) return null;
-
-        try {
-            String coords = coordinates.stream()
-                    .map(c -> c[1] + "," + c[0])
-                    .collect(Collectors.joining(";"));
+        return getTripAsync(coordinates, roundtrip).join();
+    }
 
-            String url = osrmBaseUrl + "/trip/v1/driving/" + coords
-                    + "?roundtrip=" + roundtrip
-                    + "&source=first"
-                    + "&geometries=polyline"
-                    + "&overview=false";
+    @Override
+    public CompletableFuture<TripResult> getTripAsync(List<double[]> coordinates, boolean roundtrip) {
+        if (coordinates == null || coordinates.size() < 2) return CompletableFuture.completedFuture(null);
 
-            String body = httpGet(url);
-            if (body == null) return null;
+        String cacheKey = coordinatesKey("trip:" + roundtrip + ":", coordinates);
+        TripResult cached = tripCache.get(cacheKey);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
 
-            JsonNode root = jsonMapper.readTree(body);
-            if (!"Ok".equals(root.path("code").asText())) {
-                log.warn("OSRM /trip returned code: {}", root.path("code").asText());
-                return null;
-            }
+        String coords = coordinates.stream()
+                .map(c -> c[1] + "," + c[0])
+                .collect(Collectors.joining(";"));
 
-            JsonNode trip = root.path("trips").get(0);
-            double totalDuration = trip.path("duration").asDouble();
-            double totalDistance = trip.path("distance").asDouble();
+        String path = "/trip/v1/driving/" + coords
+                + "?roundtrip=" + roundtrip
+                + "&source=first"
+                + "&geometries=polyline"
+                + "&overview=false";
 
-            // Extract waypoint order
-            JsonNode waypoints = root.path("waypoints");
-            List<Integer> order = new ArrayList<>();
-            for (JsonNode wp : waypoints) {
-                order.add(wp.path("waypoint_index").asInt());
+        return singleFlight(cacheKey, () -> httpGetAsync(path, cacheKey).thenApply(body -> {
+            if (body == null) return null;
+            try {
+                JsonNode root = jsonMapper.readTree(body);
+                if (!"Ok".equals(root.path("code").asText())) {
+                    log.warn("OSRM /trip returned code: {}", root.path("code").asText());
+                    return null;
+                }
+
+                JsonNode trip = root.path("trips").get(0);
+                double totalDuration = trip.path("duration").asDouble();
+                double totalDistance = trip.path("distance").asDouble();
+
+                // Extract waypoint order
+                JsonNode waypoints = root.path("waypoints");
+                List<Integer> order = new ArrayList<>();
+                for (JsonNode wp : waypoints) {
+                    order.add(wp.path("waypoint_index").asInt());
+                }
+
+                TripResult result = new TripResult(order, totalDuration, totalDistance);
+                tripCache.put(cacheKey, result);
+                return result;
+
+            } catch (Exception e) {
+                log.warn("OSRM /trip call failed: {}", e.getMessage());
+                return null;
             }
-
-            return new TripResult(order, totalDuration, totalDistance);
-
-        } catch (Exception e) {
-            log.warn("OSRM /trip call failed: {}", e.getMessage());
-            return null;
-        }
+        }));
     }
 
     // ========================================================================
@@ -158,32 +374,153 @@ public class OsrmServiceImpl implements OsrmService {
 
     @Override
     public RouteResult getRoute(List<double[]> coordinates) {
-        if (coordinates == null || coordinates.size() < 2) return null;
+        return getRouteAsync(coordinates).join();
+    }
+
+    @Override
+    public CompletableFuture<RouteResult> getRouteAsync(List<double[]> coordinates) {
+        if (coordinates == null || coordinates.size() < 2) return CompletableFuture.completedFuture(null);
+
+        String cacheKey = coordinatesKey("route:", coordinates);
+        RouteResult cached = routeCache.get(cacheKey);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
 
-        try {
-            String coords = coordinates.stream()
-                    .map(c -> c[1] + "," + c[0])
-                    .collect(Collectors.joining(";"));
+        String coords = coordinates.stream()
+                .map(c -> c[1] + "," + c[0])
+                .collect(Collectors.joining(";"));
 
-            String url = osrmBaseUrl + "/route/v1/driving/" + coords
-                    + "?overview=false";
+        String path = "/route/v1/driving/" + coords
+                + "?overview=false";
 
-            String body = httpGet(url);
+        return singleFlight(cacheKey, () -> httpGetAsync(path, cacheKey).thenApply(body -> {
             if (body == null) return null;
+            try {
+                JsonNode root = jsonMapper.readTree(body);
+                if (!"Ok".equals(root.path("code").asText())) {
+                    log.warn("OSRM /route returned code: {}", root.path("code").asText());
+                    return null;
+                }
+
+                JsonNode route = root.path("routes").get(0);
+                RouteResult result = new RouteResult(route.path("duration").asDouble(), route.path("distance").asDouble());
+                routeCache.put(cacheKey, result);
+                return result;
+
+            } catch (Exception e) {
+                log.warn("OSRM /route call failed: {}", e.getMessage());
+                return null;
+            }
+        }));
+    }
+
+    @Override
+    public CompletableFuture<RouteGeometry> getRouteGeometryAsync(List<double[]> coordinates) {
+        if (coordinates == null || coordinates.size() < 2) return CompletableFuture.completedFuture(null);
+
+        String routeKey = coordinatesKey("route:", coordinates);
+        String cacheKey = coordinatesKey("geometry:", coordinates);
+        String coords = coordinates.stream()
+                .map(c -> c[1] + "," + c[0])
+                .collect(Collectors.joining(";"));
 
-            JsonNode root = jsonMapper.readTree(body);
-            if (!"Ok".equals(root.path("code").asText())) {
-                log.warn("OSRM /route returned code: {}", root.path("code").asText());
+        String path = "/route/v1/driving/" + coords
+                + "?overview=full&geometries=polyline6";
+
+        // Not cached here: callers keep the simplified result, the full geometry is large
+        return singleFlight(cacheKey, () -> httpGetAsync(path, cacheKey).thenApply(body -> {
+            if (body == null) return null;
+            try {
+                JsonNode root = jsonMapper.readTree(body);
+                if (!"Ok".equals(root.path("code").asText())) {
+                    log.warn("OSRM /route (geometry) returned code: {}", root.path("code").asText());
+                    return null;
+                }
+
+                JsonNode route = root.path("routes").get(0);
+                RouteResult totals = new RouteResult(route.path("duration").asDouble(), route.path("distance").asDouble());
+                routeCache.put(routeKey, totals);
+                return new RouteGeometry(Polyline.decode(route.path("geometry").asText(), 6),
+                        totals.totalDurationSeconds(), totals.totalDistanceMeters());
+
+            } catch (Exception e) {
+                log.warn("OSRM /route (geometry) call failed: {}", e.getMessage());
                 return null;
             }
+        }));
+    }
 
-            JsonNode route = root.path("routes").get(0);
-            return new RouteResult(route.path("duration").asDouble(), route.path("distance").asDouble());
+    // ========================================================================
+    //  Single legs — micro-batched into /table
+    // ========================================================================
+
+    @Override
+    public CompletableFuture<RouteResult> getLegAsync(double[] from, double[] to) {
+        if (from == null || to == null) return CompletableFuture.completedFuture(null);
+
+        PendingLeg leg = new PendingLeg(from, to, new CompletableFuture<>());
+        List<PendingLeg> batch = null;
+        boolean opensWindow;
+        synchronized (legBatchLock) {
+            pendingLegs.add(leg);
+            opensWindow = pendingLegs.size() == 1;
+            if (pendingLegs.size() >= batchMaxPairs || batchWindowMillis <= 0) {
+                batch = pendingLegs;
+                pendingLegs = new ArrayList<>();
+            }
+        }
+        if (batch != null) {
+            sendLegs(batch);
+        } else if (opensWindow) {
+            CompletableFuture.delayedExecutor(batchWindowMillis, TimeUnit.MILLISECONDS).execute(this::flushLegs);
+        }
+        return leg.result();
+    }
 
-        } catch (Exception e) {
-            log.warn("OSRM /route call failed: {}", e.getMessage());
-            return null;
+    /** Send whatever legs are pending (end of a batching window). */
+    private void flushLegs() {
+        List<PendingLeg> batch;
+        synchronized (legBatchLock) {
+            if (pendingLegs.isEmpty()) return;
+            batch = pendingLegs;
+            pendingLegs = new ArrayList<>();
         }
+        sendLegs(batch);
+    }
+
+    /**
+     * One /table request with the distinct origins as sources and the distinct destinations as
+     * destinations; each leg reads its own cell. Pairs already known come from the pair store.
+     */
+    private void sendLegs(List<PendingLeg> batch) {
+        List<double[]> coordinates = new ArrayList<>();
+        Map<Long, Integer> position = new HashMap<>(); // point key → index in coordinates
+        Map<Integer, Integer> sourceRow = new LinkedHashMap<>();
+        Map<Integer, Integer> destCol = new LinkedHashMap<>();
+        int[] rows = new int[batch.size()];
+        int[] cols = new int[batch.size()];
+        for (int k = 0; k < batch.size(); k++) {
+            PendingLeg leg = batch.get(k);
+            int from = position.computeIfAbsent(PairDistanceStore.pointKey(leg.from()), key -> addCoordinate(coordinates, leg.from()));
+            int to = position.computeIfAbsent(PairDistanceStore.pointKey(leg.to()), key -> addCoordinate(coordinates, leg.to()));
+            rows[k] = sourceRow.computeIfAbsent(from, i -> sourceRow.size());
+            cols[k] = destCol.computeIfAbsent(to, i -> destCol.size());
+        }
+        if (coordinates.size() < 2) {
+            batch.forEach(leg -> leg.result().complete(new RouteResult(0, 0)));
+            return;
+        }
+        log.debug("OSRM legs batched: {} pair(s) as a {}x{} /table", batch.size(), sourceRow.size(), destCol.size());
+
+        getTableAsync(coordinates, new ArrayList<>(sourceRow.keySet()), new ArrayList<>(destCol.keySet()))
+                .whenComplete((table, error) -> {
+                    for (int k = 0; k < batch.size(); k++) {
+                        double duration = table != null ? table.durations()[rows[k]][cols[k]] : Double.MAX_VALUE;
+                        batch.get(k).result().complete(duration == Double.MAX_VALUE ? null
+                                : new RouteResult(duration, table.distances()[rows[k]][cols[k]]));
+                    }
+                });
     }
 
     // ========================================================================
@@ -192,15 +529,68 @@ public class OsrmServiceImpl implements OsrmService {
 
     @Override
     public boolean isAvailable() {
-        try {
-            // Simple route call between two nearby points in Tunisia
-            String url = osrmBaseUrl + "/route/v1/driving/10.18,36.80;10.19,36.81?overview=false";
-            String body = httpGet(url);
-            if (body == null) return false;
-            JsonNode root = jsonMapper.readTree(body);
-            return "Ok".equals(root.path("code").asText());
-        } catch (Exception e) {
-            return false;
+        List<CompletableFuture<Boolean>> probes = endpoints.endpoints().stream().map(this::probe).toList();
+        return probes.stream().map(CompletableFuture::join).reduce(false, Boolean::logicalOr);
+    }
+
+    /** Health probe of one instance, outside the breaker and the bulkhead; its outcome updates the breaker. */
+    private CompletableFuture<Boolean> probe(EndpointPool.Endpoint endpoint) {
+        // Simple route call between two nearby points in Tunisia
+        String url = endpoint.url() + "/route/v1/driving/10.18,36.80;10.19,36.81?overview=false";
+        return send(url, HttpResponse.BodyHandlers.ofString()).handle((response, error) -> {
+            boolean ok = false;
+            if (error == null && response.statusCode() == 200) {
+                try {
+                    ok = "Ok".equals(jsonMapper.readTree(response.body()).path("code").asText());
+                } catch (Exception e) {
+                    ok = false;
+                }
+            }
+            CircuitBreaker breaker = endpoint.breaker();
+            if (ok) {
+                breaker.onSuccess();
+            } else {
+                breaker.onFailure();
+                log.warn("OSRM health probe of {} failed, circuit is {}", endpoint.url(), breaker.state());
+            }
+            return ok;
+        });
+    }
+
+    @Override
+    public RoutingHealth getHealth() {
+        return new RoutingHealth(endpoints.circuit(),
+                maxConcurrentRequests - permits.availablePermits(),
+                queued.get(),
+                bulkheadRejected.get(),
+                endpoints.stats());
+    }
+
+    @Override
+    public RoadDistanceEstimator getEstimator() {
+        return estimator;
+    }
+
+    // ========================================================================
+    //  Cache maintenance
+    // ========================================================================
+
+    @Override
+    public Map<String, BoundedCache.Stats> getCacheStats() {
+        Map<String, BoundedCache.Stats> stats = new LinkedHashMap<>();
+        stats.put("table", pairStore.stats());
+        stats.put("route", routeCache.stats());
+        stats.put("trip", tripCache.stats());
+        return stats;
+    }
+
+    /** Drop expired responses so idle entries do not hold memory until they are evicted by size. */
+    @Scheduled(fixedDelayString = "${osrm.cache.cleanup-millis:60000}")
+    public void evictExpired() {
+        pairStore.evictExpired();
+        int removed = routeCache.evictExpired() + tripCache.evictExpired();
+        if (removed > 0) {
+            log.debug("OSRM cache cleanup: {} expired entries removed", removed);
         }
     }
 
@@ -208,47 +598,132 @@ public class OsrmServiceImpl implements OsrmService {
     //  Internal helpers
     // ========================================================================
 
-    private String httpGet(String url) {
-        try {
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(url))
-                    .timeout(Duration.ofSeconds(10))
-                    .GET()
-                    .build();
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-            if (response.statusCode() == 200) {
-                return response.body();
+    /**
+     * Join the pending call with the same key, or start it. The key is removed once the call
+     * completes; later callers are then served by the caches.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> CompletableFuture<T> singleFlight(String key, Supplier<CompletableFuture<T>> call) {
+        CompletableFuture<T> shared = new CompletableFuture<>();
+        CompletableFuture<?> pending = inFlight.putIfAbsent(key, shared);
+        if (pending != null) {
+            return ((CompletableFuture<T>) pending).copy();
+        }
+        call.get().whenComplete((value, error) -> {
+            inFlight.remove(key, shared);
+            if (error != null) shared.completeExceptionally(error);
+            else shared.complete(value);
+        });
+        return shared.copy();
+    }
+
+    /**
+     * GET the path on an instance once a request permit is free. Completes with the body, or with
+     * null on HTTP error, timeout, connection failure, open circuits or full queue — never
+     * exceptionally. Requests with an affinity key stick to one instance (consistent hashing).
+     */
+    private CompletableFuture<String> httpGetAsync(String path, String affinityKey) {
+        return httpGetAsync(path, affinityKey, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private <T> CompletableFuture<T> httpGetAsync(String path, String affinityKey, HttpResponse.BodyHandler<T> bodyHandler) {
+        for (EndpointPool.Endpoint due : endpoints.probesDue()) probe(due);
+        if (!endpoints.allowRequest()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        if (queued.incrementAndGet() > maxQueuedRequests) {
+            queued.decrementAndGet();
+            bulkheadRejected.incrementAndGet();
+            log.warn("OSRM request queue full ({}), falling back", maxQueuedRequests);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+        waiting.add(() -> {
+            queued.decrementAndGet();
+            // Picked when the permit is granted, so the load counts are current
+            EndpointPool.Endpoint endpoint = endpoints.pick(affinityKey);
+            if (endpoint == null) {
+                permits.release();
+                result.complete(null);
+                return;
+            }
+            CircuitBreaker breaker = endpoint.breaker();
+            long started = endpoint.start();
+            try {
+                send(endpoint.url() + path, bodyHandler).whenComplete((response, error) -> {
+                    endpoint.finish(started, error == null && response.statusCode() == 200);
+                    permits.release();
+                    drainWaiting();
+                    if (error != null) {
+                        breaker.onFailure();
+                        log.warn("OSRM HTTP error from {}: {}", endpoint.url(), error.getMessage());
+                        result.complete(null);
+                    } else if (response.statusCode() != 200) {
+                        // 4xx is a bad query, not an engine outage
+                        if (response.statusCode() >= 500) breaker.onFailure();
+                        else breaker.onSuccess();
+                        log.warn("OSRM HTTP {} for {}{}", response.statusCode(), endpoint.url(), path);
+                        result.complete(null);
+                    } else {
+                        breaker.onSuccess();
+                        result.complete(response.body());
+                    }
+                });
+            } catch (RuntimeException e) {
+                endpoint.finish(started, false);
+                permits.release();
+                log.warn("OSRM HTTP error: {}", e.getMessage());
+                result.complete(null);
             }
-            log.warn("OSRM HTTP {} for {}", response.statusCode(), url);
-            return null;
-        } catch (Exception e) {
-            log.warn("OSRM HTTP error: {}", e.getMessage());
-            return null;
-        }
-    }
-
-    private double[][] parseMatrix(JsonNode matrixNode) {
-        if (matrixNode == null || matrixNode.isMissingNode()) return new double[0][0];
-        int rows = matrixNode.size();
-        if (rows == 0) return new double[0][0];
-        int cols = matrixNode.get(0).size();
-        double[][] matrix = new double[rows][cols];
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < cols; j++) {
-                JsonNode val = matrixNode.get(i).get(j);
-                matrix[i][j] = (val != null && !val.isNull()) ? val.asDouble() : Double.MAX_VALUE;
+        });
+        drainWaiting();
+        return result;
+    }
+
+    private <T> CompletableFuture<HttpResponse<T>> send(String url, HttpResponse.BodyHandler<T> bodyHandler) {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(url))
+                .timeout(requestTimeout)
+                .GET()
+                .build();
+        return httpClient.sendAsync(request, bodyHandler);
+    }
+
+    /** Start queued requests while permits are available. */
+    private void drainWaiting() {
+        while (!waiting.isEmpty() && permits.tryAcquire()) {
+            Runnable next = waiting.poll();
+            if (next == null) {
+                permits.release();
+                continue;
             }
+            next.run();
         }
-        return matrix;
     }
 
-    private String tableCacheKey(List<double[]> coords, List<Integer> sources, List<Integer> dests) {
-        StringBuilder sb = new StringBuilder("table:");
+    private static List<Integer> allIndices(int n) {
+        List<Integer> all = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) all.add(i);
+        return all;
+    }
+
+    private static long[] pointKeys(List<double[]> coordinates, List<Integer> indices) {
+        long[] keys = new long[indices.size()];
+        for (int i = 0; i < keys.length; i++) keys[i] = PairDistanceStore.pointKey(coordinates.get(indices.get(i)));
+        return keys;
+    }
+
+    private static int addCoordinate(List<double[]> coordinates, double[] coordinate) {
+        coordinates.add(coordinate);
+        return coordinates.size() - 1;
+    }
+
+    private String coordinatesKey(String prefix, List<double[]> coords) {
+        StringBuilder sb = new StringBuilder(prefix);
         for (double[] c : coords) {
             sb.append(String.format("%.6f,%.6f;", c[0], c[1]));
         }
-        if (sources != null) sb.append("|s=").append(sources);
-        if (dests != null) sb.append("|d=").append(dests);
         return sb.toString();
     }
 }
@@ -0,0 +1,195 @@
+package com.example.backend.service.impl;
+
+import com.example.backend.dto.CollectionPlanOptions;
+import com.example.backend.exception.ResourceNotFoundException;
+import com.example.backend.model.Order;
+import com.example.backend.repository.OrderRepository;
+import com.example.backend.service.MapDataService;
+import com.example.backend.service.OsrmService;
+import com.example.backend.service.RouteGeometryService;
+import com.example.backend.service.routing.BoundedCache;
+import com.example.backend.service.routing.Polyline;
+import com.example.backend.service.routing.RoadDistanceEstimator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.databind.ObjectMapper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Route geometry from one OSRM {@code overview=full} call per plan, simplified with
+ * Douglas-Peucker once per zoom level (tolerance = one screen pixel at that zoom).
+ * <p>
+ * Results are cached by order and stops, so a changed plan or delivery point is fetched again
+ * while repeated map views of the same plan never reach OSRM. Approximate results (engine
+ * without geometry, OSRM down) are not cached. An order without a saved plan is drawn along the
+ * planner's preview, whose depot stops are cached per order for the same TTL so repeated views
+ * do not run the planner again. The order is read in a short read-only transaction
+ * and OSRM is called after it, so no database connection is held while waiting for the engine.
+ */
+@Slf4j
+@Service
+public class RouteGeometryServiceImpl implements RouteGeometryService {
+
+    /** Decimal digits of the returned polylines: 1e-5° ≈ 1 m, what map clients decode by default. */
+    private static final int PRECISION = 5;
+
+    private final OrderRepository orderRepository;
+    private final MapDataService mapDataService;
+    private final OsrmService osrmService;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate readOnly;
+    private final int[] zoomLevels;
+    private final BoundedCache<String, OrderRoute> cache;
+    /** Preview depot stops of orders without a saved plan, keyed by order and société. */
+    private final BoundedCache<String, List<double[]>> previewStops;
+
+    public RouteGeometryServiceImpl(OrderRepository orderRepository, MapDataService mapDataService,
+                                    OsrmService osrmService, ObjectMapper objectMapper,
+                                    PlatformTransactionManager transactionManager,
+                                    @Value("${route-geometry.zoom-levels:10,13,16}") String zoomLevels,
+                                    @Value("${route-geometry.cache.max-chars:2000000}") long cacheMaxChars,
+                                    @Value("${route-geometry.cache.ttl-seconds:3600}") long cacheTtlSeconds,
+                                    @Value("${route-geometry.preview-cache.max-stops:100000}") long previewMaxStops) {
+        this.orderRepository = orderRepository;
+        this.mapDataService = mapDataService;
+        this.osrmService = osrmService;
+        this.objectMapper = objectMapper;
+        this.readOnly = new TransactionTemplate(transactionManager);
+        this.readOnly.setReadOnly(true);
+        this.zoomLevels = Arrays.stream(zoomLevels.split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .mapToInt(Integer::parseInt)
+                .sorted()
+                .toArray();
+        if (this.zoomLevels.length == 0) throw new IllegalArgumentException("route-geometry.zoom-levels is empty");
+        this.cache = new BoundedCache<>(cacheMaxChars, cacheTtlSeconds * 1000,
+                r -> r.levels().stream().mapToLong(l -> l.polyline().length()).sum());
+        // An empty preview still weighs 1 so orders the planner cannot serve are cached too
+        this.previewStops = new BoundedCache<>(previewMaxStops, cacheTtlSeconds * 1000, s -> s.size() + 1L);
+    }
+
+    @Override
+    public OrderRoute getOrderRoute(Long orderId, Long societeId, Integer zoom) {
+        Order order = readOnly.execute(status -> orderRepository.findById(orderId).orElse(null));
+        if (order == null) throw new ResourceNotFoundException("Order", "id", orderId);
+        if (order.getSocieteId() != null && !order.getSocieteId().equals(societeId)) {
+            throw new ResourceNotFoundException("Order", "id", orderId);
+        }
+
+        List<double[]> stops = stops(order, societeId);
+        if (stops.size() < 2) return null;
+
+        String key = orderId + ":" + Polyline.encode(stops, 6);
+        OrderRoute route = cache.get(key);
+        if (route == null) {
+            route = build(orderId, stops);
+            if (!route.approximatif()) cache.put(key, route);
+        }
+        return zoom == null ? route : atZoom(route, zoom);
+    }
+
+    @Scheduled(fixedDelayString = "${osrm.cache.cleanup-millis:60000}")
+    public void evictExpired() {
+        int removed = cache.evictExpired() + previewStops.evictExpired();
+        if (removed > 0) log.debug("Route geometry cache: {} expired entries removed", removed);
+    }
+
+    private OrderRoute build(Long orderId, List<double[]> stops) {
+        OsrmService.RouteGeometry geometry = osrmService.getRouteGeometryAsync(stops).join();
+        boolean approximatif = geometry == null || geometry.points().size() < 2;
+        List<double[]> points = approximatif ? stops : geometry.points();
+        double duration;
+        double distance;
+        if (approximatif) {
+            duration = 0;
+            distance = 0;
+            RoadDistanceEstimator estimator = osrmService.getEstimator();
+            for (int i = 0; i + 1 < stops.size(); i++) {
+                RoadDistanceEstimator.Estimate leg = estimator.estimate(stops.get(i)[0], stops.get(i)[1],
+                        stops.get(i + 1)[0], stops.get(i + 1)[1]);
+                duration += leg.seconds();
+                distance += leg.meters();
+            }
+        } else {
+            duration = geometry.totalDurationSeconds();
+            distance = geometry.totalDistanceMeters();
+        }
+
+        double latitude = stops.get(0)[0];
+        List<Level> levels = new ArrayList<>(zoomLevels.length);
+        for (int zoom : zoomLevels) {
+            double tolerance = Polyline.metersPerPixel(latitude, zoom);
+            List<double[]> simplified = Polyline.simplify(points, tolerance);
+            levels.add(new Level(zoom, Math.round(tolerance * 10) / 10.0, simplified.size(),
+                    Polyline.encode(simplified, PRECISION)));
+        }
+        return new OrderRoute(orderId, stops, duration, distance, approximatif, PRECISION, levels);
+    }
+
+    /** The level drawn at this zoom: the most detailed one whose minZoom is not above it. */
+    private static OrderRoute atZoom(OrderRoute route, int zoom) {
+        Level chosen = route.levels().get(0);
+        for (Level level : route.levels()) {
+            if (level.minZoom() <= zoom) chosen = level;
+        }
+        return new OrderRoute(route.orderId(), route.stops(), route.durationSeconds(), route.distanceMeters(),
+                route.approximatif(), route.precision(), List.of(chosen));
+    }
+
+    /**
+     * Collection depots in plan order, then the delivery point. An order without a stored plan is
+     * drawn along the plan the planner would propose, which is not saved on the order; its depot
+     * stops are cached, the delivery point is always read from the order.
+     */
+    @SuppressWarnings("unchecked")
+    private List<double[]> stops(Order order, Long societeId) {
+        List<Map<String, Object>> steps = new ArrayList<>();
+        if (order.getCollectionPlan() != null && !order.getCollectionPlan().isBlank()) {
+            try {
+                steps = objectMapper.readValue(order.getCollectionPlan(),
+                        objectMapper.getTypeFactory().constructCollectionType(List.class, Map.class));
+            } catch (Exception e) {
+                log.warn("Unreadable collection plan for order {}: {}", order.getId(), e.getMessage());
+            }
+        }
+
+        List<double[]> stops;
+        if (!steps.isEmpty()) {
+            stops = depotStops(steps);
+        } else {
+            String previewKey = order.getId() + ":" + societeId;
+            List<double[]> preview = previewStops.get(previewKey);
+            if (preview == null) {
+                preview = List.copyOf(depotStops((List<Map<String, Object>>) mapDataService
+                        .generateOptimalCollectionPlan(List.of(order.getId()), societeId, null, null,
+                                CollectionPlanOptions.builder().preview(true).build())
+                        .getOrDefault("mergedSteps", List.of())));
+                previewStops.put(previewKey, preview);
+            }
+            stops = new ArrayList<>(preview);
+        }
+        if (order.getLatitudeLivraison() != null && order.getLongitudeLivraison() != null) {
+            stops.add(new double[]{order.getLatitudeLivraison(), order.getLongitudeLivraison()});
+        }
+        return stops;
+    }
+
+    private static List<double[]> depotStops(List<Map<String, Object>> steps) {
+        List<double[]> stops = new ArrayList<>();
+        for (Map<String, Object> step : steps) {
+            Number lat = (Number) step.get("depotLatitude");
+            Number lon = (Number) step.get("depotLongitude");
+            if (lat != null && lon != null) stops.add(new double[]{lat.doubleValue(), lon.doubleValue()});
+        }
+        return stops;
+    }
+}
@@ -10,6 +10,7 @@ import com.example.backend.model.Societe;
 import com.example.backend.model.Utilisateur;
 import com.example.backend.repository.SocieteRepository;
 import com.example.backend.repository.UtilisateurRepository;
+import com.example.backend.service.LivreurPositionIndex;
 import com.example.backend.service.UtilisateurService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -29,6 +30,7 @@ public class UtilisateurServiceImpl implements UtilisateurService {
     private final UtilisateurMapper utilisateurMapper;
     private final PasswordEncoder passwordEncoder;
     private final SocieteRepository societeRepository;
+    private final LivreurPositionIndex livreurPositionIndex;
     
     @Override
     @Transactional(readOnly = true)
@@ -124,6 +126,7 @@ public class UtilisateurServiceImpl implements UtilisateurService {
         
         utilisateurMapper.updateEntity(utilisateur, utilisateurDTO);
         utilisateur = utilisateurRepository.save(utilisateur);
+        livreurPositionIndex.refresh(utilisateur);
         return utilisateurMapper.toDTO(utilisateur);
     }
     
@@ -159,6 +162,7 @@ public class UtilisateurServiceImpl implements UtilisateurService {
         utilisateur.setDernierePositionAt(LocalDateTime.now());
         
         utilisateur = utilisateurRepository.save(utilisateur);
+        livreurPositionIndex.refresh(utilisateur);
         return utilisateurMapper.toDTO(utilisateur);
     }
     
@@ -168,5 +172,6 @@ public class UtilisateurServiceImpl implements UtilisateurService {
             throw new ResourceNotFoundException("Utilisateur", "id", id);
         }
         utilisateurRepository.deleteById(id);
+        livreurPositionIndex.remove(id);
     }
 }
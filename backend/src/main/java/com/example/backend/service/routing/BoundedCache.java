@@ -0,0 +1,106 @@
+package com.example.backend.service.routing;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Size-aware LRU cache with a time-to-live, used for OSRM responses.
+ * <p>
+ * Every entry has a weight (e.g. matrix cells); the least recently used entries are evicted
+ * once the total weight exceeds {@code maxWeight}. Expired entries are dropped on access and by
+ * {@link #evictExpired()}, which callers run periodically. All operations are synchronized:
+ * the critical sections are a hash lookup and a list relink, far cheaper than the HTTP call.
+ */
+public final class BoundedCache<K, V> {
+
+    /** Counters since startup plus the current occupancy. */
+    public record Stats(long hits, long misses, long evictions, long expirations,
+                        int size, long weight, long maxWeight) {}
+
+    private record Entry<V>(V value, long weight, long expiresAt) {}
+
+    private final long maxWeight;
+    private final long ttlMillis;
+    private final ToLongFunction<V> weigher;
+    private final LongSupplier clock;
+
+    /** Access-ordered: iteration starts at the least recently used entry. */
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long weight;
+    private long hits, misses, evictions, expirations;
+
+    public BoundedCache(long maxWeight, long ttlMillis, ToLongFunction<V> weigher) {
+        this(maxWeight, ttlMillis, weigher, System::currentTimeMillis);
+    }
+
+    BoundedCache(long maxWeight, long ttlMillis, ToLongFunction<V> weigher, LongSupplier clock) {
+        this.maxWeight = maxWeight;
+        this.ttlMillis = ttlMillis;
+        this.weigher = weigher;
+        this.clock = clock;
+    }
+
+    /** Cached value, or null if absent or expired. */
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        if (entry.expiresAt() <= clock.getAsLong()) {
+            entries.remove(key);
+            weight -= entry.weight();
+            expirations++;
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value();
+    }
+
+    /** Store a value; an entry heavier than the whole cache is not kept. */
+    public synchronized void put(K key, V value) {
+        long w = Math.max(1, weigher.applyAsLong(value));
+        Entry<V> previous = entries.remove(key);
+        if (previous != null) weight -= previous.weight();
+        if (w > maxWeight) return;
+
+        entries.put(key, new Entry<>(value, w, clock.getAsLong() + ttlMillis));
+        weight += w;
+        Iterator<Entry<V>> lru = entries.values().iterator();
+        while (weight > maxWeight && lru.hasNext()) {
+            weight -= lru.next().weight();
+            lru.remove();
+            evictions++;
+        }
+    }
+
+    /** Drop every expired entry; returns how many were removed. */
+    public synchronized int evictExpired() {
+        long now = clock.getAsLong();
+        int removed = 0;
+        Iterator<Map.Entry<K, Entry<V>>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Entry<V> entry = it.next().getValue();
+            if (entry.expiresAt() <= now) {
+                weight -= entry.weight();
+                it.remove();
+                removed++;
+            }
+        }
+        expirations += removed;
+        return removed;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        weight = 0;
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(hits, misses, evictions, expirations, entries.size(), weight, maxWeight);
+    }
+}
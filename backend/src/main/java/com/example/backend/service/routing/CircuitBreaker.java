@@ -0,0 +1,77 @@
+package com.example.backend.service.routing;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Consecutive-failure circuit breaker for the routing engine.
+ * <p>
+ * CLOSED lets every request through. After {@code failureThreshold} failures in a row it turns
+ * OPEN: requests are refused at once so callers fall back to haversine instead of waiting for
+ * timeouts. Once {@code openMillis} have elapsed, one caller wins {@link #tryStartProbe()} and
+ * runs a health probe (HALF_OPEN); its outcome closes or re-opens the circuit. Thread-safe.
+ */
+public final class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    /** Current state and counters since startup. */
+    public record Stats(State state, int consecutiveFailures, long timesOpened, long shortCircuited) {}
+
+    private final int failureThreshold;
+    private final long openMillis;
+    private final LongSupplier clock;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private long timesOpened;
+    private long shortCircuited;
+
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        this(failureThreshold, openMillis, System::currentTimeMillis);
+    }
+
+    CircuitBreaker(int failureThreshold, long openMillis, LongSupplier clock) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openMillis = openMillis;
+        this.clock = clock;
+    }
+
+    /** True if a request may be sent; refused requests are counted as short-circuited. */
+    public synchronized boolean allowRequest() {
+        if (state == State.CLOSED) return true;
+        shortCircuited++;
+        return false;
+    }
+
+    /** True for the single caller that should probe the engine after the open period. */
+    public synchronized boolean tryStartProbe() {
+        if (state == State.OPEN && clock.getAsLong() - openedAt >= openMillis) {
+            state = State.HALF_OPEN;
+            return true;
+        }
+        return false;
+    }
+
+    public synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        state = State.CLOSED;
+    }
+
+    public synchronized void onFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            state = State.OPEN;
+            openedAt = clock.getAsLong();
+            timesOpened++;
+        }
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(state, consecutiveFailures, timesOpened, shortCircuited);
+    }
+}
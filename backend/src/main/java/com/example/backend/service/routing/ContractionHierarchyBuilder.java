@@ -0,0 +1,268 @@
+package com.example.backend.service.routing;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Preprocessing for {@link RoadGraph}: contracts a directed road graph into a hierarchy.
+ * <p>
+ * Nodes are contracted one by one in order of importance (edge difference plus contracted
+ * neighbours, re-evaluated lazily). Contracting {@code v} adds a shortcut {@code u → w} for each
+ * pair of remaining neighbours unless a witness path avoiding {@code v} is at least as fast;
+ * witness searches are bounded, so a few unnecessary shortcuts may be kept, never a wrong one.
+ * Durations drive the hierarchy; distances ride along the chosen paths. Not thread-safe.
+ */
+public final class ContractionHierarchyBuilder {
+
+    /** Nodes settled per witness search before giving up (and adding the shortcut). */
+    private static final int WITNESS_SETTLE_LIMIT = 500;
+
+    private int nodeCount;
+    private int[] latitudes = new int[16];
+    private int[] longitudes = new int[16];
+
+    private int edgeCount;
+    private int[] edgeFrom = new int[16];
+    private int[] edgeTo = new int[16];
+    private double[] edgeDuration = new double[16];
+    private double[] edgeDistance = new double[16];
+
+    // Contraction state
+    private int[][] outEdges;
+    private int[] outCount;
+    private int[][] inEdges;
+    private int[] inCount;
+    private boolean[] contracted;
+    private int[] contractedNeighbours;
+
+    // Witness search workspace
+    private double[] witnessDist;
+    private int[] touched;
+    private int touchedCount;
+    private final MinHeap heap = new MinHeap();
+
+    /** Add a node; returns its id (0, 1, 2, ...). */
+    public int addNode(double latitude, double longitude) {
+        if (nodeCount == latitudes.length) {
+            latitudes = Arrays.copyOf(latitudes, nodeCount * 2);
+            longitudes = Arrays.copyOf(longitudes, nodeCount * 2);
+        }
+        latitudes[nodeCount] = (int) Math.round(latitude * 1e6);
+        longitudes[nodeCount] = (int) Math.round(longitude * 1e6);
+        return nodeCount++;
+    }
+
+    /** Add a directed road segment; add both directions for two-way roads. */
+    public void addEdge(int from, int to, double durationSeconds, double distanceMeters) {
+        if (from < 0 || to < 0 || from >= nodeCount || to >= nodeCount) {
+            throw new IllegalArgumentException("Unknown node in edge " + from + " -> " + to);
+        }
+        if (from == to) return;
+        if (edgeCount == edgeFrom.length) {
+            int capacity = edgeCount * 2;
+            edgeFrom = Arrays.copyOf(edgeFrom, capacity);
+            edgeTo = Arrays.copyOf(edgeTo, capacity);
+            edgeDuration = Arrays.copyOf(edgeDuration, capacity);
+            edgeDistance = Arrays.copyOf(edgeDistance, capacity);
+        }
+        edgeFrom[edgeCount] = from;
+        edgeTo[edgeCount] = to;
+        edgeDuration[edgeCount] = durationSeconds;
+        edgeDistance[edgeCount] = distanceMeters;
+        edgeCount++;
+    }
+
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    /** Contract every node and lay the hierarchy out by rank. */
+    public RoadGraph build() {
+        int n = nodeCount;
+        outEdges = new int[n][];
+        inEdges = new int[n][];
+        outCount = new int[n];
+        inCount = new int[n];
+        for (int v = 0; v < n; v++) {
+            outEdges[v] = new int[4];
+            inEdges[v] = new int[4];
+        }
+        int originalEdges = edgeCount;
+        for (int e = 0; e < originalEdges; e++) link(e);
+        contracted = new boolean[n];
+        contractedNeighbours = new int[n];
+        witnessDist = new double[n];
+        Arrays.fill(witnessDist, Double.MAX_VALUE);
+        touched = new int[16];
+
+        MinHeap order = new MinHeap();
+        for (int v = 0; v < n; v++) order.push(priority(v), v);
+        int[] rank = new int[n];
+        int next = 0;
+        while (!order.isEmpty()) {
+            int v = order.peekNode();
+            order.pop();
+            if (contracted[v]) continue;
+            // Lazy update: contract only if still the least important node
+            double current = priority(v);
+            if (!order.isEmpty() && current > order.peekKey()) {
+                order.push(current, v);
+                continue;
+            }
+            contract(v, false);
+            contracted[v] = true;
+            rank[v] = next++;
+            forEachNeighbour(v, u -> contractedNeighbours[u]++);
+        }
+        return layOut(rank);
+    }
+
+    // ---- Contraction ----
+
+    private double priority(int v) {
+        int shortcuts = contract(v, true);
+        int removed = 0;
+        for (int k = 0; k < outCount[v]; k++) if (!contracted[edgeTo[outEdges[v][k]]]) removed++;
+        for (int k = 0; k < inCount[v]; k++) if (!contracted[edgeFrom[inEdges[v][k]]]) removed++;
+        return shortcuts - removed + contractedNeighbours[v];
+    }
+
+    /** Add (or, when simulating, count) the shortcuts needed to remove {@code v}. */
+    private int contract(int v, boolean simulate) {
+        int shortcuts = 0;
+        double maxOut = 0;
+        for (int k = 0; k < outCount[v]; k++) {
+            int e = outEdges[v][k];
+            if (!contracted[edgeTo[e]]) maxOut = Math.max(maxOut, edgeDuration[e]);
+        }
+        for (int i = 0; i < inCount[v]; i++) {
+            int in = inEdges[v][i];
+            int u = edgeFrom[in];
+            if (contracted[u]) continue;
+            witnessSearch(u, v, edgeDuration[in] + maxOut);
+            for (int k = 0; k < outCount[v]; k++) {
+                int out = outEdges[v][k];
+                int w = edgeTo[out];
+                if (w == u || contracted[w]) continue;
+                double viaV = edgeDuration[in] + edgeDuration[out];
+                if (witnessDist[w] <= viaV) continue;
+                shortcuts++;
+                if (!simulate) {
+                    addEdge(u, w, viaV, edgeDistance[in] + edgeDistance[out]);
+                    link(edgeCount - 1);
+                    witnessDist[w] = viaV; // a parallel v → w edge must not add a second shortcut
+                    touch(w);
+                }
+            }
+            resetWitness();
+        }
+        return shortcuts;
+    }
+
+    /** Bounded Dijkstra from {@code source} over uncontracted nodes, avoiding {@code skip}. */
+    private void witnessSearch(int source, int skip, double maxDuration) {
+        heap.clear();
+        witnessDist[source] = 0;
+        touch(source);
+        heap.push(0, source);
+        int settled = 0;
+        while (!heap.isEmpty() && settled < WITNESS_SETTLE_LIMIT) {
+            double d = heap.peekKey();
+            int x = heap.peekNode();
+            heap.pop();
+            if (d > witnessDist[x]) continue;
+            if (d > maxDuration) break;
+            settled++;
+            for (int k = 0; k < outCount[x]; k++) {
+                int e = outEdges[x][k];
+                int y = edgeTo[e];
+                if (y == skip || contracted[y]) continue;
+                double nd = d + edgeDuration[e];
+                if (nd < witnessDist[y]) {
+                    if (witnessDist[y] == Double.MAX_VALUE) touch(y);
+                    witnessDist[y] = nd;
+                    heap.push(nd, y);
+                }
+            }
+        }
+    }
+
+    private void touch(int node) {
+        if (touchedCount == touched.length) touched = Arrays.copyOf(touched, touchedCount * 2);
+        touched[touchedCount++] = node;
+    }
+
+    private void resetWitness() {
+        for (int i = 0; i < touchedCount; i++) witnessDist[touched[i]] = Double.MAX_VALUE;
+        touchedCount = 0;
+    }
+
+    private void link(int e) {
+        int from = edgeFrom[e];
+        int to = edgeTo[e];
+        if (outCount[from] == outEdges[from].length) outEdges[from] = Arrays.copyOf(outEdges[from], outCount[from] * 2);
+        outEdges[from][outCount[from]++] = e;
+        if (inCount[to] == inEdges[to].length) inEdges[to] = Arrays.copyOf(inEdges[to], inCount[to] * 2);
+        inEdges[to][inCount[to]++] = e;
+    }
+
+    private void forEachNeighbour(int v, IntConsumer action) {
+        for (int k = 0; k < outCount[v]; k++) action.accept(edgeTo[outEdges[v][k]]);
+        for (int k = 0; k < inCount[v]; k++) action.accept(edgeFrom[inEdges[v][k]]);
+    }
+
+    // ---- Layout ----
+
+    /** Renumber nodes by rank and split every edge into the upward forward or backward CSR. */
+    private RoadGraph layOut(int[] rank) {
+        int n = nodeCount;
+        int[] lat = new int[n];
+        int[] lon = new int[n];
+        for (int v = 0; v < n; v++) {
+            lat[rank[v]] = latitudes[v];
+            lon[rank[v]] = longitudes[v];
+        }
+
+        // An edge u → w goes up in the forward graph if rank(u) < rank(w), else up in the backward graph at w
+        int[] forwardOffsets = new int[n + 1];
+        int[] backwardOffsets = new int[n + 1];
+        for (int e = 0; e < edgeCount; e++) {
+            int ru = rank[edgeFrom[e]];
+            int rw = rank[edgeTo[e]];
+            if (ru < rw) forwardOffsets[ru + 1]++;
+            else backwardOffsets[rw + 1]++;
+        }
+        for (int v = 0; v < n; v++) {
+            forwardOffsets[v + 1] += forwardOffsets[v];
+            backwardOffsets[v + 1] += backwardOffsets[v];
+        }
+        int forwardEdges = forwardOffsets[n];
+        int backwardEdges = backwardOffsets[n];
+        int[] forwardTargets = new int[forwardEdges];
+        float[] forwardDurations = new float[forwardEdges];
+        float[] forwardDistances = new float[forwardEdges];
+        int[] backwardTargets = new int[backwardEdges];
+        float[] backwardDurations = new float[backwardEdges];
+        float[] backwardDistances = new float[backwardEdges];
+        int[] forwardFill = Arrays.copyOf(forwardOffsets, n);
+        int[] backwardFill = Arrays.copyOf(backwardOffsets, n);
+        for (int e = 0; e < edgeCount; e++) {
+            int ru = rank[edgeFrom[e]];
+            int rw = rank[edgeTo[e]];
+            if (ru < rw) {
+                int slot = forwardFill[ru]++;
+                forwardTargets[slot] = rw;
+                forwardDurations[slot] = (float) edgeDuration[e];
+                forwardDistances[slot] = (float) edgeDistance[e];
+            } else {
+                int slot = backwardFill[rw]++;
+                backwardTargets[slot] = ru;
+                backwardDurations[slot] = (float) edgeDuration[e];
+                backwardDistances[slot] = (float) edgeDistance[e];
+            }
+        }
+        return RoadGraph.of(lat, lon,
+                forwardOffsets, forwardTargets, forwardDurations, forwardDistances,
+                backwardOffsets, backwardTargets, backwardDurations, backwardDistances);
+    }
+}
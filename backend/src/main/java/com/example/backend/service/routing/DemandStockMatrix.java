@@ -0,0 +1,226 @@
+package com.example.backend.service.routing;
+
+import java.util.Arrays;
+
+/**
+ * Dense demand/stock representation for one collection-planning request.
+ * <p>
+ * Products and depots are mapped to dense indices; stock is an {@code int[depot][product]}
+ * matrix and each order line is kept as (order, product, quantity) in parallel primitive arrays.
+ * Coverage checks, greedy scoring and allocation all run on these arrays.
+ */
+public final class DemandStockMatrix {
+
+    private final LongIndex products;
+    private final LongIndex depots;
+    private final String[] productNames;
+    private final int[] demand;
+    private final int[][] stock;
+
+    private final long[] lineOrderIds;
+    private final int[] lineProducts;
+    private final int[] lineQuantities;
+
+    private DemandStockMatrix(LongIndex products, LongIndex depots, String[] productNames, int[] demand,
+                              int[][] stock, long[] lineOrderIds, int[] lineProducts, int[] lineQuantities) {
+        this.products = products;
+        this.depots = depots;
+        this.productNames = productNames;
+        this.demand = demand;
+        this.stock = stock;
+        this.lineOrderIds = lineOrderIds;
+        this.lineProducts = lineProducts;
+        this.lineQuantities = lineQuantities;
+    }
+
+    public int productCount() {
+        return products.size();
+    }
+
+    public int depotCount() {
+        return depots.size();
+    }
+
+    public int lineCount() {
+        return lineOrderIds.length;
+    }
+
+    public long productId(int product) {
+        return products.idAt(product);
+    }
+
+    public String productName(int product) {
+        return productNames[product];
+    }
+
+    public long depotId(int depot) {
+        return depots.idAt(depot);
+    }
+
+    /** Index of a depot id, or -1 when the depot holds none of the demanded products. */
+    public int depotIndex(long depotId) {
+        return depots.indexOf(depotId);
+    }
+
+    /** Ids of the products that appear in the demand, in index order. */
+    public long[] productIds() {
+        return products.ids();
+    }
+
+    /** Total quantity needed per product (shared, do not modify). */
+    public int[] demand() {
+        return demand;
+    }
+
+    /** Available quantity per [depot][product] (shared, do not modify). */
+    public int[][] stock() {
+        return stock;
+    }
+
+    public long lineOrderId(int line) {
+        return lineOrderIds[line];
+    }
+
+    public int lineProduct(int line) {
+        return lineProducts[line];
+    }
+
+    /**
+     * True when the given depots together hold at least the demanded quantity of every product.
+     */
+    public boolean covers(int[] depotIndices) {
+        for (int p = 0; p < demand.length; p++) {
+            int available = 0;
+            for (int d : depotIndices) available += stock[d][p];
+            if (available < demand[p]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Allocate every order line to the chosen depots, preferring the depot with the most
+     * remaining stock of the product to minimise splits.
+     *
+     * @return quantities taken, flattened as {@code [line * chosen.length + position]}
+     */
+    public int[] allocate(int[] chosen) {
+        int k = chosen.length;
+        int[][] remaining = new int[k][];
+        for (int c = 0; c < k; c++) remaining[c] = stock[chosen[c]].clone();
+
+        int[] taken = new int[lineOrderIds.length * k];
+        int[] order = new int[k];
+        for (int line = 0; line < lineOrderIds.length; line++) {
+            int p = lineProducts[line];
+            // Insertion sort of chosen positions by remaining stock (descending, stable)
+            for (int c = 0; c < k; c++) {
+                int j = c;
+                while (j > 0 && remaining[order[j - 1]][p] < remaining[c][p]) {
+                    order[j] = order[j - 1];
+                    j--;
+                }
+                order[j] = c;
+            }
+            int needed = lineQuantities[line];
+            for (int i = 0; i < k && needed > 0; i++) {
+                int c = order[i];
+                int avail = remaining[c][p];
+                if (avail <= 0) continue;
+                int take = Math.min(needed, avail);
+                remaining[c][p] = avail - take;
+                needed -= take;
+                taken[line * k + c] = take;
+            }
+        }
+        return taken;
+    }
+
+    /**
+     * Collects order lines first, then stock rows; stock for products that are not demanded is ignored.
+     */
+    public static final class Builder {
+        private final LongIndex products;
+        private final LongIndex depots;
+        private String[] productNames;
+        private int[] demand;
+
+        private long[] lineOrderIds;
+        private int[] lineProducts;
+        private int[] lineQuantities;
+        private int lines;
+
+        private int[] stockDepots;
+        private int[] stockProducts;
+        private int[] stockQuantities;
+        private int stocks;
+
+        public Builder(int expectedLines) {
+            int n = Math.max(4, expectedLines);
+            products = new LongIndex(n);
+            depots = new LongIndex(n);
+            productNames = new String[n];
+            demand = new int[n];
+            lineOrderIds = new long[n];
+            lineProducts = new int[n];
+            lineQuantities = new int[n];
+            stockDepots = new int[n];
+            stockProducts = new int[n];
+            stockQuantities = new int[n];
+        }
+
+        public Builder addDemand(long orderId, long productId, String productName, int quantity) {
+            int p = products.add(productId);
+            if (p == productNames.length) {
+                productNames = Arrays.copyOf(productNames, p * 2);
+                demand = Arrays.copyOf(demand, p * 2);
+            }
+            if (productNames[p] == null) productNames[p] = productName;
+            demand[p] += quantity;
+
+            if (lines == lineOrderIds.length) {
+                lineOrderIds = Arrays.copyOf(lineOrderIds, lines * 2);
+                lineProducts = Arrays.copyOf(lineProducts, lines * 2);
+                lineQuantities = Arrays.copyOf(lineQuantities, lines * 2);
+            }
+            lineOrderIds[lines] = orderId;
+            lineProducts[lines] = p;
+            lineQuantities[lines] = quantity;
+            lines++;
+            return this;
+        }
+
+        /** Ids of the demanded products, for the stock query. */
+        public long[] productIds() {
+            return products.ids();
+        }
+
+        public Builder addStock(long depotId, long productId, int quantity) {
+            int p = products.indexOf(productId);
+            if (p < 0 || quantity <= 0) return this;
+            int d = depots.add(depotId);
+            if (stocks == stockDepots.length) {
+                stockDepots = Arrays.copyOf(stockDepots, stocks * 2);
+                stockProducts = Arrays.copyOf(stockProducts, stocks * 2);
+                stockQuantities = Arrays.copyOf(stockQuantities, stocks * 2);
+            }
+            stockDepots[stocks] = d;
+            stockProducts[stocks] = p;
+            stockQuantities[stocks] = quantity;
+            stocks++;
+            return this;
+        }
+
+        public DemandStockMatrix build() {
+            int numProducts = products.size();
+            int[][] stock = new int[depots.size()][numProducts];
+            for (int i = 0; i < stocks; i++) {
+                // Last row wins for duplicate (depot, product) rows
+                stock[stockDepots[i]][stockProducts[i]] = stockQuantities[i];
+            }
+            return new DemandStockMatrix(products, depots,
+                    Arrays.copyOf(productNames, numProducts), Arrays.copyOf(demand, numProducts), stock,
+                    Arrays.copyOf(lineOrderIds, lines), Arrays.copyOf(lineProducts, lines),
+                    Arrays.copyOf(lineQuantities, lines));
+        }
+    }
+}
@@ -0,0 +1,761 @@
+package com.example.backend.service.routing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Exact solver for the depot set-cover problem behind collection planning.
+ * <p>
+ * The objective is lexicographic: minimum number of depots first, then the cheapest
+ * route among the covers of that size. Coverage is quantity-aware: a set of depots
+ * covers the demand when, for every product, the summed stock reaches the quantity needed.
+ * <p>
+ * Search is a branch-and-bound over products: each node branches on the uncovered product
+ * with the fewest remaining suppliers, and suppliers already tried are excluded from the
+ * following siblings so that every depot set is visited at most once. Nodes are pruned with
+ * a bitset lower bound on the number of depots still needed and a quantity upper bound
+ * (the best {@code r} remaining suppliers of each product must reach its residual demand).
+ * <p>
+ * With a {@link ForkJoinPool} the search is split by first chosen depot: the root branches
+ * are handed out to at most {@code parallelism} workers, which share the best-so-far bound
+ * and stop early once the minimum-cardinality cover is proven optimal.
+ * <p>
+ * With a time budget the solver is anytime: the greedy cover is first improved by local
+ * search (drop and swap moves), then the exact search runs until the deadline. The best
+ * cover found is returned together with lower bounds, so callers can report the gap.
+ */
+public final class DepotCoverSolver {
+
+    /** Default cap on explored nodes; beyond it the best cover found so far is returned. */
+    public static final long DEFAULT_NODE_LIMIT = 2_000_000L;
+
+    /** Cap on memoized route costs of complete covers; beyond it costs are computed unmemoized. */
+    private static final int COST_MEMO_LIMIT = 100_000;
+
+    /**
+     * Route cost of a set of depots (indices into the stock matrix).
+     * Must be thread-safe when the solver runs in parallel.
+     */
+    @FunctionalInterface
+    public interface RouteCost {
+        double cost(int[] depots);
+
+        /**
+         * True when, among sets of at most {@code maxDepots} depots, adding a depot can never make
+         * the route cheaper (e.g. an exact path cost on a metric matrix). Enables pruning on
+         * partial depot sets and the route lower bound.
+         */
+        default boolean monotone(int maxDepots) {
+            return false;
+        }
+    }
+
+    /**
+     * @param depots          chosen depot indices (ascending)
+     * @param cost            route cost of the chosen set (its size when no route cost was given)
+     * @param optimal         true when the search completed; false on node-limit or time-budget abort,
+     *                        or uncoverable demand
+     * @param nodes           number of explored search nodes
+     * @param depotLowerBound proven lower bound on the number of depots of any cover
+     * @param costLowerBound  proven lower bound on the route cost at that size (0 when unknown)
+     */
+    public record Result(int[] depots, double cost, boolean optimal, long nodes,
+                         int depotLowerBound, double costLowerBound) {
+
+        /**
+         * Relative optimality gap estimate in [0, 1]: on the number of depots while it is not
+         * proven minimal, otherwise on the route cost. 0 when the result is optimal.
+         */
+        public double gap() {
+            if (optimal || depots.length == 0) return 0;
+            if (depots.length > depotLowerBound) {
+                return (double) (depots.length - depotLowerBound) / depots.length;
+            }
+            return cost > 0 ? Math.max(0, (cost - costLowerBound) / cost) : 0;
+        }
+    }
+
+    private final int[] demand;
+    private final int[][] stock;
+    private final RouteCost routeCost;
+    private final long nodeLimit;
+
+    private final int numDepots;
+    private final int numProducts;
+    private final int words;
+    /** Bitset of demanded products each depot holds stock for. */
+    private final long[][] supplies;
+    /** Depots holding stock, per product. */
+    private final int[][] suppliers;
+    /** Largest supplier count of any product: the size of a worker's per-depth branch buffer. */
+    private final int maxSuppliers;
+
+    private ForkJoinPool pool;
+    private int parallelism = 1;
+    private long maxMillis;
+    private long deadline;
+
+    // ---- state shared by the workers of one solve() ----
+    private final AtomicLong nodes = new AtomicLong();
+    private volatile boolean aborted;
+    /** Set once the incumbent is proven optimal: every worker stops. */
+    private volatile boolean proven;
+    /** Best route cost so far, as double bits, read lock-free by the workers. */
+    private final AtomicLong bestCostBits = new AtomicLong(Double.doubleToLongBits(Double.MAX_VALUE));
+    private int[] bestDepots;
+    private double lowerBound = Double.NEGATIVE_INFINITY;
+    /** Route cost of each depot alone; set only for monotone costs, where it bounds every superset. */
+    private double[] singleCost;
+    private final Map<MaskKey, Double> costMemo = new ConcurrentHashMap<>();
+
+    /**
+     * @param demand    quantity needed per product
+     * @param stock     available quantity per [depot][product]
+     * @param routeCost route cost of a depot set, or null when all sets of equal size are equivalent
+     */
+    public DepotCoverSolver(int[] demand, int[][] stock, RouteCost routeCost) {
+        this(demand, stock, routeCost, DEFAULT_NODE_LIMIT);
+    }
+
+    public DepotCoverSolver(int[] demand, int[][] stock, RouteCost routeCost, long nodeLimit) {
+        this.demand = demand;
+        this.stock = stock;
+        this.routeCost = routeCost;
+        this.nodeLimit = nodeLimit;
+        this.numDepots = stock.length;
+        this.numProducts = demand.length;
+        this.words = (numProducts + 63) >>> 6;
+
+        this.supplies = new long[numDepots][words];
+        List<List<Integer>> byProduct = new ArrayList<>();
+        for (int p = 0; p < numProducts; p++) byProduct.add(new ArrayList<>());
+        for (int d = 0; d < numDepots; d++) {
+            for (int p = 0; p < numProducts; p++) {
+                if (demand[p] > 0 && stock[d][p] > 0) {
+                    supplies[d][p >>> 6] |= 1L << p;
+                    byProduct.get(p).add(d);
+                }
+            }
+        }
+        this.suppliers = new int[numProducts][];
+        int widest = 0;
+        for (int p = 0; p < numProducts; p++) {
+            suppliers[p] = byProduct.get(p).stream().mapToInt(Integer::intValue).toArray();
+            widest = Math.max(widest, suppliers[p].length);
+        }
+        this.maxSuppliers = widest;
+    }
+
+    /**
+     * Run the search on {@code pool} with at most {@code parallelism} concurrent workers.
+     * A null pool or a parallelism of 1 keeps the search on the calling thread.
+     */
+    public DepotCoverSolver parallel(ForkJoinPool pool, int parallelism) {
+        this.pool = pool;
+        this.parallelism = Math.max(1, parallelism);
+        return this;
+    }
+
+    /**
+     * Anytime mode: stop the search after {@code maxMillis} and return the best cover found.
+     * 0 or less means no time budget.
+     */
+    public DepotCoverSolver timeLimit(long maxMillis) {
+        this.maxMillis = Math.max(0, maxMillis);
+        return this;
+    }
+
+    public Result solve() {
+        if (maxMillis > 0) deadline = System.nanoTime() + maxMillis * 1_000_000L;
+        long[] rootUncovered = new long[words];
+        for (int p = 0; p < numProducts; p++) {
+            if (demand[p] > 0) rootUncovered[p >>> 6] |= 1L << p;
+        }
+        if (isEmpty(rootUncovered)) {
+            return new Result(new int[0], 0, true, 0, 0, 0);
+        }
+
+        // Uncoverable demand: nothing exact to find, return the greedy (partial) cover
+        for (int p = 0; p < numProducts; p++) {
+            if (demand[p] <= 0) continue;
+            long total = 0;
+            for (int d : suppliers[p]) total += stock[d][p];
+            if (total < demand[p]) {
+                int[] partial = greedyCover();
+                return new Result(partial, costOf(partial), false, 0, partial.length, 0);
+            }
+        }
+
+        // Anytime mode: improve the greedy cover by local search before the exact search
+        int[] incumbent = greedyCover();
+        if (deadline != 0) {
+            incumbent = localSearch(incumbent);
+            if (expired()) aborted = true;
+        }
+
+        // Phase 1: minimum cardinality. No dominance reduction: coverage is quantity-aware, so a
+        // depot whose stock is below another's can still be needed alongside it
+        int upper = incumbent.length;
+        boolean[] all = new boolean[numDepots];
+        Arrays.fill(all, true);
+        int lower = Math.max(1, rootLowerBound(rootUncovered, all));
+        int provenSize = lower;
+
+        int[] firstCover = incumbent;
+        for (int size = lower; size < upper && !aborted; size++) {
+            int[] found = firstCover(size, all, rootUncovered);
+            if (found != null) {
+                firstCover = found;
+                provenSize = size;
+                break;
+            }
+            if (!aborted) provenSize = size + 1;
+        }
+        int minSize = firstCover.length;
+
+        // Phase 2: cheapest route among covers of minimum size
+        bestDepots = firstCover;
+        bestCostBits.set(Double.doubleToLongBits(costOf(firstCover)));
+        if (routeCost != null && !aborted) {
+            if (routeCost.monotone(minSize)) {
+                singleCost = new double[numDepots];
+                for (int d = 0; d < numDepots; d++) singleCost[d] = routeCost.cost(new int[]{d});
+                lowerBound = routeLowerBound();
+                proven = bestCost() <= lowerBound;
+            }
+            if (!proven) {
+                runWorkers(minSize, all, false, rootUncovered, null);
+            }
+        }
+        double costBound = routeCost == null ? minSize : Math.max(0, lowerBound);
+        return new Result(bestDepots, bestCost(), !aborted, nodes.get(), provenSize, costBound);
+    }
+
+    // ========================================================================
+    //  Root split and workers
+    // ========================================================================
+
+    /** First cover of exactly {@code size} depots in sequential branch order, or null. */
+    private int[] firstCover(int size, boolean[] candidates, long[] rootUncovered) {
+        FirstCover winner = new FirstCover();
+        runWorkers(size, candidates, true, rootUncovered, winner);
+        return winner.cover;
+    }
+
+    /**
+     * Split the search by first chosen depot (suppliers of the most constrained product)
+     * and let up to {@code parallelism} workers pull root branches in order.
+     */
+    private void runWorkers(int size, boolean[] candidates, boolean firstOnly, long[] rootUncovered, FirstCover winner) {
+        Worker root = new Worker(size, candidates, firstOnly, rootUncovered, winner);
+        int[] branches = root.rootBranches();
+        if (branches == null || branches.length == 0) return;
+
+        AtomicInteger next = new AtomicInteger();
+        Runnable body = () -> {
+            Worker worker = new Worker(size, candidates, firstOnly, rootUncovered, winner);
+            int i;
+            while ((i = next.getAndIncrement()) < branches.length) {
+                if (worker.runBranch(branches, i)) break;
+            }
+            worker.flushNodes();
+        };
+
+        int workers = Math.min(parallelism, branches.length);
+        if (pool == null || workers <= 1) {
+            body.run();
+            return;
+        }
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(workers);
+        for (int w = 0; w < workers; w++) tasks.add(pool.submit(body));
+        for (ForkJoinTask<?> task : tasks) task.join();
+    }
+
+    /** Lowest-index root branch that found a cover wins, so the result matches a sequential run. */
+    private static final class FirstCover {
+        private int branch = Integer.MAX_VALUE;
+        private int[] cover;
+
+        synchronized void offer(int branchIndex, int[] found) {
+            if (branchIndex < branch) {
+                branch = branchIndex;
+                cover = found;
+            }
+        }
+
+        synchronized int branch() {
+            return branch;
+        }
+    }
+
+    /** Depth-first search state owned by one thread. */
+    private final class Worker {
+        private final int k;
+        private final boolean[] candidates;
+        private final boolean firstOnly;
+        private final FirstCover winner;
+        private final boolean[] allowed;
+        private final boolean[] active;
+        private final int[] chosen;
+        private final int[][] residualStack;
+        private final long[][] uncoveredStack;
+        private final long[][] maskStack;
+        /** Branch depots per depth, sorted in place so the DFS allocates nothing per node. */
+        private final int[][] branchStack;
+        /** Scratch for the quantity bound: the best remaining stocks of one product. */
+        private final int[] top;
+        /** Dearest chosen depot alone, per depth: a route lower bound of every cover below (monotone costs). */
+        private final double[] chosenBound;
+        private final boolean pruneByRoute;
+        private int branch;
+        private long localNodes;
+
+        Worker(int k, boolean[] candidates, boolean firstOnly, long[] rootUncovered, FirstCover winner) {
+            this.k = k;
+            this.candidates = candidates;
+            this.firstOnly = firstOnly;
+            this.winner = winner;
+            this.allowed = candidates.clone();
+            this.active = new boolean[numDepots];
+            this.chosen = new int[k];
+            this.residualStack = new int[k + 1][numProducts];
+            this.uncoveredStack = new long[k + 1][words];
+            this.maskStack = new long[k + 1][(numDepots + 63) >>> 6];
+            System.arraycopy(demand, 0, residualStack[0], 0, numProducts);
+            System.arraycopy(rootUncovered, 0, uncoveredStack[0], 0, words);
+            this.branchStack = new int[k + 1][maxSuppliers];
+            this.top = new int[k];
+            this.chosenBound = new double[k + 1];
+            this.pruneByRoute = !firstOnly && singleCost != null;
+        }
+
+        /** Ordered root branches (first chosen depot), or null when the root is infeasible. */
+        int[] rootBranches() {
+            if (!boundsHold(uncoveredStack[0], residualStack[0], k)) return null;
+            int product = mostConstrainedProduct(uncoveredStack[0]);
+            if (product < 0) return null;
+            int count = orderSuppliers(product, residualStack[0], branchStack[0]);
+            return Arrays.copyOf(branchStack[0], count);
+        }
+
+        /** Explore all covers whose first depot is {@code branches[i]}; true when the search must stop. */
+        boolean runBranch(int[] branches, int i) {
+            if (mustStop(i)) return true;
+            branch = i;
+            System.arraycopy(candidates, 0, allowed, 0, numDepots);
+            for (int j = 0; j < i; j++) allowed[branches[j]] = false;
+            int d = branches[i];
+            apply(0, d);
+            active[d] = true;
+            chosen[0] = d;
+            boolean stop = dfs(1);
+            active[d] = false;
+            return stop || mustStop(i);
+        }
+
+        private boolean mustStop(int branchIndex) {
+            if (aborted || proven) return true;
+            return firstOnly && winner.branch() < branchIndex;
+        }
+
+        /** Returns true when the search must stop (cover found, proven optimum, cancelled or node limit). */
+        private boolean dfs(int depth) {
+            if ((++localNodes & 255) == 0) {
+                flushNodes();
+                if (mustStop(branch)) return true;
+            }
+            long[] uncovered = uncoveredStack[depth];
+            if (isEmpty(uncovered)) {
+                int[] cover = Arrays.copyOf(chosen, depth);
+                Arrays.sort(cover);
+                if (firstOnly) {
+                    winner.offer(branch, cover);
+                    return true;
+                }
+                offer(cover, memoCost(cover, maskStack[depth]));
+                return proven;
+            }
+            int remaining = k - depth;
+            if (remaining == 0) return false;
+
+            int[] residual = residualStack[depth];
+            if (!boundsHold(uncovered, residual, remaining)) return false;
+
+            if (pruneByRoute && partialRouteBound(depth, uncovered) > bestCost()) return false;
+
+            int product = mostConstrainedProduct(uncovered);
+            if (product < 0) return false;
+
+            int[] branchDepots = branchStack[depth];
+            int count = orderSuppliers(product, residual, branchDepots);
+            int excluded = 0;
+            boolean stop = false;
+            for (int i = 0; i < count; i++) {
+                int d = branchDepots[i];
+                apply(depth, d);
+                active[d] = true;
+                chosen[depth] = d;
+                stop = dfs(depth + 1);
+                active[d] = false;
+                if (stop) break;
+                allowed[d] = false;
+                excluded++;
+            }
+            for (int i = 0; i < excluded; i++) allowed[branchDepots[i]] = true;
+            return stop;
+        }
+
+        void flushNodes() {
+            if (nodes.addAndGet(localNodes) > nodeLimit || expired()) aborted = true;
+            localNodes = 0;
+        }
+
+        /** Computes the state of {@code depth + 1} after adding depot {@code d}. */
+        private void apply(int depth, int d) {
+            int[] res = residualStack[depth + 1];
+            long[] unc = uncoveredStack[depth + 1];
+            System.arraycopy(residualStack[depth], 0, res, 0, numProducts);
+            System.arraycopy(uncoveredStack[depth], 0, unc, 0, words);
+            for (int w = 0; w < words; w++) {
+                long bits = unc[w] & supplies[d][w];
+                while (bits != 0) {
+                    int p = (w << 6) + Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    res[p] = Math.max(0, res[p] - stock[d][p]);
+                    if (res[p] == 0) unc[w] &= ~(1L << p);
+                }
+            }
+            long[] mask = maskStack[depth + 1];
+            System.arraycopy(maskStack[depth], 0, mask, 0, mask.length);
+            mask[d >>> 6] |= 1L << d;
+            if (singleCost != null) chosenBound[depth + 1] = Math.max(chosenBound[depth], singleCost[d]);
+        }
+
+        private boolean boundsHold(long[] uncovered, int[] residual, int remaining) {
+            // Bitset bound: no remaining depot can cover more than maxCover of the uncovered products
+            int uncoveredCount = 0;
+            for (long w : uncovered) uncoveredCount += Long.bitCount(w);
+            int maxCover = 0;
+            for (int d = 0; d < numDepots; d++) {
+                if (!allowed[d] || active[d]) continue;
+                int c = 0;
+                for (int w = 0; w < words; w++) c += Long.bitCount(uncovered[w] & supplies[d][w]);
+                if (c > maxCover) maxCover = c;
+            }
+            if (maxCover == 0) return false;
+            if ((uncoveredCount + maxCover - 1) / maxCover > remaining) return false;
+
+            // Quantity bound: the best `remaining` suppliers of each product must reach its residual demand
+            for (int w = 0; w < words; w++) {
+                long bits = uncovered[w];
+                while (bits != 0) {
+                    int p = (w << 6) + Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    Arrays.fill(top, 0, remaining, 0);
+                    for (int d : suppliers[p]) {
+                        if (!allowed[d] || active[d]) continue;
+                        insertTop(top, remaining, stock[d][p]);
+                    }
+                    long sum = 0;
+                    for (int i = 0; i < remaining; i++) sum += top[i];
+                    if (sum < residual[p]) return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Route lower bound of every cover extending this node, for monotone costs: such a cover
+         * holds each chosen depot and a remaining supplier of each uncovered product, so it costs
+         * at least as much as the dearest of those depots alone.
+         */
+        private double partialRouteBound(int depth, long[] uncovered) {
+            double bound = chosenBound[depth];
+            for (int w = 0; w < words; w++) {
+                long bits = uncovered[w];
+                while (bits != 0) {
+                    int p = (w << 6) + Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    double cheapest = Double.MAX_VALUE;
+                    for (int d : suppliers[p]) {
+                        if (allowed[d] && !active[d]) cheapest = Math.min(cheapest, singleCost[d]);
+                    }
+                    bound = Math.max(bound, cheapest);
+                }
+            }
+            return bound;
+        }
+
+        private int mostConstrainedProduct(long[] uncovered) {
+            int best = -1;
+            int bestCount = Integer.MAX_VALUE;
+            for (int w = 0; w < words; w++) {
+                long bits = uncovered[w];
+                while (bits != 0) {
+                    int p = (w << 6) + Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    int count = 0;
+                    for (int d : suppliers[p]) {
+                        if (allowed[d] && !active[d]) count++;
+                    }
+                    if (count < bestCount) {
+                        bestCount = count;
+                        best = p;
+                    }
+                }
+            }
+            return bestCount == 0 ? -1 : best;
+        }
+
+        /**
+         * Writes the allowed suppliers of a product into {@code out}, largest useful contribution
+         * first, ties in depot order (stable insertion sort); returns how many were written.
+         */
+        private int orderSuppliers(int product, int[] residual, int[] out) {
+            int need = residual[product];
+            int count = 0;
+            for (int d : suppliers[product]) {
+                if (!allowed[d] || active[d]) continue;
+                int key = Math.min(stock[d][product], need);
+                int i = count++;
+                while (i > 0 && Math.min(stock[out[i - 1]][product], need) < key) {
+                    out[i] = out[i - 1];
+                    i--;
+                }
+                out[i] = d;
+            }
+            return count;
+        }
+    }
+
+    // ========================================================================
+    //  Incumbent
+    // ========================================================================
+
+    private double bestCost() {
+        return Double.longBitsToDouble(bestCostBits.get());
+    }
+
+    /** Keep the cheaper cover; equal costs go to the lexicographically smaller set so runs are reproducible. */
+    private synchronized void offer(int[] cover, double cost) {
+        double best = bestCost();
+        if (cost < best || (cost == best && Arrays.compare(cover, bestDepots) < 0)) {
+            bestDepots = cover;
+            bestCostBits.set(Double.doubleToLongBits(cost));
+            if (cost <= lowerBound) proven = true;
+        }
+    }
+
+    /**
+     * Lower bound on the route cost of any cover, valid for monotone costs: every cover contains
+     * a supplier of each product, so it costs at least as much as the cheapest such supplier alone.
+     */
+    private double routeLowerBound() {
+        double bound = 0;
+        for (int p = 0; p < numProducts; p++) {
+            if (demand[p] <= 0 || suppliers[p].length == 0) continue;
+            double cheapest = Double.MAX_VALUE;
+            for (int d : suppliers[p]) cheapest = Math.min(cheapest, singleCost[d]);
+            bound = Math.max(bound, cheapest);
+        }
+        return bound;
+    }
+
+    // ========================================================================
+    //  Local search (anytime mode)
+    // ========================================================================
+
+    /**
+     * Improve a cover until no move applies or the budget runs out. Moves, in order:
+     * drop a redundant depot, replace two depots by one, replace a depot by a cheaper one.
+     */
+    private int[] localSearch(int[] start) {
+        int[] current = start;
+        double currentCost = costOf(current);
+        boolean improved = true;
+        while (improved && !expired()) {
+            improved = false;
+
+            // Drop: a depot whose removal keeps the cover
+            for (int i = 0; i < current.length && !improved; i++) {
+                int[] candidate = without(current, i, -1);
+                if (covers(candidate)) {
+                    current = candidate;
+                    currentCost = costOf(current);
+                    improved = true;
+                }
+            }
+
+            // 2-for-1: two depots replaced by a single outside depot
+            for (int i = 0; i < current.length && !improved; i++) {
+                for (int j = i + 1; j < current.length && !improved; j++) {
+                    int[] rest = without(current, i, j);
+                    for (int d = 0; d < numDepots && !improved; d++) {
+                        if (Arrays.binarySearch(current, d) >= 0) continue;
+                        int[] candidate = with(rest, d);
+                        if (covers(candidate)) {
+                            current = candidate;
+                            currentCost = costOf(current);
+                            improved = true;
+                        }
+                    }
+                }
+                if (expired()) return current;
+            }
+
+            // Swap: same size, cheaper route
+            if (routeCost == null) continue;
+            for (int i = 0; i < current.length && !improved; i++) {
+                int[] rest = without(current, i, -1);
+                for (int d = 0; d < numDepots && !improved; d++) {
+                    if (Arrays.binarySearch(current, d) >= 0) continue;
+                    int[] candidate = with(rest, d);
+                    if (!covers(candidate)) continue;
+                    double cost = costOf(candidate);
+                    if (cost < currentCost) {
+                        current = candidate;
+                        currentCost = cost;
+                        improved = true;
+                    }
+                }
+                if (expired()) return current;
+            }
+        }
+        return current;
+    }
+
+    private boolean expired() {
+        return deadline != 0 && System.nanoTime() - deadline > 0;
+    }
+
+    private boolean covers(int[] depots) {
+        for (int p = 0; p < numProducts; p++) {
+            if (demand[p] <= 0) continue;
+            int available = 0;
+            for (int d : depots) available += stock[d][p];
+            if (available < demand[p]) return false;
+        }
+        return true;
+    }
+
+    /** Copy of a sorted set without positions {@code i} and {@code j} (-1 for none). */
+    private static int[] without(int[] set, int i, int j) {
+        int[] out = new int[set.length - (j < 0 ? 1 : 2)];
+        int n = 0;
+        for (int x = 0; x < set.length; x++) {
+            if (x != i && x != j) out[n++] = set[x];
+        }
+        return out;
+    }
+
+    /** Sorted copy of a set with one more depot. */
+    private static int[] with(int[] set, int depot) {
+        int[] out = Arrays.copyOf(set, set.length + 1);
+        out[set.length] = depot;
+        Arrays.sort(out);
+        return out;
+    }
+
+    // ========================================================================
+    //  Bounds and heuristics
+    // ========================================================================
+
+    /** Inserts {@code value} into the descending prefix {@code top[0..length)}, dropping the smallest. */
+    private static void insertTop(int[] top, int length, int value) {
+        int last = length - 1;
+        if (value <= top[last]) return;
+        int i = last;
+        while (i > 0 && top[i - 1] < value) {
+            top[i] = top[i - 1];
+            i--;
+        }
+        top[i] = value;
+    }
+
+    private int rootLowerBound(long[] uncovered, boolean[] candidates) {
+        int count = 0;
+        for (long w : uncovered) count += Long.bitCount(w);
+        int maxCover = 0;
+        for (int d = 0; d < numDepots; d++) {
+            if (!candidates[d]) continue;
+            int c = 0;
+            for (int w = 0; w < words; w++) c += Long.bitCount(uncovered[w] & supplies[d][w]);
+            maxCover = Math.max(maxCover, c);
+        }
+        return maxCover == 0 ? numDepots : (count + maxCover - 1) / maxCover;
+    }
+
+    /**
+     * Greedy cover: repeatedly add the depot that covers the most remaining quantity.
+     * Used as the cardinality upper bound, and as the answer when demand cannot be covered.
+     */
+    private int[] greedyCover() {
+        int[] remaining = demand.clone();
+        boolean[] used = new boolean[numDepots];
+        List<Integer> picked = new ArrayList<>();
+        while (true) {
+            int best = -1;
+            long bestScore = 0;
+            for (int d = 0; d < numDepots; d++) {
+                if (used[d]) continue;
+                long score = 0;
+                for (int p = 0; p < numProducts; p++) {
+                    if (remaining[p] > 0) score += Math.min(stock[d][p], remaining[p]);
+                }
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = d;
+                }
+            }
+            if (best < 0) break;
+            used[best] = true;
+            picked.add(best);
+            for (int p = 0; p < numProducts; p++) {
+                remaining[p] = Math.max(0, remaining[p] - stock[best][p]);
+            }
+        }
+        return picked.stream().mapToInt(Integer::intValue).sorted().toArray();
+    }
+
+    private double costOf(int[] depots) {
+        if (routeCost == null) return depots.length;
+        long[] mask = new long[(numDepots + 63) >>> 6];
+        for (int d : depots) mask[d >>> 6] |= 1L << d;
+        return memoCost(depots, mask);
+    }
+
+    /** Route cost of a complete cover, memoized by depot set up to {@link #COST_MEMO_LIMIT} entries. */
+    private double memoCost(int[] depots, long[] mask) {
+        if (routeCost == null) return depots.length;
+        Double known = costMemo.get(new MaskKey(mask));
+        if (known != null) return known;
+        double cost = routeCost.cost(depots);
+        if (costMemo.size() < COST_MEMO_LIMIT) costMemo.putIfAbsent(new MaskKey(mask.clone()), cost);
+        return cost;
+    }
+
+    private static boolean isEmpty(long[] bits) {
+        for (long w : bits) if (w != 0) return false;
+        return true;
+    }
+
+    /** Depot-set key for the route cost memo. */
+    private record MaskKey(long[] words) {
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof MaskKey other && Arrays.equals(words, other.words);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(words);
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.example.backend.service.routing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Depot × depot road durations and distances of one société, in a memory-mapped file.
+ * <p>
+ * Layout (big-endian): magic, version, depot count {@code n}; {@code n} × (id, latitude,
+ * longitude); then the row-major {@code n × n} duration and distance matrices as doubles.
+ * {@link #open(Path)} maps the file read-only and reads cells straight from the mapping, so a
+ * restart costs one {@code mmap} instead of re-asking OSRM.
+ * <p>
+ * A file is never overwritten: each rebuild is written by {@link #writeVersion} under the next
+ * version, {@code <name>.<version>.dmx}, because a mapped file cannot be replaced on Windows.
+ * Callers swap to the new file and then delete the older versions; a mapping opened earlier
+ * stays valid until it is dropped, and a delete refused while it is still mapped is retried on
+ * the next rebuild. Immutable.
+ */
+public final class DepotMatrixFile {
+
+    private static final int MAGIC = 0x444D5831; // "DMX1"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 12;
+    private static final int DEPOT_BYTES = 24;
+
+    private static final String EXTENSION = ".dmx";
+
+    private final Path file;
+    private final ByteBuffer buffer;
+    private final int size;
+    private final int matrixOffset;
+    /** Snapped point key ({@link PairDistanceStore#pointKey}) → depot index. */
+    private final Map<Long, Integer> indexByPoint;
+
+    private DepotMatrixFile(Path file, ByteBuffer buffer) {
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("Not a depot matrix file");
+        }
+        this.file = file;
+        this.buffer = buffer;
+        this.size = buffer.getInt(8);
+        this.matrixOffset = HEADER_BYTES + size * DEPOT_BYTES;
+        if (size < 0 || buffer.capacity() != matrixOffset + 16L * size * size) {
+            throw new IllegalArgumentException("Depot matrix file has " + buffer.capacity()
+                    + " bytes, expected " + (matrixOffset + 16L * size * size) + " for " + size + " depots");
+        }
+        this.indexByPoint = new HashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            indexByPoint.put(PairDistanceStore.pointKey(new double[]{latitude(i), longitude(i)}), i);
+        }
+    }
+
+    /** An empty matrix, for a société without a file yet. */
+    public static DepotMatrixFile empty() {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES);
+        buffer.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, 0);
+        return new DepotMatrixFile(null, buffer);
+    }
+
+    /**
+     * Map an existing file read-only.
+     *
+     * @throws IOException              if the file cannot be read
+     * @throws IllegalArgumentException if it is not a complete depot matrix file
+     */
+    public static DepotMatrixFile open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new DepotMatrixFile(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Files of the matrix {@code name} in {@code directory}, oldest first. A file from before
+     * versioning, {@code <name>.dmx}, counts as version 0.
+     */
+    public static List<Path> versions(Path directory, String name) throws IOException {
+        List<Path> files = new ArrayList<>();
+        if (!Files.isDirectory(directory)) return files;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, name + "*" + EXTENSION)) {
+            for (Path file : stream) {
+                if (version(file, name) >= 0) files.add(file);
+            }
+        }
+        files.sort(Comparator.comparingLong(file -> version(file, name)));
+        return files;
+    }
+
+    /**
+     * Write a matrix under the version after the newest one in {@code directory} and map it.
+     * The data goes to a temporary file first, so a crash never leaves a partial version.
+     *
+     * @param durations row-major {@code n × n} seconds
+     * @param distances row-major {@code n × n} meters
+     */
+    public static DepotMatrixFile writeVersion(Path directory, String name, long[] ids, double[] latitudes,
+                                               double[] longitudes, double[] durations, double[] distances)
+            throws IOException {
+        int n = ids.length;
+        if (latitudes.length != n || longitudes.length != n
+                || durations.length != n * n || distances.length != n * n) {
+            throw new IllegalArgumentException("Inconsistent depot matrix of " + n + " depots");
+        }
+        // Heap buffer, not a mapping: the temporary file must not be mapped when it is renamed
+        ByteBuffer out = ByteBuffer.allocate(Math.toIntExact(HEADER_BYTES + (long) n * DEPOT_BYTES + 16L * n * n));
+        out.putInt(MAGIC).putInt(VERSION).putInt(n);
+        for (int i = 0; i < n; i++) {
+            out.putLong(ids[i]).putDouble(latitudes[i]).putDouble(longitudes[i]);
+        }
+        out.asDoubleBuffer().put(durations).put(distances);
+        out.rewind(); // the matrices went through a view: the whole buffer is filled
+
+        Files.createDirectories(directory);
+        Path tmp = Files.createTempFile(directory, name, ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                while (out.hasRemaining()) channel.write(out);
+                channel.force(true);
+            }
+            List<Path> existing = versions(directory, name);
+            long version = existing.isEmpty() ? 1 : version(existing.get(existing.size() - 1), name) + 1;
+            while (true) {
+                Path file = directory.resolve(name + "." + version + EXTENSION);
+                try {
+                    // No REPLACE_EXISTING: another instance may have taken this version. Not
+                    // ATOMIC_MOVE either, which replaces an existing target on POSIX systems
+                    Files.move(tmp, file);
+                    return open(file);
+                } catch (FileAlreadyExistsException e) {
+                    version++;
+                }
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /** Version of {@code <name>.<version>.dmx}, 0 for {@code <name>.dmx}, -1 for another file. */
+    private static long version(Path file, String name) {
+        String fileName = file.getFileName().toString();
+        if (!fileName.startsWith(name) || !fileName.endsWith(EXTENSION)) return -1;
+        String middle = fileName.substring(name.length(), fileName.length() - EXTENSION.length());
+        if (middle.isEmpty()) return 0;
+        if (middle.length() < 2 || middle.charAt(0) != '.') return -1;
+        for (int i = 1; i < middle.length(); i++) {
+            if (!Character.isDigit(middle.charAt(i))) return -1;
+        }
+        try {
+            return Long.parseLong(middle.substring(1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /** The mapped file, or null for {@link #empty()}. */
+    public Path file() {
+        return file;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long depotId(int i) {
+        return buffer.getLong(HEADER_BYTES + i * DEPOT_BYTES);
+    }
+
+    public double latitude(int i) {
+        return buffer.getDouble(HEADER_BYTES + i * DEPOT_BYTES + 8);
+    }
+
+    public double longitude(int i) {
+        return buffer.getDouble(HEADER_BYTES + i * DEPOT_BYTES + 16);
+    }
+
+    /** Index of the depot at this point (snapped to about one metre), or -1. */
+    public int indexAt(double latitude, double longitude) {
+        Integer index = indexByPoint.get(PairDistanceStore.pointKey(new double[]{latitude, longitude}));
+        return index != null ? index : -1;
+    }
+
+    /** Index of a depot id, or -1. */
+    public int indexOf(long depotId) {
+        for (int i = 0; i < size; i++) {
+            if (depotId(i) == depotId) return i;
+        }
+        return -1;
+    }
+
+    /** Seconds from depot {@code i} to depot {@code j}. */
+    public double duration(int i, int j) {
+        return buffer.getDouble(matrixOffset + 8 * (i * size + j));
+    }
+
+    /** Meters from depot {@code i} to depot {@code j}. */
+    public double distance(int i, int j) {
+        return buffer.getDouble(matrixOffset + 8 * (size * size + i * size + j));
+    }
+}
@@ -0,0 +1,240 @@
+package com.example.backend.service.routing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Routing engine instances behind one client: health, load balancing and per-instance metrics.
+ * <p>
+ * Each endpoint has its own {@link CircuitBreaker}; only CLOSED endpoints receive traffic.
+ * Requests with an affinity key (cacheable ones) are placed on a consistent-hash ring, so the
+ * same query keeps reaching the same instance and its cache stays warm; adding an instance only
+ * moves about {@code 1/n} of the keys. Placement uses bounded loads: an endpoint already above
+ * {@link #LOAD_FACTOR} × the mean in-flight count is skipped for the next one on the ring.
+ * Requests without a key go to the least-loaded endpoint, ties broken by recent latency.
+ * Thread-safe.
+ */
+public final class EndpointPool {
+
+    /** Ring positions per endpoint; more points, more even key shares. */
+    private static final int VIRTUAL_NODES = 128;
+    /** Bounded-load factor: an endpoint may carry up to this multiple of the mean load. */
+    private static final double LOAD_FACTOR = 1.25;
+    /** Weight of the latest sample in the recent-latency average. */
+    private static final double LATENCY_EWMA_ALPHA = 0.2;
+
+    /** Per-endpoint counters since startup; latencies in milliseconds. */
+    public record EndpointStats(String url, CircuitBreaker.Stats circuit, int inFlight, long requests, long failures,
+                                double meanLatencyMillis, double recentLatencyMillis, double maxLatencyMillis) {}
+
+    private final Endpoint[] endpoints;
+    private final long[] ringHashes;
+    private final int[] ringOwners;
+    private final AtomicInteger nextTieBreak = new AtomicInteger();
+    private final AtomicLong shortCircuited = new AtomicLong();
+
+    public EndpointPool(List<String> urls, int failureThreshold, long openMillis) {
+        this(urls, failureThreshold, openMillis, System::currentTimeMillis);
+    }
+
+    EndpointPool(List<String> urls, int failureThreshold, long openMillis, LongSupplier clock) {
+        if (urls.isEmpty()) throw new IllegalArgumentException("At least one endpoint URL is required");
+        endpoints = new Endpoint[urls.size()];
+        for (int i = 0; i < endpoints.length; i++) {
+            endpoints[i] = new Endpoint(urls.get(i), new CircuitBreaker(failureThreshold, openMillis, clock));
+        }
+
+        long[] hashes = new long[endpoints.length * VIRTUAL_NODES];
+        int[] owners = new int[hashes.length];
+        long[] packed = new long[hashes.length];
+        for (int i = 0; i < endpoints.length; i++) {
+            for (int v = 0; v < VIRTUAL_NODES; v++) {
+                packed[i * VIRTUAL_NODES + v] = hash(endpoints[i].url + "#" + v);
+            }
+        }
+        // Sort ring positions, carrying their owner along
+        Integer[] order = new Integer[packed.length];
+        for (int k = 0; k < order.length; k++) order[k] = k;
+        Arrays.sort(order, (a, b) -> Long.compare(packed[a], packed[b]));
+        for (int k = 0; k < order.length; k++) {
+            hashes[k] = packed[order[k]];
+            owners[k] = order[k] / VIRTUAL_NODES;
+        }
+        ringHashes = hashes;
+        ringOwners = owners;
+    }
+
+    public int size() {
+        return endpoints.length;
+    }
+
+    /** True if some endpoint takes requests; refused requests are counted as short-circuited. */
+    public boolean allowRequest() {
+        for (Endpoint e : endpoints) {
+            if (e.breaker.state() == CircuitBreaker.State.CLOSED) return true;
+        }
+        shortCircuited.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Endpoint for the next request, or null when every circuit is open (counted as
+     * short-circuited). With an affinity key the consistent-hash owner is preferred.
+     */
+    public Endpoint pick(String affinityKey) {
+        int healthy = 0;
+        int totalInFlight = 0;
+        for (Endpoint e : endpoints) {
+            if (e.breaker.state() == CircuitBreaker.State.CLOSED) {
+                healthy++;
+                totalInFlight += e.inFlight.get();
+            }
+        }
+        if (healthy == 0) {
+            shortCircuited.incrementAndGet();
+            return null;
+        }
+        if (affinityKey != null && healthy > 1) {
+            double cap = Math.ceil(LOAD_FACTOR * (totalInFlight + 1) / healthy);
+            int start = ringIndex(hash(affinityKey));
+            for (int k = 0; k < ringHashes.length; k++) {
+                Endpoint e = endpoints[ringOwners[(start + k) % ringHashes.length]];
+                if (e.breaker.state() == CircuitBreaker.State.CLOSED && e.inFlight.get() + 1 <= cap) return e;
+            }
+        }
+        return leastLoaded();
+    }
+
+    /** Endpoints whose open period has elapsed; each is returned to exactly one caller for probing. */
+    public List<Endpoint> probesDue() {
+        List<Endpoint> due = new ArrayList<>(0);
+        for (Endpoint e : endpoints) {
+            if (e.breaker.tryStartProbe()) due.add(e);
+        }
+        return due;
+    }
+
+    public List<Endpoint> endpoints() {
+        return List.of(endpoints);
+    }
+
+    /**
+     * Pool-wide circuit view: CLOSED while any endpoint is, else HALF_OPEN while one is being
+     * probed, else OPEN. Counters are summed; short-circuits are requests no endpoint could take.
+     */
+    public CircuitBreaker.Stats circuit() {
+        CircuitBreaker.State state = CircuitBreaker.State.OPEN;
+        int consecutiveFailures = Integer.MAX_VALUE;
+        long timesOpened = 0;
+        for (Endpoint e : endpoints) {
+            CircuitBreaker.Stats s = e.breaker.stats();
+            if (s.state() == CircuitBreaker.State.CLOSED) state = CircuitBreaker.State.CLOSED;
+            else if (s.state() == CircuitBreaker.State.HALF_OPEN && state == CircuitBreaker.State.OPEN) {
+                state = CircuitBreaker.State.HALF_OPEN;
+            }
+            consecutiveFailures = Math.min(consecutiveFailures, s.consecutiveFailures());
+            timesOpened += s.timesOpened();
+        }
+        return new CircuitBreaker.Stats(state, consecutiveFailures, timesOpened, shortCircuited.get());
+    }
+
+    public List<EndpointStats> stats() {
+        List<EndpointStats> stats = new ArrayList<>(endpoints.length);
+        for (Endpoint e : endpoints) stats.add(e.stats());
+        return stats;
+    }
+
+    private Endpoint leastLoaded() {
+        int offset = Math.floorMod(nextTieBreak.getAndIncrement(), endpoints.length);
+        Endpoint best = null;
+        for (int k = 0; k < endpoints.length; k++) {
+            Endpoint e = endpoints[(offset + k) % endpoints.length];
+            if (e.breaker.state() != CircuitBreaker.State.CLOSED) continue;
+            if (best == null || e.inFlight.get() < best.inFlight.get()
+                    || (e.inFlight.get() == best.inFlight.get() && e.recentLatencyNanos() < best.recentLatencyNanos())) {
+                best = e;
+            }
+        }
+        return best;
+    }
+
+    /** First ring position at or after {@code h}, wrapping around. */
+    private int ringIndex(long h) {
+        int index = Arrays.binarySearch(ringHashes, h);
+        if (index < 0) index = -index - 1;
+        return index == ringHashes.length ? 0 : index;
+    }
+
+    /** FNV-1a over the UTF-8 bytes, then a 64-bit finalizer to spread nearby keys. */
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /** One instance: base URL, circuit breaker, load and latency counters. */
+    public static final class Endpoint {
+        private final String url;
+        private final CircuitBreaker breaker;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private long requests;
+        private long failures;
+        private long totalNanos;
+        private long maxNanos;
+        private double recentNanos;
+
+        private Endpoint(String url, CircuitBreaker breaker) {
+            this.url = url;
+            this.breaker = breaker;
+        }
+
+        public String url() {
+            return url;
+        }
+
+        public CircuitBreaker breaker() {
+            return breaker;
+        }
+
+        /** Call when the request is sent; returns the start time for {@link #finish}. */
+        public long start() {
+            inFlight.incrementAndGet();
+            return System.nanoTime();
+        }
+
+        /** Record the outcome of a request started with {@link #start()}. */
+        public void finish(long startNanos, boolean success) {
+            long nanos = System.nanoTime() - startNanos;
+            inFlight.decrementAndGet();
+            synchronized (this) {
+                requests++;
+                if (!success) failures++;
+                totalNanos += nanos;
+                maxNanos = Math.max(maxNanos, nanos);
+                recentNanos = requests == 1 ? nanos : recentNanos + LATENCY_EWMA_ALPHA * (nanos - recentNanos);
+            }
+        }
+
+        private synchronized double recentLatencyNanos() {
+            return recentNanos;
+        }
+
+        private synchronized EndpointStats stats() {
+            return new EndpointStats(url, breaker.stats(), inFlight.get(), requests, failures,
+                    requests == 0 ? 0 : totalNanos / 1e6 / requests, recentNanos / 1e6, maxNanos / 1e6);
+        }
+    }
+}
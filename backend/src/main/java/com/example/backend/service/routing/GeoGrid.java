@@ -0,0 +1,133 @@
+package com.example.backend.service.routing;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Uniform lat/lon grid of moving points (livreur positions) with k-nearest queries.
+ * <p>
+ * Points are bucketed by cell; a query scans rings of cells around the query cell and stops
+ * once the k-th best great-circle distance is closer than any cell not yet visited.
+ * Not thread-safe: callers guard it with their own lock.
+ */
+public final class GeoGrid {
+
+    private static final double KM_PER_DEGREE = 6371.0 * Math.PI / 180.0;
+
+    private final double cellDegrees;
+    private final Map<Long, List<Long>> cells = new HashMap<>();
+    private final Map<Long, double[]> positions = new HashMap<>();
+    private int minRow = Integer.MAX_VALUE, maxRow = Integer.MIN_VALUE;
+    private int minCol = Integer.MAX_VALUE, maxCol = Integer.MIN_VALUE;
+
+    /**
+     * @param cellDegrees cell side in degrees (0.05° ≈ 5.5 km of latitude)
+     */
+    public GeoGrid(double cellDegrees) {
+        this.cellDegrees = cellDegrees;
+    }
+
+    public int size() {
+        return positions.size();
+    }
+
+    /** Insert a point or move it to its new position. */
+    public void put(long id, double lat, double lon) {
+        remove(id);
+        int row = row(lat);
+        int col = col(lon);
+        cells.computeIfAbsent(key(row, col), k -> new ArrayList<>(4)).add(id);
+        positions.put(id, new double[]{lat, lon});
+        minRow = Math.min(minRow, row);
+        maxRow = Math.max(maxRow, row);
+        minCol = Math.min(minCol, col);
+        maxCol = Math.max(maxCol, col);
+    }
+
+    public void remove(long id) {
+        double[] old = positions.remove(id);
+        if (old == null) return;
+        long key = key(row(old[0]), col(old[1]));
+        List<Long> cell = cells.get(key);
+        cell.remove(id);
+        if (cell.isEmpty()) cells.remove(key);
+    }
+
+    /** Ids of the {@code k} points nearest to (lat, lon) by haversine, closest first. */
+    public long[] nearest(double lat, double lon, int k) {
+        int wanted = Math.min(k, positions.size());
+        if (wanted <= 0) return new long[0];
+
+        long[] bestIds = new long[wanted];
+        double[] bestDist = new double[wanted];
+        int found = 0;
+
+        int row = row(lat);
+        int col = col(lon);
+        // Rings needed to reach every occupied cell
+        int maxRing = Math.max(Math.max(row - minRow, maxRow - row), Math.max(col - minCol, maxCol - col));
+        for (int ring = 0; ring <= maxRing; ring++) {
+            // Unvisited cells are at least `ring` cells away once this ring is done
+            if (found == wanted && bestDist[wanted - 1] <= ringLowerBoundKm(lat, ring - 1)) break;
+            for (int r = row - ring; r <= row + ring; r++) {
+                boolean edgeRow = r == row - ring || r == row + ring;
+                for (int c = col - ring; c <= col + ring; c += edgeRow ? 1 : 2 * ring) {
+                    List<Long> cell = cells.get(key(r, c));
+                    if (cell != null) {
+                        for (long id : cell) {
+                            double[] p = positions.get(id);
+                            double d = haversineKm(lat, lon, p[0], p[1]);
+                            found = insert(bestIds, bestDist, found, id, d);
+                        }
+                    }
+                }
+            }
+        }
+        return bestIds;
+    }
+
+    private static int insert(long[] ids, double[] dist, int found, long id, double d) {
+        int n = ids.length;
+        if (found == n && d >= dist[n - 1]) return found;
+        int i = found < n ? found++ : n - 1;
+        while (i > 0 && dist[i - 1] > d) {
+            ids[i] = ids[i - 1];
+            dist[i] = dist[i - 1];
+            i--;
+        }
+        ids[i] = id;
+        dist[i] = d;
+        return found;
+    }
+
+    /** Smallest distance to a cell more than {@code rings} cells away (longitude shrinks with latitude). */
+    private double ringLowerBoundKm(double lat, int rings) {
+        if (rings <= 0) return 0;
+        double span = rings * cellDegrees;
+        double worstLat = Math.min(89.0, Math.abs(lat) + span + cellDegrees);
+        return span * KM_PER_DEGREE * Math.cos(Math.toRadians(worstLat));
+    }
+
+    private int row(double lat) {
+        return (int) Math.floor(lat / cellDegrees);
+    }
+
+    private int col(double lon) {
+        return (int) Math.floor(lon / cellDegrees);
+    }
+
+    private static long key(int row, int col) {
+        return ((long) row << 32) | (col & 0xffffffffL);
+    }
+
+    static double haversineKm(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 6371.0 * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.backend.service.routing;
+
+import java.util.Arrays;
+
+/**
+ * Dictionary from entity ids to dense indices (0, 1, 2, ... in insertion order).
+ * Open addressing on primitive arrays, so lookups do not box the id.
+ */
+final class LongIndex {
+
+    private static final int EMPTY = -1;
+
+    private long[] keys;
+    private int[] slots;
+    private long[] ids;
+    private int size;
+
+    LongIndex(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(4, expected * 2 - 1)) << 1;
+        keys = new long[capacity];
+        slots = new int[capacity];
+        Arrays.fill(slots, EMPTY);
+        ids = new long[Math.max(4, expected)];
+    }
+
+    /** Index of the id, or -1 when unknown. */
+    int indexOf(long id) {
+        int mask = keys.length - 1;
+        for (int i = mix(id) & mask; ; i = (i + 1) & mask) {
+            int slot = slots[i];
+            if (slot == EMPTY) return EMPTY;
+            if (keys[i] == id) return slot;
+        }
+    }
+
+    /** Index of the id, assigning the next free index when it is new. */
+    int add(long id) {
+        int existing = indexOf(id);
+        if (existing != EMPTY) return existing;
+        if ((size + 1) * 2 > keys.length) rehash();
+        int mask = keys.length - 1;
+        int i = mix(id) & mask;
+        while (slots[i] != EMPTY) i = (i + 1) & mask;
+        keys[i] = id;
+        slots[i] = size;
+        if (size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+        ids[size] = id;
+        return size++;
+    }
+
+    long idAt(int index) {
+        return ids[index];
+    }
+
+    int size() {
+        return size;
+    }
+
+    long[] ids() {
+        return Arrays.copyOf(ids, size);
+    }
+
+    private void rehash() {
+        long[] oldKeys = keys;
+        int[] oldSlots = slots;
+        keys = new long[oldKeys.length * 2];
+        slots = new int[oldKeys.length * 2];
+        Arrays.fill(slots, EMPTY);
+        int mask = keys.length - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldSlots[j] == EMPTY) continue;
+            int i = mix(oldKeys[j]) & mask;
+            while (slots[i] != EMPTY) i = (i + 1) & mask;
+            keys[i] = oldKeys[j];
+            slots[i] = oldSlots[j];
+        }
+    }
+
+    private static int mix(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
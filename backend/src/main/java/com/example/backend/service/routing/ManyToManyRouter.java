@@ -0,0 +1,168 @@
+package com.example.backend.service.routing;
+
+import java.util.Arrays;
+
+/**
+ * One-to-many and many-to-many shortest paths on a {@link RoadGraph} (bucket algorithm).
+ * <p>
+ * Each target runs an upward search on the backward graph and leaves (target, duration,
+ * distance) entries in buckets at every node it settles; each source then runs an upward
+ * search on the forward graph and combines with the buckets it meets. The fastest path wins;
+ * its distance is reported with it. Upward search spaces are small, so a whole matrix costs
+ * roughly {@code sources + targets} searches instead of {@code sources × targets}.
+ * <p>
+ * Keeps per-node scratch arrays: one router per thread, reused across queries.
+ */
+public final class ManyToManyRouter {
+
+    /** Row-major sources × targets matrices; unreachable pairs are {@link Double#MAX_VALUE}. */
+    public record Matrix(int rows, int cols, double[] durations, double[] distances) {
+
+        public double duration(int row, int col) {
+            return durations[row * cols + col];
+        }
+
+        public double distance(int row, int col) {
+            return distances[row * cols + col];
+        }
+    }
+
+    private final RoadGraph graph;
+
+    // Search scratch, reset through the touched list
+    private final double[] duration;
+    private final double[] distance;
+    private int[] touched = new int[64];
+    private int touchedCount;
+    private final MinHeap heap = new MinHeap();
+
+    // Buckets: linked lists of entries per node
+    private final int[] bucketHead;
+    private int[] bucketTouched = new int[64];
+    private int bucketTouchedCount;
+    private int entryCount;
+    private int[] entryNext = new int[256];
+    private int[] entryTarget = new int[256];
+    private double[] entryDuration = new double[256];
+    private double[] entryDistance = new double[256];
+
+    public ManyToManyRouter(RoadGraph graph) {
+        this.graph = graph;
+        int n = graph.nodeCount();
+        this.duration = new double[n];
+        this.distance = new double[n];
+        this.bucketHead = new int[n];
+        Arrays.fill(duration, Double.MAX_VALUE);
+        Arrays.fill(bucketHead, -1);
+    }
+
+    public RoadGraph graph() {
+        return graph;
+    }
+
+    /**
+     * Durations (seconds) and distances (meters) from every source node to every target node.
+     * A negative node id (coordinate that could not be snapped) gives an unreachable row/column.
+     */
+    public Matrix table(int[] sources, int[] targets) {
+        int rows = sources.length;
+        int cols = targets.length;
+        double[] durations = new double[rows * cols];
+        double[] distances = new double[rows * cols];
+        Arrays.fill(durations, Double.MAX_VALUE);
+        Arrays.fill(distances, Double.MAX_VALUE);
+
+        try {
+            for (int j = 0; j < cols; j++) {
+                if (targets[j] < 0) continue;
+                upwardSearch(graph.backward(), targets[j]);
+                for (int k = 0; k < touchedCount; k++) {
+                    int v = touched[k];
+                    addEntry(v, j, duration[v], distance[v]);
+                }
+                resetSearch();
+            }
+            for (int i = 0; i < rows; i++) {
+                if (sources[i] < 0) continue;
+                upwardSearch(graph.forward(), sources[i]);
+                int row = i * cols;
+                for (int k = 0; k < touchedCount; k++) {
+                    int v = touched[k];
+                    for (int e = bucketHead[v]; e >= 0; e = entryNext[e]) {
+                        double total = duration[v] + entryDuration[e];
+                        int cell = row + entryTarget[e];
+                        if (total < durations[cell]) {
+                            durations[cell] = total;
+                            distances[cell] = distance[v] + entryDistance[e];
+                        }
+                    }
+                }
+                resetSearch();
+            }
+        } finally {
+            resetSearch();
+            resetBuckets();
+        }
+        return new Matrix(rows, cols, durations, distances);
+    }
+
+    /** Full Dijkstra over upward edges; every reached node ends up in {@code touched}. */
+    private void upwardSearch(RoadGraph.Direction edges, int start) {
+        heap.clear();
+        duration[start] = 0;
+        distance[start] = 0;
+        touch(start);
+        heap.push(0, start);
+        while (!heap.isEmpty()) {
+            double d = heap.peekKey();
+            int v = heap.peekNode();
+            heap.pop();
+            if (d > duration[v]) continue;
+            for (int e = edges.begin(v), end = edges.end(v); e < end; e++) {
+                int w = edges.target(e);
+                double nd = d + edges.duration(e);
+                if (nd < duration[w]) {
+                    if (duration[w] == Double.MAX_VALUE) touch(w);
+                    duration[w] = nd;
+                    distance[w] = distance[v] + edges.distance(e);
+                    heap.push(nd, w);
+                }
+            }
+        }
+    }
+
+    private void touch(int node) {
+        if (touchedCount == touched.length) touched = Arrays.copyOf(touched, touchedCount * 2);
+        touched[touchedCount++] = node;
+    }
+
+    private void resetSearch() {
+        for (int k = 0; k < touchedCount; k++) duration[touched[k]] = Double.MAX_VALUE;
+        touchedCount = 0;
+    }
+
+    private void addEntry(int node, int target, double d, double dist) {
+        if (entryCount == entryNext.length) {
+            int capacity = entryCount * 2;
+            entryNext = Arrays.copyOf(entryNext, capacity);
+            entryTarget = Arrays.copyOf(entryTarget, capacity);
+            entryDuration = Arrays.copyOf(entryDuration, capacity);
+            entryDistance = Arrays.copyOf(entryDistance, capacity);
+        }
+        if (bucketHead[node] < 0) {
+            if (bucketTouchedCount == bucketTouched.length) bucketTouched = Arrays.copyOf(bucketTouched, bucketTouchedCount * 2);
+            bucketTouched[bucketTouchedCount++] = node;
+        }
+        entryNext[entryCount] = bucketHead[node];
+        entryTarget[entryCount] = target;
+        entryDuration[entryCount] = d;
+        entryDistance[entryCount] = dist;
+        bucketHead[node] = entryCount++;
+    }
+
+    private void resetBuckets() {
+        for (int k = 0; k < bucketTouchedCount; k++) bucketHead[bucketTouched[k]] = -1;
+        bucketTouchedCount = 0;
+        entryCount = 0;
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.backend.service.routing;
+
+import java.util.Arrays;
+
+/**
+ * Route cost of a depot set computed from one in-memory cost matrix.
+ * <p>
+ * Matrix index 0 is the start (the livreur); depot {@code d} of the stock matrix is index
+ * {@code d + 1}. The cost is the shortest open path from the start through every depot of the
+ * set: exact (Held-Karp) up to {@link #HELD_KARP_MAX_STOPS} stops, nearest-neighbour beyond.
+ * <p>
+ * When every leg is a shortest-path duration (OSRM) the triangle inequality holds, so adding a
+ * depot never shortens the exact path: up to {@link #HELD_KARP_MAX_STOPS} stops the cost is
+ * monotone and the solver may prune on partial depot sets. Nearest-neighbour paths, estimated
+ * or pessimistic legs, and zero-cost depots without coordinates all break this; such matrices
+ * are built with {@code metric} false.
+ */
+public final class MatrixRouteCost implements DepotCoverSolver.RouteCost {
+
+    /** Largest number of stops solved exactly; 2^12 * 12 states per evaluation. */
+    public static final int HELD_KARP_MAX_STOPS = 12;
+
+    private final double[][] matrix;
+    private final boolean metric;
+
+    /**
+     * Cost on a matrix of unknown origin: never reported monotone.
+     * @param matrix square cost matrix, index 0 = start, index d + 1 = depot d
+     */
+    public MatrixRouteCost(double[][] matrix) {
+        this(matrix, false);
+    }
+
+    /**
+     * @param matrix square cost matrix, index 0 = start, index d + 1 = depot d
+     * @param metric true when every cell is a shortest-path cost (triangle inequality holds)
+     */
+    public MatrixRouteCost(double[][] matrix, boolean metric) {
+        this.matrix = matrix;
+        this.metric = metric;
+    }
+
+    @Override
+    public double cost(int[] depots) {
+        int k = depots.length;
+        if (k == 0) return 0;
+        if (k == 1) return matrix[0][depots[0] + 1];
+        return k <= HELD_KARP_MAX_STOPS ? heldKarp(depots) : nearestNeighbour(depots);
+    }
+
+    /** Only exact Held-Karp paths on a metric matrix are monotone. */
+    @Override
+    public boolean monotone(int maxDepots) {
+        return metric && maxDepots <= HELD_KARP_MAX_STOPS;
+    }
+
+    // ---- Held-Karp ----
+
+    private double heldKarp(int[] depots) {
+        double[][] dp = heldKarpTable(depots);
+        double[] ends = dp[(1 << depots.length) - 1];
+        double best = Double.MAX_VALUE;
+        for (double v : ends) best = Math.min(best, v);
+        return best;
+    }
+
+    /** dp[mask][j]: cheapest path from the start visiting exactly {@code mask}, ending at stop j. */
+    private double[][] heldKarpTable(int[] depots) {
+        int k = depots.length;
+        int size = 1 << k;
+        double[][] dp = new double[size][k];
+        for (double[] row : dp) Arrays.fill(row, Double.POSITIVE_INFINITY);
+        for (int j = 0; j < k; j++) dp[1 << j][j] = matrix[0][depots[j] + 1];
+
+        for (int mask = 1; mask < size; mask++) {
+            for (int j = 0; j < k; j++) {
+                double base = dp[mask][j];
+                if (base == Double.POSITIVE_INFINITY) continue;
+                double[] row = matrix[depots[j] + 1];
+                for (int next = 0; next < k; next++) {
+                    if ((mask & (1 << next)) != 0) continue;
+                    int nextMask = mask | (1 << next);
+                    double c = base + row[depots[next] + 1];
+                    if (c < dp[nextMask][next]) dp[nextMask][next] = c;
+                }
+            }
+        }
+        return dp;
+    }
+
+    // ---- Nearest neighbour (large sets) ----
+
+    private double nearestNeighbour(int[] depots) {
+        int[] order = nearestNeighbourOrder(depots);
+        double total = 0;
+        int cur = 0;
+        for (int pos : order) {
+            int idx = depots[pos] + 1;
+            total += matrix[cur][idx];
+            cur = idx;
+        }
+        return total;
+    }
+
+    private int[] nearestNeighbourOrder(int[] depots) {
+        int k = depots.length;
+        boolean[] visited = new boolean[k];
+        int[] order = new int[k];
+        int cur = 0;
+        for (int step = 0; step < k; step++) {
+            int next = -1;
+            double best = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < k; i++) {
+                if (visited[i]) continue;
+                double c = matrix[cur][depots[i] + 1];
+                if (next < 0 || c < best) {
+                    best = c;
+                    next = i;
+                }
+            }
+            visited[next] = true;
+            order[step] = next;
+            cur = depots[next] + 1;
+        }
+        return order;
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.backend.service.routing;
+
+import java.util.Arrays;
+
+/**
+ * Binary min-heap of (key, node) on primitive arrays, for Dijkstra-style searches.
+ * No decrease-key: callers push again and skip stale entries when popped.
+ */
+final class MinHeap {
+
+    private double[] keys = new double[64];
+    private int[] nodes = new int[64];
+    private int size;
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    void push(double key, int node) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            nodes = Arrays.copyOf(nodes, size * 2);
+        }
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (keys[parent] <= key) break;
+            keys[i] = keys[parent];
+            nodes[i] = nodes[parent];
+            i = parent;
+        }
+        keys[i] = key;
+        nodes[i] = node;
+    }
+
+    double peekKey() {
+        return keys[0];
+    }
+
+    int peekNode() {
+        return nodes[0];
+    }
+
+    /** Remove the minimum; read it first with {@link #peekKey()} / {@link #peekNode()}. */
+    void pop() {
+        double key = keys[--size];
+        int node = nodes[size];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) break;
+            if (child + 1 < size && keys[child + 1] < keys[child]) child++;
+            if (keys[child] >= key) break;
+            keys[i] = keys[child];
+            nodes[i] = nodes[child];
+            i = child;
+        }
+        keys[i] = key;
+        nodes[i] = node;
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.backend.service.routing;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Directed point-to-point durations and distances learned from OSRM /table responses.
+ * <p>
+ * Points are snapped to 1e-5° (about one metre) and packed into a {@code long}; a pair is two
+ * longs in an open-addressing table, so lookups allocate nothing. Any sub-matrix or reordering
+ * of known points is served from the store. Memory is bounded with two generations: when the
+ * current one is full or older than the TTL it becomes the previous one and the old previous is
+ * dropped, so an entry lives between one and two TTLs. Thread-safe.
+ */
+public final class PairDistanceStore {
+
+    private static final double SNAP = 1e5;
+
+    private final int generationCapacity;
+    private final long ttlMillis;
+    private final LongSupplier clock;
+
+    private Generation current;
+    private Generation previous;
+    private long hits, misses, evictions;
+
+    /**
+     * @param maxPairs  pairs kept across both generations
+     * @param ttlMillis age after which a generation is retired
+     */
+    public PairDistanceStore(int maxPairs, long ttlMillis) {
+        this(maxPairs, ttlMillis, System::currentTimeMillis);
+    }
+
+    PairDistanceStore(int maxPairs, long ttlMillis, LongSupplier clock) {
+        this.generationCapacity = Math.max(1, maxPairs / 2);
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+        this.current = new Generation(generationCapacity, clock.getAsLong());
+        this.previous = new Generation(1, clock.getAsLong());
+    }
+
+    /** Snapped, packed key of a [latitude, longitude] point. */
+    public static long pointKey(double[] coordinate) {
+        int lat = (int) Math.round(coordinate[0] * SNAP);
+        int lon = (int) Math.round(coordinate[1] * SNAP);
+        return ((long) lat << 32) | (lon & 0xffffffffL);
+    }
+
+    /**
+     * Fill {@code durations[i][j]} / {@code distances[i][j]} for every known pair
+     * (sources[i] → dests[j]); unknown cells are set to NaN.
+     *
+     * @return number of unknown pairs
+     */
+    public synchronized int lookup(long[] sources, long[] dests, double[][] durations, double[][] distances) {
+        int missing = 0;
+        for (int i = 0; i < sources.length; i++) {
+            for (int j = 0; j < dests.length; j++) {
+                if (sources[i] == dests[j]) {
+                    durations[i][j] = 0;
+                    distances[i][j] = 0;
+                    continue;
+                }
+                int slot = current.find(sources[i], dests[j]);
+                Generation gen = current;
+                if (slot < 0) {
+                    slot = previous.find(sources[i], dests[j]);
+                    gen = previous;
+                }
+                if (slot < 0) {
+                    durations[i][j] = Double.NaN;
+                    distances[i][j] = Double.NaN;
+                    missing++;
+                } else {
+                    durations[i][j] = gen.durations[slot];
+                    distances[i][j] = gen.distances[slot];
+                }
+            }
+        }
+        int total = sources.length * dests.length;
+        hits += total - missing;
+        misses += missing;
+        return missing;
+    }
+
+    /** Record a sources × dests block returned by OSRM (row-major flat matrices). */
+    public synchronized void store(long[] sources, long[] dests, double[] durations, double[] distances) {
+        rotateIfExpired();
+        for (int i = 0; i < sources.length; i++) {
+            for (int j = 0; j < dests.length; j++) {
+                if (sources[i] == dests[j]) continue;
+                if (current.size >= generationCapacity) rotate();
+                int k = i * dests.length + j;
+                current.put(sources[i], dests[j], durations[k], distances[k]);
+            }
+        }
+    }
+
+    /** Retire the current generation if it is older than the TTL. */
+    public synchronized void evictExpired() {
+        rotateIfExpired();
+        if (previous.size > 0 && clock.getAsLong() - previous.createdAt >= 2 * ttlMillis) {
+            evictions += previous.size;
+            previous = new Generation(1, clock.getAsLong());
+        }
+    }
+
+    public synchronized BoundedCache.Stats stats() {
+        return new BoundedCache.Stats(hits, misses, evictions, 0,
+                current.size + previous.size, current.size + previous.size, 2L * generationCapacity);
+    }
+
+    private void rotateIfExpired() {
+        if (clock.getAsLong() - current.createdAt >= ttlMillis) rotate();
+    }
+
+    private void rotate() {
+        evictions += previous.size;
+        previous = current;
+        current = new Generation(generationCapacity, clock.getAsLong());
+    }
+
+    /** Open-addressing (linear probing) table of (from, to) → duration, distance. */
+    private static final class Generation {
+        final long[] from;
+        final long[] to;
+        final double[] durations;
+        final double[] distances;
+        final boolean[] used;
+        final int mask;
+        final long createdAt;
+        int size;
+
+        Generation(int capacity, long createdAt) {
+            int slots = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1) << 1; // load factor ≤ 0.5
+            this.from = new long[slots];
+            this.to = new long[slots];
+            this.durations = new double[slots];
+            this.distances = new double[slots];
+            this.used = new boolean[slots];
+            this.mask = slots - 1;
+            this.createdAt = createdAt;
+        }
+
+        int find(long a, long b) {
+            for (int slot = hash(a, b) & mask; used[slot]; slot = (slot + 1) & mask) {
+                if (from[slot] == a && to[slot] == b) return slot;
+            }
+            return -1;
+        }
+
+        void put(long a, long b, double duration, double distance) {
+            int slot = hash(a, b) & mask;
+            while (used[slot] && (from[slot] != a || to[slot] != b)) slot = (slot + 1) & mask;
+            if (!used[slot]) {
+                used[slot] = true;
+                from[slot] = a;
+                to[slot] = b;
+                size++;
+            }
+            durations[slot] = duration;
+            distances[slot] = distance;
+        }
+
+        private static int hash(long a, long b) {
+            long h = a * 0x9E3779B97F4A7C15L + b;
+            h ^= h >>> 31;
+            h *= 0xBF58476D1CE4E5B9L;
+            return (int) (h ^ (h >>> 29));
+        }
+    }
+}
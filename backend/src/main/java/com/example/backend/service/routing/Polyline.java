@@ -0,0 +1,146 @@
+package com.example.backend.service.routing;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encoded polylines (Google / OSRM format) and Douglas-Peucker simplification.
+ * Points are [latitude, longitude] pairs.
+ */
+public final class Polyline {
+
+    private static final double EARTH_RADIUS_METERS = 6_371_000;
+    /** Sphere radius of the Web Mercator projection used by tile maps. */
+    private static final double MERCATOR_RADIUS_METERS = 6_378_137;
+
+    private Polyline() {}
+
+    /**
+     * Encode points with {@code precision} decimal digits (5 for Google / Leaflet decoders,
+     * 6 for OSRM's {@code polyline6}).
+     */
+    public static String encode(List<double[]> points, int precision) {
+        double factor = Math.pow(10, precision);
+        StringBuilder out = new StringBuilder(points.size() * 6);
+        long lastLat = 0;
+        long lastLon = 0;
+        for (double[] p : points) {
+            long lat = Math.round(p[0] * factor);
+            long lon = Math.round(p[1] * factor);
+            encodeValue(out, lat - lastLat);
+            encodeValue(out, lon - lastLon);
+            lastLat = lat;
+            lastLon = lon;
+        }
+        return out.toString();
+    }
+
+    /** Inverse of {@link #encode}; throws IllegalArgumentException on a truncated string. */
+    public static List<double[]> decode(String encoded, int precision) {
+        double factor = Math.pow(10, precision);
+        List<double[]> points = new ArrayList<>();
+        int[] index = {0};
+        long lat = 0;
+        long lon = 0;
+        while (index[0] < encoded.length()) {
+            lat += decodeValue(encoded, index);
+            lon += decodeValue(encoded, index);
+            points.add(new double[]{lat / factor, lon / factor});
+        }
+        return points;
+    }
+
+    /**
+     * Douglas-Peucker: drop points closer than {@code toleranceMeters} to the simplified line.
+     * End points are always kept. Distances use a local equirectangular projection, accurate
+     * to well under a percent over a city-sized route.
+     */
+    public static List<double[]> simplify(List<double[]> points, double toleranceMeters) {
+        int n = points.size();
+        if (n < 3 || toleranceMeters <= 0) return points;
+
+        double cosLat = Math.cos(Math.toRadians(points.get(0)[0]));
+        double[] x = new double[n];
+        double[] y = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = Math.toRadians(points.get(i)[1]) * cosLat * EARTH_RADIUS_METERS;
+            y[i] = Math.toRadians(points.get(i)[0]) * EARTH_RADIUS_METERS;
+        }
+
+        boolean[] keep = new boolean[n];
+        keep[0] = true;
+        keep[n - 1] = true;
+        // Explicit stack of [first, last] ranges: long routes would overflow a recursive version
+        int[] stack = new int[2 * n];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = n - 1;
+        double toleranceSquared = toleranceMeters * toleranceMeters;
+        while (top > 0) {
+            int last = stack[--top];
+            int first = stack[--top];
+            double farthest = -1;
+            int farthestIndex = -1;
+            for (int i = first + 1; i < last; i++) {
+                double d = segmentDistanceSquared(x[i], y[i], x[first], y[first], x[last], y[last]);
+                if (d > farthest) {
+                    farthest = d;
+                    farthestIndex = i;
+                }
+            }
+            if (farthestIndex >= 0 && farthest > toleranceSquared) {
+                keep[farthestIndex] = true;
+                stack[top++] = first;
+                stack[top++] = farthestIndex;
+                stack[top++] = farthestIndex;
+                stack[top++] = last;
+            }
+        }
+
+        List<double[]> simplified = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            if (keep[i]) simplified.add(points.get(i));
+        }
+        return simplified;
+    }
+
+    /**
+     * Ground size of one screen pixel at {@code zoom} on a 256 px Web Mercator map: the largest
+     * error that stays invisible at that zoom.
+     */
+    public static double metersPerPixel(double latitude, int zoom) {
+        return 2 * Math.PI * MERCATOR_RADIUS_METERS * Math.cos(Math.toRadians(latitude)) / (256 * Math.pow(2, zoom));
+    }
+
+    private static double segmentDistanceSquared(double px, double py, double ax, double ay, double bx, double by) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0 ? 0 : Math.max(0, Math.min(1, ((px - ax) * dx + (py - ay) * dy) / lengthSquared));
+        double ex = px - (ax + t * dx);
+        double ey = py - (ay + t * dy);
+        return ex * ex + ey * ey;
+    }
+
+    private static void encodeValue(StringBuilder out, long value) {
+        long v = value < 0 ? ~(value << 1) : value << 1;
+        while (v >= 0x20) {
+            out.append((char) ((0x20 | (v & 0x1f)) + 63));
+            v >>= 5;
+        }
+        out.append((char) (v + 63));
+    }
+
+    private static long decodeValue(String encoded, int[] index) {
+        long result = 0;
+        int shift = 0;
+        int b;
+        do {
+            if (index[0] >= encoded.length()) throw new IllegalArgumentException("Truncated polyline");
+            b = encoded.charAt(index[0]++) - 63;
+            result |= (long) (b & 0x1f) << shift;
+            shift += 5;
+        } while (b >= 0x20);
+        return (result & 1) != 0 ? ~(result >> 1) : result >> 1;
+    }
+}
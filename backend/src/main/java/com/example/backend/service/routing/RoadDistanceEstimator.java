@@ -0,0 +1,138 @@
+package com.example.backend.service.routing;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Road distance / duration estimates calibrated from past routing answers.
+ * <p>
+ * Every observed leg contributes its detour factor (road meters / great-circle meters) and its
+ * speed (road meters / seconds) to the grid cell of its origin and to a global model. An
+ * estimate scales the great-circle distance by the cell's factors once the cell has enough
+ * samples, else by the global ones, else by a fixed prior (30 km/h, no detour). Besides the
+ * expected value it returns bounds from the smallest / largest factors seen, widened by a
+ * margin: good enough to rule out candidates before asking the router for exact legs, but
+ * empirical, not guaranteed. Thread-safe.
+ */
+public final class RoadDistanceEstimator {
+
+    /** Legs shorter than this are dominated by snapping noise and are not recorded. */
+    private static final double MIN_SAMPLE_METERS = 300;
+    /** Relative widening of the observed extremes for the lower / upper bounds. */
+    private static final double BOUND_MARGIN = 0.1;
+
+    private static final double PRIOR_DETOUR = 1.0;
+    private static final double PRIOR_MAX_DETOUR = 2.5;
+    private static final double PRIOR_SPEED = 30 / 3.6;
+    private static final double PRIOR_MIN_SPEED = 2;
+    private static final double PRIOR_MAX_SPEED = 35;
+
+    /**
+     * Estimated leg: expected seconds / meters with their lower and upper bounds.
+     */
+    public record Estimate(double lowerSeconds, double seconds, double upperSeconds,
+                           double lowerMeters, double meters, double upperMeters) {}
+
+    private final double cellDegrees;
+    private final int minSamples;
+    private final Map<Long, Cell> cells = new ConcurrentHashMap<>();
+    private final Cell global = new Cell();
+
+    /**
+     * @param cellDegrees side of a calibration cell in degrees (0.1° ≈ 11 km of latitude)
+     * @param minSamples  samples a cell (or the global model) needs before its factors are used
+     */
+    public RoadDistanceEstimator(double cellDegrees, int minSamples) {
+        this.cellDegrees = cellDegrees;
+        this.minSamples = Math.max(1, minSamples);
+    }
+
+    /** Record one routed leg; unreachable, degenerate and very short legs are ignored. */
+    public void observe(double fromLat, double fromLon, double toLat, double toLon, double seconds, double meters) {
+        if (!(seconds > 0) || !(meters > 0) || seconds == Double.MAX_VALUE || meters == Double.MAX_VALUE) return;
+        double straight = haversineMeters(fromLat, fromLon, toLat, toLon);
+        if (straight < MIN_SAMPLE_METERS) return;
+        double detour = meters / straight;
+        cells.computeIfAbsent(cellKey(fromLat, fromLon), k -> new Cell()).add(detour, meters, seconds);
+        global.add(detour, meters, seconds);
+    }
+
+    /** True once the global model has enough samples to beat the fixed prior. */
+    public boolean calibrated() {
+        return global.count() >= minSamples;
+    }
+
+    /** Total recorded legs. */
+    public long samples() {
+        return global.count();
+    }
+
+    public int cellCount() {
+        return cells.size();
+    }
+
+    public Estimate estimate(double fromLat, double fromLon, double toLat, double toLon) {
+        double straight = haversineMeters(fromLat, fromLon, toLat, toLon);
+        Cell cell = cells.get(cellKey(fromLat, fromLon));
+        if (cell == null || cell.count() < minSamples) cell = calibrated() ? global : null;
+        if (cell == null) {
+            return estimate(straight, PRIOR_DETOUR, PRIOR_DETOUR, PRIOR_MAX_DETOUR,
+                    PRIOR_MIN_SPEED, PRIOR_SPEED, PRIOR_MAX_SPEED);
+        }
+        synchronized (cell) {
+            return estimate(straight, cell.minDetour, cell.detourSum / cell.count, cell.maxDetour,
+                    cell.minSpeed, cell.meters / cell.seconds, cell.maxSpeed);
+        }
+    }
+
+    private static Estimate estimate(double straight, double minDetour, double detour, double maxDetour,
+                                     double minSpeed, double speed, double maxSpeed) {
+        double lowerMeters = straight * minDetour * (1 - BOUND_MARGIN);
+        double meters = straight * detour;
+        double upperMeters = straight * maxDetour * (1 + BOUND_MARGIN);
+        return new Estimate(lowerMeters / (maxSpeed * (1 + BOUND_MARGIN)), meters / speed,
+                upperMeters / (minSpeed * (1 - BOUND_MARGIN)), lowerMeters, meters, upperMeters);
+    }
+
+    private long cellKey(double lat, double lon) {
+        long row = (long) Math.floor(lat / cellDegrees);
+        long col = (long) Math.floor(lon / cellDegrees);
+        return (row << 32) ^ (col & 0xffffffffL);
+    }
+
+    private static double haversineMeters(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 6_371_000 * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+
+    /** Running detour / speed statistics of one cell. */
+    private static final class Cell {
+        private long count;
+        private double detourSum;
+        private double minDetour = Double.MAX_VALUE;
+        private double maxDetour;
+        private double meters;
+        private double seconds;
+        private double minSpeed = Double.MAX_VALUE;
+        private double maxSpeed;
+
+        synchronized void add(double detour, double legMeters, double legSeconds) {
+            double speed = legMeters / legSeconds;
+            count++;
+            detourSum += detour;
+            minDetour = Math.min(minDetour, detour);
+            maxDetour = Math.max(maxDetour, detour);
+            meters += legMeters;
+            seconds += legSeconds;
+            minSpeed = Math.min(minSpeed, speed);
+            maxSpeed = Math.max(maxSpeed, speed);
+        }
+
+        synchronized long count() {
+            return count;
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.example.backend.service.routing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Contraction-hierarchy road graph in a compact, memory-mappable layout.
+ * <p>
+ * Nodes are numbered by contraction rank. Each node keeps only its <em>upward</em> edges, in
+ * two CSR arrays: forward edges {@code v → w} and backward edges {@code w → v}, both with
+ * {@code rank(w) > rank(v)}. Shortcuts carry the summed duration and distance of the path they
+ * replace, so queries never unpack them. Built by {@link ContractionHierarchyBuilder}, queried
+ * with {@link ManyToManyRouter}.
+ * <p>
+ * File layout (big-endian): magic, version, node count {@code n}, forward and backward edge
+ * counts; latitudes and longitudes in 1e-6°; then for each direction {@code n + 1} offsets,
+ * targets, durations (seconds, float) and distances (meters, float). All arrays are views on
+ * the mapping. A static grid over the nodes is built at load to snap coordinates. Immutable.
+ */
+public final class RoadGraph {
+
+    private static final int MAGIC = 0x52475231; // "RGR1"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 20;
+    private static final double COORD_SCALE = 1e6;
+    private static final double CELL_DEGREES = 0.01;
+
+    private final int nodeCount;
+    private final IntBuffer latitudes;
+    private final IntBuffer longitudes;
+    private final Direction forward;
+    private final Direction backward;
+
+    /** Nodes sorted by grid cell; cellKeys[k] is the cell of cellNodes[k]. */
+    private final long[] cellKeys;
+    private final int[] cellNodes;
+
+    /** Upward edges of one search direction, in CSR form. */
+    record Direction(IntBuffer offsets, IntBuffer targets, FloatBuffer durations, FloatBuffer distances) {
+
+        int begin(int node) {
+            return offsets.get(node);
+        }
+
+        int end(int node) {
+            return offsets.get(node + 1);
+        }
+
+        int target(int edge) {
+            return targets.get(edge);
+        }
+
+        double duration(int edge) {
+            return durations.get(edge);
+        }
+
+        double distance(int edge) {
+            return distances.get(edge);
+        }
+
+        int edgeCount() {
+            return targets.limit();
+        }
+    }
+
+    private RoadGraph(ByteBuffer buffer) {
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("Not a road graph file");
+        }
+        int n = buffer.getInt(8);
+        int forwardEdges = buffer.getInt(12);
+        int backwardEdges = buffer.getInt(16);
+        long expected = HEADER_BYTES + 8L * n + 2 * 4L * (n + 1) + 12L * forwardEdges + 12L * backwardEdges;
+        if (n < 0 || forwardEdges < 0 || backwardEdges < 0 || buffer.capacity() != expected) {
+            throw new IllegalArgumentException("Road graph file has " + buffer.capacity() + " bytes, expected " + expected);
+        }
+        this.nodeCount = n;
+        int[] position = {HEADER_BYTES};
+        this.latitudes = ints(buffer, position, n);
+        this.longitudes = ints(buffer, position, n);
+        this.forward = new Direction(ints(buffer, position, n + 1), ints(buffer, position, forwardEdges),
+                floats(buffer, position, forwardEdges), floats(buffer, position, forwardEdges));
+        this.backward = new Direction(ints(buffer, position, n + 1), ints(buffer, position, backwardEdges),
+                floats(buffer, position, backwardEdges), floats(buffer, position, backwardEdges));
+
+        long[] packed = new long[n];
+        for (int v = 0; v < n; v++) packed[v] = (cellKey(latitude(v), longitude(v)) << 32) | v;
+        Arrays.sort(packed);
+        this.cellKeys = new long[n];
+        this.cellNodes = new int[n];
+        for (int k = 0; k < n; k++) {
+            cellKeys[k] = packed[k] >> 32;
+            cellNodes[k] = (int) packed[k];
+        }
+    }
+
+    /**
+     * Map a graph file read-only.
+     *
+     * @throws IllegalArgumentException if it is not a complete road graph file
+     */
+    public static RoadGraph open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new RoadGraph(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /** Serialize arrays produced by the builder; heap-backed, use {@link #write(Path)} to persist. */
+    static RoadGraph of(int[] latitudesE6, int[] longitudesE6,
+                        int[] forwardOffsets, int[] forwardTargets, float[] forwardDurations, float[] forwardDistances,
+                        int[] backwardOffsets, int[] backwardTargets, float[] backwardDurations, float[] backwardDistances) {
+        int n = latitudesE6.length;
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + 8 * n + 2 * 4 * (n + 1)
+                + 12 * forwardTargets.length + 12 * backwardTargets.length);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(forwardTargets.length).putInt(backwardTargets.length);
+        buffer.asIntBuffer().put(latitudesE6).put(longitudesE6)
+                .put(forwardOffsets).put(forwardTargets);
+        buffer.position(HEADER_BYTES + 4 * (2 * n + n + 1 + forwardTargets.length));
+        buffer.asFloatBuffer().put(forwardDurations).put(forwardDistances);
+        buffer.position(buffer.position() + 8 * forwardTargets.length);
+        buffer.asIntBuffer().put(backwardOffsets).put(backwardTargets);
+        buffer.position(buffer.position() + 4 * (n + 1 + backwardTargets.length));
+        buffer.asFloatBuffer().put(backwardDurations).put(backwardDistances);
+        return new RoadGraph(buffer.position(0));
+    }
+
+    /** Write the graph to a temporary file and move it over {@code file}. */
+    public void write(Path file) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        try {
+            long bytes = HEADER_BYTES + 8L * nodeCount + 2 * 4L * (nodeCount + 1)
+                    + 12L * forward.edgeCount() + 12L * backward.edgeCount();
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+                out.putInt(MAGIC).putInt(VERSION).putInt(nodeCount).putInt(forward.edgeCount()).putInt(backward.edgeCount());
+                putInts(out, latitudes);
+                putInts(out, longitudes);
+                for (Direction d : new Direction[]{forward, backward}) {
+                    putInts(out, d.offsets());
+                    putInts(out, d.targets());
+                    for (int e = 0; e < d.edgeCount(); e++) out.putFloat(d.durations().get(e));
+                    for (int e = 0; e < d.edgeCount(); e++) out.putFloat(d.distances().get(e));
+                }
+                out.force();
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    public double latitude(int node) {
+        return latitudes.get(node) / COORD_SCALE;
+    }
+
+    public double longitude(int node) {
+        return longitudes.get(node) / COORD_SCALE;
+    }
+
+    /** Edges {@code v → w} with {@code rank(w) > rank(v)}, for searches from a source. */
+    Direction forward() {
+        return forward;
+    }
+
+    /** Edges {@code w → v} with {@code rank(w) > rank(v)}, stored at {@code v}, for searches from a target. */
+    Direction backward() {
+        return backward;
+    }
+
+    /**
+     * Node closest to a point, scanning rings of 0.01° cells until no closer node can exist;
+     * -1 if the graph is empty or nothing lies within {@code maxRings} rings.
+     */
+    public int nearestNode(double lat, double lon, int maxRings) {
+        if (nodeCount == 0) return -1;
+        int row = (int) Math.floor(lat / CELL_DEGREES);
+        int col = (int) Math.floor(lon / CELL_DEGREES);
+        double cosLat = Math.cos(Math.toRadians(lat));
+        int best = -1;
+        double bestSq = Double.MAX_VALUE;
+        for (int ring = 0; ring <= maxRings; ring++) {
+            for (int r = row - ring; r <= row + ring; r++) {
+                for (int c = col - ring; c <= col + ring; c++) {
+                    if (Math.max(Math.abs(r - row), Math.abs(c - col)) != ring) continue;
+                    long key = pack(r, c);
+                    for (int k = firstOfCell(key); k < nodeCount && cellKeys[k] == key; k++) {
+                        int v = cellNodes[k];
+                        double dLat = latitude(v) - lat;
+                        double dLon = (longitude(v) - lon) * cosLat;
+                        double sq = dLat * dLat + dLon * dLon;
+                        if (sq < bestSq) {
+                            bestSq = sq;
+                            best = v;
+                        }
+                    }
+                }
+            }
+            // Cells beyond this ring are at least ring * CELL_DEGREES (scaled) away
+            double reach = ring * CELL_DEGREES * Math.min(1.0, cosLat);
+            if (best >= 0 && bestSq <= reach * reach) break;
+        }
+        return best;
+    }
+
+    private int firstOfCell(long key) {
+        int lo = 0, hi = nodeCount;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (cellKeys[mid] < key) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private static long cellKey(double lat, double lon) {
+        return pack((int) Math.floor(lat / CELL_DEGREES), (int) Math.floor(lon / CELL_DEGREES));
+    }
+
+    /** Non-negative cell number below 2^31: 18,001 rows × 36,001 columns of 0.01°. */
+    private static long pack(int row, int col) {
+        return (long) (row + 9_000) * 36_001 + (col + 18_000);
+    }
+
+    private static IntBuffer ints(ByteBuffer buffer, int[] position, int count) {
+        IntBuffer view = buffer.duplicate().position(position[0]).limit(position[0] + 4 * count).slice().asIntBuffer();
+        position[0] += 4 * count;
+        return view;
+    }
+
+    private static FloatBuffer floats(ByteBuffer buffer, int[] position, int count) {
+        FloatBuffer view = buffer.duplicate().position(position[0]).limit(position[0] + 4 * count).slice().asFloatBuffer();
+        position[0] += 4 * count;
+        return view;
+    }
+
+    private static void putInts(ByteBuffer out, IntBuffer values) {
+        for (int i = 0; i < values.limit(); i++) out.putInt(values.get(i));
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.backend.service.routing;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Builds a {@link RoadGraph} from a CSV export of the road network.
+ * <p>
+ * {@code nodes.csv}: {@code id,latitude,longitude}. {@code edges.csv}:
+ * {@code from_id,to_id,distance_m,duration_s[,oneway]}; {@code oneway} is 1/true for a single
+ * direction, anything else adds both. Lines that do not start with a digit or '-' (headers,
+ * comments) are skipped. Such files can be produced from an OSM extract with the usual tooling
+ * (osmium, osm2pgsql + pgRouting export) using car speeds per road class.
+ */
+public final class RoadGraphImporter {
+
+    private RoadGraphImporter() {
+    }
+
+    /**
+     * Read both files and contract the graph.
+     *
+     * @throws IllegalArgumentException on a malformed line or an edge to an unknown node
+     */
+    public static RoadGraph importCsv(Path nodesCsv, Path edgesCsv) throws IOException {
+        ContractionHierarchyBuilder builder = new ContractionHierarchyBuilder();
+        LongIndex ids = new LongIndex(1 << 16);
+
+        try (BufferedReader reader = Files.newBufferedReader(nodesCsv, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNo = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNo++;
+                if (!isData(line)) continue;
+                String[] f = line.split(",");
+                if (f.length < 3) throw malformed(nodesCsv, lineNo);
+                long id = Long.parseLong(f[0].trim());
+                if (ids.indexOf(id) >= 0) continue;
+                ids.add(id);
+                builder.addNode(Double.parseDouble(f[1].trim()), Double.parseDouble(f[2].trim()));
+            }
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(edgesCsv, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNo = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNo++;
+                if (!isData(line)) continue;
+                String[] f = line.split(",");
+                if (f.length < 4) throw malformed(edgesCsv, lineNo);
+                int from = ids.indexOf(Long.parseLong(f[0].trim()));
+                int to = ids.indexOf(Long.parseLong(f[1].trim()));
+                if (from < 0 || to < 0) {
+                    throw new IllegalArgumentException(edgesCsv + ":" + lineNo + ": unknown node");
+                }
+                double distance = Double.parseDouble(f[2].trim());
+                double duration = Double.parseDouble(f[3].trim());
+                String oneway = f.length > 4 ? f[4].trim() : "";
+                builder.addEdge(from, to, duration, distance);
+                if (!oneway.equals("1") && !oneway.equalsIgnoreCase("true")) {
+                    builder.addEdge(to, from, duration, distance);
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    private static boolean isData(String line) {
+        return !line.isEmpty() && (Character.isDigit(line.charAt(0)) || line.charAt(0) == '-');
+    }
+
+    private static IllegalArgumentException malformed(Path file, int lineNo) {
+        return new IllegalArgumentException(file + ":" + lineNo + ": malformed line");
+    }
+}
@@ -0,0 +1,232 @@
+package com.example.backend.service.routing;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Single-pass parser for OSRM /table response bodies.
+ * <p>
+ * Reads the raw bytes once and writes {@code durations} and {@code distances} straight into
+ * row-major {@code double[]} arrays: no String body, no JSON tree, no boxed numbers. Other
+ * members ({@code sources}, {@code destinations}, ...) are skipped. Unreachable pairs
+ * ({@code null}) become {@link Double#MAX_VALUE}, as in the tree-based parser.
+ */
+public final class TableResponseParser {
+
+    /** Row-major sources × destinations matrices; {@code code} is OSRM's status ("Ok"). */
+    public record FlatTable(String code, int rows, int cols, double[] durations, double[] distances) {
+
+        public double duration(int row, int col) {
+            return durations[row * cols + col];
+        }
+
+        public double distance(int row, int col) {
+            return distances[row * cols + col];
+        }
+
+        /** Copy into the {@code double[][]} layout used by the matrix consumers. */
+        public double[][] durationMatrix() {
+            return toMatrix(durations);
+        }
+
+        public double[][] distanceMatrix() {
+            return toMatrix(distances);
+        }
+
+        private double[][] toMatrix(double[] flat) {
+            double[][] matrix = new double[rows][cols];
+            for (int i = 0; i < rows; i++) System.arraycopy(flat, i * cols, matrix[i], 0, cols);
+            return matrix;
+        }
+    }
+
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    private final byte[] json;
+    private int pos;
+
+    private TableResponseParser(byte[] json) {
+        this.json = json;
+    }
+
+    /**
+     * Parse a /table body whose matrices are expected to be {@code rows × cols}.
+     * A missing matrix stays zero-filled.
+     *
+     * @throws IllegalArgumentException on malformed JSON or a matrix of another shape
+     */
+    public static FlatTable parse(byte[] json, int rows, int cols) {
+        return new TableResponseParser(json).parseTable(rows, cols);
+    }
+
+    private FlatTable parseTable(int rows, int cols) {
+        String code = null;
+        double[] durations = new double[rows * cols];
+        double[] distances = new double[rows * cols];
+
+        expect('{');
+        if (peek() == '}') {
+            pos++;
+        } else {
+            do {
+                String key = readString();
+                expect(':');
+                switch (key) {
+                    case "code" -> code = peek() == '"' ? readString() : null;
+                    case "durations" -> readMatrix(durations, rows, cols);
+                    case "distances" -> readMatrix(distances, rows, cols);
+                    default -> skipValue();
+                }
+            } while (next(',', '}') == ',');
+        }
+        return new FlatTable(code, rows, cols, durations, distances);
+    }
+
+    private void readMatrix(double[] target, int rows, int cols) {
+        if (peek() == 'n') {
+            skipLiteral("null");
+            return;
+        }
+        expect('[');
+        int row = 0;
+        if (peek() != ']') {
+            do {
+                if (row == rows) throw error("more than " + rows + " rows");
+                expect('[');
+                int col = 0;
+                if (peek() != ']') {
+                    do {
+                        if (col == cols) throw error("more than " + cols + " columns");
+                        target[row * cols + col++] = readNumberOrNull();
+                    } while (next(',', ']') == ',');
+                } else {
+                    pos++;
+                }
+                if (col != cols) throw error("row " + row + " has " + col + " columns, expected " + cols);
+                row++;
+            } while (next(',', ']') == ',');
+        } else {
+            pos++;
+        }
+        if (row != rows) throw error(row + " rows, expected " + rows);
+    }
+
+    private double readNumberOrNull() {
+        if (peek() == 'n') {
+            skipLiteral("null");
+            return Double.MAX_VALUE;
+        }
+        int start = pos;
+        boolean negative = false;
+        if (json[pos] == '-') {
+            negative = true;
+            pos++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fraction = 0;
+        while (pos < json.length && isDigit(json[pos])) {
+            mantissa = mantissa * 10 + (json[pos++] - '0');
+            digits++;
+        }
+        if (pos < json.length && json[pos] == '.') {
+            pos++;
+            while (pos < json.length && isDigit(json[pos])) {
+                mantissa = mantissa * 10 + (json[pos++] - '0');
+                digits++;
+                fraction++;
+            }
+        }
+        if (digits == 0) throw error("number expected");
+        boolean exponent = pos < json.length && (json[pos] == 'e' || json[pos] == 'E');
+        if (exponent) {
+            pos++;
+            if (pos < json.length && (json[pos] == '+' || json[pos] == '-')) pos++;
+            while (pos < json.length && isDigit(json[pos])) pos++;
+        }
+        // Fast path is exact: mantissa < 2^53 and 10^fraction exactly representable
+        if (!exponent && digits <= 15 && fraction < POW10.length) {
+            double value = mantissa / POW10[fraction];
+            return negative ? -value : value;
+        }
+        return Double.parseDouble(new String(json, start, pos - start, StandardCharsets.US_ASCII));
+    }
+
+    private String readString() {
+        expect('"');
+        int start = pos;
+        boolean escaped = false;
+        while (pos < json.length && json[pos] != '"') {
+            if (json[pos] == '\\') {
+                escaped = true;
+                pos++;
+            }
+            pos++;
+        }
+        if (pos >= json.length) throw error("unterminated string");
+        String value = new String(json, start, pos - start, StandardCharsets.UTF_8);
+        pos++;
+        // Keys and codes are plain ASCII; escapes are kept verbatim
+        return escaped ? value.replace("\\\"", "\"") : value;
+    }
+
+    private void skipValue() {
+        byte b = peek();
+        switch (b) {
+            case '"' -> readString();
+            case '{', '[' -> {
+                int depth = 0;
+                do {
+                    byte c = json[pos];
+                    if (c == '"') {
+                        readString();
+                        continue;
+                    }
+                    if (c == '{' || c == '[') depth++;
+                    else if (c == '}' || c == ']') depth--;
+                    pos++;
+                } while (depth > 0 && pos < json.length);
+                if (depth > 0) throw error("unterminated container");
+            }
+            case 't' -> skipLiteral("true");
+            case 'f' -> skipLiteral("false");
+            case 'n' -> skipLiteral("null");
+            default -> readNumberOrNull();
+        }
+    }
+
+    private void skipLiteral(String literal) {
+        for (int i = 0; i < literal.length(); i++) {
+            if (pos >= json.length || json[pos++] != literal.charAt(i)) throw error(literal + " expected");
+        }
+    }
+
+    private void expect(char c) {
+        if (peek() != c) throw error("'" + c + "' expected");
+        pos++;
+    }
+
+    /** Consume one of two separators and return it. */
+    private char next(char a, char b) {
+        byte c = peek();
+        if (c != a && c != b) throw error("'" + a + "' or '" + b + "' expected");
+        pos++;
+        return (char) c;
+    }
+
+    /** Skip whitespace and return the next byte without consuming it. */
+    private byte peek() {
+        while (pos < json.length && (json[pos] == ' ' || json[pos] == '\n' || json[pos] == '\r' || json[pos] == '\t')) pos++;
+        if (pos >= json.length) throw error("unexpected end of input");
+        return json[pos];
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException("Invalid OSRM /table response at byte " + pos + ": " + message);
+    }
+}
@@ -0,0 +1,303 @@
+package com.example.backend.service.routing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Local TSP engine for sequencing stops on an in-memory cost matrix (OSRM durations or km).
+ * <p>
+ * Node 0 is the start (the livreur). An open tour ends at its last stop; a closed tour returns
+ * to node 0. The matrix may be asymmetric: every move is evaluated in O(1) with prefix sums of
+ * the forward and backward edge costs along the tour.
+ * <p>
+ * Same strategies as the browser tool ({@code smart_delivery_osrm.js}): nearest neighbour,
+ * greedy insertion and savings constructions, each improved by 2-opt, Or-opt (segments of
+ * 1 to 3 stops) and 3-opt segment exchange until no move helps; the best tour wins.
+ */
+public final class TourImprover {
+
+    /** 3-opt is O(n^3) per pass; above this many nodes only 2-opt and Or-opt run. */
+    public static final int THREE_OPT_MAX_NODES = 60;
+
+    private static final double EPS = 1e-9;
+    private static final int MAX_PASSES = 1_000;
+
+    private final double[][] cost;
+    private final boolean closed;
+    private final int n;
+
+    /**
+     * @param cost   square cost matrix, node 0 = start
+     * @param closed true to return to node 0 at the end of the tour
+     */
+    public TourImprover(double[][] cost, boolean closed) {
+        this.cost = cost;
+        this.closed = closed;
+        this.n = cost.length;
+    }
+
+    /** Best tour found: a permutation of all nodes starting with 0. */
+    public int[] solve() {
+        if (n <= 3) {
+            int[] trivial = identity();
+            if (n == 3 && length(new int[]{0, 2, 1}) < length(trivial)) trivial = new int[]{0, 2, 1};
+            return trivial;
+        }
+        int[] best = null;
+        double bestLength = Double.MAX_VALUE;
+        for (int[] start : List.of(nearestNeighbour(), greedyInsertion(), savings())) {
+            int[] tour = improve(start);
+            double len = length(tour);
+            if (best == null || len < bestLength - EPS) {
+                best = tour;
+                bestLength = len;
+            }
+        }
+        return best;
+    }
+
+    /** Total cost of a tour (including the return leg when closed). */
+    public double length(int[] tour) {
+        double total = 0;
+        for (int i = 0; i + 1 < tour.length; i++) total += cost[tour[i]][tour[i + 1]];
+        if (closed && tour.length > 1) total += cost[tour[tour.length - 1]][tour[0]];
+        return total;
+    }
+
+    // ========================================================================
+    //  Constructions
+    // ========================================================================
+
+    int[] nearestNeighbour() {
+        int[] tour = new int[n];
+        boolean[] used = new boolean[n];
+        used[0] = true;
+        for (int pos = 1; pos < n; pos++) {
+            int cur = tour[pos - 1];
+            int next = -1;
+            for (int j = 1; j < n; j++) {
+                if (!used[j] && (next < 0 || cost[cur][j] < cost[cur][next])) next = j;
+            }
+            tour[pos] = next;
+            used[next] = true;
+        }
+        return tour;
+    }
+
+    /** Cheapest insertion: repeatedly insert the stop whose best position adds the least cost. */
+    int[] greedyInsertion() {
+        List<Integer> tour = new ArrayList<>(n);
+        tour.add(0);
+        boolean[] used = new boolean[n];
+        used[0] = true;
+        for (int added = 1; added < n; added++) {
+            int bestNode = -1;
+            int bestPos = -1;
+            double bestDelta = Double.MAX_VALUE;
+            for (int node = 1; node < n; node++) {
+                if (used[node]) continue;
+                for (int pos = 1; pos <= tour.size(); pos++) {
+                    int before = tour.get(pos - 1);
+                    double delta;
+                    if (pos < tour.size()) {
+                        int after = tour.get(pos);
+                        delta = cost[before][node] + cost[node][after] - cost[before][after];
+                    } else {
+                        delta = cost[before][node] + (closed ? cost[node][0] - cost[before][0] : 0);
+                    }
+                    if (delta < bestDelta) {
+                        bestDelta = delta;
+                        bestNode = node;
+                        bestPos = pos;
+                    }
+                }
+            }
+            tour.add(bestPos, bestNode);
+            used[bestNode] = true;
+        }
+        return tour.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Clarke-Wright savings from node 0: chains are joined tail-to-head by decreasing saving
+     * {@code c(i,0) + c(0,j) - c(i,j)}; the last remaining chains are concatenated.
+     */
+    int[] savings() {
+        int m = n - 1;
+        int[] pairI = new int[m * (m - 1)];
+        int[] pairJ = new int[pairI.length];
+        double[] save = new double[pairI.length];
+        Integer[] order = new Integer[pairI.length];
+        int p = 0;
+        for (int i = 1; i < n; i++) {
+            for (int j = 1; j < n; j++) {
+                if (i == j) continue;
+                pairI[p] = i;
+                pairJ[p] = j;
+                save[p] = cost[i][0] + cost[0][j] - cost[i][j];
+                order[p] = p;
+                p++;
+            }
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(save[b], save[a]));
+
+        int[] next = new int[n];
+        int[] prev = new int[n];
+        int[] head = new int[n]; // chain head, valid for chain tails
+        Arrays.fill(next, -1);
+        Arrays.fill(prev, -1);
+        for (int i = 1; i < n; i++) head[i] = i;
+        int[] tail = new int[n]; // chain tail, valid for chain heads
+        for (int i = 1; i < n; i++) tail[i] = i;
+
+        for (int idx : order) {
+            int i = pairI[idx];
+            int j = pairJ[idx];
+            // i must be a tail, j a head, of two different chains
+            if (next[i] != -1 || prev[j] != -1 || head[i] == j) continue;
+            int h = head[i];
+            int t = tail[j];
+            next[i] = j;
+            prev[j] = i;
+            tail[h] = t;
+            head[t] = h;
+        }
+
+        int[] tour = new int[n];
+        int pos = 1;
+        for (int h = 1; h < n; h++) {
+            if (prev[h] != -1) continue;
+            for (int v = h; v != -1; v = next[v]) tour[pos++] = v;
+        }
+        return tour;
+    }
+
+    // ========================================================================
+    //  Improvement
+    // ========================================================================
+
+    /** Apply 2-opt, Or-opt and 3-opt moves until none improves the tour. */
+    int[] improve(int[] start) {
+        int[] r = closed ? Arrays.copyOf(start, n + 1) : start.clone(); // closed: r[n] = 0 fixed
+        int last = n - 1; // last movable position
+        double[] fwd = new double[r.length];
+        double[] bwd = new double[r.length];
+        boolean improved = true;
+        for (int pass = 0; improved && pass < MAX_PASSES; pass++) {
+            prefix(r, fwd, bwd);
+            improved = twoOpt(r, last, fwd, bwd)
+                    || orOpt(r, last)
+                    || (n <= THREE_OPT_MAX_NODES && threeOpt(r, last));
+        }
+        return closed ? Arrays.copyOf(r, n) : r;
+    }
+
+    /** fwd[k] / bwd[k]: cost of r[0..k] walked forwards / backwards. */
+    private void prefix(int[] r, double[] fwd, double[] bwd) {
+        fwd[0] = 0;
+        bwd[0] = 0;
+        for (int k = 1; k < r.length; k++) {
+            fwd[k] = fwd[k - 1] + cost[r[k - 1]][r[k]];
+            bwd[k] = bwd[k - 1] + cost[r[k]][r[k - 1]];
+        }
+    }
+
+    /** Reverse r[i..j]; first improving move is applied. */
+    private boolean twoOpt(int[] r, int last, double[] fwd, double[] bwd) {
+        for (int i = 1; i < last; i++) {
+            int a = r[i - 1];
+            for (int j = i + 1; j <= last; j++) {
+                double before = cost[a][r[i]] + (fwd[j] - fwd[i]);
+                double after = cost[a][r[j]] + (bwd[j] - bwd[i]);
+                if (j + 1 < r.length) {
+                    int b = r[j + 1];
+                    before += cost[r[j]][b];
+                    after += cost[r[i]][b];
+                }
+                if (after < before - EPS) {
+                    reverse(r, i, j);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /** Move a segment of 1 to 3 stops elsewhere, keeping its orientation. */
+    private boolean orOpt(int[] r, int last) {
+        for (int len = 1; len <= 3; len++) {
+            for (int i = 1; i + len - 1 <= last; i++) {
+                int s = r[i];
+                int e = r[i + len - 1];
+                int p = r[i - 1];
+                boolean hasQ = i + len < r.length;
+                double removeGain = cost[p][s] + (hasQ ? cost[e][r[i + len]] - cost[p][r[i + len]] : 0);
+                // Insert between r[j-1] and r[j] (r[j] absent when j == r.length)
+                for (int j = 1; j <= last + 1; j++) {
+                    if (j >= i && j <= i + len) continue;
+                    int x = r[j - 1];
+                    double insertCost = cost[x][s];
+                    if (j < r.length) insertCost += cost[e][r[j]] - cost[x][r[j]];
+                    if (insertCost < removeGain - EPS) {
+                        moveSegment(r, i, len, j);
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /** Exchange adjacent segments r[i..j-1] and r[j..k] without reversing them. */
+    private boolean threeOpt(int[] r, int last) {
+        for (int i = 1; i < last; i++) {
+            int a = r[i - 1];
+            for (int j = i + 1; j <= last; j++) {
+                for (int k = j; k <= last; k++) {
+                    boolean hasB = k + 1 < r.length;
+                    double before = cost[a][r[i]] + cost[r[j - 1]][r[j]];
+                    double after = cost[a][r[j]] + cost[r[k]][r[i]];
+                    if (hasB) {
+                        int b = r[k + 1];
+                        before += cost[r[k]][b];
+                        after += cost[r[j - 1]][b];
+                    }
+                    if (after < before - EPS) {
+                        int[] seg = Arrays.copyOfRange(r, i, k + 1);
+                        int firstLen = j - i;
+                        System.arraycopy(seg, firstLen, r, i, seg.length - firstLen);
+                        System.arraycopy(seg, 0, r, i + seg.length - firstLen, firstLen);
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private static void reverse(int[] r, int i, int j) {
+        while (i < j) {
+            int t = r[i];
+            r[i++] = r[j];
+            r[j--] = t;
+        }
+    }
+
+    private static void moveSegment(int[] r, int i, int len, int j) {
+        int[] seg = Arrays.copyOfRange(r, i, i + len);
+        if (j < i) {
+            System.arraycopy(r, j, r, j + len, i - j);
+            System.arraycopy(seg, 0, r, j, len);
+        } else {
+            System.arraycopy(r, i + len, r, i, j - i - len);
+            System.arraycopy(seg, 0, r, j - len, len);
+        }
+    }
+
+    private int[] identity() {
+        int[] tour = new int[n];
+        for (int i = 0; i < n; i++) tour[i] = i;
+        return tour;
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.backend.controller;
 
+import com.example.backend.dto.CollectionPlanOptions;
 import com.example.backend.dto.MapDataDTO;
 import com.example.backend.dto.OrderDTO;
 import com.example.backend.dto.ProductStockInfoDTO;
@@ -264,7 +265,8 @@ class MapDataControllerTest {
                        "orderIds", List.of(1L))
             )
         );
-        when(mapDataService.generateOptimalCollectionPlan(List.of(1L, 2L), 1L, 34.74, 10.76)).thenReturn(plan);
+        when(mapDataService.generateOptimalCollectionPlan(eq(List.of(1L, 2L)), eq(1L), eq(34.74), eq(10.76), any(CollectionPlanOptions.class)))
+                .thenReturn(plan);
 
         mockMvc.perform(post("/api/orders/optimal-collection-plan")
                 .contentType(MediaType.APPLICATION_JSON)
@@ -276,7 +278,23 @@ class MapDataControllerTest {
                 .andExpect(jsonPath("$.mergedSteps", hasSize(2)))
                 .andExpect(jsonPath("$.mergedSteps[0].depotNom", is("B")));
 
-        verify(mapDataService).generateOptimalCollectionPlan(List.of(1L, 2L), 1L, 34.74, 10.76);
+        verify(mapDataService).generateOptimalCollectionPlan(eq(List.of(1L, 2L)), eq(1L), eq(34.74), eq(10.76),
+                argThat(options -> options.getMaxParallelism() == null));
+    }
+
+    @Test
+    void optimalCollectionPlan_shouldForwardSolverOptions() throws Exception {
+        when(securityService.getCurrentUserSocieteId()).thenReturn(1L);
+        when(mapDataService.generateOptimalCollectionPlan(any(), any(), any(), any(), any()))
+                .thenReturn(Map.of("totalDepots", 0, "totalOrders", 1, "mergedSteps", List.of()));
+
+        mockMvc.perform(post("/api/orders/optimal-collection-plan")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(Map.of("orderIds", List.of(1), "maxParallelism", 2, "maxMillis", 250))))
+                .andExpect(status().isOk());
+
+        verify(mapDataService).generateOptimalCollectionPlan(eq(List.of(1L)), eq(1L), isNull(), isNull(),
+                argThat(options -> options.getMaxParallelism() == 2 && options.getMaxMillis() == 250L));
     }
 
     @Test
@@ -288,7 +306,7 @@ class MapDataControllerTest {
                 .content(objectMapper.writeValueAsString(Map.of("orderIds", List.of(1)))))
                 .andExpect(status().isForbidden());
 
-        verify(mapDataService, never()).generateOptimalCollectionPlan(any(), any(), any(), any());
+        verify(mapDataService, never()).generateOptimalCollectionPlan(any(), any(), any(), any(), any());
     }
 
     @Test
@@ -300,6 +318,6 @@ class MapDataControllerTest {
                 .content(objectMapper.writeValueAsString(Map.of("orderIds", List.of()))))
                 .andExpect(status().isBadRequest());
 
-        verify(mapDataService, never()).generateOptimalCollectionPlan(any(), any(), any(), any());
+        verify(mapDataService, never()).generateOptimalCollectionPlan(any(), any(), any(), any(), any());
     }
 }
@@ -0,0 +1,360 @@
+package com.example.backend.service;
+
+import com.example.backend.exception.BadRequestException;
+import com.example.backend.mapper.CommissionMapper;
+import com.example.backend.model.*;
+import com.example.backend.repository.*;
+import com.example.backend.service.impl.CommissionServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CommissionServiceTest {
+
+    @Mock
+    private CommissionConfigRepository configRepository;
+    @Mock
+    private CommissionPaiementRepository paiementRepository;
+    @Mock
+    private UtilisateurRepository utilisateurRepository;
+    @Mock
+    private OrderRepository orderRepository;
+    @Mock
+    private SocieteRepository societeRepository;
+    @Mock
+    private CommissionMapper mapper;
+    @Mock
+    private OsrmService osrmService;
+    @Mock
+    private DepotMatrixService depotMatrixService;
+    @Mock
+    private RecalculationJobRepository jobRepository;
+    @Mock
+    private CommissionRollupRepository rollupRepository;
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @InjectMocks
+    private CommissionServiceImpl commissionService;
+
+    private final AtomicReference<RecalculationJob> savedJob = new AtomicReference<>();
+    /** commission_paiements.montant_total as the database holds it, by paiement id. */
+    private final Map<Long, BigDecimal> montants = new HashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(commissionService, "recalculateChunkSize", 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReflectionTestUtils.invokeMethod(commissionService, "stopRecalculation");
+    }
+
+    // ========================================================
+    // recalculateAllDistances — checkpointed background run
+    // ========================================================
+
+    @Test
+    void recalculation_shouldResumeAfterLastCheckpointedChunk() throws InterruptedException {
+        givenRecalculationStore(3L, 4L, 5L);
+        // Interrupted by a restart after its first chunk (paiements 1 and 2)
+        RecalculationJob job = RecalculationJob.builder().id(7L).status(RecalculationJob.RUNNING)
+                .lastPaiementId(2L).total(5L).processed(2L).recalculated(2L).build();
+        savedJob.set(job);
+        when(jobRepository.findFirstByStatusOrderByIdDesc(RecalculationJob.RUNNING)).thenReturn(Optional.of(job));
+        when(paiementRepository.findChunkAfter(eq(2L), any())).thenReturn(List.of(paiement(3L), paiement(4L)));
+        when(paiementRepository.findChunkAfter(eq(4L), any())).thenReturn(List.of(paiement(5L)));
+        when(paiementRepository.findChunkAfter(eq(5L), any())).thenReturn(List.of());
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenAnswer(inv -> updated(inv.getArgument(1)));
+
+        commissionService.resumeRecalculation();
+        awaitIdle();
+
+        assertThat(job.getStatus()).isEqualTo(RecalculationJob.COMPLETED);
+        assertThat(job.getLastPaiementId()).isEqualTo(5L);
+        assertThat(job.getProcessed()).isEqualTo(job.getTotal()).isEqualTo(5L);
+        assertThat(job.getRecalculated()).isEqualTo(5L);
+        assertThat(writtenIds()).containsExactly(3L, 4L, 5L);
+        verify(paiementRepository, never()).findChunkAfter(eq(0L), any());
+    }
+
+    @Test
+    void recalculation_shouldMarkJobFailedOnErrorAndRestartFromCheckpoint() throws InterruptedException {
+        givenRecalculationStore(1L, 2L, 3L);
+        when(jobRepository.findFirstByOrderByIdDesc()).thenAnswer(inv -> Optional.ofNullable(savedJob.get()));
+        when(paiementRepository.countByIdGreaterThan(0L)).thenReturn(3L);
+        when(paiementRepository.countByIdGreaterThan(2L)).thenReturn(1L);
+        when(paiementRepository.findChunkAfter(eq(0L), any())).thenReturn(List.of(paiement(1L), paiement(2L)));
+        when(paiementRepository.findChunkAfter(eq(2L), any())).thenReturn(List.of(paiement(3L)));
+        when(paiementRepository.findChunkAfter(eq(3L), any())).thenReturn(List.of());
+        when(jdbcTemplate.batchUpdate(anyString(), anyList()))
+                .thenAnswer(inv -> updated(inv.getArgument(1)))
+                .thenThrow(new LinkageError("driver unloaded"))
+                .thenAnswer(inv -> updated(inv.getArgument(1)));
+
+        commissionService.recalculateAllDistances();
+        awaitIdle();
+
+        RecalculationJob job = savedJob.get();
+        assertThat(job.getStatus()).isEqualTo(RecalculationJob.FAILED);
+        assertThat(job.getError()).isEqualTo("driver unloaded");
+        assertThat(job.getLastPaiementId()).isEqualTo(2L);
+        assertThat(job.getProcessed()).isEqualTo(2L);
+
+        commissionService.recalculateAllDistances();
+        awaitIdle();
+
+        assertThat(job.getStatus()).isEqualTo(RecalculationJob.COMPLETED);
+        assertThat(job.getError()).isNull();
+        assertThat(job.getProcessed()).isEqualTo(job.getTotal()).isEqualTo(3L);
+        assertThat(job.getRecalculated()).isEqualTo(3L);
+        // Paiements 1 and 2 were checkpointed: only the failed chunk is written again
+        verify(paiementRepository, times(1)).findChunkAfter(eq(0L), any());
+        assertThat(writtenIds()).containsExactly(1L, 2L, 3L, 3L);
+    }
+
+    @Test
+    void recalculation_shouldApplyDeltaFromLockedAmountAndSkipDeletedPaiements() throws InterruptedException {
+        givenRecalculationStore(1L, 2L);
+        // Stored before the distances were recalculated; paiement 3 is deleted once its chunk is read
+        montants.put(1L, new BigDecimal("7.500"));
+        montants.put(2L, new BigDecimal("6.000"));
+        when(jobRepository.findFirstByOrderByIdDesc()).thenReturn(Optional.empty());
+        when(paiementRepository.countByIdGreaterThan(0L)).thenReturn(3L);
+        when(paiementRepository.findChunkAfter(eq(0L), any())).thenReturn(List.of(paiement(1L), paiement(2L)));
+        when(paiementRepository.findChunkAfter(eq(2L), any())).thenReturn(List.of(paiement(3L)));
+        when(paiementRepository.findChunkAfter(eq(3L), any())).thenReturn(List.of());
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenAnswer(inv -> updated(inv.getArgument(1)));
+
+        commissionService.recalculateAllDistances();
+        awaitIdle();
+
+        // 5.000 each now: one delta for the shared (société, mois, livreur) row, none for paiement 3
+        verify(rollupRepository).addToRollup(1L, 2026, 3, 20L, 0L, new BigDecimal("-3.500"));
+        verifyNoMoreInteractions(rollupRepository);
+        assertThat(writtenIds()).containsExactly(1L, 2L);
+        RecalculationJob job = savedJob.get();
+        assertThat(job.getStatus()).isEqualTo(RecalculationJob.COMPLETED);
+        assertThat(job.getProcessed()).isEqualTo(job.getTotal()).isEqualTo(3L);
+        assertThat(job.getRecalculated()).isEqualTo(2L);
+    }
+
+    // ========================================================
+    // Bilan rollups — kept with every paiement change
+    // ========================================================
+
+    @Test
+    void generateCommission_shouldAddPaiementToRollup() {
+        Utilisateur livreur = livreur();
+        Order order = new Order();
+        order.setId(101L);
+        order.setLivreur(livreur);
+        CommissionConfig config = CommissionConfig.builder().id(5L).livreur(livreur)
+                .montantFixe(new BigDecimal("5.000")).prixParKm(new BigDecimal("1.000"))
+                .bonus(new BigDecimal("0.500")).build();
+        when(orderRepository.findById(101L)).thenReturn(Optional.of(order));
+        when(paiementRepository.findByOrderId(101L)).thenReturn(Optional.empty());
+        when(configRepository.findByLivreurIdAndActifTrue(20L)).thenReturn(Optional.of(config));
+        when(paiementRepository.save(any(CommissionPaiement.class))).thenAnswer(inv -> {
+            CommissionPaiement paiement = inv.getArgument(0);
+            paiement.setId(1L);
+            paiement.setCreatedAt(LocalDateTime.of(2026, 3, 10, 9, 0)); // @PrePersist
+            return paiement;
+        });
+
+        commissionService.generateCommission(101L, new BigDecimal("2.00"));
+
+        verify(rollupRepository).addToRollup(1L, 2026, 3, 20L, 1L, new BigDecimal("7.500"));
+    }
+
+    @Test
+    void deletePaiement_shouldRemoveLockedAmountFromRollup() {
+        CommissionPaiement paiement = paiement(1L);
+        paiement.setMontantTotal(new BigDecimal("7.500"));
+        when(paiementRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(paiement));
+
+        commissionService.deletePaiement(1L);
+
+        verify(rollupRepository).addToRollup(1L, 2026, 3, 20L, -1L, new BigDecimal("-7.500"));
+        verify(paiementRepository).delete(paiement);
+        verify(paiementRepository, never()).findById(any());
+    }
+
+    @Test
+    void rebuildRollups_shouldBeRefusedWhileRecalculationRuns() throws InterruptedException {
+        givenRecalculationStore(1L);
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(jobRepository.findFirstByOrderByIdDesc()).thenReturn(Optional.empty());
+        when(paiementRepository.countByIdGreaterThan(0L)).thenReturn(1L);
+        when(paiementRepository.findChunkAfter(eq(0L), any())).thenAnswer(inv -> {
+            reading.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return List.of(paiement(1L));
+        });
+        when(paiementRepository.findChunkAfter(eq(1L), any())).thenReturn(List.of());
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenAnswer(inv -> updated(inv.getArgument(1)));
+
+        commissionService.recalculateAllDistances();
+        assertThat(reading.await(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThatThrownBy(() -> commissionService.rebuildRollups(1L)).isInstanceOf(BadRequestException.class);
+        verify(rollupRepository, never()).deleteForRebuild(any());
+
+        release.countDown();
+        awaitIdle();
+        when(rollupRepository.insertForRebuild(1L)).thenReturn(4);
+
+        assertThat(commissionService.rebuildRollups(1L)).isEqualTo(4);
+        verify(rollupRepository).deleteForRebuild(1L);
+    }
+
+    @Test
+    void recalculation_shouldBeRefusedWhileRollupsAreRebuilt() {
+        when(transactionTemplate.execute(any())).thenAnswer(inv ->
+                inv.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        AtomicReference<Throwable> refused = new AtomicReference<>();
+        when(rollupRepository.insertForRebuild(null)).thenAnswer(inv -> {
+            try {
+                commissionService.recalculateAllDistances();
+            } catch (BadRequestException e) {
+                refused.set(e);
+            }
+            return 4;
+        });
+
+        assertThat(commissionService.rebuildRollups(null)).isEqualTo(4);
+
+        assertThat(refused.get()).isInstanceOf(BadRequestException.class);
+        verify(jobRepository, never()).save(any());
+    }
+
+    // ========================================================
+    // Helpers
+    // ========================================================
+
+    /** Transactions run their callback; the job and the paiement amounts live in memory. */
+    private void givenRecalculationStore(Long... paiementIds) {
+        inTransactions();
+        when(jobRepository.findById(7L)).thenAnswer(inv -> Optional.ofNullable(savedJob.get()));
+        when(jobRepository.save(any(RecalculationJob.class))).thenAnswer(inv -> {
+            RecalculationJob job = inv.getArgument(0);
+            if (job.getId() == null) job.setId(7L);
+            savedJob.set(job);
+            return job;
+        });
+        for (Long id : paiementIds) montants.put(id, new BigDecimal("5.000"));
+        // SELECT ... FOR UPDATE: only the paiements still in the table come back
+        when(jdbcTemplate.query(startsWith("SELECT id, montant_total"), any(Object[].class), any(int[].class),
+                any(RowMapper.class))).thenAnswer(inv -> {
+            RowMapper<?> mapper = inv.getArgument(3);
+            List<Object> rows = new ArrayList<>();
+            for (Object id : inv.<Object[]>getArgument(1)) {
+                if (!montants.containsKey((Long) id)) continue;
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getLong("id")).thenReturn((Long) id);
+                when(rs.getBigDecimal("montant_total")).thenReturn(montants.get((Long) id));
+                rows.add(mapper.mapRow(rs, rows.size()));
+            }
+            return rows;
+        });
+    }
+
+    private void inTransactions() {
+        when(transactionTemplate.execute(any())).thenAnswer(inv ->
+                inv.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        doAnswer(inv -> {
+            inv.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+    }
+
+    private void awaitIdle() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (Boolean.TRUE.equals(ReflectionTestUtils.getField(commissionService, "recalculationRunning"))) {
+            if (System.currentTimeMillis() > deadline) throw new AssertionError("Recalculation still running");
+            Thread.sleep(10);
+        }
+    }
+
+    /** Ids of the paiements sent to the batch UPDATE, in call order. */
+    @SuppressWarnings("unchecked")
+    private List<Long> writtenIds() {
+        ArgumentCaptor<List<Object[]>> batches = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, atLeastOnce()).batchUpdate(anyString(), batches.capture());
+        List<Long> ids = new ArrayList<>();
+        for (List<Object[]> batch : batches.getAllValues()) {
+            for (Object[] args : batch) ids.add((Long) args[args.length - 1]);
+        }
+        return ids;
+    }
+
+    private static int[] updated(List<Object[]> batch) {
+        int[] counts = new int[batch.size()];
+        Arrays.fill(counts, 1);
+        return counts;
+    }
+
+    private static Utilisateur livreur() {
+        Societe societe = new Societe();
+        societe.setId(1L);
+        Utilisateur livreur = new Utilisateur();
+        livreur.setId(20L);
+        livreur.setRole(Role.LIVREUR);
+        livreur.setSociete(societe);
+        return livreur;
+    }
+
+    /** Paiement of 5.000 on an order without coordinates: its distances recalculate to zero. */
+    private static CommissionPaiement paiement(Long id) {
+        Order order = new Order();
+        order.setId(100L + id);
+        return CommissionPaiement.builder()
+                .id(id)
+                .order(order)
+                .livreur(livreur())
+                .montantFixe(new BigDecimal("5.000"))
+                .prixParKm(new BigDecimal("1.000"))
+                .montantTotal(new BigDecimal("5.000"))
+                .createdAt(LocalDateTime.of(2026, 3, 10, 9, 0))
+                .build();
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.backend.service;
+
+import com.example.backend.model.Role;
+import com.example.backend.model.Societe;
+import com.example.backend.model.Utilisateur;
+import com.example.backend.repository.UtilisateurRepository;
+import com.example.backend.service.impl.LivreurPositionIndexImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LivreurPositionIndexTest {
+
+    @Mock
+    private UtilisateurRepository utilisateurRepository;
+
+    private LivreurPositionIndexImpl index;
+
+    @BeforeEach
+    void setUp() {
+        index = new LivreurPositionIndexImpl(utilisateurRepository, 0.05, 300);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void refresh_shouldApplyOnlyAfterCommit() {
+        when(utilisateurRepository.findLivreursWithPositionBySocieteId(1L)).thenReturn(List.of());
+        assertThat(index.findAll(1L)).isEmpty();
+
+        TransactionSynchronizationManager.initSynchronization();
+        index.refresh(livreur(10L, 36.80, 10.18));
+        assertThat(index.findAll(1L)).isEmpty();
+
+        for (TransactionSynchronization sync : TransactionSynchronizationManager.getSynchronizations()) {
+            sync.afterCommit();
+        }
+        assertThat(index.findAll(1L)).extracting(LivreurPositionIndex.LivreurPosition::id).containsExactly(10L);
+    }
+
+    @Test
+    void refresh_shouldBeDroppedOnRollback() {
+        when(utilisateurRepository.findLivreursWithPositionBySocieteId(1L)).thenReturn(List.of());
+        assertThat(index.findAll(1L)).isEmpty();
+
+        TransactionSynchronizationManager.initSynchronization();
+        index.refresh(livreur(10L, 36.80, 10.18));
+        TransactionSynchronizationManager.clearSynchronization(); // rolled back: afterCommit never runs
+
+        assertThat(index.findAll(1L)).isEmpty();
+    }
+
+    @Test
+    void load_shouldKeepUpdatesMadeWhileReloading() {
+        Utilisateur stale = livreur(10L, 36.80, 10.18);
+        when(utilisateurRepository.findLivreursWithPositionBySocieteId(1L)).thenAnswer(invocation -> {
+            // Committed while the database read runs: the read still sees the old row
+            index.refresh(livreur(10L, 36.90, 10.30));
+            index.refresh(livreur(11L, 36.85, 10.20));
+            return List.of(stale);
+        });
+
+        List<LivreurPositionIndex.LivreurPosition> all = index.findAll(1L);
+
+        assertThat(all).extracting(LivreurPositionIndex.LivreurPosition::id).containsExactlyInAnyOrder(10L, 11L);
+        assertThat(all).filteredOn(p -> p.id() == 10L)
+                .extracting(LivreurPositionIndex.LivreurPosition::latitude).containsExactly(36.90);
+        assertThat(index.findNearest(1L, 36.90, 10.30, 1))
+                .extracting(LivreurPositionIndex.LivreurPosition::id).containsExactly(10L);
+    }
+
+    @Test
+    void remove_shouldDropLivreurFromLoadedSociete() {
+        when(utilisateurRepository.findLivreursWithPositionBySocieteId(1L))
+                .thenReturn(List.of(livreur(10L, 36.80, 10.18)));
+        assertThat(index.findAll(1L)).hasSize(1);
+
+        index.remove(10L);
+
+        assertThat(index.findAll(1L)).isEmpty();
+        verify(utilisateurRepository, times(1)).findLivreursWithPositionBySocieteId(1L);
+    }
+
+    private static Utilisateur livreur(Long id, double latitude, double longitude) {
+        Societe societe = new Societe();
+        societe.setId(1L);
+        Utilisateur livreur = new Utilisateur();
+        livreur.setId(id);
+        livreur.setRole(Role.LIVREUR);
+        livreur.setActif(true);
+        livreur.setSociete(societe);
+        livreur.setLatitude(latitude);
+        livreur.setLongitude(longitude);
+        return livreur;
+    }
+}
@@ -1,10 +1,13 @@
 package com.example.backend.service;
 
+import com.example.backend.dto.CollectionPlanOptions;
 import com.example.backend.dto.MapDataDTO;
 import com.example.backend.dto.ProductStockInfoDTO;
 import com.example.backend.model.*;
 import com.example.backend.repository.*;
+import com.example.backend.service.LivreurPositionIndex.LivreurPosition;
 import com.example.backend.service.impl.MapDataServiceImpl;
+import com.example.backend.service.routing.RoadDistanceEstimator;
 import tools.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -13,14 +16,17 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
@@ -39,6 +45,12 @@ class MapDataServiceTest {
     private StockRepository stockRepository;
     @Mock
     private OrderRepository orderRepository;
+    @Mock
+    private OsrmService osrmService;
+    @Mock
+    private LivreurPositionIndex livreurPositionIndex;
+    @Mock
+    private DepotMatrixService depotMatrixService;
     @Spy
     private ObjectMapper objectMapper = new ObjectMapper();
 
@@ -91,14 +103,9 @@ class MapDataServiceTest {
         when(magasinRepository.findBySocieteId(1L)).thenReturn(List.of(magasin));
         when(depotRepository.findBySocieteId(1L)).thenReturn(List.of(depot));
 
-        Utilisateur livreur = new Utilisateur();
-        livreur.setId(1L);
-        livreur.setNom("Dupont");
-        livreur.setPrenom("Jean");
-        livreur.setLatitude(34.77);
-        livreur.setLongitude(10.79);
-        livreur.setDernierePositionAt(LocalDateTime.now());
-        when(utilisateurRepository.findLivreursWithPositionBySocieteId(1L)).thenReturn(List.of(livreur));
+        LivreurPosition livreur = new LivreurPosition(1L, "Dupont", "Jean", null,
+                34.77, 10.79, LocalDateTime.now());
+        when(livreurPositionIndex.findAll(1L)).thenReturn(List.of(livreur));
 
         // When
         MapDataDTO result = mapDataService.getMapData(1L);
@@ -136,7 +143,7 @@ class MapDataServiceTest {
 
         when(magasinRepository.findBySocieteId(1L)).thenReturn(List.of(magasin, magasinNoCoords));
         when(depotRepository.findBySocieteId(1L)).thenReturn(List.of());
-        when(utilisateurRepository.findLivreursWithPositionBySocieteId(1L)).thenReturn(List.of());
+        when(livreurPositionIndex.findAll(1L)).thenReturn(List.of());
 
         // When
         MapDataDTO result = mapDataService.getMapData(1L);
@@ -477,4 +484,164 @@ class MapDataServiceTest {
         List<Map<String, Object>> steps = (List<Map<String, Object>>) result.get("mergedSteps");
         assertThat(steps.get(0).get("depotId")).isEqualTo(1L); // Close depot
     }
+
+    @Test
+    void optimalPlan_shouldStayWithinMaxMillisWhenOsrmDoesNotAnswer() {
+        // Each product is only in one depot: two steps, so the steps are also sequenced by route
+        Produit p1 = new Produit(); p1.setId(1L); p1.setName("P1");
+        Produit p2 = new Produit(); p2.setId(2L); p2.setName("P2");
+        OrderItem i1 = OrderItem.builder().id(10L).produit(p1).quantity(2).build();
+        OrderItem i2 = OrderItem.builder().id(20L).produit(p2).quantity(1).build();
+        Order order = new Order(); order.setId(100L);
+        order.setItems(new ArrayList<>(List.of(i1, i2)));
+        i1.setOrder(order); i2.setOrder(order);
+        when(orderRepository.findByIdsWithItems(List.of(100L))).thenReturn(List.of(order));
+
+        Depot close = new Depot(); close.setId(1L); close.setNom("Close"); close.setLatitude(34.740); close.setLongitude(10.760);
+        Depot far = new Depot(); far.setId(2L); far.setNom("Far"); far.setLatitude(35.500); far.setLongitude(11.500);
+        Stock sClose = new Stock(); sClose.setProduit(p1); sClose.setDepot(close); sClose.setQuantity(10);
+        Stock sFar = new Stock(); sFar.setProduit(p2); sFar.setDepot(far); sFar.setQuantity(10);
+        when(stockRepository.findByProduitIdsAndSocieteId(any(), eq(1L))).thenReturn(List.of(sClose, sFar));
+
+        // OSRM never answers: the legs fall back to estimates when the request budget runs out
+        when(osrmService.getTableAsync(any(), any(), any())).thenReturn(new CompletableFuture<>());
+        // The blocking call must not be used once the budget is spent
+        lenient().when(osrmService.getTable(any())).thenAnswer(inv -> {
+            Thread.sleep(2_000);
+            return null;
+        });
+
+        long start = System.nanoTime();
+        Map<String, Object> result = mapDataService.generateOptimalCollectionPlan(List.of(100L), 1L, 34.740, 10.760,
+                CollectionPlanOptions.builder().maxMillis(200L).build());
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertThat(elapsedMs).isLessThan(1_000L);
+        assertThat(result.get("totalDepots")).isEqualTo(2);
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> steps = (List<Map<String, Object>>) result.get("mergedSteps");
+        assertThat(steps).extracting(step -> step.get("depotId")).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void optimalPlan_shouldNotSaveGeneratedPlanInPreview() {
+        Produit p1 = new Produit(); p1.setId(1L); p1.setName("P1");
+        OrderItem item = OrderItem.builder().id(10L).produit(p1).quantity(2).build();
+        Order order = new Order(); order.setId(100L);
+        order.setItems(new ArrayList<>(List.of(item)));
+        item.setOrder(order);
+        when(orderRepository.findByIdsWithItems(List.of(100L))).thenReturn(List.of(order));
+
+        Stock stock = new Stock(); stock.setProduit(p1); stock.setDepot(depot); stock.setQuantity(10);
+        when(stockRepository.findByProduitIdsAndSocieteId(any(), eq(1L))).thenReturn(List.of(stock));
+
+        Map<String, Object> result = mapDataService.generateOptimalCollectionPlan(List.of(100L), 1L, null, null,
+                CollectionPlanOptions.builder().preview(true).build());
+
+        assertThat(result.get("totalDepots")).isEqualTo(1);
+        assertThat(order.getCollectionPlan()).isNull();
+        verify(orderRepository, never()).save(any());
+    }
+
+    // ========================================================
+    // recommendLivreursForOrder — one /table + one /route + one count
+    // ========================================================
+
+    @Test
+    void recommendLivreurs_shouldUseOneTableOneRouteAndOneCountForWholeFleet() {
+        Order order = new Order();
+        order.setId(100L);
+        order.setItems(new ArrayList<>());
+        order.setLatitudeLivraison(34.80);
+        order.setLongitudeLivraison(10.80);
+        order.setCollectionPlan("[{\"depotId\":1,\"depotLatitude\":34.76,\"depotLongitude\":10.78}]");
+        when(orderRepository.findByIdWithItems(100L)).thenReturn(Optional.of(order));
+
+        List<LivreurPosition> livreurs = new ArrayList<>();
+        for (long id = 1; id <= 3; id++) {
+            livreurs.add(new LivreurPosition(id, "Livreur", String.valueOf(id), null,
+                    34.70 + id / 100.0, 10.70, null));
+        }
+        // Candidates come from the spatial index, nearest to the first depot
+        when(livreurPositionIndex.findNearest(eq(1L), eq(34.76), eq(10.78), anyInt())).thenReturn(livreurs);
+
+        // Livreur 2 is closest to the first depot
+        when(osrmService.getTableAsync(any(), eq(List.of(0, 1, 2)), eq(List.of(3)))).thenReturn(CompletableFuture.completedFuture(
+                new OsrmService.TableResult(
+                        new double[][]{{900}, {300}, {600}},
+                        new double[][]{{9000}, {3000}, {6000}})));
+        when(osrmService.getRouteAsync(any())).thenReturn(CompletableFuture.completedFuture(
+                new OsrmService.RouteResult(600, 5000)));
+        when(orderRepository.countByLivreurIdsAndStatusIn(eq(List.of(1L, 2L, 3L)), any()))
+                .thenReturn(List.<Object[]>of(new Object[]{1L, 4L}));
+
+        List<Map<String, Object>> ranked = mapDataService.recommendLivreursForOrder(100L, 1L);
+
+        assertThat(ranked).hasSize(3);
+        assertThat(ranked.get(0).get("livreurId")).isEqualTo(2L);
+        assertThat(ranked.get(0).get("tempsEstimeMinutes")).isEqualTo(15.0); // (300 + 600) s
+        assertThat(ranked.get(0).get("distanceTotaleKm")).isEqualTo(8.0);
+        verify(osrmService, times(1)).getTableAsync(any(), any(), any());
+        verify(osrmService, times(1)).getRouteAsync(any());
+        assertThat(ranked.get(2).get("commandesActives")).isEqualTo(4L); // livreur 1: 900 s + workload
+        verify(orderRepository, never()).findByLivreurIdAndStatusIn(any(), any());
+    }
+
+    @Test
+    void recommendLivreurs_shouldKeepLivreursRuledOutByEstimatesOutOfTheTable() {
+        Order order = new Order();
+        order.setId(100L);
+        order.setItems(new ArrayList<>());
+        order.setCollectionPlan("[{\"depotId\":1,\"depotLatitude\":34.76,\"depotLongitude\":10.78}]");
+        when(orderRepository.findByIdWithItems(100L)).thenReturn(Optional.of(order));
+
+        List<LivreurPosition> livreurs = List.of(
+                new LivreurPosition(1L, "Near", "A", null, 34.75, 10.77, null),
+                new LivreurPosition(2L, "Near", "B", null, 34.77, 10.79, null),
+                new LivreurPosition(3L, "Far", "C", null, 35.50, 11.50, null));
+        when(livreurPositionIndex.findNearest(eq(1L), eq(34.76), eq(10.78), anyInt())).thenReturn(livreurs);
+
+        // Calibrated: roads ≈ 1.3× the straight line at 10 m/s
+        RoadDistanceEstimator estimator = new RoadDistanceEstimator(0.1, 1);
+        estimator.observe(34.70, 10.70, 34.70, 10.80, 1_200, 12_000);
+        estimator.observe(34.70, 10.70, 34.80, 10.70, 1_450, 14_500);
+        when(osrmService.getEstimator()).thenReturn(estimator);
+        when(osrmService.getTableAsync(any(), eq(List.of(0, 1)), eq(List.of(2)))).thenReturn(CompletableFuture.completedFuture(
+                new OsrmService.TableResult(new double[][]{{200}, {150}}, new double[][]{{1800}, {1500}})));
+
+        List<Map<String, Object>> ranked = mapDataService.recommendLivreursForOrder(100L, 1L);
+
+        verify(osrmService, times(1)).getTableAsync(any(), any(), any());
+        assertThat(ranked).extracting(e -> e.get("livreurId")).containsExactly(2L, 1L, 3L);
+        assertThat(ranked.get(0).get("approximatif")).isEqualTo(false);
+        assertThat(ranked.get(2).get("approximatif")).isEqualTo(true);
+        assertThat((Double) ranked.get(2).get("tempsEstimeMinutes")).isGreaterThan(100.0); // ≈ 105 km straight line
+    }
+
+    @Test
+    void recommendLivreurs_shouldEstimateLegsWhenOsrmDoesNotAnswerInTime() {
+        ReflectionTestUtils.setField(mapDataService, "recommendMaxMillis", 200L);
+        Order order = new Order();
+        order.setId(100L);
+        order.setItems(new ArrayList<>());
+        order.setLatitudeLivraison(34.80);
+        order.setLongitudeLivraison(10.80);
+        order.setCollectionPlan("[{\"depotId\":1,\"depotLatitude\":34.76,\"depotLongitude\":10.78}]");
+        when(orderRepository.findByIdWithItems(100L)).thenReturn(Optional.of(order));
+        when(livreurPositionIndex.findNearest(eq(1L), eq(34.76), eq(10.78), anyInt())).thenReturn(List.of(
+                new LivreurPosition(1L, "Far", "A", null, 34.90, 10.90, null),
+                new LivreurPosition(2L, "Near", "B", null, 34.75, 10.77, null)));
+
+        // OSRM never answers: the waiting request falls back to haversine legs
+        when(osrmService.getTableAsync(any(), any(), any())).thenReturn(new CompletableFuture<>());
+        when(osrmService.getRouteAsync(any())).thenReturn(new CompletableFuture<>());
+
+        long start = System.nanoTime();
+        List<Map<String, Object>> ranked = mapDataService.recommendLivreursForOrder(100L, 1L);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertThat(elapsedMs).isLessThan(1_000L);
+        assertThat(ranked).extracting(e -> e.get("livreurId")).containsExactly(2L, 1L);
+        assertThat(ranked).extracting(e -> e.get("approximatif")).containsOnly(true);
+    }
 }
@@ -0,0 +1,497 @@
+package com.example.backend.service;
+
+import com.example.backend.service.impl.OsrmServiceImpl;
+import com.example.backend.service.routing.CircuitBreaker;
+import com.example.backend.service.routing.EndpointPool;
+import com.example.backend.service.routing.Polyline;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * OsrmServiceImpl against an in-process fake OSRM: durations are 1000 s per degree of
+ * Manhattan distance, distances 100 km per degree.
+ */
+class OsrmServiceTest {
+
+    private HttpServer server;
+    private ExecutorService serverThreads;
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+    private final Map<Integer, AtomicInteger> requestsByPort = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private volatile long responseDelayMillis = 0;
+    private volatile int failWithStatus = 0;
+    private volatile int maxLocations = Integer.MAX_VALUE;
+    private OsrmServiceImpl osrmService;
+
+    @BeforeEach
+    void startFakeOsrm() throws IOException {
+        serverThreads = Executors.newCachedThreadPool();
+        server = startServer();
+        osrmService = osrm(16, 10_000, 60_000, 100);
+    }
+
+    private HttpServer startServer() throws IOException {
+        HttpServer started = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        started.createContext("/table/v1/driving/", this::table);
+        started.createContext("/route/v1/driving/", this::route);
+        started.setExecutor(serverThreads);
+        started.start();
+        return started;
+    }
+
+    @AfterEach
+    void stopFakeOsrm() {
+        server.stop(0);
+        serverThreads.shutdownNow();
+    }
+
+    private OsrmServiceImpl osrm(int maxConcurrentRequests, long requestTimeoutMillis, long circuitOpenMillis,
+                                 int maxTableLocations) {
+        return osrm(url(server), maxConcurrentRequests, requestTimeoutMillis, circuitOpenMillis, maxTableLocations);
+    }
+
+    private OsrmServiceImpl osrm(String urls, int maxConcurrentRequests, long requestTimeoutMillis, long circuitOpenMillis,
+                                 int maxTableLocations) {
+        return new OsrmServiceImpl(urls, 500_000, 10_000, 300, 1_000, requestTimeoutMillis, maxConcurrentRequests,
+                256, 3, circuitOpenMillis, maxTableLocations, 20, 100, 0.1, 20);
+    }
+
+    @Test
+    void getTable_shouldServeSubsetsAndReorderingsFromKnownPairs() {
+        List<double[]> depots = List.of(p(34.70, 10.70), p(34.75, 10.80), p(34.80, 10.75), p(34.90, 10.90));
+        OsrmService.TableResult full = osrmService.getTable(depots);
+        assertThat(requests).hasSize(1);
+
+        List<double[]> reordered = List.of(depots.get(3), depots.get(1), depots.get(0));
+        OsrmService.TableResult sub = osrmService.getTable(reordered);
+        OsrmService.TableResult oneRow = osrmService.getTable(depots, List.of(2), List.of(0, 3));
+
+        assertThat(requests).hasSize(1);
+        assertThat(sub.durations()[0][2]).isEqualTo(full.durations()[3][0]);
+        assertThat(sub.distances()[1][0]).isEqualTo(full.distances()[1][3]);
+        assertThat(oneRow.durations()[0][1]).isEqualTo(full.durations()[2][3]);
+    }
+
+    @Test
+    void getTable_shouldFetchOnlyMissingSourcesAndDestinations() {
+        List<double[]> depots = List.of(p(34.70, 10.70), p(34.75, 10.80), p(34.80, 10.75));
+        osrmService.getTable(depots);
+
+        // A livreur joins: only its row and its column are unknown
+        double[] livreur = p(34.60, 10.60);
+        List<double[]> withLivreur = List.of(livreur, depots.get(0), depots.get(1), depots.get(2));
+        OsrmService.TableResult result = osrmService.getTable(withLivreur);
+
+        assertThat(requests).hasSize(2);
+        // sources = livreur + depots (column 0 missing for each), destinations = everything
+        assertThat(requests.get(1)).contains("sources=0;1;2;3").contains("destinations=0;1;2;3");
+        for (int i = 0; i < 4; i++) {
+            for (int j = 0; j < 4; j++) {
+                assertThat(result.durations()[i][j]).isEqualTo(expectedDuration(withLivreur.get(i), withLivreur.get(j)));
+            }
+        }
+
+        // Livreur as the only source: its row is known now
+        osrmService.getTable(withLivreur, List.of(0), List.of(1, 2, 3));
+        assertThat(requests).hasSize(2);
+
+        // A new delivery point as the only destination: one column fetched for the known sources
+        List<double[]> withDelivery = new ArrayList<>(withLivreur);
+        withDelivery.add(p(34.95, 10.95));
+        osrmService.getTable(withDelivery, List.of(0, 1, 2, 3), List.of(4));
+        assertThat(requests).hasSize(3);
+        assertThat(requests.get(2)).contains("sources=0;1;2;3").contains("destinations=4");
+    }
+
+    @Test
+    void getCacheStats_shouldCountPairHitsAndMisses() {
+        List<double[]> depots = List.of(p(34.70, 10.70), p(34.75, 10.80));
+        osrmService.getTable(depots);
+        osrmService.getTable(depots);
+
+        assertThat(osrmService.getCacheStats().get("table").misses()).isEqualTo(2L); // two off-diagonal pairs
+        assertThat(osrmService.getCacheStats().get("table").hits()).isEqualTo(6L);
+    }
+
+    @Test
+    void getRoute_shouldBeCached() {
+        List<double[]> stops = List.of(p(34.70, 10.70), p(34.75, 10.80));
+        OsrmService.RouteResult first = osrmService.getRoute(stops);
+        OsrmService.RouteResult second = osrmService.getRoute(stops);
+
+        assertThat(requests).hasSize(1);
+        assertThat(second).isEqualTo(first);
+    }
+
+    @Test
+    void getRouteGeometry_shouldDecodeFullOverviewAndFillRouteCache() {
+        List<double[]> stops = List.of(p(34.70, 10.70), p(34.75, 10.80), p(34.80, 10.75));
+
+        OsrmService.RouteGeometry geometry = osrmService.getRouteGeometryAsync(stops).join();
+
+        assertThat(requests).hasSize(1);
+        assertThat(requests.get(0)).contains("overview=full").contains("geometries=polyline6");
+        assertThat(geometry.points()).hasSize(5);
+        assertThat(geometry.points().get(1)[0]).isEqualTo(34.70);
+        assertThat(geometry.points().get(1)[1]).isEqualTo(10.80);
+        assertThat(geometry.points().get(4)[0]).isEqualTo(34.80);
+        double expected = expectedDuration(stops.get(0), stops.get(1)) + expectedDuration(stops.get(1), stops.get(2));
+        assertThat(geometry.totalDurationSeconds()).isEqualTo(expected);
+
+        // Totals of the same stops are now known
+        assertThat(osrmService.getRoute(stops).totalDurationSeconds()).isEqualTo(expected);
+        assertThat(requests).hasSize(1);
+    }
+
+    @Test
+    void getRouteAsync_shouldCapRequestsInFlight() {
+        responseDelayMillis = 100;
+        OsrmServiceImpl limited = osrm(2, 10_000, 60_000, 100);
+
+        List<CompletableFuture<OsrmService.RouteResult>> futures = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            futures.add(limited.getRouteAsync(List.of(p(34.70, 10.70), p(34.71 + i / 100.0, 10.80))));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+
+        assertThat(requests).hasSize(6);
+        assertThat(maxInFlight.get()).isLessThanOrEqualTo(2);
+        for (CompletableFuture<OsrmService.RouteResult> future : futures) {
+            assertThat(future.join()).isNotNull();
+        }
+    }
+
+    @Test
+    void getTableAsync_shouldCompleteWithNullOnTimeout() {
+        responseDelayMillis = 1_000;
+        OsrmServiceImpl impatient = osrm(16, 100, 60_000, 100);
+
+        CompletableFuture<OsrmService.TableResult> future =
+                impatient.getTableAsync(List.of(p(34.70, 10.70), p(34.75, 10.80)), null, null);
+
+        assertThat(future.join()).isNull();
+    }
+
+    @Test
+    void getRoute_shouldSendOneRequestForConcurrentIdenticalCalls() throws Exception {
+        responseDelayMillis = 300;
+        List<double[]> stops = List.of(p(34.70, 10.70), p(34.75, 10.80), p(34.80, 10.75));
+        int callers = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<OsrmService.RouteResult>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return osrmService.getRoute(stops);
+                }));
+            }
+            start.countDown();
+            for (Future<OsrmService.RouteResult> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS)).isNotNull();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertThat(requests).hasSize(1);
+    }
+
+    @Test
+    void getTableAsync_shouldShareOneUpstreamRequestBetweenIdenticalCalls() {
+        responseDelayMillis = 300;
+        List<double[]> depots = List.of(p(34.70, 10.70), p(34.75, 10.80), p(34.80, 10.75));
+
+        List<CompletableFuture<OsrmService.TableResult>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) futures.add(osrmService.getTableAsync(depots, null, null));
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+
+        assertThat(requests).hasSize(1);
+        for (CompletableFuture<OsrmService.TableResult> future : futures) {
+            assertThat(future.join().durations()[0][1]).isEqualTo(expectedDuration(depots.get(0), depots.get(1)));
+        }
+    }
+
+    @Test
+    void shouldShortCircuitWhileOsrmIsDown() {
+        failWithStatus = 503;
+        for (int i = 0; i < 3; i++) {
+            assertThat(osrmService.getRoute(List.of(p(34.70, 10.70), p(34.71 + i / 100.0, 10.80)))).isNull();
+        }
+        assertThat(osrmService.getHealth().circuit().state()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        // Open circuit: instant null, OSRM is not called
+        assertThat(osrmService.getRoute(List.of(p(34.70, 10.70), p(34.90, 10.90)))).isNull();
+        assertThat(osrmService.getTable(List.of(p(34.70, 10.70), p(34.90, 10.90)))).isNull();
+
+        assertThat(requests).hasSize(3);
+        assertThat(osrmService.getHealth().circuit().shortCircuited()).isEqualTo(2L);
+    }
+
+    @Test
+    void shouldCloseCircuitAfterSuccessfulProbe() throws Exception {
+        OsrmServiceImpl quickRetry = osrm(16, 10_000, 100, 100);
+        failWithStatus = 503;
+        for (int i = 0; i < 3; i++) quickRetry.getRoute(List.of(p(34.70, 10.70), p(34.71 + i / 100.0, 10.80)));
+        assertThat(quickRetry.getHealth().circuit().state()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        failWithStatus = 0;
+        Thread.sleep(150);
+        // First call after the open period starts the probe and still falls back
+        assertThat(quickRetry.getRoute(List.of(p(34.70, 10.70), p(34.90, 10.90)))).isNull();
+        for (int i = 0; i < 50 && quickRetry.getHealth().circuit().state() != CircuitBreaker.State.CLOSED; i++) {
+            Thread.sleep(20);
+        }
+
+        assertThat(quickRetry.getHealth().circuit().state()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(quickRetry.getRoute(List.of(p(34.70, 10.70), p(34.90, 10.90)))).isNotNull();
+    }
+
+    @Test
+    void getTable_shouldTileLargeMatricesWithinLocationLimit() {
+        maxLocations = 10;
+        OsrmServiceImpl tiled = osrm(4, 10_000, 60_000, 10);
+        Random random = new Random(9);
+        List<double[]> points = new ArrayList<>();
+        for (int i = 0; i < 30; i++) points.add(p(34.5 + random.nextDouble(), 10.5 + random.nextDouble()));
+
+        OsrmService.TableResult result = tiled.getTable(points);
+
+        assertThat(result).isNotNull();
+        assertThat(requests).hasSize(36); // 6 row blocks x 6 column blocks of 5
+        for (int i = 0; i < 30; i++) {
+            for (int j = 0; j < 30; j++) {
+                assertThat(result.durations()[i][j]).isEqualTo(expectedDuration(points.get(i), points.get(j)));
+            }
+        }
+
+        // Five new points: only tiles holding one of their rows or columns are fetched
+        List<double[]> grown = new ArrayList<>(points);
+        for (int i = 0; i < 5; i++) grown.add(p(35.6 + i / 100.0, 11.6));
+        requests.clear();
+        OsrmService.TableResult bigger = tiled.getTable(grown);
+
+        assertThat(bigger.durations()[33][2]).isEqualTo(expectedDuration(grown.get(33), grown.get(2)));
+        assertThat(bigger.durations()[2][33]).isEqualTo(expectedDuration(grown.get(2), grown.get(33)));
+        assertThat(requests.size()).isLessThanOrEqualTo(14); // 7 row blocks + 7 column blocks, minus overlap
+    }
+
+    @Test
+    void getTable_shouldSendSquareTableWithinLocationLimitInOneRequest() {
+        maxLocations = 10;
+        OsrmServiceImpl limited = osrm(4, 10_000, 60_000, 10);
+        List<double[]> points = new ArrayList<>();
+        for (int i = 0; i < 10; i++) points.add(p(34.5 + i / 10.0, 10.5 + i / 20.0));
+
+        OsrmService.TableResult result = limited.getTable(points);
+
+        assertThat(result).isNotNull();
+        assertThat(requests).hasSize(1); // 10 sources and 10 destinations on the same 10 coordinates
+        assertThat(result.durations()[9][0]).isEqualTo(expectedDuration(points.get(9), points.get(0)));
+    }
+
+    @Test
+    void getLegAsync_shouldAnswerConcurrentLegsWithOneTable() {
+        List<double[]> stops = List.of(p(34.60, 10.60), p(34.70, 10.70), p(34.75, 10.80), p(34.80, 10.75), p(34.95, 10.95));
+        List<CompletableFuture<OsrmService.RouteResult>> legs = new ArrayList<>();
+        for (int i = 0; i + 1 < stops.size(); i++) legs.add(osrmService.getLegAsync(stops.get(i), stops.get(i + 1)));
+        legs.add(osrmService.getLegAsync(stops.get(0), stops.get(1)));
+
+        for (int i = 0; i + 1 < stops.size(); i++) {
+            OsrmService.RouteResult leg = legs.get(i).join();
+            double expected = expectedDuration(stops.get(i), stops.get(i + 1));
+            assertThat(leg.totalDurationSeconds()).isEqualTo(expected);
+            assertThat(leg.totalDistanceMeters()).isEqualTo(expected * 100);
+        }
+        assertThat(legs.get(4).join().totalDurationSeconds()).isEqualTo(legs.get(0).join().totalDurationSeconds());
+        assertThat(requests).hasSize(1);
+        assertThat(requests.get(0)).contains("/table/");
+
+        // Known legs are answered from the pair store
+        osrmService.getLegAsync(stops.get(1), stops.get(2)).join();
+        assertThat(requests).hasSize(1);
+    }
+
+    @Test
+    void shouldSpreadLoadOverInstancesAndIsolateAFailedOne() throws IOException {
+        HttpServer second = startServer();
+        HttpServer third = startServer();
+        try {
+            OsrmServiceImpl pool = osrm(url(server) + ", " + url(second) + "," + url(third) + "/", 4, 10_000, 60_000, 100);
+            for (int i = 0; i < 30; i++) {
+                assertThat(pool.getRoute(List.of(p(34.70, 10.70), p(34.71 + i / 100.0, 10.80)))).isNotNull();
+            }
+            for (HttpServer s : List.of(server, second, third)) {
+                assertThat(requestsByPort.get(s.getAddress().getPort())).as("port %d", s.getAddress().getPort()).isNotNull();
+            }
+
+            // One instance dies: its circuit opens after 3 failures, the other two keep answering
+            third.stop(0);
+            int failed = 0;
+            for (int i = 0; i < 30; i++) {
+                if (pool.getRoute(List.of(p(34.60, 10.60), p(34.61 + i / 100.0, 10.90))) == null) failed++;
+            }
+            assertThat(failed).isLessThanOrEqualTo(3);
+
+            OsrmService.RoutingHealth health = pool.getHealth();
+            assertThat(health.circuit().state()).isEqualTo(CircuitBreaker.State.CLOSED);
+            assertThat(health.endpoints()).hasSize(3);
+            assertThat(health.endpoints().get(2).url()).isEqualTo(url(third));
+            assertThat(health.endpoints().get(2).circuit().state()).isEqualTo(CircuitBreaker.State.OPEN);
+            assertThat(health.endpoints().get(0).circuit().state()).isEqualTo(CircuitBreaker.State.CLOSED);
+            assertThat(health.endpoints().get(1).circuit().state()).isEqualTo(CircuitBreaker.State.CLOSED);
+            assertThat(health.endpoints().stream().mapToLong(EndpointPool.EndpointStats::requests).sum()).isEqualTo(60);
+        } finally {
+            second.stop(0);
+            third.stop(0);
+        }
+    }
+
+    // ---- fake OSRM ----
+
+    private static String url(HttpServer s) {
+        return "http://127.0.0.1:" + s.getAddress().getPort();
+    }
+
+    private static double[] p(double lat, double lon) {
+        return new double[]{lat, lon};
+    }
+
+    private static double expectedDuration(double[] a, double[] b) {
+        return Math.round((Math.abs(a[0] - b[0]) + Math.abs(a[1] - b[1])) * 1000 * 10) / 10.0;
+    }
+
+    private void table(HttpExchange exchange) throws IOException {
+        record(exchange);
+        simulateLatency();
+        List<double[]> coords = coordinates(exchange, "/table/v1/driving/");
+        if (coords.size() > maxLocations) {
+            respond(exchange, "{\"code\":\"TooBig\",\"message\":\"Too many table coordinates\"}");
+            return;
+        }
+        Map<String, String> query = query(exchange);
+        int[] sources = indices(query.get("sources"), coords.size());
+        int[] dests = indices(query.get("destinations"), coords.size());
+
+        StringBuilder durations = new StringBuilder("[");
+        StringBuilder distances = new StringBuilder("[");
+        for (int i = 0; i < sources.length; i++) {
+            durations.append(i > 0 ? ",[" : "[");
+            distances.append(i > 0 ? ",[" : "[");
+            for (int j = 0; j < dests.length; j++) {
+                double d = expectedDuration(coords.get(sources[i]), coords.get(dests[j]));
+                durations.append(j > 0 ? "," : "").append(d);
+                distances.append(j > 0 ? "," : "").append(d * 100);
+            }
+            durations.append(']');
+            distances.append(']');
+        }
+        respond(exchange, "{\"code\":\"Ok\",\"durations\":" + durations + "],\"distances\":" + distances + "]}");
+    }
+
+    private void route(HttpExchange exchange) throws IOException {
+        record(exchange);
+        simulateLatency();
+        if (failWithStatus != 0) {
+            exchange.sendResponseHeaders(failWithStatus, -1);
+            exchange.close();
+            return;
+        }
+        List<double[]> coords = coordinates(exchange, "/route/v1/driving/");
+        double total = 0;
+        for (int i = 0; i + 1 < coords.size(); i++) total += expectedDuration(coords.get(i), coords.get(i + 1));
+        // Full overview: the waypoints joined by an L-shaped corner per leg
+        String geometry = "";
+        if ("full".equals(query(exchange).get("overview"))) {
+            List<double[]> shape = new ArrayList<>();
+            for (int i = 0; i < coords.size(); i++) {
+                if (i > 0) shape.add(p(coords.get(i - 1)[0], coords.get(i)[1]));
+                shape.add(coords.get(i));
+            }
+            geometry = ",\"geometry\":\"" + Polyline.encode(shape, 6).replace("\\", "\\\\") + "\"";
+        }
+        respond(exchange, "{\"code\":\"Ok\",\"routes\":[{\"duration\":" + total + ",\"distance\":" + total * 100 + geometry + "}]}");
+    }
+
+    private void record(HttpExchange exchange) {
+        requests.add(exchange.getRequestURI().toString());
+        requestsByPort.computeIfAbsent(exchange.getLocalAddress().getPort(), k -> new AtomicInteger()).incrementAndGet();
+    }
+
+    private void simulateLatency() {
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        try {
+            if (responseDelayMillis > 0) Thread.sleep(responseDelayMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private static List<double[]> coordinates(HttpExchange exchange, String prefix) {
+        List<double[]> coords = new ArrayList<>();
+        for (String lonLat : exchange.getRequestURI().getPath().substring(prefix.length()).split(";")) {
+            String[] parts = lonLat.split(",");
+            coords.add(p(Double.parseDouble(parts[1]), Double.parseDouble(parts[0])));
+        }
+        return coords;
+    }
+
+    private static Map<String, String> query(HttpExchange exchange) {
+        Map<String, String> query = new HashMap<>();
+        String raw = exchange.getRequestURI().getQuery();
+        if (raw == null) return query;
+        for (String param : raw.split("&")) {
+            String[] kv = param.split("=", 2);
+            query.put(kv[0], kv.length > 1 ? kv[1] : "");
+        }
+        return query;
+    }
+
+    private static int[] indices(String param, int n) {
+        if (param == null || param.equals("all")) {
+            int[] all = new int[n];
+            for (int i = 0; i < n; i++) all[i] = i;
+            return all;
+        }
+        String[] parts = param.split(";");
+        int[] idx = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) idx[i] = Integer.parseInt(parts[i]);
+        return idx;
+    }
+
+    private static void respond(HttpExchange exchange, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
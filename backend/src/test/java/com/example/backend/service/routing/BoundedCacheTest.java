@@ -0,0 +1,71 @@
+package com.example.backend.service.routing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BoundedCacheTest {
+
+    private final AtomicLong now = new AtomicLong(0);
+
+    @Test
+    void shouldEvictLeastRecentlyUsedByWeight() {
+        BoundedCache<String, int[]> cache = new BoundedCache<>(10, 1_000, v -> v.length, now::get);
+        cache.put("a", new int[4]);
+        cache.put("b", new int[4]);
+        cache.get("a"); // b becomes least recently used
+        cache.put("c", new int[4]);
+
+        assertThat(cache.get("b")).isNull();
+        assertThat(cache.get("a")).isNotNull();
+        assertThat(cache.get("c")).isNotNull();
+        BoundedCache.Stats stats = cache.stats();
+        assertThat(stats.evictions()).isEqualTo(1);
+        assertThat(stats.weight()).isEqualTo(8);
+        assertThat(stats.hits()).isEqualTo(3);
+        assertThat(stats.misses()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldNotKeepEntryHeavierThanCache() {
+        BoundedCache<String, int[]> cache = new BoundedCache<>(10, 1_000, v -> v.length, now::get);
+        cache.put("a", new int[4]);
+        cache.put("huge", new int[11]);
+
+        assertThat(cache.get("huge")).isNull();
+        assertThat(cache.get("a")).isNotNull();
+        assertThat(cache.stats().size()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldExpireOnAccessAndOnCleanup() {
+        BoundedCache<String, int[]> cache = new BoundedCache<>(10, 1_000, v -> v.length, now::get);
+        cache.put("a", new int[2]);
+        cache.put("b", new int[3]);
+        now.set(500);
+        cache.put("c", new int[1]);
+        now.set(1_000);
+
+        assertThat(cache.get("a")).isNull();
+        assertThat(cache.evictExpired()).isEqualTo(1); // b
+        assertThat(cache.get("c")).isNotNull();
+
+        BoundedCache.Stats stats = cache.stats();
+        assertThat(stats.expirations()).isEqualTo(2);
+        assertThat(stats.size()).isEqualTo(1);
+        assertThat(stats.weight()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldReplaceExistingKeyWithoutDoubleCountingWeight() {
+        BoundedCache<String, int[]> cache = new BoundedCache<>(10, 1_000, v -> v.length, now::get);
+        cache.put("a", new int[6]);
+        cache.put("a", new int[7]);
+
+        assertThat(cache.get("a")).hasSize(7);
+        assertThat(cache.stats().weight()).isEqualTo(7);
+        assertThat(cache.stats().evictions()).isZero();
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.backend.service.routing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CircuitBreakerTest {
+
+    private final AtomicLong now = new AtomicLong(0);
+    private final CircuitBreaker breaker = new CircuitBreaker(3, 1_000, now::get);
+
+    @Test
+    void shouldOpenAfterConsecutiveFailuresOnly() {
+        breaker.onFailure();
+        breaker.onFailure();
+        breaker.onSuccess(); // streak reset
+        breaker.onFailure();
+        breaker.onFailure();
+        assertThat(breaker.allowRequest()).isTrue();
+
+        breaker.onFailure();
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.allowRequest()).isFalse();
+        assertThat(breaker.stats().shortCircuited()).isEqualTo(1L);
+    }
+
+    @Test
+    void shouldGrantOneProbeAfterOpenPeriod() {
+        for (int i = 0; i < 3; i++) breaker.onFailure();
+
+        assertThat(breaker.tryStartProbe()).isFalse();
+        now.set(1_000);
+        assertThat(breaker.tryStartProbe()).isTrue();
+        assertThat(breaker.tryStartProbe()).isFalse();
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        assertThat(breaker.allowRequest()).isFalse();
+    }
+
+    @Test
+    void shouldReopenOnFailedProbeAndCloseOnSuccessfulOne() {
+        for (int i = 0; i < 3; i++) breaker.onFailure();
+        now.set(1_000);
+        breaker.tryStartProbe();
+        breaker.onFailure();
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.stats().timesOpened()).isEqualTo(2L);
+
+        now.set(2_000);
+        breaker.tryStartProbe();
+        breaker.onSuccess();
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(breaker.allowRequest()).isTrue();
+    }
+}
@@ -0,0 +1,228 @@
+package com.example.backend.service.routing;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class ContractionHierarchyTest {
+
+    @Test
+    void manyToMany_shouldMatchDijkstraOnSyntheticGrid() {
+        Random random = new Random(7);
+        SyntheticGrid grid = new SyntheticGrid(random, 15, 15);
+        ManyToManyRouter router = new ManyToManyRouter(grid.builder().build());
+        int[] sources = random.ints(20, 0, grid.size()).toArray();
+        int[] targets = random.ints(25, 0, grid.size()).toArray();
+
+        ManyToManyRouter.Matrix matrix = router.table(rankedNodes(router.graph(), grid, sources),
+                rankedNodes(router.graph(), grid, targets));
+
+        for (int i = 0; i < sources.length; i++) {
+            double[][] expected = grid.dijkstra(sources[i]);
+            for (int j = 0; j < targets.length; j++) {
+                assertThat(matrix.duration(i, j)).as("%d -> %d", sources[i], targets[j])
+                        .isCloseTo(expected[0][targets[j]], within(1e-2));
+                assertThat(matrix.distance(i, j)).isCloseTo(expected[1][targets[j]], within(1e-1));
+            }
+        }
+    }
+
+    @Test
+    void shouldReportUnreachableAndUnsnappedPairs() {
+        ContractionHierarchyBuilder builder = new ContractionHierarchyBuilder();
+        int a = builder.addNode(36.80, 10.18);
+        int b = builder.addNode(36.81, 10.18);
+        int c = builder.addNode(36.82, 10.18);
+        builder.addEdge(a, b, 60, 1_000); // one-way a → b, c isolated
+        ManyToManyRouter router = new ManyToManyRouter(builder.build());
+        RoadGraph graph = router.graph();
+        int na = graph.nearestNode(36.80, 10.18, 3);
+        int nb = graph.nearestNode(36.81, 10.18, 3);
+        int nc = graph.nearestNode(36.82, 10.18, 3);
+
+        ManyToManyRouter.Matrix matrix = router.table(new int[]{na, nb, -1}, new int[]{nb, na, nc});
+
+        assertThat(matrix.duration(0, 0)).isEqualTo(60.0);
+        assertThat(matrix.distance(0, 0)).isEqualTo(1_000.0);
+        assertThat(matrix.duration(1, 1)).isEqualTo(Double.MAX_VALUE);
+        assertThat(matrix.duration(0, 2)).isEqualTo(Double.MAX_VALUE);
+        assertThat(matrix.duration(2, 0)).isEqualTo(Double.MAX_VALUE);
+        assertThat(matrix.duration(1, 0)).isZero();
+    }
+
+    @Test
+    void graphFile_shouldRoundTripAndSnapToNearestNode() throws IOException {
+        SyntheticGrid grid = new SyntheticGrid(new Random(3), 8, 8);
+        RoadGraph built = grid.builder().build();
+        Path dir = Files.createTempDirectory("road-graph");
+        Path file = dir.resolve("graph.rgr");
+        try {
+            built.write(file);
+            RoadGraph mapped = RoadGraph.open(file);
+
+            assertThat(mapped.nodeCount()).isEqualTo(64);
+            int[] nodes = {mapped.nearestNode(36.8, 10.1, 3), mapped.nearestNode(36.87, 10.17, 3)};
+            ManyToManyRouter.Matrix fromFile = new ManyToManyRouter(mapped).table(nodes, nodes);
+            ManyToManyRouter.Matrix inMemory = new ManyToManyRouter(built).table(nodes, nodes);
+            assertThat(fromFile.duration(0, 1)).isEqualTo(inMemory.duration(0, 1));
+            assertThat(mapped.latitude(nodes[1])).isCloseTo(36.87, within(1e-6));
+            assertThat(mapped.longitude(nodes[1])).isCloseTo(10.17, within(1e-6));
+
+            Files.write(file, Arrays.copyOf(Files.readAllBytes(file), 40));
+            assertThatThrownBy(() -> RoadGraph.open(file)).isInstanceOf(IllegalArgumentException.class);
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    @Test
+    void importer_shouldReadCsvEdgeList() throws IOException {
+        Path dir = Files.createTempDirectory("road-csv");
+        Path nodes = dir.resolve("nodes.csv");
+        Path edges = dir.resolve("edges.csv");
+        try {
+            Files.writeString(nodes, "id,lat,lon\n101,36.80,10.18\n102,36.81,10.18\n103,36.81,10.19\n");
+            Files.writeString(edges, "from,to,distance_m,duration_s,oneway\n101,102,1100,80,0\n102,103,900,70,1\n101,103,2500,400\n");
+
+            ManyToManyRouter router = new ManyToManyRouter(RoadGraphImporter.importCsv(nodes, edges));
+            RoadGraph graph = router.graph();
+            int n101 = graph.nearestNode(36.80, 10.18, 2);
+            int n103 = graph.nearestNode(36.81, 10.19, 2);
+            ManyToManyRouter.Matrix matrix = router.table(new int[]{n101, n103}, new int[]{n103, n101});
+
+            assertThat(matrix.duration(0, 0)).isEqualTo(150.0); // via 102
+            assertThat(matrix.distance(0, 0)).isEqualTo(2_000.0);
+            assertThat(matrix.duration(1, 1)).isEqualTo(400.0); // 103 → 102 is one-way the other way
+        } finally {
+            Files.deleteIfExists(nodes);
+            Files.deleteIfExists(edges);
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    // ========================================================
+    // Benchmark: -Dbenchmark=true
+    // ========================================================
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmarkManyToManyAgainstDijkstra() {
+        Random random = new Random(1);
+        SyntheticGrid grid = new SyntheticGrid(random, 150, 150);
+        long t0 = System.nanoTime();
+        ManyToManyRouter router = new ManyToManyRouter(grid.builder().build());
+        long t1 = System.nanoTime();
+        int[] points = random.ints(100, 0, grid.size()).toArray();
+        int[] ranked = rankedNodes(router.graph(), grid, points);
+        router.table(ranked, ranked);
+        long t2 = System.nanoTime();
+        router.table(ranked, ranked);
+        long t3 = System.nanoTime();
+        for (int p : points) grid.dijkstra(p);
+        long t4 = System.nanoTime();
+        System.out.printf("%d nodes: contraction %.0f ms, 100x100 table %.1f ms (warm %.1f ms), 100 Dijkstras %.1f ms%n",
+                grid.size(), (t1 - t0) / 1e6, (t2 - t1) / 1e6, (t3 - t2) / 1e6, (t4 - t3) / 1e6);
+    }
+
+    // ---- helpers ----
+
+    /** Graph node ids are contraction ranks: find each original node by its coordinates. */
+    private static int[] rankedNodes(RoadGraph graph, SyntheticGrid grid, int[] original) {
+        int[] ranked = new int[original.length];
+        for (int k = 0; k < original.length; k++) {
+            ranked[k] = graph.nearestNode(grid.lat[original[k]], grid.lon[original[k]], 2);
+        }
+        return ranked;
+    }
+
+    /**
+     * Rows × cols grid of intersections 0.01° apart, random speeds, some one-way streets
+     * and a few missing segments.
+     */
+    private static final class SyntheticGrid {
+        final double[] lat;
+        final double[] lon;
+        final List<double[]> edges = new ArrayList<>(); // from, to, duration, distance
+
+        SyntheticGrid(Random random, int rows, int cols) {
+            lat = new double[rows * cols];
+            lon = new double[rows * cols];
+            for (int r = 0; r < rows; r++) {
+                for (int c = 0; c < cols; c++) {
+                    lat[r * cols + c] = 36.8 + r * 0.01;
+                    lon[r * cols + c] = 10.1 + c * 0.01;
+                }
+            }
+            for (int r = 0; r < rows; r++) {
+                for (int c = 0; c < cols; c++) {
+                    int v = r * cols + c;
+                    if (c + 1 < cols) connect(random, v, v + 1);
+                    if (r + 1 < rows) connect(random, v, v + cols);
+                }
+            }
+        }
+
+        private void connect(Random random, int a, int b) {
+            if (random.nextInt(20) == 0) return;
+            double distance = 900 + random.nextInt(300);
+            double speed = 8 + random.nextInt(20); // m/s
+            double duration = distance / speed;
+            int kind = random.nextInt(10);
+            if (kind != 0) edges.add(new double[]{a, b, duration, distance});
+            if (kind != 1) edges.add(new double[]{b, a, duration, distance});
+        }
+
+        int size() {
+            return lat.length;
+        }
+
+        ContractionHierarchyBuilder builder() {
+            ContractionHierarchyBuilder builder = new ContractionHierarchyBuilder();
+            for (int v = 0; v < size(); v++) builder.addNode(lat[v], lon[v]);
+            for (double[] e : edges) builder.addEdge((int) e[0], (int) e[1], e[2], e[3]);
+            return builder;
+        }
+
+        /** Plain Dijkstra on the original graph: [durations, distances] from one node. */
+        double[][] dijkstra(int source) {
+            List<List<double[]>> out = new ArrayList<>();
+            for (int v = 0; v < size(); v++) out.add(new ArrayList<>());
+            for (double[] e : edges) out.get((int) e[0]).add(e);
+            double[] dur = new double[size()];
+            double[] dist = new double[size()];
+            Arrays.fill(dur, Double.MAX_VALUE);
+            Arrays.fill(dist, Double.MAX_VALUE);
+            dur[source] = 0;
+            dist[source] = 0;
+            PriorityQueue<double[]> queue = new PriorityQueue<>((x, y) -> Double.compare(x[0], y[0]));
+            queue.add(new double[]{0, source});
+            while (!queue.isEmpty()) {
+                double[] top = queue.poll();
+                int v = (int) top[1];
+                if (top[0] > dur[v]) continue;
+                for (double[] e : out.get(v)) {
+                    int w = (int) e[1];
+                    if (dur[v] + e[2] < dur[w]) {
+                        dur[w] = dur[v] + e[2];
+                        dist[w] = dist[v] + e[3];
+                        queue.add(new double[]{dur[w], w});
+                    }
+                }
+            }
+            return new double[][]{dur, dist};
+        }
+    }
+}
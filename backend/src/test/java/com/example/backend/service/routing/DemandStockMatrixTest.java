@@ -0,0 +1,190 @@
+package com.example.backend.service.routing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DemandStockMatrixTest {
+
+    // ========================================================
+    // Assembly
+    // ========================================================
+
+    @Test
+    void shouldSumDemandPerProductAndKeepEveryLine() {
+        DemandStockMatrix matrix = new DemandStockMatrix.Builder(1)
+                .addDemand(100L, 7L, "Eau", 2)
+                .addDemand(100L, 9L, "Pain", 1)
+                .addDemand(100L, 7L, "Eau (doublon)", 3) // same product twice in one order
+                .addDemand(200L, 7L, "Eau", 4)
+                .build();
+
+        assertThat(matrix.productCount()).isEqualTo(2);
+        assertThat(matrix.productIds()).containsExactly(7L, 9L);
+        assertThat(matrix.demand()).containsExactly(9, 1);
+        assertThat(matrix.productName(0)).isEqualTo("Eau"); // first name wins
+
+        assertThat(matrix.lineCount()).isEqualTo(4);
+        assertThat(matrix.lineOrderId(2)).isEqualTo(100L);
+        assertThat(matrix.lineProduct(2)).isEqualTo(0);
+        assertThat(matrix.lineOrderId(3)).isEqualTo(200L);
+    }
+
+    @Test
+    void shouldAssembleStockOfDemandedProductsOnly() {
+        DemandStockMatrix.Builder builder = new DemandStockMatrix.Builder(2)
+                .addDemand(100L, 7L, "Eau", 5)
+                .addDemand(100L, 9L, "Pain", 2);
+        assertThat(builder.productIds()).containsExactly(7L, 9L);
+
+        DemandStockMatrix matrix = builder
+                .addStock(30L, 9L, 4)
+                .addStock(10L, 7L, 3)
+                .addStock(10L, 8L, 50)  // product not demanded
+                .addStock(20L, 8L, 50)  // depot only holds undemanded stock
+                .addStock(40L, 7L, 0)   // empty row
+                .addStock(10L, 7L, 6)   // duplicate (depot, product): last row wins
+                .build();
+
+        assertThat(matrix.depotCount()).isEqualTo(2);
+        assertThat(matrix.depotId(0)).isEqualTo(30L);
+        assertThat(matrix.depotIndex(10L)).isEqualTo(1);
+        assertThat(matrix.depotIndex(20L)).isEqualTo(-1);
+        assertThat(matrix.depotIndex(40L)).isEqualTo(-1);
+        assertThat(matrix.stock()[0]).containsExactly(0, 4);
+        assertThat(matrix.stock()[1]).containsExactly(6, 0);
+        assertThat(matrix.covers(new int[]{0, 1})).isTrue();
+        assertThat(matrix.covers(new int[]{1})).isFalse();
+    }
+
+    // ========================================================
+    // Allocation — same as the former string-keyed allocation
+    // ========================================================
+
+    @Test
+    void shouldBreakAllocationTiesInChosenOrder() {
+        // Depots 1 and 2 hold the same quantity of p7: the first chosen depot serves first
+        Fixture fixture = new Fixture()
+                .demand(100L, 7L, 3)
+                .demand(200L, 7L, 4)
+                .demand(200L, 9L, 2)
+                .stock(1L, 7L, 5)
+                .stock(2L, 7L, 5)
+                .stock(2L, 9L, 2);
+        DemandStockMatrix matrix = fixture.build();
+        int[] chosen = {matrix.depotIndex(2L), matrix.depotIndex(1L)};
+
+        int[] taken = matrix.allocate(chosen);
+
+        // Line 0: tie 5/5, depot 2 first. Line 1: depot 1 now has more (5 > 2)
+        assertThat(taken).containsExactly(3, 0, 0, 4, 2, 0);
+        assertThat(taken).isEqualTo(fixture.stringKeyedAllocation(matrix, chosen));
+    }
+
+    @Test
+    void shouldAllocateLikeStringKeyedAllocation() {
+        Random random = new Random(13);
+        for (int round = 0; round < 500; round++) {
+            Fixture fixture = new Fixture();
+            int lines = 1 + random.nextInt(8);
+            for (int line = 0; line < lines; line++) {
+                // Few products and orders: duplicate product lines are common
+                fixture.demand(100L + random.nextInt(3), 1 + random.nextInt(4), 1 + random.nextInt(6));
+            }
+            for (int row = 0; row < 12; row++) {
+                // Even quantities only: many ties, and duplicate (depot, product) rows
+                fixture.stock(1 + random.nextInt(5), 1 + random.nextInt(4), random.nextInt(4) * 2);
+            }
+            DemandStockMatrix matrix = fixture.build();
+            List<Integer> depots = new ArrayList<>();
+            for (int d = 0; d < matrix.depotCount(); d++) depots.add(d);
+            Collections.shuffle(depots, random);
+            int[] chosen = depots.subList(0, random.nextInt(depots.size() + 1)).stream()
+                    .mapToInt(Integer::intValue).toArray();
+
+            assertThat(matrix.allocate(chosen)).as("round %d", round)
+                    .isEqualTo(fixture.stringKeyedAllocation(matrix, chosen));
+        }
+    }
+
+    // ========================================================
+    // Fixture + reference allocation
+    // ========================================================
+
+    private record Line(long orderId, long productId, int quantity) {}
+
+    /** Order lines and stock rows, fed to the builder and kept raw for the reference. */
+    private static final class Fixture {
+        final List<Line> lines = new ArrayList<>();
+        final List<long[]> stockRows = new ArrayList<>();
+
+        Fixture demand(long orderId, long productId, int quantity) {
+            lines.add(new Line(orderId, productId, quantity));
+            return this;
+        }
+
+        Fixture stock(long depotId, long productId, int quantity) {
+            stockRows.add(new long[]{depotId, productId, quantity});
+            return this;
+        }
+
+        DemandStockMatrix build() {
+            DemandStockMatrix.Builder builder = new DemandStockMatrix.Builder(lines.size());
+            for (Line line : lines) builder.addDemand(line.orderId(), line.productId(), "P" + line.productId(), line.quantity());
+            for (long[] row : stockRows) builder.addStock(row[0], row[1], (int) row[2]);
+            return builder.build();
+        }
+
+        /**
+         * The allocation the planner used before the dense matrix: depot stock in nested maps
+         * (last row wins), remaining stock keyed by "depotId:productId", and the chosen depots
+         * re-sorted for every line by remaining stock (stable sort). Same flattened layout as
+         * {@link DemandStockMatrix#allocate}.
+         */
+        int[] stringKeyedAllocation(DemandStockMatrix matrix, int[] chosen) {
+            Map<Long, Map<Long, Integer>> depotStock = new LinkedHashMap<>();
+            for (long[] row : stockRows) {
+                if (row[2] <= 0) continue;
+                depotStock.computeIfAbsent(row[0], id -> new HashMap<>()).put(row[1], (int) row[2]);
+            }
+            List<Long> chosenDepots = new ArrayList<>();
+            for (int c : chosen) chosenDepots.add(matrix.depotId(c));
+
+            Map<String, Integer> remaining = new HashMap<>();
+            for (Long depotId : chosenDepots) {
+                for (Map.Entry<Long, Integer> e : depotStock.getOrDefault(depotId, Map.of()).entrySet()) {
+                    remaining.put(depotId + ":" + e.getKey(), e.getValue());
+                }
+            }
+
+            int[] taken = new int[lines.size() * chosen.length];
+            for (int l = 0; l < lines.size(); l++) {
+                Line line = lines.get(l);
+                int needed = line.quantity();
+                List<Long> sorted = new ArrayList<>(chosenDepots);
+                sorted.sort((a, b) -> Integer.compare(
+                        remaining.getOrDefault(b + ":" + line.productId(), 0),
+                        remaining.getOrDefault(a + ":" + line.productId(), 0)));
+                for (Long depotId : sorted) {
+                    if (needed <= 0) break;
+                    String key = depotId + ":" + line.productId();
+                    int avail = remaining.getOrDefault(key, 0);
+                    if (avail <= 0) continue;
+                    int take = Math.min(needed, avail);
+                    remaining.put(key, avail - take);
+                    needed -= take;
+                    taken[l * chosen.length + chosenDepots.indexOf(depotId)] = take;
+                }
+            }
+            return taken;
+        }
+    }
+}
@@ -0,0 +1,422 @@
+package com.example.backend.service.routing;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DepotCoverSolverTest {
+
+    // ========================================================
+    // Exactness against the former C(n,k) enumerator
+    // ========================================================
+
+    @Test
+    void shouldPickSingleDepotCoveringEverything() {
+        // Depot 0: p0+p1, depot 1: p1+p2, depot 2: p0+p1+p2
+        int[] demand = {2, 3, 1};
+        int[][] stock = {
+                {10, 10, 0},
+                {0, 10, 10},
+                {10, 10, 10}
+        };
+
+        DepotCoverSolver.Result result = new DepotCoverSolver(demand, stock, null).solve();
+
+        assertThat(result.depots()).containsExactly(2);
+        assertThat(result.optimal()).isTrue();
+    }
+
+    @Test
+    void shouldSplitQuantityAcrossDepots() {
+        int[] demand = {15};
+        int[][] stock = {{10}, {8}};
+
+        DepotCoverSolver.Result result = new DepotCoverSolver(demand, stock, null).solve();
+
+        assertThat(result.depots()).containsExactly(0, 1);
+    }
+
+    @Test
+    void shouldUseTwoSmallerDepotsOverOneLargerOne() {
+        // Depot 0 holds more of p0 than 1 or 2, but only {1, 2} covers p1 in two depots
+        int[] demand = {10, 10};
+        int[][] stock = {{10, 0}, {5, 5}, {5, 5}};
+
+        DepotCoverSolver.Result result = new DepotCoverSolver(demand, stock, null).solve();
+
+        assertThat(result.depots()).containsExactly(1, 2);
+        assertThat(result.optimal()).isTrue();
+        assertThat(result.depotLowerBound()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldFindMinimumCardinalityWhenQuantitiesMustBeSplit() {
+        // Small demands against partial stocks: covers often need several overlapping depots
+        Random random = new Random(23);
+        for (int round = 0; round < 2_000; round++) {
+            int depots = 2 + random.nextInt(6);
+            int products = 1 + random.nextInt(3);
+            int[] demand = new int[products];
+            int[][] stock = new int[depots][products];
+            double[][] position = new double[depots][];
+            for (int p = 0; p < products; p++) demand[p] = 5 + random.nextInt(11);
+            for (int d = 0; d < depots; d++) {
+                position[d] = new double[]{random.nextDouble() * 20, random.nextDouble() * 20};
+                for (int p = 0; p < products; p++) stock[d][p] = random.nextInt(11);
+            }
+            Societe societe = new Societe(demand, stock, position);
+            Enumerated expected = enumerate(societe, depots);
+            if (expected == null) continue; // demand not coverable
+
+            DepotCoverSolver.Result sequential = new DepotCoverSolver(demand, stock, null).solve();
+            DepotCoverSolver.Result routed = new DepotCoverSolver(demand, stock, societe::routeCost).solve();
+
+            assertThat(sequential.depots().length).as("round %d cardinality", round).isEqualTo(expected.depots.length);
+            assertThat(sequential.optimal()).isTrue();
+            assertThat(routed.depots().length).as("round %d routed cardinality", round).isEqualTo(expected.depots.length);
+            assertThat(routed.cost()).as("round %d route cost", round).isEqualTo(expected.cost);
+        }
+    }
+
+    @Test
+    void shouldPreferCheaperRouteAmongMinimumCovers() {
+        int[] demand = {2};
+        int[][] stock = {{10}, {10}, {10}};
+        double[] distance = {5.0, 1.0, 3.0};
+
+        DepotCoverSolver.Result result = new DepotCoverSolver(demand, stock,
+                depots -> distance[depots[0]]).solve();
+
+        assertThat(result.depots()).containsExactly(1);
+        assertThat(result.cost()).isEqualTo(1.0);
+    }
+
+    @Test
+    void shouldReturnPartialGreedyCoverWhenDemandCannotBeMet() {
+        int[] demand = {5, 50};
+        int[][] stock = {{5, 10}, {0, 10}};
+
+        DepotCoverSolver.Result result = new DepotCoverSolver(demand, stock, null).solve();
+
+        assertThat(result.optimal()).isFalse();
+        assertThat(result.depots()).containsExactly(0, 1);
+    }
+
+    @Test
+    void shouldMatchEnumeratorOnRandomSocietes() {
+        Random random = new Random(42);
+        for (int round = 0; round < 200; round++) {
+            Societe societe = Societe.random(random, 4 + random.nextInt(9), 2 + random.nextInt(8));
+            DepotCoverSolver.RouteCost cost = societe::routeCost;
+
+            Enumerated expected = enumerate(societe, 6);
+            DepotCoverSolver.Result actual = new DepotCoverSolver(societe.demand, societe.stock, cost).solve();
+
+            if (expected == null) continue; // enumerator gave up, nothing to compare
+            assertThat(actual.depots().length).as("round %d cardinality", round).isEqualTo(expected.depots.length);
+            assertThat(actual.cost()).as("round %d route cost", round).isEqualTo(expected.cost);
+        }
+    }
+
+    @Test
+    void shouldStayExactBeyondEnumeratorLimit() {
+        // 120 depots, each product in a handful of depots: the old code fell back to greedy here
+        Random random = new Random(7);
+        Societe societe = Societe.random(random, 120, 40);
+
+        DepotCoverSolver.Result result = new DepotCoverSolver(societe.demand, societe.stock, societe::routeCost).solve();
+
+        assertThat(result.optimal()).isTrue();
+        assertThat(societe.covers(result.depots())).isTrue();
+    }
+
+    // ========================================================
+    // Parallel search
+    // ========================================================
+
+    @Test
+    void shouldMatchSequentialResultWhenParallel() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Random random = new Random(11);
+            for (int round = 0; round < 50; round++) {
+                Societe societe = Societe.random(random, 10 + random.nextInt(60), 5 + random.nextInt(20));
+
+                DepotCoverSolver.Result sequential = new DepotCoverSolver(societe.demand, societe.stock, societe::routeCost).solve();
+                DepotCoverSolver.Result parallel = new DepotCoverSolver(societe.demand, societe.stock, societe::routeCost)
+                        .parallel(pool, 4)
+                        .solve();
+
+                assertThat(parallel.depots()).as("round %d", round).containsExactly(sequential.depots());
+                assertThat(parallel.cost()).as("round %d", round).isEqualTo(sequential.cost());
+                assertThat(parallel.optimal()).isTrue();
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void shouldStopAtRouteLowerBoundForMonotoneCost() {
+        // Depot 1 alone covers everything and is the cheapest single supplier of p0: proven at once
+        int[] demand = {1, 1};
+        int[][] stock = {{1, 0}, {1, 1}, {0, 1}};
+        double[] distance = {4.0, 2.0, 1.0};
+        DepotCoverSolver.RouteCost cost = new DepotCoverSolver.RouteCost() {
+            @Override
+            public double cost(int[] depots) {
+                double max = 0;
+                for (int d : depots) max = Math.max(max, distance[d]);
+                return max;
+            }
+
+            @Override
+            public boolean monotone(int maxDepots) {
+                return true;
+            }
+        };
+
+        DepotCoverSolver.Result result = new DepotCoverSolver(demand, stock, cost).solve();
+
+        assertThat(result.depots()).containsExactly(1);
+        assertThat(result.nodes()).isEqualTo(0L);
+    }
+
+    @Test
+    void shouldFindCheapestCoverOnNonMetricMatrix() {
+        // Estimated legs and zero-cost unlocated depots break the triangle inequality:
+        // a larger set can be cheaper, so nothing may be pruned on partial sets
+        Random random = new Random(31);
+        for (int round = 0; round < 300; round++) {
+            Societe societe = Societe.random(random, 4 + random.nextInt(6), 2 + random.nextInt(4));
+            int n = societe.stock.length;
+            double[][] matrix = new double[n + 1][n + 1];
+            int unlocated = random.nextInt(n);
+            for (int i = 0; i <= n; i++) {
+                for (int j = 0; j <= n; j++) {
+                    boolean free = i == unlocated + 1 || j == unlocated + 1;
+                    matrix[i][j] = i == j || free ? 0 : 1 + random.nextInt(50);
+                }
+            }
+            MatrixRouteCost cost = new MatrixRouteCost(matrix);
+
+            DepotCoverSolver.Result result = new DepotCoverSolver(societe.demand, societe.stock, cost).solve();
+
+            double best = Double.MAX_VALUE;
+            List<int[]> combos = new ArrayList<>();
+            combinations(n, result.depots().length, 0, new int[result.depots().length], 0, combos);
+            for (int[] combo : combos) {
+                if (societe.covers(combo)) best = Math.min(best, cost.cost(combo));
+            }
+            assertThat(result.optimal()).isTrue();
+            assertThat(result.cost()).as("round %d", round).isEqualTo(best);
+        }
+    }
+
+    @Test
+    void shouldFindCheapestCoverOnMetricMatrix() {
+        // Euclidean matrix: partial sets are pruned on single-depot costs, the optimum must survive
+        Random random = new Random(37);
+        for (int round = 0; round < 300; round++) {
+            Societe societe = Societe.random(random, 4 + random.nextInt(8), 2 + random.nextInt(5));
+            int n = societe.stock.length;
+            double[][] points = new double[n + 1][];
+            points[0] = new double[]{0, 0};
+            for (int d = 0; d < n; d++) points[d + 1] = societe.position[d];
+            double[][] matrix = new double[n + 1][n + 1];
+            for (int i = 0; i <= n; i++) {
+                for (int j = 0; j <= n; j++) {
+                    matrix[i][j] = Math.hypot(points[i][0] - points[j][0], points[i][1] - points[j][1]);
+                }
+            }
+            MatrixRouteCost cost = new MatrixRouteCost(matrix, true);
+
+            DepotCoverSolver.Result result = new DepotCoverSolver(societe.demand, societe.stock, cost).solve();
+
+            double best = Double.MAX_VALUE;
+            List<int[]> combos = new ArrayList<>();
+            combinations(n, result.depots().length, 0, new int[result.depots().length], 0, combos);
+            for (int[] combo : combos) {
+                if (societe.covers(combo)) best = Math.min(best, cost.cost(combo));
+            }
+            assertThat(result.optimal()).isTrue();
+            assertThat(result.cost()).as("round %d", round).isEqualTo(best);
+        }
+    }
+
+    // ========================================================
+    // Anytime mode (time budget)
+    // ========================================================
+
+    @Test
+    void shouldReturnValidCoverWithinTimeBudget() {
+        Random random = new Random(3);
+        Societe societe = Societe.random(random, 400, 120);
+
+        long start = System.nanoTime();
+        DepotCoverSolver.Result result = new DepotCoverSolver(societe.demand, societe.stock, societe::routeCost)
+                .timeLimit(50)
+                .solve();
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertThat(societe.covers(result.depots())).isTrue();
+        assertThat(elapsedMs).isLessThan(1_000L);
+        assertThat(result.gap()).isBetween(0.0, 1.0);
+        assertThat(result.depots().length).isGreaterThanOrEqualTo(result.depotLowerBound());
+    }
+
+    @Test
+    void shouldMatchExactResultWhenBudgetSuffices() {
+        Random random = new Random(5);
+        for (int round = 0; round < 30; round++) {
+            Societe societe = Societe.random(random, 8 + random.nextInt(20), 4 + random.nextInt(10));
+
+            DepotCoverSolver.Result exact = new DepotCoverSolver(societe.demand, societe.stock, societe::routeCost).solve();
+            DepotCoverSolver.Result anytime = new DepotCoverSolver(societe.demand, societe.stock, societe::routeCost)
+                    .timeLimit(10_000)
+                    .solve();
+
+            assertThat(anytime.optimal()).as("round %d", round).isTrue();
+            assertThat(anytime.gap()).isEqualTo(0.0);
+            assertThat(anytime.depots().length).as("round %d", round).isEqualTo(exact.depots().length);
+            assertThat(anytime.cost()).as("round %d", round).isEqualTo(exact.cost());
+        }
+    }
+
+    // ========================================================
+    // Benchmark: -Dbenchmark=true
+    // ========================================================
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmarkAgainstEnumerator() {
+        Random random = new Random(1);
+        int[] sizes = {10, 20, 30, 40, 60, 100};
+        for (int n : sizes) {
+            Societe societe = Societe.random(random, n, 30);
+
+            long t0 = System.nanoTime();
+            Enumerated enumerated = n <= 40 ? enumerate(societe, 6) : null;
+            long t1 = System.nanoTime();
+            DepotCoverSolver.Result solved = new DepotCoverSolver(societe.demand, societe.stock, societe::routeCost).solve();
+            long t2 = System.nanoTime();
+            new DepotCoverSolver(societe.demand, societe.stock, societe::routeCost).parallel(ForkJoinPool.commonPool(),
+                    Runtime.getRuntime().availableProcessors()).solve();
+            long t3 = System.nanoTime();
+
+            System.out.printf("depots=%3d  enumerator=%9.1f ms (%s)  branch-and-bound=%7.1f ms (k=%d, nodes=%d)  parallel=%7.1f ms%n",
+                    n,
+                    (t1 - t0) / 1e6, enumerated != null ? "k=" + enumerated.depots.length
+                            : n <= 40 ? "no cover with k<=6, greedy fallback" : "not run",
+                    (t2 - t1) / 1e6, solved.depots().length, solved.nodes(), (t3 - t2) / 1e6);
+        }
+    }
+
+    // ========================================================
+    // Synthetic société + reference enumerator
+    // ========================================================
+
+    private record Enumerated(int[] depots, double cost) {}
+
+    /** The former algorithm: all C(n,k) combinations for k = 1..maxK, first k with a cover wins. */
+    private static Enumerated enumerate(Societe societe, int maxK) {
+        int n = societe.stock.length;
+        for (int k = 1; k <= Math.min(n, maxK); k++) {
+            List<int[]> combos = new ArrayList<>();
+            combinations(n, k, 0, new int[k], 0, combos);
+            int[] best = null;
+            double bestCost = Double.MAX_VALUE;
+            for (int[] combo : combos) {
+                if (!societe.covers(combo)) continue;
+                double c = societe.routeCost(combo);
+                if (c < bestCost) {
+                    bestCost = c;
+                    best = combo;
+                }
+            }
+            if (best != null) return new Enumerated(best, bestCost);
+        }
+        return null;
+    }
+
+    private static void combinations(int n, int k, int start, int[] current, int size, List<int[]> out) {
+        if (size == k) {
+            out.add(current.clone());
+            return;
+        }
+        for (int i = start; i < n; i++) {
+            current[size] = i;
+            combinations(n, k, i + 1, current, size + 1, out);
+        }
+    }
+
+    /** Depots scattered on a plane, each stocking a random subset of products. */
+    private static final class Societe {
+        final int[] demand;
+        final int[][] stock;
+        final double[][] position;
+
+        private Societe(int[] demand, int[][] stock, double[][] position) {
+            this.demand = demand;
+            this.stock = stock;
+            this.position = position;
+        }
+
+        static Societe random(Random random, int depots, int products) {
+            int[] demand = new int[products];
+            for (int p = 0; p < products; p++) demand[p] = 1 + random.nextInt(10);
+            int[][] stock = new int[depots][products];
+            double[][] position = new double[depots][];
+            for (int d = 0; d < depots; d++) {
+                position[d] = new double[]{random.nextDouble() * 20, random.nextDouble() * 20};
+                for (int p = 0; p < products; p++) {
+                    if (random.nextDouble() < 0.3) stock[d][p] = random.nextInt(12);
+                }
+            }
+            // Guarantee feasibility: every product is fully stocked somewhere
+            for (int p = 0; p < products; p++) {
+                stock[random.nextInt(depots)][p] += demand[p];
+            }
+            return new Societe(demand, stock, position);
+        }
+
+        boolean covers(int[] depots) {
+            for (int p = 0; p < demand.length; p++) {
+                int available = 0;
+                for (int d : depots) available += stock[d][p];
+                if (available < demand[p]) return false;
+            }
+            return true;
+        }
+
+        /** Nearest-neighbour path length from the origin, as the planner estimates it. */
+        double routeCost(int[] depots) {
+            boolean[] visited = new boolean[depots.length];
+            double x = 0, y = 0, total = 0;
+            for (int step = 0; step < depots.length; step++) {
+                int next = -1;
+                double nextDist = Double.MAX_VALUE;
+                for (int i = 0; i < depots.length; i++) {
+                    if (visited[i]) continue;
+                    double[] p = position[depots[i]];
+                    double dist = Math.hypot(p[0] - x, p[1] - y);
+                    if (dist < nextDist) {
+                        nextDist = dist;
+                        next = i;
+                    }
+                }
+                visited[next] = true;
+                total += nextDist;
+                x = position[depots[next]][0];
+                y = position[depots[next]][1];
+            }
+            return total;
+        }
+    }
+}
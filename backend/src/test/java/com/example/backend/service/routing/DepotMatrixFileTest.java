@@ -0,0 +1,99 @@
+package com.example.backend.service.routing;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DepotMatrixFileTest {
+
+    private Path dir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Files.createTempDirectory("depot-matrix");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Test
+    void shouldRoundTripThroughMappedFile() throws IOException {
+        Path file = DepotMatrixFile.writeVersion(dir, "societe-1", new long[]{10, 20, 30},
+                new double[]{36.8065, 35.8256, 34.7406}, new double[]{10.1815, 10.6084, 10.7603},
+                new double[]{0, 9000, 14000, 9100, 0, 5000, 14100, 5100, 0},
+                new double[]{0, 140000, 270000, 141000, 0, 130000, 271000, 131000, 0}).file();
+
+        assertThat(file.getFileName().toString()).isEqualTo("societe-1.1.dmx");
+        DepotMatrixFile matrix = DepotMatrixFile.open(file);
+
+        assertThat(matrix.size()).isEqualTo(3);
+        assertThat(matrix.depotId(2)).isEqualTo(30L);
+        assertThat(matrix.indexOf(20)).isEqualTo(1);
+        assertThat(matrix.indexOf(99)).isEqualTo(-1);
+        int sousse = matrix.indexAt(35.825601, 10.608399); // within a metre
+        int sfax = matrix.indexAt(34.7406, 10.7603);
+        assertThat(sousse).isEqualTo(1);
+        assertThat(matrix.duration(sousse, sfax)).isEqualTo(5000.0);
+        assertThat(matrix.distance(sfax, sousse)).isEqualTo(131000.0);
+        assertThat(matrix.indexAt(35.9, 10.6)).isEqualTo(-1);
+    }
+
+    @Test
+    void shouldWriteNextVersionAndKeepEarlierMappingReadable() throws IOException {
+        DepotMatrixFile first = DepotMatrixFile.writeVersion(dir, "societe-2", new long[]{1, 2},
+                new double[]{36.0, 36.1}, new double[]{10.0, 10.1},
+                new double[]{0, 60, 70, 0}, new double[]{0, 600, 700, 0});
+        DepotMatrixFile second = DepotMatrixFile.writeVersion(dir, "societe-2", new long[]{1},
+                new double[]{36.0}, new double[]{10.0}, new double[]{0}, new double[]{0});
+
+        assertThat(DepotMatrixFile.versions(dir, "societe-2")).containsExactly(first.file(), second.file());
+        Files.delete(first.file()); // what the service does once it has swapped to the new version
+        assertThat(first.duration(1, 0)).isEqualTo(70.0);
+        assertThat(second.size()).isEqualTo(1);
+        try (Stream<Path> files = Files.list(dir)) {
+            assertThat(files.count()).isEqualTo(1L); // no temporary file left behind
+        }
+    }
+
+    @Test
+    void shouldOrderVersionsNumericallyAfterUnversionedFile() throws IOException {
+        Path legacy = dir.resolve("societe-4.dmx");
+        Files.writeString(legacy, "");
+        Files.writeString(dir.resolve("societe-4.9.dmx"), "");
+        Files.writeString(dir.resolve("societe-4.10.dmx"), "");
+        Files.writeString(dir.resolve("societe-44.1.dmx"), ""); // another société
+        Files.writeString(dir.resolve("societe-4.1.dmx.tmp"), "");
+
+        assertThat(DepotMatrixFile.versions(dir, "societe-4")).extracting(p -> p.getFileName().toString())
+                .containsExactly("societe-4.dmx", "societe-4.9.dmx", "societe-4.10.dmx");
+        DepotMatrixFile next = DepotMatrixFile.writeVersion(dir, "societe-4", new long[]{1},
+                new double[]{36.0}, new double[]{10.0}, new double[]{0}, new double[]{0});
+        assertThat(next.file().getFileName().toString()).isEqualTo("societe-4.11.dmx");
+    }
+
+    @Test
+    void shouldRejectForeignOrTruncatedFiles() throws IOException {
+        Path file = DepotMatrixFile.writeVersion(dir, "societe-3", new long[]{1, 2},
+                new double[]{36.0, 36.1}, new double[]{10.0, 10.1}, new double[4], new double[4]).file();
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, java.util.Arrays.copyOf(bytes, bytes.length - 8));
+
+        assertThatThrownBy(() -> DepotMatrixFile.open(file)).isInstanceOf(IllegalArgumentException.class);
+        Files.writeString(file, "not a matrix");
+        assertThatThrownBy(() -> DepotMatrixFile.open(file)).isInstanceOf(IllegalArgumentException.class);
+        assertThat(DepotMatrixFile.empty().size()).isZero();
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.backend.service.routing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EndpointPoolTest {
+
+    private static final List<String> THREE = List.of("http://osrm-a:5000", "http://osrm-b:5000", "http://osrm-c:5000");
+
+    @Test
+    void pick_shouldKeepKeysOnTheirInstanceAndMoveFewWhenOneIsAdded() {
+        EndpointPool three = new EndpointPool(THREE, 3, 60_000);
+        List<String> four = new ArrayList<>(THREE);
+        four.add("http://osrm-d:5000");
+        EndpointPool grown = new EndpointPool(four, 3, 60_000);
+
+        Map<String, Integer> perUrl = new HashMap<>();
+        int moved = 0;
+        for (int k = 0; k < 2_000; k++) {
+            String key = "/route/v1/driving/10." + k + ",36.80;10.19,36.81";
+            String owner = three.pick(key).url();
+            assertThat(three.pick(key).url()).isEqualTo(owner);
+            perUrl.merge(owner, 1, Integer::sum);
+            String newOwner = grown.pick(key).url();
+            if (!newOwner.equals(owner)) {
+                moved++;
+                assertThat(newOwner).isEqualTo("http://osrm-d:5000");
+            }
+        }
+
+        assertThat(perUrl).hasSize(3);
+        assertThat(perUrl.values()).allSatisfy(n -> assertThat(n).isBetween(450, 900));
+        assertThat(moved).isBetween(300, 700); // about a quarter
+    }
+
+    @Test
+    void pick_shouldSpillToNextInstanceAboveBoundedLoad() {
+        EndpointPool pool = new EndpointPool(THREE, 3, 60_000);
+        String key = "/table/v1/driving/10.18,36.80;10.19,36.81";
+        EndpointPool.Endpoint owner = pool.pick(key);
+
+        List<Long> started = new ArrayList<>();
+        for (int i = 0; i < 3; i++) started.add(owner.start());
+        EndpointPool.Endpoint spilled = pool.pick(key);
+        assertThat(spilled).isNotSameAs(owner);
+
+        for (long s : started) owner.finish(s, true);
+        assertThat(pool.pick(key)).isSameAs(owner);
+        assertThat(pool.stats().stream().mapToLong(EndpointPool.EndpointStats::requests).sum()).isEqualTo(3);
+    }
+
+    @Test
+    void shouldSkipOpenInstancesAndShortCircuitWhenAllAreOpen() {
+        long[] now = {0};
+        EndpointPool pool = new EndpointPool(THREE, 1, 1_000, () -> now[0]);
+        String key = "/route/v1/driving/10.18,36.80;10.19,36.81";
+        EndpointPool.Endpoint owner = pool.pick(key);
+
+        owner.breaker().onFailure();
+        EndpointPool.Endpoint next = pool.pick(key);
+        assertThat(next).isNotSameAs(owner);
+        assertThat(pool.circuit().state()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+        for (EndpointPool.Endpoint e : pool.endpoints()) e.breaker().onFailure();
+        assertThat(pool.allowRequest()).isFalse();
+        assertThat(pool.pick(null)).isNull();
+        assertThat(pool.circuit().state()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(pool.circuit().shortCircuited()).isEqualTo(2);
+
+        now[0] = 1_500;
+        assertThat(pool.probesDue()).hasSize(3);
+        assertThat(pool.probesDue()).isEmpty();
+    }
+}
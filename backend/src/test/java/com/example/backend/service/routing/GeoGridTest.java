@@ -0,0 +1,67 @@
+package com.example.backend.service.routing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class GeoGridTest {
+
+    @Test
+    void shouldMatchBruteForceNearest() {
+        Random random = new Random(5);
+        for (int round = 0; round < 50; round++) {
+            GeoGrid grid = new GeoGrid(0.05);
+            Map<Long, double[]> points = new HashMap<>();
+            int n = 1 + random.nextInt(300);
+            for (long id = 0; id < n; id++) {
+                double[] p = around(random, 34.74, 10.76, 0.6);
+                grid.put(id, p[0], p[1]);
+                points.put(id, p);
+            }
+            double[] q = around(random, 34.74, 10.76, 1.0);
+            int k = 1 + random.nextInt(25);
+
+            long[] nearest = grid.nearest(q[0], q[1], k);
+            double[] expected = points.values().stream()
+                    .mapToDouble(p -> GeoGrid.haversineKm(q[0], q[1], p[0], p[1]))
+                    .sorted().limit(k).toArray();
+
+            assertThat(nearest.length).isEqualTo(expected.length);
+            for (int i = 0; i < nearest.length; i++) {
+                double[] p = points.get(nearest[i]);
+                assertThat(GeoGrid.haversineKm(q[0], q[1], p[0], p[1])).as("round %d rank %d", round, i)
+                        .isCloseTo(expected[i], within(1e-9));
+            }
+        }
+    }
+
+    @Test
+    void shouldMovePointsAndForgetRemovedOnes() {
+        GeoGrid grid = new GeoGrid(0.05);
+        grid.put(1L, 34.70, 10.70);
+        grid.put(2L, 34.90, 10.90);
+        grid.put(3L, 35.50, 11.50);
+
+        grid.put(3L, 34.71, 10.71); // livreur 3 moved next to livreur 1
+        grid.remove(1L);
+
+        assertThat(grid.size()).isEqualTo(2);
+        assertThat(grid.nearest(34.70, 10.70, 5)).containsExactly(3L, 2L);
+    }
+
+    @Test
+    void shouldReturnEmptyWhenGridIsEmpty() {
+        assertThat(new GeoGrid(0.05).nearest(34.70, 10.70, 3)).isEmpty();
+    }
+
+    // ---- helpers ----
+
+    private static double[] around(Random random, double lat, double lon, double spread) {
+        return new double[]{lat + (random.nextDouble() - 0.5) * spread, lon + (random.nextDouble() - 0.5) * spread};
+    }
+}
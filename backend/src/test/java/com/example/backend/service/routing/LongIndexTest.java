@@ -0,0 +1,61 @@
+package com.example.backend.service.routing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LongIndexTest {
+
+    @Test
+    void shouldAssignIndicesInInsertionOrder() {
+        LongIndex index = new LongIndex(4);
+
+        assertThat(index.add(42L)).isEqualTo(0);
+        assertThat(index.add(-7L)).isEqualTo(1);
+        assertThat(index.add(0L)).isEqualTo(2);
+        assertThat(index.add(42L)).isEqualTo(0); // known id: same index, nothing added
+
+        assertThat(index.size()).isEqualTo(3);
+        assertThat(index.ids()).containsExactly(42L, -7L, 0L);
+        assertThat(index.idAt(1)).isEqualTo(-7L);
+        assertThat(index.indexOf(0L)).isEqualTo(2);
+    }
+
+    @Test
+    void shouldKeepIndicesAcrossRehashes() {
+        // Starts with 4 slots: thousands of ids force many rehashes and id array growth
+        LongIndex index = new LongIndex(1);
+        Random random = new Random(5);
+        long[] ids = new long[5_000];
+        ids[0] = Long.MIN_VALUE;
+        ids[1] = Long.MAX_VALUE;
+        for (int i = 2; i < ids.length; i++) {
+            ids[i] = i % 3 == 0 ? (long) i << 32 : random.nextLong(); // same low bits every third id
+        }
+        for (int i = 0; i < ids.length; i++) {
+            assertThat(index.add(ids[i])).as("add #%d", i).isEqualTo(i);
+        }
+
+        assertThat(index.size()).isEqualTo(ids.length);
+        assertThat(index.ids()).isEqualTo(ids);
+        for (int i = 0; i < ids.length; i++) {
+            assertThat(index.indexOf(ids[i])).as("indexOf #%d", i).isEqualTo(i);
+            assertThat(index.idAt(i)).as("idAt #%d", i).isEqualTo(ids[i]);
+        }
+    }
+
+    @Test
+    void shouldReturnMinusOneForUnknownIds() {
+        LongIndex index = new LongIndex(2);
+        assertThat(index.indexOf(1L)).isEqualTo(-1);
+
+        for (long id = 0; id < 100; id++) index.add(id * 64);
+
+        assertThat(index.indexOf(1L)).isEqualTo(-1);
+        assertThat(index.indexOf(100L * 64)).isEqualTo(-1);
+        assertThat(index.indexOf(-64L)).isEqualTo(-1);
+        assertThat(index.size()).isEqualTo(100); // lookups never add
+    }
+}
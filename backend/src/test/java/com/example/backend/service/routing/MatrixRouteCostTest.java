@@ -0,0 +1,109 @@
+package com.example.backend.service.routing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class MatrixRouteCostTest {
+
+    @Test
+    void shouldMatchBruteForceOpenPath() {
+        Random random = new Random(17);
+        for (int round = 0; round < 100; round++) {
+            double[][] matrix = randomPlane(random, 12);
+            MatrixRouteCost cost = new MatrixRouteCost(matrix);
+            int[] depots = randomSubset(random, 11, 1 + random.nextInt(7));
+
+            assertThat(cost.cost(depots)).as("round %d", round)
+                    .isCloseTo(bruteForce(matrix, depots), within(1e-9));
+        }
+    }
+
+    @Test
+    void shouldNeverGetCheaperWhenAddingADepot() {
+        Random random = new Random(23);
+        for (int round = 0; round < 100; round++) {
+            double[][] matrix = randomPlane(random, 10);
+            MatrixRouteCost cost = new MatrixRouteCost(matrix);
+            int[] subset = randomSubset(random, 9, 1 + random.nextInt(5));
+            int extra = random.nextInt(9);
+            if (Arrays.stream(subset).anyMatch(d -> d == extra)) continue;
+
+            int[] superset = Arrays.copyOf(subset, subset.length + 1);
+            superset[subset.length] = extra;
+            Arrays.sort(superset);
+
+            assertThat(cost.cost(superset)).isGreaterThanOrEqualTo(cost.cost(subset));
+        }
+    }
+
+    @Test
+    void monotone_shouldHoldOnlyForExactPathsOnMetricMatrix() {
+        double[][] matrix = randomPlane(new Random(5), 3);
+
+        assertThat(new MatrixRouteCost(matrix).monotone(3)).isFalse();
+        assertThat(new MatrixRouteCost(matrix, true).monotone(MatrixRouteCost.HELD_KARP_MAX_STOPS)).isTrue();
+        assertThat(new MatrixRouteCost(matrix, true).monotone(MatrixRouteCost.HELD_KARP_MAX_STOPS + 1)).isFalse();
+    }
+
+    @Test
+    void shouldFallBackToNearestNeighbourBeyondHeldKarpLimit() {
+        // Depots on a line: nearest neighbour walks them in order from the start
+        int n = MatrixRouteCost.HELD_KARP_MAX_STOPS + 3;
+        double[][] matrix = new double[n + 1][n + 1];
+        for (int i = 0; i <= n; i++) {
+            for (int j = 0; j <= n; j++) matrix[i][j] = Math.abs(i - j);
+        }
+        int[] depots = new int[n];
+        for (int d = 0; d < n; d++) depots[d] = d;
+
+        assertThat(new MatrixRouteCost(matrix).cost(depots)).isEqualTo((double) n);
+    }
+
+    // ---- helpers ----
+
+    /** Start + depots scattered on a plane; Euclidean distances satisfy the triangle inequality. */
+    private static double[][] randomPlane(Random random, int depots) {
+        double[][] pos = new double[depots + 1][];
+        for (int i = 0; i <= depots; i++) pos[i] = new double[]{random.nextDouble() * 100, random.nextDouble() * 100};
+        double[][] matrix = new double[depots + 1][depots + 1];
+        for (int i = 0; i <= depots; i++) {
+            for (int j = 0; j <= depots; j++) {
+                matrix[i][j] = Math.hypot(pos[i][0] - pos[j][0], pos[i][1] - pos[j][1]);
+            }
+        }
+        return matrix;
+    }
+
+    private static int[] randomSubset(Random random, int n, int k) {
+        int[] all = new int[n];
+        for (int i = 0; i < n; i++) all[i] = i;
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int t = all[i]; all[i] = all[j]; all[j] = t;
+        }
+        int[] subset = Arrays.copyOf(all, k);
+        Arrays.sort(subset);
+        return subset;
+    }
+
+    private static double bruteForce(double[][] matrix, int[] depots) {
+        return permute(matrix, depots, new boolean[depots.length], 0, 0, 0);
+    }
+
+    private static double permute(double[][] matrix, int[] depots, boolean[] used, int count, int cur, double acc) {
+        if (count == depots.length) return acc;
+        double best = Double.MAX_VALUE;
+        for (int i = 0; i < depots.length; i++) {
+            if (used[i]) continue;
+            used[i] = true;
+            best = Math.min(best, permute(matrix, depots, used, count + 1, depots[i] + 1, acc + matrix[cur][depots[i] + 1]));
+            used[i] = false;
+        }
+        return best;
+    }
+}
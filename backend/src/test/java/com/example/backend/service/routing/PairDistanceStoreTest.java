@@ -0,0 +1,70 @@
+package com.example.backend.service.routing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PairDistanceStoreTest {
+
+    private final AtomicLong now = new AtomicLong(0);
+
+    @Test
+    void shouldSnapNearbyCoordinatesToSameKey() {
+        assertThat(PairDistanceStore.pointKey(new double[]{34.700001, 10.700002}))
+                .isEqualTo(PairDistanceStore.pointKey(new double[]{34.700004, 10.699998}));
+        assertThat(PairDistanceStore.pointKey(new double[]{34.70, 10.70}))
+                .isNotEqualTo(PairDistanceStore.pointKey(new double[]{10.70, 34.70}));
+        assertThat(PairDistanceStore.pointKey(new double[]{-34.70, -10.70}))
+                .isNotEqualTo(PairDistanceStore.pointKey(new double[]{34.70, 10.70}));
+    }
+
+    @Test
+    void shouldKeepDirectedPairsAndZeroDiagonal() {
+        PairDistanceStore store = new PairDistanceStore(100, 1_000, now::get);
+        long a = 1, b = 2;
+        store.store(new long[]{a, b}, new long[]{a, b},
+                new double[]{0, 60, 90, 0}, new double[]{0, 600, 900, 0});
+
+        double[][] dur = new double[2][2];
+        double[][] dist = new double[2][2];
+        int missing = store.lookup(new long[]{b, a}, new long[]{a, b}, dur, dist);
+
+        assertThat(missing).isEqualTo(0);
+        assertThat(dur[0][0]).isEqualTo(90.0);
+        assertThat(dur[1][1]).isEqualTo(60.0);
+        assertThat(dist[0][1]).isEqualTo(0.0);
+    }
+
+    @Test
+    void shouldForgetPairsAfterTwoGenerations() {
+        PairDistanceStore store = new PairDistanceStore(100, 1_000, now::get);
+        store.store(new long[]{1}, new long[]{2}, new double[]{5}, new double[]{50});
+        double[][] dur = new double[1][1];
+        double[][] dist = new double[1][1];
+
+        now.set(1_500);
+        store.evictExpired(); // pair moves to the previous generation, still served
+        assertThat(store.lookup(new long[]{1}, new long[]{2}, dur, dist)).isEqualTo(0);
+
+        now.set(2_600);
+        store.evictExpired();
+        assertThat(store.lookup(new long[]{1}, new long[]{2}, dur, dist)).isEqualTo(1);
+        assertThat(Double.isNaN(dur[0][0])).isTrue();
+    }
+
+    @Test
+    void shouldStayWithinCapacity() {
+        PairDistanceStore store = new PairDistanceStore(1_000, 60_000, now::get);
+        for (long s = 0; s < 100; s++) {
+            store.store(new long[]{s}, new long[]{s + 1_000}, new double[]{s}, new double[]{s});
+            for (long d = 0; d < 100; d++) {
+                store.store(new long[]{s}, new long[]{d + 2_000}, new double[]{d}, new double[]{d});
+            }
+        }
+        BoundedCache.Stats stats = store.stats();
+        assertThat(stats.size()).isLessThanOrEqualTo(1_000);
+        assertThat(stats.evictions()).isGreaterThan(0L);
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.backend.service.routing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class PolylineTest {
+
+    @Test
+    void shouldMatchReferenceEncodingAndRoundTrip() {
+        List<double[]> points = List.of(new double[]{38.5, -120.2}, new double[]{40.7, -120.95}, new double[]{43.252, -126.453});
+
+        String encoded = Polyline.encode(points, 5);
+
+        assertThat(encoded).isEqualTo("_p~iF~ps|U_ulLnnqC_mqNvxq`@");
+        List<double[]> decoded = Polyline.decode(encoded, 5);
+        assertThat(decoded).hasSize(3);
+        assertThat(decoded.get(2)[0]).isCloseTo(43.252, within(1e-9));
+        assertThat(decoded.get(2)[1]).isCloseTo(-126.453, within(1e-9));
+
+        List<double[]> precise = Polyline.decode(Polyline.encode(List.of(new double[]{34.7406123, 10.7602987}), 6), 6);
+        assertThat(precise.get(0)[0]).isCloseTo(34.740612, within(1e-9));
+        assertThatThrownBy(() -> Polyline.decode(encoded.substring(0, encoded.length() - 1), 5))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void simplify_shouldKeepCornersAndStayWithinTolerance() {
+        // 1 km east along a street with 1 m wobble, then 1 km north: 401 points
+        List<double[]> points = new ArrayList<>();
+        double degreesPerMeter = 1 / 111_195.0;
+        double cosLat = Math.cos(Math.toRadians(34.74));
+        for (int i = 0; i <= 200; i++) {
+            double wobble = (i % 2 == 0 ? 1 : -1) * degreesPerMeter;
+            points.add(new double[]{34.74 + wobble, 10.76 + i * 5 * degreesPerMeter / cosLat});
+        }
+        double[] corner = points.get(200);
+        for (int i = 1; i <= 200; i++) {
+            points.add(new double[]{corner[0] + i * 5 * degreesPerMeter, corner[1]});
+        }
+
+        List<double[]> coarse = Polyline.simplify(points, 5);
+        List<double[]> fine = Polyline.simplify(points, 0.5);
+
+        assertThat(coarse).hasSize(3);
+        assertThat(coarse.get(0)).isSameAs(points.get(0));
+        assertThat(coarse.get(1)).isSameAs(corner);
+        assertThat(coarse.get(2)).isSameAs(points.get(400));
+        assertThat(fine.size()).isGreaterThan(150);
+        assertThat(Polyline.simplify(points.subList(0, 2), 5)).hasSize(2);
+    }
+
+    @Test
+    void metersPerPixel_shouldHalveWithEachZoomLevel() {
+        assertThat(Polyline.metersPerPixel(0, 0)).isCloseTo(156_543, within(1.0));
+        assertThat(Polyline.metersPerPixel(34.74, 13) * 2).isCloseTo(Polyline.metersPerPixel(34.74, 12), within(1e-9));
+    }
+}
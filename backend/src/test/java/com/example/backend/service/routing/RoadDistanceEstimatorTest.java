@@ -0,0 +1,86 @@
+package com.example.backend.service.routing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class RoadDistanceEstimatorTest {
+
+    @Test
+    void shouldUsePriorUntilCalibrated() {
+        RoadDistanceEstimator estimator = new RoadDistanceEstimator(0.1, 5);
+
+        RoadDistanceEstimator.Estimate e = estimator.estimate(34.74, 10.76, 34.74, 10.86); // ≈ 9.1 km
+
+        assertThat(estimator.calibrated()).isFalse();
+        assertThat(e.meters()).isCloseTo(9_140, within(50.0));
+        assertThat(e.seconds()).isCloseTo(e.meters() / (30 / 3.6), within(1e-6));
+        assertThat(e.lowerSeconds()).isLessThan(e.seconds());
+        assertThat(e.upperSeconds()).isGreaterThan(e.seconds());
+    }
+
+    @Test
+    void shouldLearnDetourAndSpeedPerCell() {
+        RoadDistanceEstimator estimator = new RoadDistanceEstimator(0.1, 5);
+        Random random = new Random(2);
+        // Sfax cell: roads 1.4× the straight line at 10 m/s; Tunis cell: 1.1× at 20 m/s
+        for (int k = 0; k < 50; k++) {
+            observe(estimator, random, 34.71, 10.71, 1.4, 10);
+            observe(estimator, random, 36.81, 10.11, 1.1, 20);
+        }
+        // Very short and unreachable legs are ignored
+        estimator.observe(34.74, 10.76, 34.7401, 10.7601, 60, 5_000);
+        estimator.observe(34.74, 10.76, 34.80, 10.80, Double.MAX_VALUE, Double.MAX_VALUE);
+
+        assertThat(estimator.calibrated()).isTrue();
+        assertThat(estimator.samples()).isEqualTo(100);
+        assertThat(estimator.cellCount()).isEqualTo(2);
+
+        RoadDistanceEstimator.Estimate sfax = estimator.estimate(34.73, 10.73, 34.80, 10.68);
+        RoadDistanceEstimator.Estimate tunis = estimator.estimate(36.83, 10.13, 36.90, 10.08);
+        assertThat(sfax.meters() / haversineMeters(34.73, 10.73, 34.80, 10.68)).isCloseTo(1.4, within(0.05));
+        assertThat(sfax.meters() / sfax.seconds()).isCloseTo(10, within(0.5));
+        assertThat(tunis.meters() / haversineMeters(36.83, 10.13, 36.90, 10.08)).isCloseTo(1.1, within(0.05));
+        assertThat(tunis.meters() / tunis.seconds()).isCloseTo(20, within(1.0));
+        assertThat(sfax.lowerSeconds()).isLessThan(sfax.seconds());
+        assertThat(sfax.upperSeconds()).isGreaterThan(sfax.seconds());
+    }
+
+    @Test
+    void sparseCellShouldFallBackToGlobalModel() {
+        RoadDistanceEstimator estimator = new RoadDistanceEstimator(0.1, 5);
+        Random random = new Random(4);
+        for (int k = 0; k < 20; k++) observe(estimator, random, 34.71, 10.71, 1.3, 12);
+        observe(estimator, random, 33.81, 10.01, 3.0, 5); // Gabès: one sample only
+
+        RoadDistanceEstimator.Estimate gabes = estimator.estimate(33.83, 10.03, 33.90, 10.08);
+
+        // Global model (20 Sfax-like legs + 1 outlier), not the single Gabès sample
+        assertThat(gabes.meters() / haversineMeters(33.83, 10.03, 33.90, 10.08)).isCloseTo(1.38, within(0.1));
+        assertThat(gabes.meters() / gabes.seconds()).isCloseTo(10.5, within(1.0));
+    }
+
+    /** One leg from the cell cornered at (lat, lon), a few km long, ±5 % jitter on detour and speed. */
+    private static void observe(RoadDistanceEstimator estimator, Random random,
+                                double lat, double lon, double detour, double speed) {
+        double fromLat = lat + random.nextDouble() * 0.05;
+        double fromLon = lon + random.nextDouble() * 0.05;
+        double toLat = fromLat + (random.nextDouble() - 0.5) * 0.1;
+        double toLon = fromLon + (random.nextDouble() - 0.5) * 0.1 + 0.05;
+        double straight = haversineMeters(fromLat, fromLon, toLat, toLon);
+        double meters = straight * detour * (0.95 + random.nextDouble() * 0.1);
+        double seconds = meters / (speed * (0.95 + random.nextDouble() * 0.1));
+        estimator.observe(fromLat, fromLon, toLat, toLon, seconds, meters);
+    }
+
+    private static double haversineMeters(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 6_371_000 * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+}
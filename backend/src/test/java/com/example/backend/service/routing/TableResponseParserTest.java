@@ -0,0 +1,163 @@
+package com.example.backend.service.routing;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TableResponseParserTest {
+
+    @Test
+    void shouldParseMatricesAndSkipOtherMembers() {
+        String body = """
+                {"code":"Ok","sources":[{"hint":"a\\"b","distance":1.5,"name":"","location":[10.7,34.7]}],
+                 "durations":[[0,120.5,null],[98.1,0,7e2]],
+                 "destinations":[{"location":[10.8,34.8]},{"location":[10.9,34.9]},{}],
+                 "distances":[[0, 1200.25, null], [981, 0, 7000]], "fallback_speed_cells": [true, false]}
+                """;
+
+        TableResponseParser.FlatTable table = TableResponseParser.parse(bytes(body), 2, 3);
+
+        assertThat(table.code()).isEqualTo("Ok");
+        assertThat(table.duration(0, 1)).isEqualTo(120.5);
+        assertThat(table.duration(0, 2)).isEqualTo(Double.MAX_VALUE);
+        assertThat(table.duration(1, 2)).isEqualTo(700.0);
+        assertThat(table.distance(0, 1)).isEqualTo(1200.25);
+        assertThat(table.distance(1, 0)).isEqualTo(981.0);
+        assertThat(table.durationMatrix()[1][0]).isEqualTo(98.1);
+    }
+
+    @Test
+    void shouldMatchJacksonOnRandomTables() {
+        Random random = new Random(3);
+        ObjectMapper mapper = new ObjectMapper();
+        for (int round = 0; round < 50; round++) {
+            int rows = 1 + random.nextInt(20);
+            int cols = 1 + random.nextInt(20);
+            String body = randomTable(random, rows, cols);
+
+            TableResponseParser.FlatTable table = TableResponseParser.parse(bytes(body), rows, cols);
+            JsonNode root = mapper.readTree(body);
+            double[][] expected = treeMatrix(root.path("durations"));
+            for (int i = 0; i < rows; i++) {
+                for (int j = 0; j < cols; j++) {
+                    assertThat(table.duration(i, j)).as("round %d [%d][%d]", round, i, j).isEqualTo(expected[i][j]);
+                }
+            }
+        }
+    }
+
+    @Test
+    void shouldReturnErrorCodeWithoutMatrices() {
+        TableResponseParser.FlatTable table = TableResponseParser.parse(
+                bytes("{\"code\":\"InvalidQuery\",\"message\":\"Query string malformed\"}"), 2, 2);
+
+        assertThat(table.code()).isEqualTo("InvalidQuery");
+    }
+
+    @Test
+    void shouldRejectUnexpectedShapeAndTruncatedBody() {
+        assertThatThrownBy(() -> TableResponseParser.parse(bytes("{\"code\":\"Ok\",\"durations\":[[1,2],[3,4]]}"), 2, 3))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> TableResponseParser.parse(bytes("{\"code\":\"Ok\",\"durations\":[[1,2],[3"), 2, 2))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    // ========================================================
+    // Benchmark: -Dbenchmark=true
+    // ========================================================
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmarkAgainstJsonTree() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        ObjectMapper mapper = new ObjectMapper();
+        Random random = new Random(1);
+        for (int n : new int[]{10, 50, 100}) {
+            byte[] body = bytes(randomTable(random, n, n));
+            int warmup = 300;
+            int runs = 1_000;
+            for (int i = 0; i < warmup; i++) {
+                treePath(mapper, body);
+                TableResponseParser.parse(body, n, n);
+            }
+
+            long bytes0 = threads.getCurrentThreadAllocatedBytes();
+            long t0 = System.nanoTime();
+            for (int i = 0; i < runs; i++) treePath(mapper, body);
+            long t1 = System.nanoTime();
+            long bytes1 = threads.getCurrentThreadAllocatedBytes();
+            for (int i = 0; i < runs; i++) TableResponseParser.parse(body, n, n);
+            long t2 = System.nanoTime();
+            long bytes2 = threads.getCurrentThreadAllocatedBytes();
+
+            System.out.printf("%3dx%-3d  tree=%8.1f us/op %9d B/op   flat=%7.1f us/op %8d B/op%n", n, n,
+                    (t1 - t0) / 1e3 / runs, (bytes1 - bytes0) / runs,
+                    (t2 - t1) / 1e3 / runs, (bytes2 - bytes1) / runs);
+        }
+    }
+
+    // ---- helpers ----
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** Previous path: String body, JSON tree, copy into double[][]. */
+    private static double[][] treePath(ObjectMapper mapper, byte[] body) {
+        JsonNode root = mapper.readTree(new String(body, StandardCharsets.UTF_8));
+        treeMatrix(root.path("distances"));
+        return treeMatrix(root.path("durations"));
+    }
+
+    private static double[][] treeMatrix(JsonNode matrixNode) {
+        int rows = matrixNode.size();
+        int cols = matrixNode.get(0).size();
+        double[][] matrix = new double[rows][cols];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                JsonNode val = matrixNode.get(i).get(j);
+                matrix[i][j] = (val != null && !val.isNull()) ? val.asDouble() : Double.MAX_VALUE;
+            }
+        }
+        return matrix;
+    }
+
+    /** OSRM-like body: one decimal durations, some unreachable pairs, waypoint objects. */
+    private static String randomTable(Random random, int rows, int cols) {
+        StringBuilder sb = new StringBuilder("{\"code\":\"Ok\",\"durations\":");
+        appendMatrix(sb, random, rows, cols, 1);
+        sb.append(",\"distances\":");
+        appendMatrix(sb, random, rows, cols, 1);
+        sb.append(",\"sources\":[");
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) sb.append(',');
+            sb.append("{\"hint\":\"xYz").append(i).append("\",\"distance\":").append(random.nextInt(50))
+                    .append(",\"name\":\"Rue ").append(i).append("\",\"location\":[10.").append(random.nextInt(1_000_000))
+                    .append(",34.").append(random.nextInt(1_000_000)).append("]}");
+        }
+        return sb.append("]}").toString();
+    }
+
+    private static void appendMatrix(StringBuilder sb, Random random, int rows, int cols, int decimals) {
+        sb.append('[');
+        for (int i = 0; i < rows; i++) {
+            sb.append(i > 0 ? ",[" : "[");
+            for (int j = 0; j < cols; j++) {
+                if (j > 0) sb.append(',');
+                if (random.nextInt(50) == 0) sb.append("null");
+                else if (i == j) sb.append('0');
+                else sb.append(String.format(java.util.Locale.ROOT, "%." + decimals + "f", random.nextDouble() * 5000));
+            }
+            sb.append(']');
+        }
+        sb.append(']');
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.backend.service.routing;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TourImproverTest {
+
+    @Test
+    void shouldReturnPermutationStartingAtOrigin() {
+        Random random = new Random(2);
+        for (int n : new int[]{1, 2, 3, 5, 20, 80}) {
+            for (boolean closed : new boolean[]{false, true}) {
+                int[] tour = new TourImprover(plane(random, n), closed).solve();
+
+                assertThat(tour.length).isEqualTo(n);
+                assertThat(tour[0]).isEqualTo(0);
+                int[] sorted = tour.clone();
+                Arrays.sort(sorted);
+                for (int i = 0; i < n; i++) assertThat(sorted[i]).isEqualTo(i);
+            }
+        }
+    }
+
+    @Test
+    void shouldNeverBeWorseThanItsConstructions() {
+        Random random = new Random(4);
+        for (int round = 0; round < 50; round++) {
+            for (boolean closed : new boolean[]{false, true}) {
+                TourImprover improver = new TourImprover(asymmetric(random, 5 + random.nextInt(30)), closed);
+                double best = improver.length(improver.solve());
+
+                assertThat(best).isLessThanOrEqualTo(improver.length(improver.nearestNeighbour()) + 1e-9);
+                assertThat(best).isLessThanOrEqualTo(improver.length(improver.greedyInsertion()) + 1e-9);
+                assertThat(best).isLessThanOrEqualTo(improver.length(improver.savings()) + 1e-9);
+            }
+        }
+    }
+
+    @Test
+    void shouldStayCloseToOptimumOnSmallInstances() {
+        Random random = new Random(8);
+        double totalGap = 0;
+        int rounds = 100;
+        for (int round = 0; round < rounds; round++) {
+            boolean closed = round % 2 == 0;
+            double[][] matrix = asymmetric(random, 4 + random.nextInt(5));
+            TourImprover improver = new TourImprover(matrix, closed);
+
+            double optimum = bruteForce(matrix, closed);
+            double found = improver.length(improver.solve());
+            assertThat(found).isGreaterThanOrEqualTo(optimum - 1e-9);
+            totalGap += (found - optimum) / optimum;
+        }
+        assertThat(totalGap / rounds).isLessThan(0.01);
+    }
+
+    // ========================================================
+    // Benchmark: -Dbenchmark=true
+    // ========================================================
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmarkSequencing() {
+        Random random = new Random(1);
+        for (int n : new int[]{5, 10, 20, 40, 80}) {
+            double[][] matrix = asymmetric(random, n);
+            int warmup = 200;
+            int runs = 1_000;
+            for (int i = 0; i < warmup; i++) new TourImprover(matrix, false).solve();
+            long t0 = System.nanoTime();
+            double len = 0;
+            for (int i = 0; i < runs; i++) {
+                TourImprover improver = new TourImprover(matrix, false);
+                len = improver.length(improver.solve());
+            }
+            long t1 = System.nanoTime();
+            TourImprover nn = new TourImprover(matrix, false);
+            System.out.printf("stops=%3d  solve=%9.1f us/op  length=%8.1f  nearest-neighbour=%8.1f%n",
+                    n - 1, (t1 - t0) / 1e3 / runs, len, nn.length(nn.nearestNeighbour()));
+        }
+    }
+
+    // ---- helpers ----
+
+    private static double[][] plane(Random random, int n) {
+        double[][] pos = new double[n][];
+        for (int i = 0; i < n; i++) pos[i] = new double[]{random.nextDouble() * 50, random.nextDouble() * 50};
+        double[][] m = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) m[i][j] = Math.hypot(pos[i][0] - pos[j][0], pos[i][1] - pos[j][1]);
+        }
+        return m;
+    }
+
+    /** Road-like durations: Euclidean base plus a per-direction detour (one-way streets). */
+    private static double[][] asymmetric(Random random, int n) {
+        double[][] m = plane(random, n);
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                if (i != j) m[i][j] *= 1.0 + random.nextDouble() * 0.3;
+            }
+        }
+        return m;
+    }
+
+    private static double bruteForce(double[][] m, boolean closed) {
+        return permute(m, closed, new boolean[m.length], 1, 0, 0);
+    }
+
+    private static double permute(double[][] m, boolean closed, boolean[] used, int count, int cur, double acc) {
+        if (count == m.length) return acc + (closed ? m[cur][0] : 0);
+        double best = Double.MAX_VALUE;
+        for (int j = 1; j < m.length; j++) {
+            if (used[j]) continue;
+            used[j] = true;
+            best = Math.min(best, permute(m, closed, used, count + 1, j, acc + m[cur][j]));
+            used[j] = false;
+        }
+        return best;
+    }
+}
@@ -82,3 +82,16 @@ export interface BilanDTO {
   bilanParMois: BilanPeriodeDTO[];
   bilanParLivreur: BilanLivreurDTO[];
 }
+
+export interface RecalculationJob {
+  jobId: number;
+  status: 'RUNNING' | 'COMPLETED' | 'FAILED';
+  total: number;
+  processed: number;
+  recalculated: number;
+  lastPaiementId: number;
+  error?: string;
+  startedAt: string;
+  updatedAt: string;
+  finishedAt?: string;
+}
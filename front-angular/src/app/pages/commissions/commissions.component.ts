@@ -4,8 +4,10 @@ import {
   CommissionConfig,
   CommissionPaiement,
   LivreurCommissionSummary,
-  BilanDTO
+  BilanDTO,
+  RecalculationJob
 } from '../../models/commission.model';
+import { interval, switchMap, takeWhile } from 'rxjs';
 
 @Component({
   selector: 'app-commissions',
@@ -54,6 +56,7 @@ export class CommissionsComponent implements OnInit {
   selectedSummary: LivreurCommissionSummary | null = null;
   detailLoading = false;
   recalculating = false;
+  recalculationJob: RecalculationJob | null = null;
 
   // Config modal
   showConfigForm = false;
@@ -308,10 +311,33 @@ export class CommissionsComponent implements OnInit {
   recalculateDistances(): void {
     this.recalculating = true;
     this.commissionService.recalculateAllDistances().subscribe({
-      next: (result) => {
+      next: (job) => {
+        this.recalculationJob = job;
+        this.pollRecalculation();
+      },
+      error: () => {
         this.recalculating = false;
-        this.refreshCurrentTab();
-        alert(`${result.recalculated} commission(s) recalculée(s) avec succès.`);
+        alert('Erreur lors du recalcul des distances.');
+      }
+    });
+  }
+
+  // The job runs in the background: follow its progress until it ends
+  private pollRecalculation(): void {
+    interval(2000).pipe(
+      switchMap(() => this.commissionService.getRecalculationStatus()),
+      takeWhile(job => job.status === 'RUNNING', true)
+    ).subscribe({
+      next: (job) => {
+        this.recalculationJob = job;
+        if (job.status === 'COMPLETED') {
+          this.recalculating = false;
+          this.refreshCurrentTab();
+          alert(`${job.recalculated} commission(s) recalculée(s) avec succès.`);
+        } else if (job.status === 'FAILED') {
+          this.recalculating = false;
+          alert(`Erreur lors du recalcul des distances (${job.recalculated} commission(s) recalculée(s)).`);
+        }
       },
       error: () => {
         this.recalculating = false;
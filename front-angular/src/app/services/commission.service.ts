@@ -2,7 +2,7 @@ import { Injectable } from '@angular/core';
 import { HttpClient, HttpParams } from '@angular/common/http';
 import { Observable } from 'rxjs';
 import { environment } from '../../environments/environment';
-import { CommissionConfig, CommissionPaiement, LivreurCommissionSummary, BilanDTO } from '../models/commission.model';
+import { CommissionConfig, CommissionPaiement, LivreurCommissionSummary, BilanDTO, RecalculationJob } from '../models/commission.model';
 import { PageResponse } from '../models/order.model';
 
 @Injectable({
@@ -121,8 +121,12 @@ export class CommissionService {
     return this.http.get<LivreurCommissionSummary>(`${this.apiUrl}/summary/${livreurId}`);
   }
 
-  recalculateAllDistances(): Observable<{ recalculated: number }> {
-    return this.http.put<{ recalculated: number }>(`${this.apiUrl}/paiements/recalculate-all`, null);
+  recalculateAllDistances(): Observable<RecalculationJob> {
+    return this.http.put<RecalculationJob>(`${this.apiUrl}/paiements/recalculate-all`, null);
+  }
+
+  getRecalculationStatus(): Observable<RecalculationJob> {
+    return this.http.get<RecalculationJob>(`${this.apiUrl}/paiements/recalculate-all/status`);
   }
 
   // ── Bilan ───────────────────────────────────────────────